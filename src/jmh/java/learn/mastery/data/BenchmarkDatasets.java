@@ -0,0 +1,142 @@
+package learn.mastery.data;
+
+import learn.mastery.tools.DatasetGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Data files of a chosen size for the benchmarks. The same seed
+ * always gives the same rows, so runs before and after a change
+ * read identical files.
+ */
+public final class BenchmarkDatasets {
+
+    public static final long SEED = 20_220_501L;
+
+    //Keys each lookup benchmark cycles through, a power of two so the cursor can wrap with a mask
+    private static final int SAMPLE_SIZE = 1024;
+    private static final LocalDate FIRST_STAY = LocalDate.of(2020, 1, 1);
+
+    private BenchmarkDatasets() {
+    }
+
+    /**
+     * Returns a generator for a dataset of hosts and guests with
+     * no reservations, seeded the same way for every run
+     *
+     * @param hosts     the number of hosts
+     * @param guests    the number of guests
+     * @return          the generator
+     */
+    public static DatasetGenerator generator(int hosts, int guests) {
+        DatasetGenerator generator = new DatasetGenerator(SEED);
+        generator.setHostCount(hosts);
+        generator.setGuestCount(guests);
+        generator.setReservationCount(0);
+        return generator;
+    }
+
+    /**
+     * Returns a fixed sample of lookup keys spread over a
+     * dataset, so working out a key is not part of what is measured
+     *
+     * @param rows  the number of rows to sample from
+     * @param key   the key of the row at a position, from 0
+     * @return      the sampled keys
+     */
+    public static String[] sampleKeys(int rows, IntFunction<String> key) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        String[] keys = new String[SAMPLE_SIZE];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key.apply(random.nextInt(rows));
+        }
+        return keys;
+    }
+
+    /**
+     * Returns a fixed sample of numeric lookup keys, drawn from
+     * the same rows as {@link #sampleKeys}
+     *
+     * @param rows  the number of rows to sample from
+     * @param key   the key of the row at a position, from 0
+     * @return      the sampled keys
+     */
+    public static int[] sampleIds(int rows, IntUnaryOperator key) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        int[] keys = new int[SAMPLE_SIZE];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key.applyAsInt(random.nextInt(rows));
+        }
+        return keys;
+    }
+
+    /**
+     * Writes one host's reservation snapshot with ids from 1 to rows,
+     * spread over ten years of stays and a thousand guests. Unlike the
+     * dataset generator, stays may overlap, which lets a single host
+     * hold a million of them inside a realistic range of dates
+     *
+     * @param directory the reservation directory
+     * @param hostId    the id of the host
+     * @param rows      the number of reservations
+     * @throws IOException
+     */
+    public static void writeReservations(Path directory, String hostId, int rows) throws IOException {
+        Random random = new Random(SEED);
+        try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(hostId + ".csv"))) {
+            writer.write("id,start_date,end_date,guest_id,total");
+            writer.newLine();
+            for (int id = 1; id <= rows; id++) {
+                LocalDate start = FIRST_STAY.plusDays(random.nextInt(3650));
+                LocalDate end = start.plusDays(1 + random.nextInt(7));
+                writer.write(String.format("%s,%s,%s,%s,%s", id, start, end, 1 + random.nextInt(1000),
+                        100 + random.nextInt(2000)));
+                writer.newLine();
+            }
+        }
+    }
+
+    public static String hostId(int row) {
+        return new UUID(SEED, row).toString();
+    }
+
+    /**
+     * Creates an empty directory for one benchmark trial's files
+     *
+     * @return  the new directory
+     * @throws IOException
+     */
+    public static Path newDirectory() throws IOException {
+        return Files.createTempDirectory("learn-mastery-bench");
+    }
+
+    /**
+     * Deletes a trial's directory and everything in it
+     *
+     * @param directory the directory to delete
+     * @throws IOException
+     */
+    public static void delete(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            //Children sort after their directory, so reversed order deletes them first
+            files = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Guest;
+import learn.mastery.tools.DatasetGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guest lookups against generated guest files, reading the file
+ * directly and through the in-memory index. Run with -prof gc for
+ * allocation rates.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GuestRepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"file", "indexed"})
+    public String store;
+
+    private Path directory;
+    private GuestRepository repository;
+    private int[] ids;
+    private String[] emails;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkDatasets.newDirectory();
+        DatasetGenerator generator = BenchmarkDatasets.generator(0, rows);
+        generator.generate(directory);
+        GuestFileRepository source = new GuestFileRepository(directory.resolve("guests.csv").toString());
+        repository = store.equals("indexed") ? new IndexedGuestRepository(source) : source;
+        ids = BenchmarkDatasets.sampleIds(rows, row -> row + 1);
+        emails = BenchmarkDatasets.sampleKeys(rows, row -> generator.guest(row + 1).getEmail());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkDatasets.delete(directory);
+    }
+
+    //Each thread cycles through the sampled keys on its own
+    @State(Scope.Thread)
+    public static class Keys {
+        private int position;
+
+        String next(String[] keys) {
+            return keys[position++ & (keys.length - 1)];
+        }
+
+        int next(int[] keys) {
+            return keys[position++ & (keys.length - 1)];
+        }
+    }
+
+    @Benchmark
+    public List<Guest> findAll() {
+        return repository.findAll();
+    }
+
+    @Benchmark
+    public Guest findById(Keys keys) {
+        return repository.findById(keys.next(ids));
+    }
+
+    @Benchmark
+    public Guest findByEmail(Keys keys) {
+        return repository.findByEmail(keys.next(emails));
+    }
+}
@@ -0,0 +1,76 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Host;
+import learn.mastery.tools.DatasetGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Host lookups against generated host files, reading the file
+ * directly and through the in-memory index. Run with -prof gc for
+ * allocation rates.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HostRepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"file", "indexed"})
+    public String store;
+
+    private Path directory;
+    private HostRepository repository;
+    private String[] ids;
+    private String[] emails;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkDatasets.newDirectory();
+        DatasetGenerator generator = BenchmarkDatasets.generator(rows, 0);
+        generator.generate(directory);
+        HostFileRepository source = new HostFileRepository(directory.resolve("hosts.csv").toString());
+        repository = store.equals("indexed") ? new IndexedHostRepository(source) : source;
+        ids = BenchmarkDatasets.sampleKeys(rows, row -> generator.host(row).getId());
+        emails = BenchmarkDatasets.sampleKeys(rows, row -> generator.host(row).getEmail());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkDatasets.delete(directory);
+    }
+
+    //Each thread cycles through the sampled keys on its own
+    @State(Scope.Thread)
+    public static class Keys {
+        private int position;
+
+        String next(String[] keys) {
+            return keys[position++ & (keys.length - 1)];
+        }
+    }
+
+    @Benchmark
+    public List<Host> findAll() {
+        return repository.findAll();
+    }
+
+    @Benchmark
+    public Host findById(Keys keys) {
+        return repository.findById(keys.next(ids));
+    }
+
+    @Benchmark
+    public Host findByEmail(Keys keys) {
+        return repository.findByEmail(keys.next(emails));
+    }
+}
@@ -0,0 +1,141 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Guest;
+import learn.mastery.models.Reservation;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes of one host's reservations against generated
+ * snapshots, stored as CSV, as columnar snapshots or in segments.
+ * Reads are measured against a warm cache and, in the cold variants,
+ * against a cache cleared before every call. Deletes are measured
+ * together with the add that makes something to delete, so the host
+ * keeps the same number of reservations from one invocation to the
+ * next. Run with -prof gc for allocation rates.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReservationRepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"NONE", "GROUP_COMMIT", "SYNC"})
+    public DurabilityMode durability;
+
+    @Param({"csv", "columnar", "segmented"})
+    public String store;
+
+    private final String hostId = BenchmarkDatasets.hostId(1);
+    private Path directory;
+    private Path segments;
+    private ReservationRepository repository;
+    private Runnable clearCache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, DataException {
+        directory = BenchmarkDatasets.newDirectory();
+        BenchmarkDatasets.writeReservations(directory, hostId, rows);
+        ReservationFileRepository files = new ReservationFileRepository(directory.toString());
+        if (store.equals("segmented")) {
+            segments = BenchmarkDatasets.newDirectory();
+            SegmentedReservationRepository segmented = new SegmentedReservationRepository(segments.toString());
+            segmented.importFrom(files);
+            segmented.setDurabilityMode(durability, DurableFileWriter.DEFAULT_GROUP_COMMIT_MILLIS);
+            repository = segmented;
+            clearCache = segmented::clearCache;
+        } else {
+            if (store.equals("columnar")) {
+                new SnapshotFormatConverter(files).convert(SnapshotFormat.COLUMNAR);
+            }
+            files.setDurabilityMode(durability, DurableFileWriter.DEFAULT_GROUP_COMMIT_MILLIS);
+            repository = files;
+            clearCache = files::clearCache;
+        }
+        //Load the host once so every benchmark starts from a warm cache
+        repository.findAll(hostId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkDatasets.delete(directory);
+        if (segments != null) {
+            BenchmarkDatasets.delete(segments);
+        }
+    }
+
+    //Clears the cache before every call of a cold benchmark, outside the measured time
+    @State(Scope.Thread)
+    public static class Cold {
+        @Setup(Level.Invocation)
+        public void clearCache(ReservationRepositoryBenchmark benchmark) {
+            benchmark.clearCache.run();
+        }
+    }
+
+    //Each thread picks its own reservations and dates
+    @State(Scope.Thread)
+    public static class Keys {
+        private final SplittableRandom random = new SplittableRandom(BenchmarkDatasets.SEED);
+
+        int nextId(int rows) {
+            return 1 + random.nextInt(rows);
+        }
+
+        Reservation nextReservation() {
+            Reservation reservation = new Reservation();
+            LocalDate start = LocalDate.of(2030, 1, 1).plusDays(random.nextInt(3650));
+            reservation.setGuest(new Guest(1 + random.nextInt(1000), "First", "Last", "guest@example.com",
+                    "(555) 5555555", "TX"));
+            reservation.setStartDate(start);
+            reservation.setEndDate(start.plusDays(1 + random.nextInt(7)));
+            reservation.setcostOfStay(BigDecimal.valueOf(100 + random.nextInt(2000)));
+            return reservation;
+        }
+    }
+
+    @Benchmark
+    public List<Reservation> findAll() {
+        return repository.findAll(hostId);
+    }
+
+    @Benchmark
+    public Reservation findById(Keys keys) {
+        return repository.findById(hostId, keys.nextId(rows));
+    }
+
+    @Benchmark
+    public List<Reservation> findAllCold(Cold cold) {
+        return repository.findAll(hostId);
+    }
+
+    @Benchmark
+    public Reservation findByIdCold(Cold cold, Keys keys) {
+        return repository.findById(hostId, keys.nextId(rows));
+    }
+
+    @Benchmark
+    public boolean update(Keys keys) throws DataException {
+        Reservation reservation = keys.nextReservation();
+        reservation.setId(keys.nextId(rows));
+        return repository.update(hostId, reservation);
+    }
+
+    @Benchmark
+    public boolean addThenDelete(Keys keys) throws DataException {
+        Reservation added = repository.add(hostId, keys.nextReservation());
+        return repository.delete(hostId, added.getId());
+    }
+}
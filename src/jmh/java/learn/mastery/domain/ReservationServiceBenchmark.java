@@ -0,0 +1,76 @@
+package learn.mastery.domain;
+
+import learn.mastery.data.BenchmarkDatasets;
+import learn.mastery.data.GuestFileRepository;
+import learn.mastery.data.IndexedGuestRepository;
+import learn.mastery.data.ReservationFileRepository;
+import learn.mastery.models.Host;
+import learn.mastery.models.Reservation;
+import learn.mastery.tools.DatasetGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The checks run on every booking against a host holding a
+ * generated set of reservations. A free range is answered by the
+ * availability check alone, while a booked range also scans the
+ * overlapping reservations.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReservationServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"free", "booked"})
+    public String range;
+
+    private Path directory;
+    private ReservationService service;
+    private Reservation reservation;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkDatasets.newDirectory();
+        DatasetGenerator generator = BenchmarkDatasets.generator(0, 1000);
+        generator.generate(directory);
+        Path guestFile = directory.resolve("guests.csv");
+        String hostId = BenchmarkDatasets.hostId(1);
+        Path reservations = directory.resolve("reservations");
+        BenchmarkDatasets.writeReservations(reservations, hostId, rows);
+        service = new ReservationService(
+                new IndexedGuestRepository(new GuestFileRepository(guestFile.toString())),
+                new ReservationFileRepository(reservations.toString()));
+
+        //Generated stays end early in 2030, so a 2040 stay is always free
+        LocalDate start = range.equals("free") ? LocalDate.of(2040, 3, 1) : LocalDate.of(2028, 3, 1);
+        reservation = new Reservation();
+        reservation.setGuest(generator.guest(1));
+        reservation.setHost(new Host(hostId, "Yearnes", "eyearnes0@sfgate.com", "(806) 1783815",
+                "3 Nova Trail", "Amarillo", "TX", "79182", "340", "425"));
+        reservation.setStartDate(start);
+        reservation.setEndDate(start.plusDays(4));
+        reservation.setcostOfStay(reservation.determineCostOfStay());
+        //Load the host before measuring
+        service.checkReservation(reservation);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkDatasets.delete(directory);
+    }
+
+    @Benchmark
+    public Result<Reservation> checkReservation() {
+        return service.checkReservation(reservation);
+    }
+}
@@ -0,0 +1,53 @@
+package learn.mastery.domain;
+
+import learn.mastery.data.GuestRepositoryDouble;
+import learn.mastery.data.HostRepositoryDouble;
+import learn.mastery.models.Guest;
+import learn.mastery.models.Host;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guest and host validation for input that passes every check
+ * and for input that fails most of them.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+    @Param({"valid", "invalid"})
+    public String input;
+
+    private final GuestService guestService = new GuestService(new GuestRepositoryDouble());
+    private final HostService hostService = new HostService(new HostRepositoryDouble());
+    private Guest guest;
+    private Host host;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (input.equals("valid")) {
+            guest = new Guest(1, "Sullivan", "Lomas", "slomas0@mediafire.com", "(702) 7768761", "NV");
+            host = new Host("3edda6bc-ab95-49a8-8962-d50b53f84b15", "Yearnes", "eyearnes0@sfgate.com",
+                    "(806) 1783815", "3 Nova Trail", "Amarillo", "TX", "79182", "340", "425");
+        } else {
+            guest = new Guest(1, "S", "L,", "s@m@m", "702", "ZZ");
+            host = new Host("3edda6bc-ab95-49a8-8962-d50b53f84b15", "Y", "e@s@", "806", "",
+                    "Amarillo", "ZZ", "7", "340", "425");
+        }
+    }
+
+    @Benchmark
+    public Result<Guest> validateGuest() {
+        return guestService.validateGuest(guest);
+    }
+
+    @Benchmark
+    public Result<Host> validateHost() {
+        return hostService.validateHost(host);
+    }
+}
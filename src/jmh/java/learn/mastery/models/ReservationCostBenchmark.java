@@ -0,0 +1,39 @@
+package learn.mastery.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pricing a stay from one night to a full year. The cost is worked
+ * out in closed form, so it should not grow with the number of nights.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReservationCostBenchmark {
+
+    @Param({"1", "2", "7", "30", "90", "365"})
+    public int nights;
+
+    private Reservation reservation;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        reservation = new Reservation();
+        reservation.setHost(new Host("3edda6bc-ab95-49a8-8962-d50b53f84b15", "Yearnes", "eyearnes0@sfgate.com",
+                "(806) 1783815", "3 Nova Trail", "Amarillo", "TX", "79182", "340", "425"));
+        reservation.setStartDate(LocalDate.of(2030, 1, 3));
+        reservation.setEndDate(reservation.getStartDate().plusDays(nights));
+    }
+
+    @Benchmark
+    public BigDecimal determineCostOfStay() {
+        return reservation.determineCostOfStay();
+    }
+}
@@ -0,0 +1,110 @@
+package learn.mastery.tools;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Saves a JMH JSON result file as a baseline for the regression
+ * check, keeping only what the check compares: each run's benchmark,
+ * mode and parameters, and the score, score error and unit of its
+ * primary metric and of its allocation per operation. The raw samples
+ * JMH writes are left out, so the baseline stays small enough to
+ * commit and review. Runs are written one per line.
+ *
+ * Usage: BenchmarkBaseline results.json baseline.json
+ */
+public final class BenchmarkBaseline {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private BenchmarkBaseline() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: BenchmarkBaseline results.json baseline.json");
+            System.exit(2);
+        }
+        Object results = JsonReader.parse(Files.readString(Paths.get(args[0])));
+        Path baseline = Paths.get(args[1]);
+        if (baseline.getParent() != null) {
+            Files.createDirectories(baseline.getParent());
+        }
+        Files.writeString(baseline, trim(results), StandardCharsets.UTF_8);
+        System.out.printf("Saved %s runs to %s%n", ((List<?>) results).size(), baseline);
+    }
+
+    /**
+     * Returns the JSON of a baseline holding only the compared
+     * fields of each run
+     *
+     * @param results   the parsed result file
+     * @return          the baseline's JSON text
+     */
+    static String trim(Object results) {
+        StringBuilder json = new StringBuilder("[\n");
+        List<?> runs = (List<?>) results;
+        for (int i = 0; i < runs.size(); i++) {
+            Map<?, ?> fields = (Map<?, ?>) runs.get(i);
+            json.append("    {\"benchmark\": ").append(string(fields.get("benchmark")))
+                    .append(", \"mode\": ").append(string(fields.get("mode")));
+            if (fields.get("params") instanceof Map) {
+                json.append(", \"params\": {");
+                //Sorted so the same parameters always give the same line
+                Map<String, Object> params = new TreeMap<>();
+                ((Map<?, ?>) fields.get("params")).forEach((name, value) -> params.put(String.valueOf(name), value));
+                String separator = "";
+                for (Map.Entry<String, Object> param : params.entrySet()) {
+                    json.append(separator).append(string(param.getKey())).append(": ").append(string(param.getValue()));
+                    separator = ", ";
+                }
+                json.append("}");
+            }
+            json.append(", \"primaryMetric\": ").append(metric(fields.get("primaryMetric")));
+            if (fields.get("secondaryMetrics") instanceof Map) {
+                for (Map.Entry<?, ?> secondary : ((Map<?, ?>) fields.get("secondaryMetrics")).entrySet()) {
+                    //Older JMH versions prefix profiler metrics with a middle dot
+                    if (String.valueOf(secondary.getKey()).endsWith(ALLOCATION)) {
+                        json.append(", \"secondaryMetrics\": {").append(string(ALLOCATION)).append(": ")
+                                .append(metric(secondary.getValue())).append("}");
+                    }
+                }
+            }
+            json.append(i + 1 < runs.size() ? "},\n" : "}\n");
+        }
+        return json.append("]\n").toString();
+    }
+
+    private static String metric(Object metric) {
+        Map<?, ?> fields = (Map<?, ?>) metric;
+        return "{\"score\": " + value(fields.get("score"))
+                + ", \"scoreError\": " + value(fields.get("scoreError"))
+                + ", \"scoreUnit\": " + string(fields.get("scoreUnit")) + "}";
+    }
+
+    //Numbers are written as they were read; anything else, such as JMH's "NaN", stays a string
+    private static String value(Object value) {
+        return value instanceof Double ? String.valueOf(value) : string(value);
+    }
+
+    private static String string(Object value) {
+        String text = String.valueOf(value);
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
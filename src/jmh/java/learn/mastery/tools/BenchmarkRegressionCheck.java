@@ -0,0 +1,190 @@
+package learn.mastery.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file against a baseline taken with the
+ * same benchmarks and exits with status 1 when any score got worse by
+ * more than the tolerance and by more than the two runs' score errors
+ * together, so a change that is within the noise of either run is not
+ * flagged. Throughput must not fall; mean times and bytes allocated per
+ * operation must not rise. The 99th percentiles of sample time runs
+ * are printed for information only, since a single slow call moves them.
+ *
+ * Usage: BenchmarkRegressionCheck baseline.json results.json [tolerance]
+ */
+public final class BenchmarkRegressionCheck {
+
+    static final double DEFAULT_TOLERANCE = 0.10;
+
+    private BenchmarkRegressionCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: BenchmarkRegressionCheck baseline.json results.json [tolerance]");
+            System.exit(2);
+        }
+        Path baselineFile = Paths.get(args[0]);
+        if (!Files.exists(baselineFile)) {
+            System.out.printf("No baseline at %s; copy a result file there to start one.%n", baselineFile);
+            System.exit(2);
+        }
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_TOLERANCE;
+        Map<String, Score> baseline = read(baselineFile);
+        Map<String, Score> results = read(Paths.get(args[1]));
+
+        List<String> percentiles = percentiles(results);
+        if (!percentiles.isEmpty()) {
+            System.out.println("99th percentiles, not checked:");
+            percentiles.forEach(System.out::println);
+        }
+
+        List<String> regressions = compare(baseline, results, tolerance);
+        if (regressions.isEmpty()) {
+            long compared = baseline.keySet().stream().filter(results::containsKey).count();
+            System.out.printf("No regressions beyond %.0f%% and the score error across %s scores.%n",
+                    tolerance * 100, compared);
+            return;
+        }
+        System.out.printf("%s regressions beyond %.0f%% and the score error:%n", regressions.size(), tolerance * 100);
+        regressions.forEach(System.out::println);
+        System.exit(1);
+    }
+
+    /**
+     * Returns a line for every score that got worse than the baseline
+     * by more than the tolerance and by more than the score errors of
+     * both runs added together, or that could not be compared
+     *
+     * @param baseline  the baseline scores by key
+     * @param results   the new scores by key
+     * @param tolerance the allowed relative change, such as 0.10 for 10%
+     * @return          a description of each regression
+     */
+    static List<String> compare(Map<String, Score> baseline, Map<String, Score> results, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Score> entry : baseline.entrySet()) {
+            Score before = entry.getValue();
+            Score after = results.get(entry.getKey());
+            if (after == null || !before.checked || !after.checked) {
+                continue; // not run this time, or only reported
+            }
+            if (!before.unit.equals(after.unit)) {
+                regressions.add(String.format("  %s: unit changed from %s to %s",
+                        entry.getKey(), before.unit, after.unit));
+                continue;
+            }
+            double change = before.value == 0 ? 0 : (after.value - before.value) / before.value;
+            boolean worse = before.higherIsBetter ? change < -tolerance : change > tolerance;
+            //Scores whose error intervals overlap may not differ at all
+            boolean outsideError = Math.abs(after.value - before.value) > before.error + after.error;
+            if (worse && outsideError) {
+                regressions.add(String.format("  %s: %.3f +/- %.3f -> %.3f +/- %.3f %s (%+.1f%%)",
+                        entry.getKey(), before.value, before.error, after.value, after.error, after.unit,
+                        change * 100));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Returns a line for every score that is only reported
+     *
+     * @param results   the new scores by key
+     * @return          a description of each reported score
+     */
+    static List<String> percentiles(Map<String, Score> results) {
+        List<String> lines = new ArrayList<>();
+        results.forEach((key, score) -> {
+            if (!score.checked) {
+                lines.add(String.format("  %s: %.3f %s", key, score.value, score.unit));
+            }
+        });
+        return lines;
+    }
+
+    /**
+     * Reads the scores of a JMH JSON result file, keyed by
+     * benchmark, mode, parameters and metric
+     *
+     * @param file  the result file
+     * @return      the scores by key
+     * @throws IOException
+     */
+    static Map<String, Score> read(Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (Object run : (List<?>) JsonReader.parse(Files.readString(file))) {
+            Map<?, ?> fields = (Map<?, ?>) run;
+            String mode = String.valueOf(fields.get("mode"));
+            String key = String.format("%s [%s]%s", fields.get("benchmark"), mode, params(fields.get("params")));
+            boolean throughput = mode.equals("thrpt");
+
+            Map<?, ?> primary = (Map<?, ?>) fields.get("primaryMetric");
+            addScore(scores, key, primary, throughput);
+            Object percentiles = primary.get("scorePercentiles");
+            if (mode.equals("sample") && percentiles instanceof Map && ((Map<?, ?>) percentiles).get("99.0") instanceof Double) {
+                scores.put(key + " p99", new Score((Double) ((Map<?, ?>) percentiles).get("99.0"), 0,
+                        String.valueOf(primary.get("scoreUnit")), false, false));
+            }
+
+            Object secondary = fields.get("secondaryMetrics");
+            if (secondary instanceof Map) {
+                for (Map.Entry<?, ?> metric : ((Map<?, ?>) secondary).entrySet()) {
+                    //Older JMH versions prefix profiler metrics with a middle dot
+                    if (String.valueOf(metric.getKey()).endsWith("gc.alloc.rate.norm")) {
+                        addScore(scores, key + " alloc", (Map<?, ?>) metric.getValue(), false);
+                    }
+                }
+            }
+        }
+        return scores;
+    }
+
+    private static void addScore(Map<String, Score> scores, String key, Map<?, ?> metric, boolean higherIsBetter) {
+        //JMH writes NaN scores as strings, which cannot be compared
+        if (metric != null && metric.get("score") instanceof Double) {
+            //A single iteration has no error, which JMH writes as the string NaN
+            double error = metric.get("scoreError") instanceof Double ? (Double) metric.get("scoreError") : 0;
+            scores.put(key, new Score((Double) metric.get("score"), error,
+                    String.valueOf(metric.get("scoreUnit")), higherIsBetter, true));
+        }
+    }
+
+    private static String params(Object params) {
+        if (!(params instanceof Map)) {
+            return "";
+        }
+        Map<String, Object> sorted = new TreeMap<>();
+        ((Map<?, ?>) params).forEach((name, value) -> sorted.put(String.valueOf(name), value));
+        return " " + sorted;
+    }
+
+    /**
+     * One measured value, its error and which direction counts as
+     * better. Scores that are not checked are only reported
+     */
+    static final class Score {
+        private final double value;
+        private final double error;
+        private final String unit;
+        private final boolean higherIsBetter;
+        private final boolean checked;
+
+        Score(double value, double error, String unit, boolean higherIsBetter, boolean checked) {
+            this.value = value;
+            this.error = error;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+            this.checked = checked;
+        }
+    }
+}
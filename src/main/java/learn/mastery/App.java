@@ -1,16 +1,25 @@
 package learn.mastery;
 
 import learn.mastery.data.*;
+import learn.mastery.domain.AvailabilityService;
 import learn.mastery.domain.GuestService;
 import learn.mastery.domain.HostService;
 import learn.mastery.domain.ReservationService;
+import learn.mastery.metrics.MetricsRegistry;
 import learn.mastery.ui.ConsoleIO;
 import learn.mastery.ui.Controller;
 import learn.mastery.ui.View;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 @ComponentScan
 @PropertySource("classpath:data.properties")
@@ -20,12 +29,89 @@ public class App {
         runSpringAnnotationConfiguration();
     }
 
+    /**
+     * Chooses the reservation store the services use: one file per
+     * host, or every host packed into segment files. Only the files
+     * store archives past stays, so asking for both fails at startup
+     *
+     * @param environment   the loaded data.properties
+     * @param files         the one-file-per-host repository
+     * @return              the repository the services are given
+     */
+    @Bean
+    @Primary
+    public ReservationRepository reservationRepository(Environment environment, ReservationFileRepository files) {
+        if ("segments".equalsIgnoreCase(environment.getProperty("reservationStore", "files"))) {
+            if (environment.getProperty("archiveIntervalHours", Long.class, 0L) > 0) {
+                throw new IllegalStateException(
+                        "reservationStore=segments cannot archive past stays, set archiveIntervalHours=0");
+            }
+            return new SegmentedReservationRepository(
+                    environment.getProperty("segmentFolderPath", "./data/segments/"));
+        }
+        return files;
+    }
+
     private static void runSpringAnnotationConfiguration() {
         //Annotation Setup
         ApplicationContext container = new AnnotationConfigApplicationContext(App.class);
+        //Snapshots are read and written in one format, see SnapshotConverter to move a directory over
+        container.getBean(ReservationFileRepository.class).setSnapshotFormat(SnapshotFormat.valueOf(
+                container.getEnvironment().getProperty("reservationFormat", "csv").toUpperCase()));
+        //Preloading only keeps the hosts that fit, so size this to the report's estimate
+        container.getBean(ReservationFileRepository.class).setCacheCapacityBytes(
+                container.getEnvironment().getProperty("reservationCacheMegabytes", Long.class, 64L) << 20);
+        //Eager mode loads every host before the menu opens
+        if (container.getEnvironment().getProperty("reservationPreload", Boolean.class, false)) {
+            System.out.println(container.getBean(ReservationFileRepository.class).preload());
+        }
+        //Reload data files changed outside the app instead of checking them on every read
+        if (container.getEnvironment().getProperty("watchDataFiles", Boolean.class, false)) {
+            watchDataFiles(container);
+        }
+        //Move stays that are over into the compressed archive in the background
+        long archiveIntervalHours = container.getEnvironment().getProperty("archiveIntervalHours", Long.class, 0L);
+        if (archiveIntervalHours > 0) {
+            new ReservationArchiver(container.getBean(ReservationFileRepository.class))
+                    .schedule(archiveIntervalHours * 3_600_000L);
+        }
+        //Report the reservation cache next to the operation metrics
+        registerGauges(container.getBean(ReservationFileRepository.class));
         //stays same as XML
         Controller controller = container.getBean(Controller.class);
         controller.run();
+        //Keep the metrics of the session once the program exits
+        String metricsDumpPath = container.getEnvironment().getProperty("metricsDumpPath", "");
+        if (!metricsDumpPath.isBlank()) {
+            writeMetrics(Paths.get(metricsDumpPath));
+        }
+    }
+
+    private static void registerGauges(ReservationFileRepository repository) {
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.gauge("reservationCache.entries", () -> repository.getCacheStats().getEntries());
+        metrics.gauge("reservationCache.weightBytes", () -> repository.getCacheStats().getWeightBytes());
+        metrics.gauge("reservationCache.hitRate", () -> repository.getCacheStats().getHitRate());
+    }
+
+    private static void writeMetrics(Path file) {
+        try {
+            MetricsRegistry.getDefault().writeTo(file);
+        } catch (IOException ex) {
+            System.out.println("Could not write metrics to " + file + ": " + ex.getMessage());
+        }
+    }
+
+    private static void watchDataFiles(ApplicationContext container) {
+        try {
+            DataFileWatcher watcher = new DataFileWatcher();
+            container.getBean(IndexedHostRepository.class).watchWith(watcher);
+            container.getBean(IndexedGuestRepository.class).watchWith(watcher);
+            container.getBean(ReservationFileRepository.class).watchWith(watcher);
+            watcher.start();
+        } catch (IOException | DataException ex) {
+            System.out.println("Data files will be checked on every read: " + ex.getMessage());
+        }
     }
 
     private static void runManualConfiguration() {
@@ -33,15 +119,16 @@ public class App {
         ConsoleIO io = new ConsoleIO();
         View view = new View(io);
 
-        GuestRepository guestRepository = new GuestFileRepository("./data/guests.csv");
-        HostRepository hostRepository = new HostFileRepository("./data/hosts.csv");
+        GuestRepository guestRepository = new IndexedGuestRepository(new GuestFileRepository("./data/guests.csv"));
+        HostRepository hostRepository = new IndexedHostRepository(new HostFileRepository("./data/hosts.csv"));
         ReservationRepository reservationRepository = new ReservationFileRepository("./data/reservations/");
 
         GuestService guestService = new GuestService(guestRepository);
         HostService hostService = new HostService(hostRepository);
         ReservationService reservationService = new ReservationService(guestRepository, reservationRepository);
+        AvailabilityService availabilityService = new AvailabilityService(hostRepository, reservationRepository);
 
-        Controller controller = new Controller(hostService, guestService, reservationService, view);
+        Controller controller = new Controller(hostService, guestService, reservationService, availabilityService, view);
         controller.run();
     }
 
@@ -0,0 +1,105 @@
+package learn.mastery.data;
+
+/**
+ * A snapshot of a cache's counters: lookups that found a value,
+ * lookups that did not, values evicted to stay within capacity, and
+ * how much the cache holds compared with what it may hold.
+ */
+public final class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int entries;
+    private final long weightBytes;
+    private final long capacityBytes;
+
+    /**
+     * Class constructor.
+     *
+     * @param hits              the lookups that found a value
+     * @param misses            the lookups that found nothing
+     * @param evictions         the values evicted to stay within capacity
+     * @param entries           the number of values held
+     * @param weightBytes       the estimated memory held by the values
+     * @param capacityBytes     the estimated memory the cache may hold
+     */
+    CacheStats(long hits, long misses, long evictions, int entries, long weightBytes, long capacityBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.weightBytes = weightBytes;
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * Gets the lookups that found a value
+     *
+     * @return the hit count
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the lookups that found nothing
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the values evicted to stay within capacity
+     *
+     * @return the eviction count
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of values held
+     *
+     * @return the entry count
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * Gets the estimated memory held by the values
+     *
+     * @return the weight in bytes
+     */
+    public long getWeightBytes() {
+        return weightBytes;
+    }
+
+    /**
+     * Gets the estimated memory the cache may hold
+     *
+     * @return the capacity in bytes
+     */
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    /**
+     * Gets the share of lookups that found a value
+     *
+     * @return the hit rate between 0 and 1, or 0 before any lookup
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%s misses=%s evictions=%s entries=%s weight=%s/%s bytes",
+                hits, misses, evictions, entries, weightBytes, capacityBytes);
+    }
+}
@@ -0,0 +1,47 @@
+package learn.mastery.data;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Raised once a comma separated file has been read from
+ * its first line to its last.
+ */
+@Name("learn.mastery.CsvParse")
+@Label("CSV Parse")
+@Category({"Mastery", "Data"})
+@Description("A data file parsed from start to end")
+@StackTrace(false)
+final class CsvParseEvent extends jdk.jfr.Event {
+
+    @Label("File")
+    String file;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Memory Mapped")
+    boolean mapped;
+
+    /**
+     * Returns a started event, or null when events are switched off
+     *
+     * @return  the event timing the parse
+     */
+    static CsvParseEvent start() {
+        if (!JfrEvents.ENABLED) {
+            return null;
+        }
+        CsvParseEvent event = new CsvParseEvent();
+        event.begin();
+        return event;
+    }
+}
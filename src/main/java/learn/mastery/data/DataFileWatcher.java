@@ -0,0 +1,142 @@
+package learn.mastery.data;
+
+import learn.mastery.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches data directories for files created, changed or deleted
+ * outside the application and tells the repositories that hold them,
+ * so they can reload just the changed file instead of checking every
+ * file on every read. Listeners are called on the watcher's own thread.
+ * When events are lost the directory itself is passed to its listeners,
+ * meaning any file in it may have changed. A listener that fails is
+ * counted in the metrics registry and asked again on the next change.
+ */
+public final class DataFileWatcher implements AutoCloseable {
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+
+    private final WatchService service;
+    private final Map<WatchKey, List<Consumer<Path>>> listeners = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> keys = new ConcurrentHashMap<>();
+    private volatile Thread thread;
+
+    /**
+     * Class constructor.
+     *
+     * @throws IOException
+     */
+    public DataFileWatcher() throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Starts telling a listener about changes to the files of a
+     * directory. Each changed file is passed as a path inside the directory
+     *
+     * @param directory the directory to watch
+     * @param listener  called with each file that changed
+     * @throws IOException
+     */
+    public synchronized void register(Path directory, Consumer<Path> listener) throws IOException {
+        Path normalized = normalize(directory);
+        WatchKey key = normalized.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        keys.put(normalized, key);
+        listeners.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Starts the background thread that delivers changes.
+     * Starting a watcher that is already running has no effect
+     */
+    public synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this::run, "data-file-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns whether changes to a directory are being delivered.
+     * Repositories may only skip their own file checks while this holds
+     *
+     * @param directory the watched directory
+     * @return          whether the watcher is running and the directory is still watched
+     */
+    public boolean isWatching(Path directory) {
+        Thread current = thread;
+        WatchKey key = keys.get(normalize(directory));
+        return current != null && current.isAlive() && key != null && key.isValid();
+    }
+
+    /**
+     * Stops delivering changes and releases the watch service
+     */
+    @Override
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException ex) {
+            // nothing left to release
+        }
+        Thread current = thread;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        notify(key, directory);
+                    } else {
+                        notify(key, directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    //The directory is gone, so its listeners fall back to their own checks
+                    listeners.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // closed
+        }
+    }
+
+    private void notify(WatchKey key, Path changed) {
+        for (Consumer<Path> listener : listeners.getOrDefault(key, List.of())) {
+            try {
+                listener.accept(changed);
+            } catch (RuntimeException ex) {
+                //One failed reload must not stop the others; the stale entry is re-read by its own check
+                METRICS.counter("DataFileWatcher.failedReloads").increment();
+            }
+        }
+    }
+
+    private static Path normalize(Path directory) {
+        return directory.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,23 @@
+package learn.mastery.data;
+
+/**
+ * Controls when writes to the reservation files are forced
+ * from the operating system's cache to the disk.
+ */
+public enum DurabilityMode {
+    /**
+     * Every write is forced to disk before it returns.
+     * The safest and slowest mode.
+     */
+    SYNC,
+    /**
+     * Writes wait for a background flush that runs on a fixed
+     * interval, so concurrent writers share a single force.
+     */
+    GROUP_COMMIT,
+    /**
+     * Writes return as soon as the operating system accepts them.
+     * A crash of the machine can lose recent writes.
+     */
+    NONE
+}
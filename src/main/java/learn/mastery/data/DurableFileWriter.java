@@ -0,0 +1,317 @@
+package learn.mastery.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Performs every write made by the file repositories. Whole files
+ * are replaced by writing a temporary file and renaming it over
+ * the target, so readers never see a half written file. Appends
+ * go through channels that are kept open and forced to disk
+ * according to the configured DurabilityMode.
+ */
+final class DurableFileWriter {
+
+    static final long DEFAULT_GROUP_COMMIT_MILLIS = 5;
+
+    private volatile DurabilityMode mode;
+    private volatile long groupCommitMillis;
+    private final Map<Path, AppendChannel> channels = new ConcurrentHashMap<>();
+    private final AtomicLong forceCount = new AtomicLong();
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Class constructor.
+     *
+     * @param mode                  when appended data is forced to disk
+     * @param groupCommitMillis     the flush interval used by GROUP_COMMIT
+     */
+    DurableFileWriter(DurabilityMode mode, long groupCommitMillis) {
+        configure(mode, groupCommitMillis);
+    }
+
+    /**
+     * Changes the durability mode. Appends that are already
+     * waiting on a group commit are still released by the flusher
+     *
+     * @param mode                  when appended data is forced to disk
+     * @param groupCommitMillis     the flush interval used by GROUP_COMMIT
+     */
+    synchronized void configure(DurabilityMode mode, long groupCommitMillis) {
+        if (groupCommitMillis < 1) {
+            throw new IllegalArgumentException("Group commit interval must be at least 1ms");
+        }
+        this.groupCommitMillis = groupCommitMillis;
+        this.mode = mode;
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+        if (mode == DurabilityMode.GROUP_COMMIT) {
+            flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "group-commit-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushAll, groupCommitMillis, groupCommitMillis, TimeUnit.MILLISECONDS);
+        }
+        // release anything left waiting by the previous mode
+        flushAll();
+    }
+
+    /**
+     * Returns the current durability mode
+     *
+     * @return  the durability mode
+     */
+    DurabilityMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns how many times a file has been forced to disk.
+     * Comparing this with the number of writes shows how well
+     * group commit is batching
+     *
+     * @return  the number of forces performed
+     */
+    long getForceCount() {
+        return forceCount.get();
+    }
+
+    /**
+     * Appends bytes to the end of a file, creating it if needed.
+     * The returned commit must be awaited, ideally after any locks
+     * are released, before the write is known to be durable
+     *
+     * @param path          the file to append to
+     * @param bytes         the bytes to append
+     * @return              the pending commit of the write
+     * @throws DataException
+     */
+    Commit append(Path path, byte[] bytes) throws DataException {
+        AppendChannel channel = channels.computeIfAbsent(path, AppendChannel::new);
+        long sequence;
+        try {
+            sequence = channel.write(bytes);
+        } catch (IOException ex) {
+            close(path);
+            throw new DataException("Could not write to " + path, ex);
+        }
+
+        if (mode == DurabilityMode.SYNC) {
+            channel.force(sequence);
+            channel.awaitForced(sequence);
+        }
+        return new Commit(channel, sequence);
+    }
+
+    /**
+     * Replaces the content of a file atomically. The content is
+     * written to a temporary file in the same directory, forced
+     * to disk unless the mode is NONE, and renamed over the target
+     *
+     * @param target        the file to replace
+     * @param content       the complete new content of the file
+     * @throws DataException
+     */
+    void replace(Path target, byte[] content) throws DataException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileAccess.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (mode != DurabilityMode.NONE) {
+                    channel.force(true);
+                    forceCount.incrementAndGet();
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+            if (mode != DurabilityMode.NONE) {
+                forceDirectory(directory);
+            }
+        } catch (IOException ex) {
+            throw new DataException("Could not write " + target, ex);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ex) {
+                    // the temporary file is orphaned but the target is untouched
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the open append channel of a file, if there is one.
+     * Must be called before the file is deleted or replaced
+     *
+     * @param path  the file whose channel should be closed
+     */
+    void close(Path path) {
+        AppendChannel channel = channels.remove(path);
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Forces every channel with unforced writes to disk and
+     * releases the appends waiting on them
+     */
+    private void flushAll() {
+        for (AppendChannel channel : channels.values()) {
+            channel.force(Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Forces a directory entry change, such as a rename, to disk.
+     * Not every platform allows a directory to be opened, in
+     * which case the rename is left to the operating system
+     *
+     * @param directory     the directory to force
+     */
+    private void forceDirectory(Path directory) {
+        try (FileChannel channel = FileAccess.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // directories cannot be opened on every platform
+        }
+    }
+
+    /**
+     * A write that may not be on disk yet
+     */
+    final class Commit {
+        private final AppendChannel channel;
+        private final long sequence;
+
+        private Commit(AppendChannel channel, long sequence) {
+            this.channel = channel;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Blocks until the write has been forced to disk as required
+         * by the durability mode. Returns at once in NONE and SYNC mode
+         *
+         * @throws DataException
+         */
+        void await() throws DataException {
+            if (mode != DurabilityMode.GROUP_COMMIT) {
+                return;
+            }
+            channel.awaitForced(sequence);
+        }
+    }
+
+    /**
+     * An open channel that numbers each write so that waiters
+     * can tell when a force has covered their write
+     */
+    private final class AppendChannel {
+        private final Path path;
+        private FileChannel channel;
+        private long written;
+        private long forced;
+        private IOException failure;
+        private boolean closed;
+
+        private AppendChannel(Path path) {
+            this.path = path;
+        }
+
+        private synchronized long write(byte[] bytes) throws IOException {
+            if (channel == null) {
+                channel = FileAccess.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return ++written;
+        }
+
+        //Forces everything written so far once, covering every waiter up to that point
+        private void force(long upTo) {
+            FileChannel target;
+            long covered;
+            synchronized (this) {
+                if (channel == null || forced >= Math.min(upTo, written)) {
+                    return;
+                }
+                target = channel;
+                covered = written;
+            }
+            IOException error = null;
+            try {
+                target.force(false);
+                forceCount.incrementAndGet();
+            } catch (IOException ex) {
+                error = ex;
+            }
+            synchronized (this) {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    forced = Math.max(forced, covered);
+                }
+                notifyAll();
+            }
+        }
+
+        private synchronized void awaitForced(long sequence) throws DataException {
+            while (forced < sequence && failure == null && !closed) {
+                try {
+                    wait(groupCommitMillis * 4);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new DataException("Interrupted waiting for " + path + " to be written", ex);
+                }
+            }
+            if (failure != null) {
+                throw new DataException("Could not force " + path + " to disk", failure);
+            }
+        }
+
+        private void close() {
+            force(Long.MAX_VALUE);
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException ex) {
+                // nothing left to release
+            }
+        }
+    }
+}
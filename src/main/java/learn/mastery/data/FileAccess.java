@@ -0,0 +1,78 @@
+package learn.mastery.data;
+
+import learn.mastery.metrics.Operation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The one place the repositories open files. Every open and every
+ * byte read is charged to the operations running on the calling
+ * thread, so the metrics and the tests can hold a call to a budget
+ * of file access and an extra read per row is caught.
+ */
+final class FileAccess {
+
+    private FileAccess() {
+    }
+
+    /**
+     * Opens a file and counts the open
+     *
+     * @param path      the file to open
+     * @param options   how to open it
+     * @return          the open channel
+     * @throws IOException if the file cannot be opened
+     */
+    static FileChannel open(Path path, OpenOption... options) throws IOException {
+        FileChannel channel = FileChannel.open(path, options);
+        Operation.recordOpen();
+        return channel;
+    }
+
+    /**
+     * Returns the whole content of a file. Files at or above the
+     * threshold are memory mapped instead of copied onto the heap
+     *
+     * @param path          the file to read
+     * @param mapThreshold  the size in bytes from which the file is mapped
+     * @return              a buffer over the file's content
+     * @throws IOException if the file cannot be read
+     */
+    static ByteBuffer read(Path path, int mapThreshold) throws IOException {
+        try (FileChannel channel = open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to read");
+            }
+            Operation.recordBytes(size);
+            if (size >= mapThreshold) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * Returns the whole content of a file as bytes
+     *
+     * @param path  the file to read
+     * @return      the file's content
+     * @throws IOException if the file cannot be read
+     */
+    static byte[] readAllBytes(Path path) throws IOException {
+        ByteBuffer buffer = read(path, Integer.MAX_VALUE);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
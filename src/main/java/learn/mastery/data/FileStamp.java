@@ -0,0 +1,58 @@
+package learn.mastery.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * An immutable snapshot of a file's modification time and size.
+ * Two stamps taken from the same file compare equal until the
+ * file is written again, which lets caches detect stale data
+ * with a single stat call instead of re-reading the file.
+ */
+final class FileStamp {
+
+    static final FileStamp MISSING = new FileStamp(-1L, -1L);
+
+    private final long modifiedMillis;
+    private final long size;
+
+    private FileStamp(long modifiedMillis, long size) {
+        this.modifiedMillis = modifiedMillis;
+        this.size = size;
+    }
+
+    /**
+     * Returns the current stamp of a file. A file that
+     * cannot be read returns the MISSING stamp
+     *
+     * @param path  the file to stat
+     * @return      the stamp of the file
+     */
+    static FileStamp of(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileStamp(attributes.lastModifiedTime().toMillis(), attributes.size());
+        } catch (IOException ex) {
+            return MISSING;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FileStamp)) {
+            return false;
+        }
+        FileStamp other = (FileStamp) o;
+        return modifiedMillis == other.modifiedMillis && size == other.size;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(modifiedMillis) * 31 + Long.hashCode(size);
+    }
+}
@@ -1,16 +1,25 @@
 package learn.mastery.data;
 
+import learn.mastery.metrics.MetricsRegistry;
 import learn.mastery.models.Guest;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
-import java.io.*;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Repository
 public class GuestFileRepository implements GuestRepository {
 
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+
     private final String filePath;
     //private static final String HEADER = "guest_id,first_name,last_name,email,phone,state";
 
@@ -23,6 +32,15 @@ public class GuestFileRepository implements GuestRepository {
         this.filePath = filePath;
     }
 
+    /**
+     * Returns the path of the file repository
+     *
+     * @return  the guest file path
+     */
+    String getFilePath() {
+        return filePath;
+    }
+
     /**
      * Retrieves all guest objects from the file repository
      * and returns it as a list
@@ -31,16 +49,21 @@ public class GuestFileRepository implements GuestRepository {
      */
     @Override
     public List<Guest> findAll() {
-        ArrayList<Guest> result = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+        return METRICS.time("GuestFileRepository.findAll", () -> {
+            return readAll();
+        });
+    }
 
-            reader.readLine(); // read header
+    private List<Guest> readAll() {
+        ArrayList<Guest> result = new ArrayList<>();
+        try {
+            MappedCsvReader reader = MappedCsvReader.open(Paths.get(filePath));
 
-            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            reader.next(); // read header
 
-                String[] fields = line.split(",", -1);
-                if (fields.length == 6) {
-                    result.add(deserialize(fields));
+            while (reader.next()) {
+                if (reader.fieldCount() == 6) {
+                    result.add(deserialize(reader));
                 }
             }
         } catch (IOException ex) {
@@ -58,10 +81,12 @@ public class GuestFileRepository implements GuestRepository {
      */
     @Override
     public Guest findById(int id) {
-        return findAll().stream()
-                .filter(i -> i.getId() == id)
-                .findFirst()
-                .orElse(null);
+        return METRICS.time("GuestFileRepository.findById", () -> {
+            return readAll().stream()
+                    .filter(i -> i.getId() == id)
+                    .findFirst()
+                    .orElse(null);
+        });
     }
 
     /**
@@ -73,29 +98,55 @@ public class GuestFileRepository implements GuestRepository {
      */
     @Override
     public Guest findByEmail(String email) {
-        return findAll().stream()
-                .filter(i -> i.getEmail().equalsIgnoreCase(email))
-                .findFirst()
-                .orElse(null);
+        return METRICS.time("GuestFileRepository.findByEmail", () -> {
+            return readAll().stream()
+                    .filter(i -> i.getEmail().equalsIgnoreCase(email))
+                    .findFirst()
+                    .orElse(null);
+        });
     }
 
+    /**
+     * Returns the guests matching a collection of ids, keyed by id.
+     * The file repository is read at most once no matter how many
+     * ids are requested. Ids with no matching guest are left out
+     *
+     * @param ids   the targeted guest ids
+     * @return      a map of guest id to guest
+     */
+    @Override
+    public Map<Integer, Guest> findByIds(Collection<Integer> ids) {
+        return METRICS.time("GuestFileRepository.findByIds", () -> {
+            Map<Integer, Guest> result = new HashMap<>();
+            if (ids == null || ids.isEmpty()) {
+                return result;
+            }
+            Set<Integer> wanted = new HashSet<>(ids);
+            for (Guest guest : readAll()) {
+                if (wanted.contains(guest.getId())) {
+                    result.putIfAbsent(guest.getId(), guest);
+                }
+            }
+            return result;
+        });
+    }
 
     //Deserialize
     /**
      * Returns a guest object created from a line
      * provided by the file repository
      *
-     * @param fields  the data retrieved from the file repository
+     * @param reader  the reader positioned on a line of the file repository
      * @return        guest object containing the field as data
      */
-    private Guest deserialize(String[] fields) {
+    private Guest deserialize(MappedCsvReader reader) {
         Guest result = new Guest();
-        result.setId( Integer.parseInt( fields[0]) );
-        result.setFirstName(fields[1]);
-        result.setLastName(fields[2]);
-        result.setEmail((fields[3]));
-        result.setPhone((fields[4]));
-        result.setState(fields[5]);
+        result.setId( reader.parseInt(0) );
+        result.setFirstName(reader.string(1));
+        result.setLastName(reader.string(2));
+        result.setEmail(reader.string(3));
+        result.setPhone(reader.string(4));
+        result.setState(reader.string(5));
         return result;
     }
 
@@ -2,7 +2,9 @@ package learn.mastery.data;
 
 import learn.mastery.models.Guest;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface GuestRepository {
 
@@ -11,4 +13,6 @@ public interface GuestRepository {
     Guest findById(int id);
 
     Guest findByEmail(String email);
+
+    Map<Integer, Guest> findByIds(Collection<Integer> ids);
 }
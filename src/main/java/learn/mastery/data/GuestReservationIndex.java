@@ -0,0 +1,209 @@
+package learn.mastery.data;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Maps each guest id to the hosts and reservation ids the guest
+ * has booked, across every host. The postings are kept in memory
+ * and persisted as a log of added and removed postings, which is
+ * rewritten once it holds mostly removed entries. Replaying a
+ * posting twice is harmless. The index can always be rebuilt from
+ * the host files, so its writes are not forced to disk; after an
+ * operating system crash the tail of the log may be missing and
+ * the index should be rebuilt.
+ */
+final class GuestReservationIndex {
+
+    static final String FILE_NAME = "guest-reservations.index";
+    //Log records beyond twice the live postings, plus this slack, trigger a rewrite
+    private static final int REWRITE_SLACK_RECORDS = 1024;
+    //Log record types
+    private static final String ADD = "A";
+    private static final String REMOVE = "D";
+
+    /**
+     * A single reservation made by a guest
+     */
+    static final class Posting {
+        private final String hostId;
+        private final int reservationId;
+
+        Posting(String hostId, int reservationId) {
+            this.hostId = hostId;
+            this.reservationId = reservationId;
+        }
+
+        String getHostId() {
+            return hostId;
+        }
+
+        int getReservationId() {
+            return reservationId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Posting posting = (Posting) o;
+            return reservationId == posting.reservationId && hostId.equals(posting.hostId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hostId, reservationId);
+        }
+    }
+
+    private final Journal log;
+    private final DurableFileWriter writer;
+    private final Map<Integer, Set<Posting>> byGuest = new HashMap<>();
+    private int postings;
+    private int records;
+
+    /**
+     * Class constructor.
+     *
+     * @param path      the index file
+     * @param writer    the writer that performs writes, normally one that never forces
+     */
+    GuestReservationIndex(Path path, DurableFileWriter writer) {
+        this.log = new Journal(path, writer);
+        this.writer = writer;
+    }
+
+    /**
+     * Reads the postings from the index file
+     *
+     * @return  false if there is no index file to read
+     */
+    synchronized boolean load() {
+        if (!Files.exists(log.getPath())) {
+            return false;
+        }
+        byGuest.clear();
+        postings = 0;
+        records = 0;
+        for (String record : log.readRecords()) {
+            String[] fields = record.split(",", -1);
+            if (fields.length != 4) {
+                break;
+            }
+            try {
+                int guestId = Integer.parseInt(fields[1]);
+                Posting posting = new Posting(fields[2], Integer.parseInt(fields[3]));
+                if (fields[0].equals(ADD)) {
+                    apply(guestId, posting, true);
+                } else if (fields[0].equals(REMOVE)) {
+                    apply(guestId, posting, false);
+                } else {
+                    break;
+                }
+            } catch (NumberFormatException ex) {
+                break;
+            }
+            records++;
+        }
+        return true;
+    }
+
+    /**
+     * Replaces every posting and rewrites the index file
+     *
+     * @param postingsByGuest   the postings of every guest
+     * @throws DataException
+     */
+    synchronized void replaceAll(Map<Integer, Set<Posting>> postingsByGuest) throws DataException {
+        byGuest.clear();
+        postings = 0;
+        for (Map.Entry<Integer, Set<Posting>> entry : postingsByGuest.entrySet()) {
+            for (Posting posting : entry.getValue()) {
+                apply(entry.getKey(), posting, true);
+            }
+        }
+        rewrite();
+    }
+
+    /**
+     * Records that a guest made a reservation with a host
+     *
+     * @param guestId           the id of the guest
+     * @param hostId            the id of the host
+     * @param reservationId     the id of the reservation
+     * @throws DataException
+     */
+    synchronized void add(int guestId, String hostId, int reservationId) throws DataException {
+        append(ADD, guestId, new Posting(hostId, reservationId));
+    }
+
+    /**
+     * Records that a guest's reservation with a host is gone
+     *
+     * @param guestId           the id of the guest
+     * @param hostId            the id of the host
+     * @param reservationId     the id of the reservation
+     * @throws DataException
+     */
+    synchronized void remove(int guestId, String hostId, int reservationId) throws DataException {
+        append(REMOVE, guestId, new Posting(hostId, reservationId));
+    }
+
+    /**
+     * Returns every reservation recorded for a guest
+     *
+     * @param guestId   the id of the guest
+     * @return          the guest's postings
+     */
+    synchronized List<Posting> find(int guestId) {
+        return new ArrayList<>(byGuest.getOrDefault(guestId, Set.of()));
+    }
+
+    private void append(String type, int guestId, Posting posting) throws DataException {
+        apply(guestId, posting, type.equals(ADD));
+        log.append(String.format("%s,%s,%s,%s",
+                type, guestId, posting.getHostId(), posting.getReservationId()));
+        records++;
+        if (records > 2 * postings + REWRITE_SLACK_RECORDS) {
+            rewrite();
+        }
+    }
+
+    private void apply(int guestId, Posting posting, boolean add) {
+        if (add) {
+            if (byGuest.computeIfAbsent(guestId, id -> new LinkedHashSet<>()).add(posting)) {
+                postings++;
+            }
+            return;
+        }
+        Set<Posting> guestPostings = byGuest.get(guestId);
+        if (guestPostings != null && guestPostings.remove(posting)) {
+            postings--;
+            if (guestPostings.isEmpty()) {
+                byGuest.remove(guestId);
+            }
+        }
+    }
+
+    //Writes only the live postings, replacing the log atomically
+    private void rewrite() throws DataException {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<Integer, Set<Posting>> entry : byGuest.entrySet()) {
+            for (Posting posting : entry.getValue()) {
+                content.append(String.format("%s,%s,%s,%s\n",
+                        ADD, entry.getKey(), posting.getHostId(), posting.getReservationId()));
+            }
+        }
+        writer.close(log.getPath());
+        writer.replace(log.getPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        records = postings;
+    }
+}
@@ -1,19 +1,20 @@
 package learn.mastery.data;
 
+import learn.mastery.metrics.MetricsRegistry;
 import learn.mastery.models.Host;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
 @Repository
 public class HostFileRepository implements HostRepository{
 
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+
     private final String filePath;
     //private static final String HEADER = "id,last_name,email,phone,address,city,state,postal_code,standard_rate,weekend_rate";
 
@@ -24,6 +25,15 @@ public class HostFileRepository implements HostRepository{
         this.filePath = filePath;
     }
 
+    /**
+     * Returns the path of the file repository
+     *
+     * @return  the host file path
+     */
+    String getFilePath() {
+        return filePath;
+    }
+
     /**
      * Retrieves all host objects from the file repository
      * and returns it as a list
@@ -32,16 +42,21 @@ public class HostFileRepository implements HostRepository{
      */
     @Override
     public List<Host> findAll() {
-        ArrayList<Host> result = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+        return METRICS.time("HostFileRepository.findAll", () -> {
+            return readAll();
+        });
+    }
 
-            reader.readLine(); // read header
+    private List<Host> readAll() {
+        ArrayList<Host> result = new ArrayList<>();
+        try {
+            MappedCsvReader reader = MappedCsvReader.open(Paths.get(filePath));
 
-            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            reader.next(); // read header
 
-                String[] fields = line.split(",", -1);
-                if (fields.length == 10) {
-                    result.add(deserialize(fields));
+            while (reader.next()) {
+                if (reader.fieldCount() == 10) {
+                    result.add(deserialize(reader));
                 }
             }
         } catch (IOException ex) {
@@ -59,10 +74,12 @@ public class HostFileRepository implements HostRepository{
      */
     @Override
     public Host findById(String hostId) {
-        return findAll().stream()
-                .filter(i -> i.getId().equals(hostId))
-                .findFirst()
-                .orElse(null);
+        return METRICS.time("HostFileRepository.findById", () -> {
+            return readAll().stream()
+                    .filter(i -> i.getId().equals(hostId))
+                    .findFirst()
+                    .orElse(null);
+        });
     }
 
     /**
@@ -74,10 +91,12 @@ public class HostFileRepository implements HostRepository{
      */
     @Override
     public Host findByEmail(String email) {
-        return findAll().stream()
-                .filter(i -> i.getEmail().equalsIgnoreCase(email))
-                .findFirst()
-                .orElse(null);
+        return METRICS.time("HostFileRepository.findByEmail", () -> {
+            return readAll().stream()
+                    .filter(i -> i.getEmail().equalsIgnoreCase(email))
+                    .findFirst()
+                    .orElse(null);
+        });
     }
 
     //Deserialize
@@ -85,22 +104,22 @@ public class HostFileRepository implements HostRepository{
      * Returns a host object created from a line
      * provided by the file repository
      *
-     * @param fields  the data retrieved from the file repository
+     * @param reader  the reader positioned on a line of the file repository
      * @return        host object containing the field as data
      */
-    private Host deserialize(String[] fields) {
+    private Host deserialize(MappedCsvReader reader) {
         Host result = new Host();
 
-        result.setId(fields[0]);
-        result.setLastName(fields[1]);
-        result.setEmail(fields[2]);
-        result.setPhone(fields[3]);
-        result.setAddress(fields[4]);
-        result.setCity(fields[5]);
-        result.setState(fields[6]);
-        result.setPostalCode(fields[7]);
-        result.setStandardRate( BigDecimal.valueOf(Double.parseDouble( fields[8])) );
-        result.setWeekendRate( BigDecimal.valueOf(Double.parseDouble( fields[9])) );
+        result.setId(reader.string(0));
+        result.setLastName(reader.string(1));
+        result.setEmail(reader.string(2));
+        result.setPhone(reader.string(3));
+        result.setAddress(reader.string(4));
+        result.setCity(reader.string(5));
+        result.setState(reader.string(6));
+        result.setPostalCode(reader.string(7));
+        result.setStandardRate( reader.decimal(8) );
+        result.setWeekendRate( reader.decimal(9) );
 
         return result;
     }
@@ -0,0 +1,432 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Guest;
+import learn.mastery.models.Reservation;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The files a host's reservations are kept in: a snapshot, in
+ * comma separated or columnar form, and a journal of the changes made
+ * since the snapshot was written. Reads fold the journal into the
+ * snapshot, and the journal record format lives here next to its
+ * replay. Locking is left to the callers.
+ */
+final class HostFiles {
+
+    private static final String HEADER = "id,guestId,startDate,endDate,costOfStay";
+    private static final String JOURNAL_EXTENSION = ".journal";
+    //Journal record types
+    private static final String ADD = "A";
+    private static final String UPDATE = "U";
+    private static final String DELETE = "D";
+    //Host files are named by the host's UUID, which leaves out seed copies and the guest index
+    private static final Pattern HOST_FILE = Pattern.compile(
+            "([0-9a-fA-F]{8}-(?:[0-9a-fA-F]{4}-){3}[0-9a-fA-F]{12})(?:\\.csv|\\.rsv|"
+                    + Pattern.quote(JOURNAL_EXTENSION) + ")");
+
+    private final String directory;
+    private final DurableFileWriter writer;
+    private volatile SnapshotFormat format = SnapshotFormat.CSV;
+
+    /**
+     * Class constructor.
+     *
+     * @param directory     the folder holding the host files
+     * @param writer        the writer that performs and forces writes
+     */
+    HostFiles(String directory, DurableFileWriter writer) {
+        this.directory = directory;
+        this.writer = writer;
+    }
+
+    /**
+     * Gets the format snapshots are read and written in
+     *
+     * @return the snapshot format
+     */
+    SnapshotFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the format snapshots are read and written in
+     *
+     * @param format the snapshot format
+     */
+    void setFormat(SnapshotFormat format) {
+        this.format = format;
+    }
+
+    //Paths
+
+    /**
+     * Returns the path of a host's snapshot in the current format
+     *
+     * @param hostId    the id of the host
+     * @return          the path of the host's snapshot
+     */
+    Path snapshotPath(String hostId) {
+        return snapshotPath(hostId, format);
+    }
+
+    /**
+     * Returns the path of a host's snapshot in a given format
+     *
+     * @param hostId    the id of the host
+     * @param format    the snapshot format
+     * @return          the path of the host's snapshot
+     */
+    Path snapshotPath(String hostId, SnapshotFormat format) {
+        return Paths.get(directory, hostId + format.getExtension());
+    }
+
+    /**
+     * Returns the journal holding the changes made to a
+     * host's reservations since its snapshot was last written
+     *
+     * @param hostId    the id of the host
+     * @return          the host's journal
+     */
+    Journal journal(String hostId) {
+        return new Journal(Paths.get(directory, hostId + JOURNAL_EXTENSION), writer);
+    }
+
+    /**
+     * Returns the id of the host a snapshot or journal belongs to
+     *
+     * @param file  a file in the reservation directory
+     * @return      the host id, or null if the file is not a host file
+     */
+    static String hostIdOf(Path file) {
+        Matcher matcher = HOST_FILE.matcher(file.getFileName().toString());
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    /**
+     * Returns the id of every host with a snapshot or
+     * journal in the reservation directory
+     *
+     * @return  the set of host ids
+     * @throws DataException if the directory cannot be listed
+     */
+    Set<String> listHostIds() throws DataException {
+        try (Stream<Path> files = Files.list(Paths.get(directory))) {
+            return files
+                    .map(file -> HOST_FILE.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> matcher.group(1))
+                    .collect(Collectors.toSet());
+        } catch (NoSuchFileException ex) {
+            return Set.of();
+        } catch (IOException ex) {
+            throw new DataException("Could not list " + directory, ex);
+        }
+    }
+
+    //Read
+
+    /**
+     * Returns a host's reservations by reading its snapshot and
+     * replaying its journal. Lines that cannot be read are skipped,
+     * and described in errors when a list is given
+     *
+     * @param hostId    the id of the host
+     * @param errors    the list that collects unreadable lines, or null
+     * @return          list of reservation objects
+     */
+    List<Reservation> read(String hostId, List<String> errors) {
+        return read(hostId, format, errors);
+    }
+
+    /**
+     * Returns a host's reservations by reading its snapshot in a
+     * given format and replaying its journal
+     *
+     * @param hostId    the id of the host
+     * @param format    the format of the snapshot to read
+     * @param errors    the list that collects unreadable lines, or null
+     * @return          list of reservation objects
+     */
+    List<Reservation> read(String hostId, SnapshotFormat format, List<String> errors) {
+        ReservationFileReadEvent event = ReservationFileReadEvent.start();
+        Map<Integer, Reservation> result = new LinkedHashMap<>();
+        Path snapshot = snapshotPath(hostId, format);
+        long bytes = format == SnapshotFormat.COLUMNAR
+                ? readColumnar(hostId, snapshot, result, errors)
+                : readCsv(hostId, snapshot, result, errors);
+        Journal journal = journal(hostId);
+        replay(hostId, journal, result, errors);
+        if (event != null && event.shouldCommit()) {
+            event.hostId = hostId;
+            event.bytes = bytes + journal.size();
+            event.rows = result.size();
+            event.commit();
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Reads the reservations of a comma separated snapshot
+     *
+     * @param hostId        the id of the host
+     * @param snapshot      the snapshot file
+     * @param reservations  the reservations keyed by id
+     * @param errors        the list that collects unreadable lines, or null
+     * @return              the size of the snapshot in bytes
+     */
+    private long readCsv(String hostId, Path snapshot, Map<Integer, Reservation> reservations, List<String> errors) {
+        try {
+            MappedCsvReader reader = MappedCsvReader.open(snapshot);
+            reader.next(); // read header
+
+            while (reader.next()) {
+                if (reader.fieldCount() != 5) {
+                    reportError(errors, hostId, "line " + reader.recordsRead() + " does not have 5 fields");
+                    continue;
+                }
+                try {
+                    Reservation reservation = deserialize(reader);
+                    reservations.put(reservation.getId(), reservation);
+                } catch (NumberFormatException ex) {
+                    reportError(errors, hostId, ex.getMessage());
+                }
+            }
+            return reader.byteSize();
+        } catch (NoSuchFileException ex) {
+            // a host with only a journal has no snapshot yet
+        } catch (IOException ex) {
+            // don't throw on read
+            reportError(errors, hostId, "could not be read: " + ex.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Reads the reservations of a columnar snapshot. A snapshot
+     * that fails its checksum is skipped as a whole
+     *
+     * @param hostId        the id of the host
+     * @param snapshot      the snapshot file
+     * @param reservations  the reservations keyed by id
+     * @param errors        the list that collects unreadable files, or null
+     * @return              the size of the snapshot in bytes
+     */
+    private long readColumnar(String hostId, Path snapshot, Map<Integer, Reservation> reservations,
+                              List<String> errors) {
+        try {
+            List<Reservation> read = ColumnarSnapshot.read(snapshot);
+            for (Reservation reservation : read) {
+                reservations.put(reservation.getId(), reservation);
+            }
+            return ColumnarSnapshot.sizeOf(read.size());
+        } catch (NoSuchFileException ex) {
+            // a host with only a journal has no snapshot yet
+        } catch (IOException ex) {
+            // don't throw on read
+            reportError(errors, hostId, "could not be read: " + ex.getMessage());
+        }
+        return 0;
+    }
+
+    private void reportError(List<String> errors, String hostId, String message) {
+        if (errors != null) {
+            errors.add(String.format("%s: %s", hostId, message));
+        }
+    }
+
+    /**
+     * Applies the records of a journal, in order, to the reservations
+     * read from a snapshot. Adds and updates replace any reservation
+     * with the same id, so replaying a record twice is harmless.
+     * Replay stops at the first record that cannot be parsed
+     *
+     * @param hostId        the id of the host that owns the journal
+     * @param journal       the journal to replay
+     * @param reservations  the reservations keyed by id
+     * @param errors        the list that collects unreadable records, or null
+     */
+    private void replay(String hostId, Journal journal, Map<Integer, Reservation> reservations, List<String> errors) {
+        int recordNumber = 0;
+        for (String record : journal.readRecords()) {
+            recordNumber++;
+            String[] fields = record.split(",", -1);
+            try {
+                if ((fields[0].equals(ADD) || fields[0].equals(UPDATE)) && fields.length == 6) {
+                    String[] reservationFields = new String[5];
+                    System.arraycopy(fields, 1, reservationFields, 0, 5);
+                    Reservation reservation = deserialize(reservationFields);
+                    reservations.put(reservation.getId(), reservation);
+                } else if (fields[0].equals(DELETE) && fields.length == 2) {
+                    reservations.remove(Integer.parseInt(fields[1]));
+                } else {
+                    reportError(errors, hostId, "journal record " + recordNumber + " is not a change");
+                    return;
+                }
+            } catch (RuntimeException ex) {
+                reportError(errors, hostId, "journal record " + recordNumber + " could not be read");
+                return;
+            }
+        }
+    }
+
+    //Journal records
+
+    /**
+     * Returns the journal record of a new reservation
+     *
+     * @param reservation   the reservation added
+     * @return              the journal record
+     */
+    static String addRecord(Reservation reservation) {
+        return ADD + "," + serialize(reservation);
+    }
+
+    /**
+     * Returns the journal record of a changed reservation
+     *
+     * @param reservation   the reservation as it now is
+     * @return              the journal record
+     */
+    static String updateRecord(Reservation reservation) {
+        return UPDATE + "," + serialize(reservation);
+    }
+
+    /**
+     * Returns the journal record of a removed reservation
+     *
+     * @param reservationId the id of the reservation removed
+     * @return              the journal record
+     */
+    static String deleteRecord(int reservationId) {
+        return DELETE + "," + reservationId;
+    }
+
+    //WriteAll
+
+    /**
+     * Prints a host's reservations to its snapshot in the current
+     * format. The file is replaced atomically, so a crash leaves
+     * either the old or the new snapshot in place
+     *
+     * @param hostId            the id of the host whose snapshot is written
+     * @param reservations      list of reservation objects to write to file
+     * @throws DataException
+     */
+    void writeSnapshot(String hostId, List<Reservation> reservations) throws DataException {
+        writeSnapshot(hostId, format, reservations);
+    }
+
+    /**
+     * Writes a host's snapshot in a given format, replacing
+     * the file atomically
+     *
+     * @param hostId            the id of the host whose snapshot is written
+     * @param format            the format to write
+     * @param reservations      list of reservation objects to write to file
+     * @throws DataException
+     */
+    void writeSnapshot(String hostId, SnapshotFormat format, List<Reservation> reservations) throws DataException {
+        ReservationFileWriteEvent event = ReservationFileWriteEvent.start();
+        byte[] bytes;
+        if (format == SnapshotFormat.COLUMNAR) {
+            bytes = ColumnarSnapshot.encode(reservations);
+        } else {
+            StringBuilder content = new StringBuilder(HEADER).append(System.lineSeparator());
+            for (Reservation reservation : reservations) {
+                content.append(serialize(reservation)).append(System.lineSeparator());
+            }
+            bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        writer.replace(snapshotPath(hostId, format), bytes);
+        if (event != null && event.shouldCommit()) {
+            event.hostId = hostId;
+            event.file = ReservationFileWriteEvent.SNAPSHOT;
+            event.bytes = bytes.length;
+            event.rows = reservations.size();
+            event.commit();
+        }
+    }
+
+    //Serialize
+    /**
+     * Returns a formatted string created from the values  of a reservation object
+     *
+     * @param reservation  reservation object containing populated data
+     * @return             a formated string created from a reservation object
+     */
+    private static String serialize(Reservation reservation) {
+        return String.format("%s,%s,%s,%s,%s",
+                reservation.getId(),
+                reservation.getStartDate(),
+                reservation.getEndDate(),
+                reservation.getGuest().getId(),
+                reservation.getcostOfStay());
+    }
+
+    //Deserialize
+    /**
+     * Returns a reservation object created from a line
+     * provided by the file repository
+     *
+     * @param fields  the data retrieved from the file repository
+     * @return        reservation object containing the field as data
+     */
+    private static Reservation deserialize(String[] fields) {
+        Reservation result = new Reservation();
+
+        result.setId( Integer.parseInt(fields[0]) );
+        //Stay Duration
+        result.setStartDate( LocalDate.parse(fields[1]) );
+        result.setEndDate( LocalDate.parse(fields[2]) );
+        //Guest
+        Guest guest = new Guest();
+        guest.setId(Integer.parseInt (fields[3]));
+        result.setGuest(guest);
+        //Cost
+        result.setcostOfStay( BigDecimal.valueOf(Double.parseDouble(fields[4])) );
+
+        return result;
+    }
+
+    /**
+     * Returns a reservation object created from the line
+     * a reader is positioned on. Numbers and dates are
+     * parsed directly from the file's bytes
+     *
+     * @param reader  the reader positioned on a line of the file repository
+     * @return        reservation object containing the field as data
+     */
+    private static Reservation deserialize(MappedCsvReader reader) {
+        Reservation result = new Reservation();
+
+        result.setId( reader.parseInt(0) );
+        //Stay Duration
+        result.setStartDate( reader.date(1) );
+        result.setEndDate( reader.date(2) );
+        //Guest
+        Guest guest = new Guest();
+        guest.setId( reader.parseInt(3) );
+        result.setGuest(guest);
+        //Cost
+        result.setcostOfStay( reader.decimal(4) );
+
+        return result;
+    }
+}
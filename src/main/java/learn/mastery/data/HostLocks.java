@@ -0,0 +1,46 @@
+package learn.mastery.data;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A fixed set of read/write locks shared out between hosts by
+ * hashing the host id. Work on one host is serialized, while
+ * work on hosts that land on different stripes runs in parallel,
+ * without keeping a lock object alive for every host ever seen.
+ * These are the only locks a host's bookings are checked and
+ * written under; the repositories expose them to services through
+ * ReservationRepository.withHostWriteLock. A repository that also
+ * has a lock across hosts takes that lock before any host lock.
+ */
+final class HostLocks {
+
+    static final int DEFAULT_STRIPES = 64;
+
+    private final ReadWriteLock[] stripes;
+
+    /**
+     * Class constructor.
+     *
+     * @param stripes   the number of locks, rounded up to a power of two
+     */
+    HostLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Returns the lock guarding a host's files
+     *
+     * @param hostId    the id of the host
+     * @return          the host's read/write lock
+     */
+    ReadWriteLock forHost(String hostId) {
+        int hash = hostId.hashCode();
+        hash ^= hash >>> 16;
+        return stripes[hash & (stripes.length - 1)];
+    }
+}
@@ -0,0 +1,20 @@
+package learn.mastery.data;
+
+/**
+ * Work run by ReservationRepository.withHostWriteLock while the
+ * host's write lock is held, such as checking a booking's dates
+ * and then writing it.
+ *
+ * @param <T>   the result of the work
+ */
+@FunctionalInterface
+public interface HostWriteSection<T> {
+
+    /**
+     * Runs the work
+     *
+     * @return  the result of the work
+     * @throws DataException
+     */
+    T run() throws DataException;
+}
@@ -0,0 +1,200 @@
+package learn.mastery.data;
+
+import learn.mastery.metrics.MetricsRegistry;
+import learn.mastery.models.Guest;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@Primary
+public class IndexedGuestRepository implements GuestRepository {
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+
+    private final GuestFileRepository source;
+    private final Path path;
+    private final Path directory;
+    private volatile Snapshot snapshot = new Snapshot(FileStamp.MISSING, List.of());
+    private volatile DataFileWatcher watcher;
+
+    /**
+     * Class constructor.
+     *
+     * @param source  the file repository used to parse the guest file
+     */
+    public IndexedGuestRepository(GuestFileRepository source) {
+        this.source = source;
+        this.path = Paths.get(source.getFilePath());
+        this.directory = path.toAbsolutePath().getParent();
+    }
+
+    /**
+     * Returns every guest held in the index. The file is only
+     * re-read when its modification time or size has changed
+     *
+     * @return  a list of guest objects
+     */
+    @Override
+    public List<Guest> findAll() {
+        return METRICS.time("IndexedGuestRepository.findAll", () -> {
+            return new ArrayList<>(current().guests);
+        });
+    }
+
+    /**
+     * Returns the guest with the provided id from the
+     * index. If no guest has the ID, it returns null
+     *
+     * @param id  the targeted guest id
+     * @return    the guest with a selected id
+     */
+    @Override
+    public Guest findById(int id) {
+        return METRICS.time("IndexedGuestRepository.findById", () -> {
+            return current().byId.get(id);
+        });
+    }
+
+    /**
+     * Returns the guest with the email string from the index.
+     * Case and surrounding whitespace are ignored. If no guest
+     * has the email string, it returns null
+     *
+     * @param email  the targeted guest email
+     * @return       the guest with a selected email
+     */
+    @Override
+    public Guest findByEmail(String email) {
+        return METRICS.time("IndexedGuestRepository.findByEmail", () -> {
+            if (email == null) {
+                return null;
+            }
+            return current().byEmail.get(normalizeEmail(email));
+        });
+    }
+
+    /**
+     * Returns the guests matching a collection of ids, keyed by id.
+     * Every id is resolved against the same snapshot, so the guest
+     * file is checked once per call. Ids with no matching guest are left out
+     *
+     * @param ids   the targeted guest ids
+     * @return      a map of guest id to guest
+     */
+    @Override
+    public Map<Integer, Guest> findByIds(Collection<Integer> ids) {
+        return METRICS.time("IndexedGuestRepository.findByIds", () -> {
+            Map<Integer, Guest> result = new HashMap<>();
+            if (ids == null || ids.isEmpty()) {
+                return result;
+            }
+            Snapshot current = current();
+            for (Integer id : ids) {
+                Guest guest = id == null ? null : current.byId.get(id);
+                if (guest != null) {
+                    result.put(id, guest);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Hands the guest file to a watcher, which reloads the index
+     * when the file changes. While the watcher runs, reads are served
+     * without checking the file first
+     *
+     * @param watcher   the watcher of the file's directory
+     * @throws DataException
+     */
+    public void watchWith(DataFileWatcher watcher) throws DataException {
+        try {
+            watcher.register(directory, changed -> {
+                if (changed.equals(directory) || changed.getFileName().equals(path.getFileName())) {
+                    reload();
+                }
+            });
+        } catch (IOException ex) {
+            throw new DataException("Could not watch " + directory, ex);
+        }
+        this.watcher = watcher;
+        //Catch up on any change made before the watch began
+        reload();
+    }
+
+    /**
+     * Returns the current index, rebuilding it first if
+     * the guest file changed since it was last loaded.
+     * The file is not checked while a watcher reloads it
+     *
+     * @return  the up to date index snapshot
+     */
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        DataFileWatcher watching = watcher;
+        if (watching != null && watching.isWatching(directory)) {
+            return current;
+        }
+        return current.stamp.equals(FileStamp.of(path)) ? current : reload();
+    }
+
+    /**
+     * Rebuilds the index if the guest file changed since it was
+     * last loaded, swapping the new snapshot in whole so readers
+     * never see a partly built index
+     *
+     * @return  the up to date index snapshot
+     */
+    private synchronized Snapshot reload() {
+        Snapshot current = snapshot;
+        FileStamp stamp = FileStamp.of(path);
+        if (!current.stamp.equals(stamp)) {
+            current = new Snapshot(stamp, source.findAll());
+            snapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns an email lowercased and trimmed so that lookups
+     * do not depend on how the address was typed
+     *
+     * @param email  the raw email string
+     * @return       the normalized email string
+     */
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase();
+    }
+
+    /**
+     * An immutable view of the guest file at a point in time
+     */
+    private static final class Snapshot {
+        private final FileStamp stamp;
+        private final List<Guest> guests;
+        private final IntObjectMap<Guest> byId;
+        private final Map<String, Guest> byEmail;
+
+        private Snapshot(FileStamp stamp, List<Guest> guests) {
+            this.stamp = stamp;
+            this.guests = List.copyOf(guests);
+            this.byId = new IntObjectMap<>(guests.size());
+            this.byEmail = new HashMap<>(guests.size() * 2);
+            for (Guest guest : guests) {
+                byId.putIfAbsent(guest.getId(), guest);
+                if (guest.getEmail() != null) {
+                    byEmail.putIfAbsent(normalizeEmail(guest.getEmail()), guest);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package learn.mastery.data;
+
+import learn.mastery.metrics.MetricsRegistry;
+import learn.mastery.models.Host;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Repository
+@Primary
+public class IndexedHostRepository implements HostRepository {
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+
+    private final HostFileRepository source;
+    private final Path path;
+    private final Path directory;
+    private volatile Snapshot snapshot = new Snapshot(FileStamp.MISSING, List.of());
+    private volatile DataFileWatcher watcher;
+
+    /**
+     * Class constructor.
+     *
+     * @param source  the file repository used to parse the host file
+     */
+    public IndexedHostRepository(HostFileRepository source) {
+        this.source = source;
+        this.path = Paths.get(source.getFilePath());
+        this.directory = path.toAbsolutePath().getParent();
+    }
+
+    /**
+     * Returns every host held in the index. The file is only
+     * re-read when its modification time or size has changed.
+     * Host objects are shared between calls and read only,
+     * their setters throw UnsupportedOperationException
+     *
+     * @return  a list of host objects
+     */
+    @Override
+    public List<Host> findAll() {
+        return METRICS.time("IndexedHostRepository.findAll", () -> {
+            return new ArrayList<>(current().hosts);
+        });
+    }
+
+    /**
+     * Returns the host with the provided id from the index.
+     * If no host has the ID, or the ID is not a valid UUID,
+     * it returns null
+     *
+     * @param hostId   the targeted host id
+     * @return         the host with a selected id
+     */
+    @Override
+    public Host findById(String hostId) {
+        return METRICS.time("IndexedHostRepository.findById", () -> {
+            UUID key = parseId(hostId);
+            if (key == null) {
+                return null;
+            }
+            return current().byId.get(key);
+        });
+    }
+
+    /**
+     * Returns the host with the email string from the index.
+     * Case and surrounding whitespace are ignored. If no host
+     * has the email string, it returns null
+     *
+     * @param email  the targeted host email
+     * @return       the host with a selected email
+     */
+    @Override
+    public Host findByEmail(String email) {
+        return METRICS.time("IndexedHostRepository.findByEmail", () -> {
+            if (email == null) {
+                return null;
+            }
+            return current().byEmail.get(normalizeEmail(email));
+        });
+    }
+
+    /**
+     * Hands the host file to a watcher, which reloads the index
+     * when the file changes. While the watcher runs, reads are served
+     * without checking the file first
+     *
+     * @param watcher   the watcher of the file's directory
+     * @throws DataException
+     */
+    public void watchWith(DataFileWatcher watcher) throws DataException {
+        try {
+            watcher.register(directory, changed -> {
+                if (changed.equals(directory) || changed.getFileName().equals(path.getFileName())) {
+                    reload();
+                }
+            });
+        } catch (IOException ex) {
+            throw new DataException("Could not watch " + directory, ex);
+        }
+        this.watcher = watcher;
+        //Catch up on any change made before the watch began
+        reload();
+    }
+
+    /**
+     * Returns the current index, rebuilding it first if
+     * the host file changed since it was last loaded.
+     * The file is not checked while a watcher reloads it
+     *
+     * @return  the up to date index snapshot
+     */
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        DataFileWatcher watching = watcher;
+        if (watching != null && watching.isWatching(directory)) {
+            return current;
+        }
+        return current.stamp.equals(FileStamp.of(path)) ? current : reload();
+    }
+
+    /**
+     * Rebuilds the index if the host file changed since it was
+     * last loaded, swapping the new snapshot in whole so readers
+     * never see a partly built index
+     *
+     * @return  the up to date index snapshot
+     */
+    private synchronized Snapshot reload() {
+        Snapshot current = snapshot;
+        FileStamp stamp = FileStamp.of(path);
+        if (!current.stamp.equals(stamp)) {
+            current = new Snapshot(stamp, source.findAll());
+            snapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the UUID form of a host id, which is held as two
+     * longs rather than a 36 character string. Returns null for
+     * ids that are not UUIDs
+     *
+     * @param hostId  the host id string
+     * @return        the parsed UUID or null
+     */
+    private static UUID parseId(String hostId) {
+        if (hostId == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(hostId.trim());
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns an email lowercased and trimmed so that lookups
+     * do not depend on how the address was typed
+     *
+     * @param email  the raw email string
+     * @return       the normalized email string
+     */
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase();
+    }
+
+    /**
+     * An immutable view of the host file at a point in time
+     */
+    private static final class Snapshot {
+        private final FileStamp stamp;
+        private final List<Host> hosts;
+        private final Map<UUID, Host> byId;
+        private final Map<String, Host> byEmail;
+
+        private Snapshot(FileStamp stamp, List<Host> hosts) {
+            this.stamp = stamp;
+            this.hosts = hosts.stream().map(ReadOnlyHost::new).collect(Collectors.toUnmodifiableList());
+            this.byId = new HashMap<>(hosts.size() * 2);
+            this.byEmail = new HashMap<>(hosts.size() * 2);
+            for (Host host : this.hosts) {
+                UUID key = parseId(host.getId());
+                if (key != null) {
+                    byId.putIfAbsent(key, host);
+                }
+                if (host.getEmail() != null) {
+                    byEmail.putIfAbsent(normalizeEmail(host.getEmail()), host);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package learn.mastery.data;
+
+/**
+ * A small open-addressing hash map keyed by primitive ints.
+ * Avoids boxing every id into an Integer the way a
+ * HashMap&lt;Integer, V&gt; would. Not thread safe; callers
+ * build a map once and publish it read-only.
+ *
+ * @param <V> the type of the stored values
+ */
+final class IntObjectMap<V> {
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    /**
+     * Class constructor.
+     *
+     * @param expectedSize  the number of entries the map should hold without resizing
+     */
+    IntObjectMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * Returns the number of entries stored in the map
+     *
+     * @return  the entry count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value stored under a key, or null
+     * if the key is not present
+     *
+     * @param key   the key to find
+     * @return      the stored value or null
+     */
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores a value under a key if the key is not already
+     * present. Keeps the first value seen, which matches the
+     * findFirst() behaviour of the file repositories
+     *
+     * @param key   the key to store
+     * @param value the non-null value to store
+     */
+    void putIfAbsent(int key, V value) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void insert(int key, Object value) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (values[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    //Spreads sequential ids across the table
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,18 @@
+package learn.mastery.data;
+
+/**
+ * The switch for the Java Flight Recorder events raised by the data
+ * and domain layers. The events are on unless the JVM is started with
+ * -Dmastery.jfr=false. While on they cost next to nothing until a
+ * recording is started, for instance with jcmd pid JFR.start, and
+ * any one of them can be turned off in the recording's settings. When
+ * the switch is off no event is created at all, and since the switch
+ * is a constant the JIT drops the event code entirely.
+ */
+public final class JfrEvents {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("mastery.jfr", "true"));
+
+    private JfrEvents() {
+    }
+}
@@ -0,0 +1,116 @@
+package learn.mastery.data;
+
+import learn.mastery.metrics.Operation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An append-only log of text records, one record per line.
+ * A record only counts once its terminating newline is on disk,
+ * so a write torn by a crash is skipped on the next read
+ * instead of corrupting the records before it.
+ */
+final class Journal {
+
+    private final Path path;
+    private final DurableFileWriter writer;
+
+    /**
+     * Class constructor.
+     *
+     * @param path      the journal file
+     * @param writer    the writer that performs and forces appends
+     */
+    Journal(Path path, DurableFileWriter writer) {
+        this.path = path;
+        this.writer = writer;
+    }
+
+    /**
+     * Returns the path of the journal file
+     *
+     * @return  the journal file path
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Appends a single record to the end of the journal,
+     * creating the file if it does not exist. The record is
+     * durable once the returned commit has been awaited
+     *
+     * @param record        the record to append, without a line break
+     * @return              the pending commit of the record
+     * @throws DataException
+     */
+    DurableFileWriter.Commit append(String record) throws DataException {
+        return writer.append(path, (record + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns every complete record in the journal in the order
+     * they were appended. A trailing record without a line break
+     * was torn by a crash and is left out. A missing journal
+     * has no records
+     *
+     * @return  the list of records
+     */
+    List<String> readRecords() {
+        List<String> records = new ArrayList<>();
+        String content;
+        try {
+            content = new String(FileAccess.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException ex) {
+            return records;
+        } catch (IOException ex) {
+            // don't throw on read
+            return records;
+        }
+
+        int start = 0;
+        for (int end = content.indexOf('\n'); end >= 0; end = content.indexOf('\n', start)) {
+            if (end > start) {
+                records.add(content.substring(start, end));
+            }
+            start = end + 1;
+        }
+        Operation.recordRows(records.size());
+        return records;
+    }
+
+    /**
+     * Returns the size of the journal in bytes, or 0
+     * if the journal does not exist
+     *
+     * @return  the journal size
+     */
+    long size() {
+        try {
+            return Files.size(path);
+        } catch (IOException ex) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Deletes the journal once its records have been
+     * folded into a snapshot
+     *
+     * @throws DataException
+     */
+    void clear() throws DataException {
+        writer.close(path);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            throw new DataException("Could not clear journal " + path, ex);
+        }
+    }
+}
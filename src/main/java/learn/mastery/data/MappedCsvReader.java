@@ -0,0 +1,344 @@
+package learn.mastery.data;
+
+import learn.mastery.metrics.Operation;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * Reads a comma separated file record by record without
+ * splitting lines into Strings. Larger files are memory mapped,
+ * each record is tokenized in place by remembering where its fields
+ * start and end, and numbers and dates are parsed straight from the
+ * bytes. A String is only created when a field is asked for as one.
+ */
+final class MappedCsvReader {
+
+    //Below this size a plain read is cheaper than setting up a mapping
+    static final int MAP_THRESHOLD_BYTES = 32 * 1024;
+    private static final int MAX_FIELDS = 16;
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private final int[] starts = new int[MAX_FIELDS];
+    private final int[] ends = new int[MAX_FIELDS];
+    private int fieldCount;
+    private int position;
+    private int records;
+    private byte[] scratch = new byte[64];
+    //Timed from open until the last line is read
+    private CsvParseEvent event;
+
+    private MappedCsvReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Returns a reader positioned before the first line of a file
+     *
+     * @param path  the file to read
+     * @return      a reader over the file's bytes
+     * @throws IOException if the file cannot be opened
+     */
+    static MappedCsvReader open(Path path) throws IOException {
+        CsvParseEvent event = CsvParseEvent.start();
+        MappedCsvReader reader = new MappedCsvReader(FileAccess.read(path, MAP_THRESHOLD_BYTES));
+        if (event != null) {
+            event.file = path.toString();
+            event.mapped = reader.limit >= MAP_THRESHOLD_BYTES;
+            reader.event = event;
+        }
+        return reader;
+    }
+
+    /**
+     * Returns a reader over bytes that are already in memory
+     *
+     * @param bytes the content to read
+     * @return      a reader over the bytes
+     */
+    static MappedCsvReader wrap(byte[] bytes) {
+        return new MappedCsvReader(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Moves to the next line and finds the boundaries of its fields.
+     * Blank lines are skipped
+     *
+     * @return  false once every line has been read
+     */
+    boolean next() {
+        while (position < limit) {
+            fieldCount = 0;
+            int fieldStart = position;
+            int index = position;
+            while (index < limit) {
+                byte b = buffer.get(index);
+                if (b == '\n') {
+                    break;
+                }
+                if (b == ',') {
+                    addField(fieldStart, index);
+                    fieldStart = index + 1;
+                }
+                index++;
+            }
+            int lineEnd = index;
+            if (lineEnd > fieldStart && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            addField(fieldStart, lineEnd);
+            boolean blank = lineEnd == position;
+            position = index + 1;
+            if (!blank) {
+                records++;
+                Operation.recordRows(1);
+                return true;
+            }
+        }
+        if (event != null) {
+            if (event.shouldCommit()) {
+                event.bytes = limit;
+                event.rows = records;
+                event.commit();
+            }
+            event = null;
+        }
+        return false;
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount < MAX_FIELDS) {
+            starts[fieldCount] = start;
+            ends[fieldCount] = end;
+        }
+        fieldCount++;
+    }
+
+    /**
+     * Returns how many fields the current line holds
+     *
+     * @return  the field count of the current line
+     */
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns how many non-blank lines have been read so far,
+     * including any header line
+     *
+     * @return  the number of lines read
+     */
+    int recordsRead() {
+        return records;
+    }
+
+    /**
+     * Returns the size of the content being read in bytes
+     *
+     * @return  the content size
+     */
+    int byteSize() {
+        return limit;
+    }
+
+    /**
+     * Returns a field of the current line as a String
+     *
+     * @param field the zero based field index
+     * @return      the decoded field
+     */
+    String string(int field) {
+        int start = starts[field];
+        int length = ends[field] - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a field of the current line as an int
+     *
+     * @param field the zero based field index
+     * @return      the parsed value
+     * @throws NumberFormatException if the field is not a whole number
+     */
+    int parseInt(int field) {
+        int index = starts[field];
+        int end = ends[field];
+        boolean negative = index < end && buffer.get(index) == '-';
+        if (negative) {
+            index++;
+        }
+        if (index == end) {
+            throw invalid("number", field);
+        }
+        long value = 0;
+        for (; index < end; index++) {
+            int digit = buffer.get(index) - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalid("number", field);
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw invalid("number", field);
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw invalid("number", field);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a yyyy-MM-dd field of the current line as
+     * the number of days since 1970-01-01
+     *
+     * @param field the zero based field index
+     * @return      the epoch day of the date
+     * @throws NumberFormatException if the field is not a valid date
+     */
+    long epochDay(int field) {
+        int start = starts[field];
+        if (ends[field] - start != 10 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-') {
+            throw invalid("date", field);
+        }
+        int year = digits(start, 4, field);
+        int month = digits(start + 5, 2, field);
+        int day = digits(start + 8, 2, field);
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            throw invalid("date", field);
+        }
+        return toEpochDay(year, month, day);
+    }
+
+    /**
+     * Parses a yyyy-MM-dd field of the current line as a date
+     *
+     * @param field the zero based field index
+     * @return      the parsed date
+     * @throws NumberFormatException if the field is not a valid date
+     */
+    LocalDate date(int field) {
+        return LocalDate.ofEpochDay(epochDay(field));
+    }
+
+    /**
+     * Parses a decimal field of the current line as a whole
+     * number of cents. Fields with more than two decimal places
+     * are rejected rather than rounded
+     *
+     * @param field the zero based field index
+     * @return      the value in cents
+     * @throws NumberFormatException if the field is not a decimal amount
+     */
+    long cents(int field) {
+        long unscaled = unscaled(field);
+        int scale = scale(field);
+        if (scale > 2) {
+            throw invalid("amount", field);
+        }
+        for (; scale < 2; scale++) {
+            unscaled = Math.multiplyExact(unscaled, 10);
+        }
+        return unscaled;
+    }
+
+    /**
+     * Parses a decimal field of the current line exactly.
+     * Trailing zeros are dropped while keeping one decimal
+     * place, which matches the values the repositories built
+     * with BigDecimal.valueOf(double) before
+     *
+     * @param field the zero based field index
+     * @return      the parsed value
+     * @throws NumberFormatException if the field is not a decimal amount
+     */
+    BigDecimal decimal(int field) {
+        BigDecimal value = BigDecimal.valueOf(unscaled(field), scale(field)).stripTrailingZeros();
+        return value.scale() < 1 ? value.setScale(1) : value;
+    }
+
+    //Reads every digit of a decimal field, ignoring the point
+    private long unscaled(int field) {
+        int index = starts[field];
+        int end = ends[field];
+        boolean negative = index < end && buffer.get(index) == '-';
+        if (negative) {
+            index++;
+        }
+        long value = 0;
+        int digitCount = 0;
+        boolean point = false;
+        for (; index < end; index++) {
+            byte b = buffer.get(index);
+            if (b == '.' && !point) {
+                point = true;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || digitCount == 18) {
+                throw invalid("amount", field);
+            }
+            value = value * 10 + digit;
+            digitCount++;
+        }
+        if (digitCount == 0) {
+            throw invalid("amount", field);
+        }
+        return negative ? -value : value;
+    }
+
+    //Counts the digits after the decimal point
+    private int scale(int field) {
+        for (int index = starts[field]; index < ends[field]; index++) {
+            if (buffer.get(index) == '.') {
+                return ends[field] - index - 1;
+            }
+        }
+        return 0;
+    }
+
+    private int digits(int start, int count, int field) {
+        int value = 0;
+        for (int index = start; index < start + count; index++) {
+            int digit = buffer.get(index) - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalid("date", field);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    }
+
+    //Days from civil date, counting from a March based year so leap days fall last
+    private static long toEpochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private NumberFormatException invalid(String kind, int field) {
+        return new NumberFormatException(String.format("Invalid %s \"%s\" on line %s", kind, string(field), records));
+    }
+}
@@ -0,0 +1,127 @@
+package learn.mastery.data;
+
+/**
+ * One bit per day over a fixed window of epoch days, set for
+ * every day a host is booked. Whether a range is free is answered
+ * by masking the few 64 day words the range falls in. Days outside
+ * the window are not tracked, and callers fall back to the
+ * reservations themselves for ranges the bitmap does not cover.
+ * Not thread safe; callers hold the host's lock.
+ */
+final class OccupancyBitmap {
+
+    //Window kept around today when a host's bitmap is built
+    static final int DEFAULT_DAYS_BEFORE = 366;
+    static final int DEFAULT_DAYS_AFTER = 3 * 366;
+
+    private final long firstDay;
+    private final long[] words;
+
+    /**
+     * Class constructor.
+     *
+     * @param firstDay  the first epoch day to track, rounded down to a word boundary
+     * @param days      the number of days to track from firstDay
+     */
+    OccupancyBitmap(long firstDay, int days) {
+        this.firstDay = Math.floorDiv(firstDay, 64) * 64;
+        long lastDay = firstDay + Math.max(days, 1) - 1;
+        this.words = new long[(int) ((lastDay - this.firstDay) / 64 + 1)];
+    }
+
+    /**
+     * Returns an empty bitmap covering the default
+     * window around a day
+     *
+     * @param today the epoch day the window is built around
+     * @return      the empty bitmap
+     */
+    static OccupancyBitmap around(long today) {
+        return new OccupancyBitmap(today - DEFAULT_DAYS_BEFORE, DEFAULT_DAYS_BEFORE + DEFAULT_DAYS_AFTER);
+    }
+
+    /**
+     * Returns whether every day of a range is tracked
+     *
+     * @param startDay  the first epoch day of the range
+     * @param endDay    the last epoch day of the range
+     * @return          whether the range lies inside the window
+     */
+    boolean covers(long startDay, long endDay) {
+        return startDay <= endDay && startDay >= firstDay && endDay <= lastDay();
+    }
+
+    /**
+     * Marks the tracked days of a range as booked
+     *
+     * @param startDay  the first epoch day of the range
+     * @param endDay    the last epoch day of the range
+     */
+    void set(long startDay, long endDay) {
+        long start = Math.max(startDay, firstDay);
+        long end = Math.min(endDay, lastDay());
+        for (long word = wordOf(start); start <= end && word <= wordOf(end); word++) {
+            words[(int) word] |= mask(word, start, end);
+        }
+    }
+
+    /**
+     * Marks the tracked days of a range as free
+     *
+     * @param startDay  the first epoch day of the range
+     * @param endDay    the last epoch day of the range
+     */
+    void clear(long startDay, long endDay) {
+        long start = Math.max(startDay, firstDay);
+        long end = Math.min(endDay, lastDay());
+        for (long word = wordOf(start); start <= end && word <= wordOf(end); word++) {
+            words[(int) word] &= ~mask(word, start, end);
+        }
+    }
+
+    /**
+     * Returns whether no day of a range is booked.
+     * Only meaningful for ranges the bitmap covers
+     *
+     * @param startDay  the first epoch day of the range
+     * @param endDay    the last epoch day of the range
+     * @return          whether the whole range is free
+     */
+    boolean isFree(long startDay, long endDay) {
+        for (long word = wordOf(startDay); word <= wordOf(endDay); word++) {
+            if ((words[(int) word] & mask(word, startDay, endDay)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the approximate memory held by the bitmap
+     *
+     * @return  the size in bytes
+     */
+    long byteSize() {
+        return 16L + 8L * words.length;
+    }
+
+    private long lastDay() {
+        return firstDay + 64L * words.length - 1;
+    }
+
+    private long wordOf(long day) {
+        return (day - firstDay) >> 6;
+    }
+
+    //Bits of one word that fall between startDay and endDay
+    private long mask(long word, long startDay, long endDay) {
+        long mask = -1L;
+        if (word == wordOf(startDay)) {
+            mask &= -1L << ((startDay - firstDay) & 63);
+        }
+        if (word == wordOf(endDay)) {
+            mask &= -1L >>> (63 - ((endDay - firstDay) & 63));
+        }
+        return mask;
+    }
+}
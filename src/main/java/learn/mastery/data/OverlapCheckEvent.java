@@ -0,0 +1,49 @@
+package learn.mastery.data;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Raised when a host's reservations are checked against
+ * a date range, for availability or to list the overlaps.
+ */
+@Name("learn.mastery.OverlapCheck")
+@Label("Overlap Check")
+@Category({"Mastery", "Data"})
+@Description("A date range checked against one host's reservations")
+@StackTrace(false)
+final class OverlapCheckEvent extends jdk.jfr.Event {
+
+    @Label("Host Id")
+    String hostId;
+
+    @Label("Range Days")
+    long days;
+
+    @Label("Answered By Bitmap")
+    @Description("Whether the occupancy bitmap answered without looking at reservations")
+    boolean bitmap;
+
+    @Label("Candidates Scanned")
+    int candidates;
+
+    @Label("Overlaps")
+    int overlaps;
+
+    /**
+     * Returns a started event, or null when events are switched off
+     *
+     * @return  the event timing the check
+     */
+    static OverlapCheckEvent start() {
+        if (!JfrEvents.ENABLED) {
+            return null;
+        }
+        OverlapCheckEvent event = new OverlapCheckEvent();
+        event.begin();
+        return event;
+    }
+}
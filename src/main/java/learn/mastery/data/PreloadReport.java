@@ -0,0 +1,138 @@
+package learn.mastery.data;
+
+import java.util.List;
+
+/**
+ * The outcome of loading every host's reservations into memory:
+ * how many hosts and reservations are held, how many hosts were
+ * already cached and how many did not fit, how many cached hosts
+ * were evicted meanwhile, how long it took, and any lines or files
+ * that could not be read.
+ */
+public final class PreloadReport {
+
+    private final int hostCount;
+    private final long reservationCount;
+    private final int cachedCount;
+    private final int skippedCount;
+    private final long evictionCount;
+    private final long requiredCacheBytes;
+    private final List<String> errors;
+    private final long elapsedNanos;
+
+    /**
+     * Class constructor.
+     *
+     * @param hostCount             the number of hosts held in memory after the load
+     * @param reservationCount      the number of reservations those hosts hold
+     * @param cachedCount           the number of those hosts that were already cached
+     * @param skippedCount          the number of hosts that did not fit in the cache
+     * @param evictionCount         the number of hosts evicted from the cache during the load
+     * @param requiredCacheBytes    the estimated cache capacity every host needs
+     * @param errors                a message for each line or file that could not be read
+     * @param elapsedNanos          how long the load took
+     */
+    PreloadReport(int hostCount, long reservationCount, int cachedCount, int skippedCount, long evictionCount,
+                  long requiredCacheBytes, List<String> errors, long elapsedNanos) {
+        this.hostCount = hostCount;
+        this.reservationCount = reservationCount;
+        this.cachedCount = cachedCount;
+        this.skippedCount = skippedCount;
+        this.evictionCount = evictionCount;
+        this.requiredCacheBytes = requiredCacheBytes;
+        this.errors = List.copyOf(errors);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the number of hosts whose reservations are held in
+     * memory after the load, including those already cached
+     *
+     * @return the host count
+     */
+    public int getHostCount() {
+        return hostCount;
+    }
+
+    /**
+     * Gets the number of reservations held across those hosts
+     *
+     * @return the reservation count
+     */
+    public long getReservationCount() {
+        return reservationCount;
+    }
+
+    /**
+     * Gets the number of hosts that were already cached
+     * and current, so their files were not read again
+     *
+     * @return the cached host count
+     */
+    public int getCachedCount() {
+        return cachedCount;
+    }
+
+    /**
+     * Gets the number of hosts that were read but left out
+     * because they did not fit in the cache capacity left
+     *
+     * @return the skipped host count
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * Gets the number of hosts evicted from the cache while the
+     * load ran. The load itself never evicts, so these were made
+     * room for by reads running alongside it
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the estimated cache capacity every host in the
+     * directory needs, for sizing the cache so the load fits
+     *
+     * @return the required capacity in bytes
+     */
+    public long getRequiredCacheBytes() {
+        return requiredCacheBytes;
+    }
+
+    /**
+     * Gets a message for each line or file that could not be read
+     *
+     * @return the list of error messages
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets how long the load took in milliseconds
+     *
+     * @return the elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        String report = String.format("Loaded %s reservations for %s hosts (%s already cached) in %s ms with %s errors",
+                reservationCount, hostCount, cachedCount, getElapsedMillis(), errors.size());
+        if (skippedCount > 0) {
+            report += String.format("; %s hosts did not fit in the cache, which needs about %s MB to hold every host",
+                    skippedCount, (requiredCacheBytes + (1 << 20) - 1) >> 20);
+        }
+        if (evictionCount > 0) {
+            report += String.format("; %s hosts were evicted meanwhile", evictionCount);
+        }
+        return report;
+    }
+}
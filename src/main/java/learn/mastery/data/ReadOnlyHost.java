@@ -0,0 +1,77 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Host;
+
+import java.math.BigDecimal;
+
+/**
+ * A host that can no longer be changed once built. The indexed
+ * host repository hands the same instances to every caller and
+ * thread, so a setter call would change the host for all of them;
+ * here every setter throws instead
+ */
+final class ReadOnlyHost extends Host {
+
+    /**
+     * Class constructor.
+     *
+     * @param host  the parsed host to copy
+     */
+    ReadOnlyHost(Host host) {
+        super(host);
+    }
+
+    @Override
+    public void setId(String id) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setLastName(String lastName) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setEmail(String email) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setPhone(String phone) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setAddress(String address) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setCity(String city) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setState(String state) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setPostalCode(String postalCode) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setStandardRate(BigDecimal standardRate) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setWeekendRate(BigDecimal weekendRate) {
+        throw readOnly();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Hosts from the index are shared and cannot be changed");
+    }
+}
@@ -0,0 +1,366 @@
+package learn.mastery.data;
+
+import learn.mastery.metrics.Operation;
+import learn.mastery.models.Host;
+import learn.mastery.models.Reservation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The cold store for reservations whose stay is over. Each archive
+ * run appends one block per host to the newest archive segment: a
+ * 4 byte block length, the host id, the uncompressed length and a
+ * columnar snapshot compressed with Deflater. Blocks are never
+ * rewritten, and archive.index lists every block of every host along
+ * with the highest id the host had given out, so the ids of archived
+ * reservations are not handed out again. A reservation archived twice,
+ * by a run interrupted before the hot file was rewritten, is read
+ * once, from its latest block.
+ */
+final class ReservationArchive {
+
+    static final String DIRECTORY_NAME = "archive";
+    static final String INDEX_FILE_NAME = "archive.index";
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    //The block length and the length of the host id, which the uncompressed length follows
+    private static final int BLOCK_HEADER_BYTES = Integer.BYTES + Short.BYTES;
+    private static final Pattern SEGMENT_FILE = Pattern.compile("archive-(\\d{6})\\.cold");
+
+    private final Path directory;
+    private final DurableFileWriter writer;
+    private final Journal index;
+    //Guarded by this
+    private boolean loaded;
+    private final Map<String, List<Block>> blocks = new HashMap<>();
+    private final Map<String, Integer> issuedIds = new HashMap<>();
+    private int activeSegment;
+    private long activeSize;
+
+    /**
+     * One archived block of a host
+     */
+    private static final class Block {
+        private final String hostId;
+        private final SegmentIndex.Location location;
+
+        private Block(String hostId, SegmentIndex.Location location) {
+            this.hostId = hostId;
+            this.location = location;
+        }
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param directory     the folder holding the archive segments and their index
+     * @param writer        the writer that performs and forces appends
+     */
+    ReservationArchive(Path directory, DurableFileWriter writer) {
+        this.directory = directory;
+        this.writer = writer;
+        this.index = new Journal(directory.resolve(INDEX_FILE_NAME), writer);
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("archive-%06d.cold", segment));
+    }
+
+    /**
+     * Reads the archive index the first time the archive is used.
+     * A record pointing past the end of its segment lost its block
+     * to a crash and is skipped
+     *
+     * @throws DataException if the archive directory cannot be listed
+     */
+    private synchronized void load() throws DataException {
+        if (loaded) {
+            return;
+        }
+        Map<Integer, Long> sizes = new HashMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    sizes.put(Integer.parseInt(matcher.group(1)), Files.size(file));
+                }
+            }
+        } catch (NoSuchFileException ex) {
+            // nothing has been archived yet
+        } catch (IOException ex) {
+            throw new DataException("Could not list " + directory, ex);
+        }
+
+        for (String record : index.readRecords()) {
+            String[] fields = record.split(",", 5);
+            if (fields.length < 5) {
+                continue;
+            }
+            try {
+                SegmentIndex.Location location = new SegmentIndex.Location(Integer.parseInt(fields[0]),
+                        Long.parseLong(fields[1]), Integer.parseInt(fields[2]));
+                if (location.getEnd() <= sizes.getOrDefault(location.getSegment(), 0L)) {
+                    blocks.computeIfAbsent(fields[4], hostId -> new ArrayList<>())
+                            .add(new Block(fields[4], location));
+                    issuedIds.merge(fields[4], Integer.parseInt(fields[3]), Math::max);
+                }
+            } catch (NumberFormatException ex) {
+                // a damaged record is skipped like a torn one
+            }
+        }
+        activeSegment = sizes.keySet().stream().max(Integer::compare).orElse(1);
+        activeSize = sizes.getOrDefault(activeSegment, 0L);
+        loaded = true;
+    }
+
+    /**
+     * Returns the highest reservation id a host had given out
+     * when its reservations were last archived
+     *
+     * @param hostId    the id of the host
+     * @return          the highest id, or 0 if nothing was archived
+     * @throws DataException if the archive cannot be read
+     */
+    synchronized int getIssuedIds(String hostId) throws DataException {
+        load();
+        return issuedIds.getOrDefault(hostId, 0);
+    }
+
+    /**
+     * Returns whether no reservation has been archived yet
+     *
+     * @return  whether the archive is empty
+     * @throws DataException if the archive cannot be read
+     */
+    synchronized boolean isEmpty() throws DataException {
+        load();
+        return blocks.isEmpty();
+    }
+
+    /**
+     * Appends a block holding some of a host's reservations and
+     * waits until both the block and its index record are on disk,
+     * so the reservations may be dropped from the host's hot file
+     * once this returns
+     *
+     * @param hostId        the id of the host
+     * @param reservations  the reservations to archive
+     * @param issuedId      the highest id the host has given out
+     * @return              the size of the block in bytes
+     * @throws DataException if a total is not a whole number of cents or the block cannot be written
+     */
+    long append(String hostId, List<Reservation> reservations, int issuedId) throws DataException {
+        byte[] snapshot = ColumnarSnapshot.encode(reservations);
+        byte[] id = hostId.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = deflate(snapshot);
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER_BYTES + id.length + Integer.BYTES + compressed.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        block.putInt(block.capacity()).putShort((short) id.length).put(id).putInt(snapshot.length).put(compressed);
+
+        DurableFileWriter.Commit blockCommit;
+        DurableFileWriter.Commit indexCommit;
+        SegmentIndex.Location location;
+        synchronized (this) {
+            load();
+            if (activeSize > 0 && activeSize + block.capacity() > SEGMENT_BYTES) {
+                writer.close(segmentPath(activeSegment));
+                activeSegment++;
+                activeSize = 0;
+            }
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException ex) {
+                throw new DataException("Could not create " + directory, ex);
+            }
+            try {
+                blockCommit = writer.append(segmentPath(activeSegment), block.array());
+            } catch (DataException ex) {
+                //Later blocks must be recorded where they really land
+                try {
+                    activeSize = Files.size(segmentPath(activeSegment));
+                } catch (IOException sizeEx) {
+                    // the next append fails the same way
+                }
+                throw ex;
+            }
+            location = new SegmentIndex.Location(activeSegment, activeSize, block.capacity());
+            activeSize += block.capacity();
+            indexCommit = index.append(String.format("%s,%s,%s,%s,%s", location.getSegment(),
+                    location.getOffset(), location.getLength(), issuedId, hostId));
+        }
+        blockCommit.await();
+        indexCommit.await();
+        synchronized (this) {
+            blocks.computeIfAbsent(hostId, key -> new ArrayList<>()).add(new Block(hostId, location));
+            issuedIds.merge(hostId, issuedId, Math::max);
+        }
+        return block.capacity();
+    }
+
+    /**
+     * Returns every archived reservation of a host
+     *
+     * @param hostId    the id of the host
+     * @return          the host's archived reservations
+     * @throws DataException if a block cannot be read
+     */
+    List<Reservation> find(String hostId) throws DataException {
+        List<Block> hostBlocks;
+        synchronized (this) {
+            load();
+            hostBlocks = new ArrayList<>(blocks.getOrDefault(hostId, List.of()));
+        }
+        Map<Integer, Reservation> result = new LinkedHashMap<>();
+        for (Block block : hostBlocks) {
+            SegmentIndex.Location location = block.location;
+            Path path = segmentPath(location.getSegment());
+            ByteBuffer bytes = ByteBuffer.allocate(location.getLength());
+            try (FileChannel channel = FileAccess.open(path, StandardOpenOption.READ)) {
+                while (bytes.hasRemaining()) {
+                    if (channel.read(bytes, location.getOffset() + bytes.position()) < 0) {
+                        throw new IOException("Unexpected end of file");
+                    }
+                }
+                bytes.flip();
+                Operation.recordBytes(location.getLength());
+                for (Reservation reservation : decode(bytes, path)) {
+                    result.put(reservation.getId(), reservation);
+                }
+            } catch (IOException ex) {
+                throw new DataException("Could not read the archive of " + hostId + " from " + path, ex);
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Returns every archived reservation a guest has made with any
+     * host, reading each archive segment once from start to end.
+     * Each reservation's host holds only the host id
+     *
+     * @param guestId   the id of the guest
+     * @return          the guest's archived reservations
+     * @throws DataException if a segment cannot be read
+     */
+    List<Reservation> findForGuest(int guestId) throws DataException {
+        Map<Integer, List<Block>> bySegment = new HashMap<>();
+        synchronized (this) {
+            load();
+            for (List<Block> hostBlocks : blocks.values()) {
+                for (Block block : hostBlocks) {
+                    bySegment.computeIfAbsent(block.location.getSegment(), segment -> new ArrayList<>()).add(block);
+                }
+            }
+        }
+        //Keyed by host and id so a reservation archived twice is kept once
+        Map<String, Reservation> result = new LinkedHashMap<>();
+        List<Integer> segments = new ArrayList<>(bySegment.keySet());
+        segments.sort(Integer::compare);
+        for (int segment : segments) {
+            Path path = segmentPath(segment);
+            List<Block> segmentBlocks = bySegment.get(segment);
+            segmentBlocks.sort(Comparator.comparingLong(block -> block.location.getOffset()));
+            try {
+                ByteBuffer content = FileAccess.read(path, MappedCsvReader.MAP_THRESHOLD_BYTES);
+                for (Block block : segmentBlocks) {
+                    ByteBuffer bytes = content.duplicate();
+                    bytes.position((int) block.location.getOffset()).limit((int) block.location.getEnd());
+                    for (Reservation reservation : decode(bytes.slice(), path)) {
+                        if (reservation.getGuest().getId() == guestId) {
+                            Host host = new Host();
+                            host.setId(block.hostId);
+                            reservation.setHost(host);
+                            result.put(block.hostId + "," + reservation.getId(), reservation);
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                throw new DataException("Could not read " + path, ex);
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Unpacks the reservations of a block
+     *
+     * @param block     the block's bytes, starting at index 0
+     * @param source    where the bytes came from, for error messages
+     * @return          the archived reservations
+     * @throws IOException if the block is damaged
+     */
+    private static List<Reservation> decode(ByteBuffer block, Object source) throws IOException {
+        ByteBuffer buffer = block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int start = BLOCK_HEADER_BYTES + buffer.getShort(Integer.BYTES);
+        if (start + Integer.BYTES > buffer.limit()) {
+            throw new IOException(source + " holds a damaged block");
+        }
+        int length = buffer.getInt(start);
+        buffer.position(start + Integer.BYTES);
+        List<Reservation> reservations = ColumnarSnapshot.decode(
+                ByteBuffer.wrap(inflate(buffer.slice(), length, source)), source);
+        Operation.recordRows(reservations.size());
+        return reservations;
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(ByteBuffer compressed, int length, Object source) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] result = new byte[length];
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int read = inflater.inflate(result, inflated, length - inflated);
+                if (read == 0 && inflater.needsInput()) {
+                    break;
+                }
+                inflated += read;
+            }
+            if (inflated != length) {
+                throw new IOException(source + " holds a truncated block");
+            }
+            return result;
+        } catch (DataFormatException ex) {
+            throw new IOException(source + " holds a damaged block", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+}
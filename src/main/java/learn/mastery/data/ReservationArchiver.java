@@ -0,0 +1,111 @@
+package learn.mastery.data;
+
+import learn.mastery.metrics.MetricsRegistry;
+import learn.mastery.models.Reservation;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves reservations whose stay is over out of a file repository's
+ * host files and into its compressed archive, so reads and
+ * availability checks only load current and upcoming stays.
+ */
+public class ReservationArchiver {
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+
+    private final ReservationFileRepository repository;
+    private final ReservationArchive archive;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Class constructor.
+     *
+     * @param repository    the repository whose past stays are archived
+     */
+    public ReservationArchiver(ReservationFileRepository repository) {
+        this.repository = repository;
+        this.archive = repository.archive();
+    }
+
+    /**
+     * Archives every reservation whose stay ended before a day. Each
+     * host is archived under its write lock, and its files are only
+     * rewritten once the archive block is on disk. A reservation whose
+     * total is not a whole number of cents stays in the host's files
+     *
+     * @param today     the first day whose stays are kept
+     * @return          the number of reservations archived
+     * @throws DataException if a host's reservations cannot be archived
+     */
+    public int archivePastStays(LocalDate today) throws DataException {
+        return METRICS.time("ReservationArchiver.archivePastStays", () -> {
+            int archived = 0;
+            for (String hostId : repository.findHostIds()) {
+                archived += repository.moveOut(hostId, reservation -> isArchivable(reservation, today),
+                        this::append);
+            }
+            return archived;
+        });
+    }
+
+    /**
+     * Archives past stays now and then again after every interval,
+     * on a background thread. Calling it again replaces the schedule
+     *
+     * @param intervalMillis    the time between archive runs
+     */
+    public synchronized void schedule(long intervalMillis) {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "reservation-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                archivePastStays(LocalDate.now());
+            } catch (DataException ex) {
+                // the stays are kept hot and the next run tries again
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns whether a reservation's stay is over and it can
+     * be held in the archive's columnar blocks
+     *
+     * @param reservation   the reservation
+     * @param today         the first day whose stays are kept
+     * @return              whether the reservation can be archived
+     */
+    static boolean isArchivable(Reservation reservation, LocalDate today) {
+        if (!reservation.getEndDate().isBefore(today)) {
+            return false;
+        }
+        try {
+            ColumnarSnapshot.requireEncodable(reservation);
+            return true;
+        } catch (DataException ex) {
+            return false;
+        }
+    }
+
+    private void append(String hostId, List<Reservation> past, int lastIssuedId) throws DataException {
+        ReservationFileWriteEvent event = ReservationFileWriteEvent.start();
+        long bytes = archive.append(hostId, past, lastIssuedId);
+        if (event != null && event.shouldCommit()) {
+            event.hostId = hostId;
+            event.file = ReservationFileWriteEvent.ARCHIVE;
+            event.bytes = bytes;
+            event.rows = past.size();
+            event.commit();
+        }
+    }
+}
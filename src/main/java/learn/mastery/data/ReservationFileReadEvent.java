@@ -0,0 +1,42 @@
+package learn.mastery.data;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Raised when a host's reservations are read from its
+ * snapshot file and journal.
+ */
+@Name("learn.mastery.ReservationFileRead")
+@Label("Reservation File Read")
+@Category({"Mastery", "Data"})
+@Description("A host's snapshot and journal read into memory")
+final class ReservationFileReadEvent extends jdk.jfr.Event {
+
+    @Label("Host Id")
+    String hostId;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytes;
+
+    @Label("Reservations")
+    int rows;
+
+    /**
+     * Returns a started event, or null when events are switched off
+     *
+     * @return  the event timing the read
+     */
+    static ReservationFileReadEvent start() {
+        if (!JfrEvents.ENABLED) {
+            return null;
+        }
+        ReservationFileReadEvent event = new ReservationFileReadEvent();
+        event.begin();
+        return event;
+    }
+}
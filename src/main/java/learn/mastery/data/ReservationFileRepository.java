@@ -1,25 +1,179 @@
 package learn.mastery.data;
 
+import learn.mastery.metrics.MetricsRegistry;
 import learn.mastery.models.Guest;
 import learn.mastery.models.Host;
 import learn.mastery.models.Reservation;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
-import java.io.*;
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Repository
 public class ReservationFileRepository implements ReservationRepository{
 
-    private static final String HEADER = "id,guestId,startDate,endDate,costOfStay";
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    private static final long DEFAULT_COMPACTION_THRESHOLD_BYTES = 16 * 1024;
+    private static final long DEFAULT_CACHE_CAPACITY_BYTES = 64L * 1024 * 1024;
+    //Rough heap cost of a cached host and of each reservation it holds
+    private static final long HOST_ENTRY_BYTES = 512;
+    private static final long RESERVATION_BYTES = 320;
+
     private final String directory;
-    private Host host; //Need host to get ID
+    private long compactionThresholdBytes = DEFAULT_COMPACTION_THRESHOLD_BYTES;
+    private final DurableFileWriter writer =
+            new DurableFileWriter(DurabilityMode.SYNC, DurableFileWriter.DEFAULT_GROUP_COMMIT_MILLIS);
+    //The guest index can be rebuilt from the host files, so it is never forced
+    private final DurableFileWriter indexWriter =
+            new DurableFileWriter(DurabilityMode.NONE, DurableFileWriter.DEFAULT_GROUP_COMMIT_MILLIS);
+    private final HostFiles files;
+    private final HostLocks hostLocks = new HostLocks(HostLocks.DEFAULT_STRIPES);
+    private final Set<String> pendingCompactions = ConcurrentHashMap.newKeySet();
+    private final WeightedLruCache<String, HostIndex> indexes =
+            new WeightedLruCache<>(DEFAULT_CACHE_CAPACITY_BYTES, HostIndex::weigh);
+    //Writes hold the read lock so a rebuild of the guest index sees no write half done
+    private final ReadWriteLock guestIndexLock = new ReentrantReadWriteLock();
+    private volatile GuestReservationIndex guestIndex;
+    //Set when a change could not be applied to the guest index, which is then rebuilt on the next lookup
+    private volatile boolean guestIndexStale;
+    private volatile DataFileWatcher watcher;
+    private ExecutorService compactor;
+    private final ReservationArchive archive;
+
+    /**
+     * A host's interval index and occupancy bitmap along with the
+     * state of the files they were built from. The fields are only
+     * touched while holding the host's lock
+     */
+    private static final class HostIndex {
+        //Days the bitmap window may fall behind today before it is moved
+        private static final int WINDOW_SLACK_DAYS = 30;
+
+        private FileStamp snapshotStamp;
+        private FileStamp journalStamp;
+        private final ReservationIntervalIndex reservations;
+        //Moved under a read lock, so a new bitmap is built before it is swapped in
+        private volatile OccupancyBitmap occupancy;
+        private volatile long windowDay;
+
+        private HostIndex(FileStamp snapshotStamp, FileStamp journalStamp, List<Reservation> reservations,
+                          int archivedIds) {
+            this.snapshotStamp = snapshotStamp;
+            this.journalStamp = journalStamp;
+            this.reservations = new ReservationIntervalIndex(reservations);
+            //Archived reservations keep their ids
+            this.reservations.reserveIdsThrough(archivedIds);
+            moveWindow(LocalDate.now().toEpochDay());
+        }
+
+        /**
+         * Rebuilds the occupancy bitmap around a day once today has
+         * moved far enough from the day the current one was built around
+         *
+         * @param today the current epoch day
+         */
+        private void moveWindowIfBehind(long today) {
+            if (today - windowDay > WINDOW_SLACK_DAYS) {
+                moveWindow(today);
+            }
+        }
+
+        private void moveWindow(long today) {
+            OccupancyBitmap moved = OccupancyBitmap.around(today);
+            for (Reservation reservation : reservations.values()) {
+                moved.set(reservation.getStartDate().toEpochDay(), reservation.getEndDate().toEpochDay());
+            }
+            occupancy = moved;
+            windowDay = today;
+        }
+
+        /**
+         * Adds a reservation to the index and bitmap, replacing
+         * any reservation with the same id
+         *
+         * @param reservation   the reservation to add
+         */
+        private void put(Reservation reservation) {
+            remove(reservation.getId());
+            reservations.put(reservation);
+            occupancy.set(reservation.getStartDate().toEpochDay(), reservation.getEndDate().toEpochDay());
+        }
+
+        /**
+         * Removes a reservation from the index and bitmap. The days
+         * it held are cleared and then set again for any other stay
+         * that shares them
+         *
+         * @param id    the id of the reservation to remove
+         */
+        private void remove(int id) {
+            Reservation removed = reservations.remove(id);
+            if (removed != null) {
+                long start = removed.getStartDate().toEpochDay();
+                long end = removed.getEndDate().toEpochDay();
+                occupancy.clear(start, end);
+                for (Reservation other : reservations.findOverlapping(start, end)) {
+                    occupancy.set(other.getStartDate().toEpochDay(), other.getEndDate().toEpochDay());
+                }
+            }
+        }
+
+        /**
+         * Returns the approximate memory held by a host's index
+         *
+         * @param index the index to weigh
+         * @return      the size in bytes
+         */
+        private static long weigh(HostIndex index) {
+            return HOST_ENTRY_BYTES + index.reservations.size() * RESERVATION_BYTES + index.occupancy.byteSize();
+        }
+
+        /**
+         * Returns whether no reservation shares a day with a range,
+         * using the bitmap when it covers the range
+         *
+         * @param startDay  the first epoch day of the range
+         * @param endDay    the last epoch day of the range
+         * @param event     the event describing the check, or null
+         * @return          whether the range is free
+         */
+        private boolean isAvailable(long startDay, long endDay, OverlapCheckEvent event) {
+            if (occupancy.covers(startDay, endDay)) {
+                if (event != null) {
+                    event.bitmap = true;
+                }
+                return occupancy.isFree(startDay, endDay);
+            }
+            List<Reservation> overlapping = new ArrayList<>();
+            int scanned = reservations.scan(startDay, endDay, overlapping);
+            if (event != null) {
+                event.candidates = scanned;
+                event.overlaps = overlapping.size();
+            }
+            return overlapping.isEmpty();
+        }
+    }
 
 
     /**
@@ -27,65 +181,564 @@ public class ReservationFileRepository implements ReservationRepository{
      */
     public ReservationFileRepository(@Value("./data/reservations")String directory){
         this.directory = directory;
-        this.host = new Host();
+        this.files = new HostFiles(directory, writer);
+        this.archive = new ReservationArchive(Paths.get(directory, ReservationArchive.DIRECTORY_NAME), writer);
+    }
+
+    /**
+     * Returns whether a host id can be used to name the host's
+     * files. Ids that are blank or could point outside the
+     * reservation directory are rejected
+     *
+     * @param hostId    the id of the host
+     * @return          whether the id names a host file
+     */
+    private boolean isValidHostId(String hostId) {
+        return hostId != null && !hostId.isBlank()
+                && !hostId.contains("/") && !hostId.contains("\\") && !hostId.contains("..");
+    }
+
+    /**
+     * Returns a host id after checking that it can be
+     * used to name the host's files
+     *
+     * @param hostId    the id of the host
+     * @return          the checked host id
+     * @throws DataException
+     */
+    private String requireHostId(String hostId) throws DataException {
+        if (!isValidHostId(hostId)) {
+            throw new DataException("A valid host id is required to write reservations");
+        }
+        return hostId;
+    }
+
+    /**
+     * Sets the journal size at which a host's journal is folded
+     * back into its snapshot by the background compactor
+     *
+     * @param compactionThresholdBytes  the journal size that triggers compaction
+     */
+    public void setCompactionThresholdBytes(long compactionThresholdBytes) {
+        this.compactionThresholdBytes = compactionThresholdBytes;
+    }
+
+    /**
+     * Sets the approximate memory the cache of host reservations
+     * may hold. The least recently used hosts are evicted once their
+     * estimated size passes the capacity, and read again when needed
+     *
+     * @param cacheCapacityBytes    the cache capacity in bytes
+     */
+    public void setCacheCapacityBytes(long cacheCapacityBytes) {
+        indexes.setCapacity(cacheCapacityBytes);
+    }
+
+    /**
+     * Returns the hit, miss and eviction counters of the
+     * cache of host reservations
+     *
+     * @return  a snapshot of the cache's statistics
+     */
+    public CacheStats getCacheStats() {
+        return indexes.stats();
+    }
+
+    /**
+     * Drops every cached host, so the next read of each host loads
+     * it from its files again. Benchmarks use it to measure cold reads
+     */
+    void clearCache() {
+        indexes.clear();
+    }
+
+    /**
+     * Hands the reservation directory to a watcher, which reloads a
+     * host's cached reservations when its files are changed from
+     * outside. While the watcher runs, cached hosts are read without
+     * checking their files first
+     *
+     * @param watcher   the watcher of the reservation directory
+     * @throws DataException
+     */
+    public void watchWith(DataFileWatcher watcher) throws DataException {
+        try {
+            watcher.register(Paths.get(directory), this::fileChanged);
+        } catch (IOException ex) {
+            throw new DataException("Could not watch " + directory, ex);
+        }
+        this.watcher = watcher;
+        //Catch up on any change made before the watch began
+        for (String hostId : indexes.keys()) {
+            reloadHost(hostId);
+        }
+    }
+
+    /**
+     * Returns whether a watcher is delivering changes to the
+     * reservation directory, so cached hosts need no file checks
+     *
+     * @return  whether the directory is watched
+     */
+    private boolean isWatched() {
+        DataFileWatcher watching = watcher;
+        return watching != null && watching.isWatching(Paths.get(directory));
+    }
+
+    /**
+     * Reloads the host whose snapshot or journal changed, or every
+     * cached host when the watcher could not say which file changed
+     *
+     * @param changed   the changed file, or the directory itself
+     */
+    private void fileChanged(Path changed) {
+        if (changed.equals(Paths.get(directory).toAbsolutePath().normalize())) {
+            for (String hostId : indexes.keys()) {
+                reloadHost(hostId);
+            }
+            return;
+        }
+        String hostId = HostFiles.hostIdOf(changed);
+        if (hostId != null) {
+            reloadHost(hostId);
+        }
+    }
+
+    /**
+     * Rebuilds a cached host's index when its files no longer match
+     * it and swaps the new index in whole. Writes made through this
+     * repository already keep the index current, so only changes made
+     * from outside are read again. The guest index is moved along with
+     * the reservations that changed guest, appeared or disappeared.
+     * Hosts that are not cached are left to be read when next needed
+     *
+     * @param hostId    the id of the host
+     */
+    private void reloadHost(String hostId) {
+        Lock guestLock = guestIndexLock.readLock();
+        guestLock.lock();
+        try {
+            Lock lock = hostLocks.forHost(hostId).writeLock();
+            lock.lock();
+            try {
+                reloadIfChanged(hostId, guestIndex);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            guestLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds a cached host's index if its files no longer match
+     * it. Callers must hold the guest index read lock and the host's
+     * write lock
+     *
+     * @param hostId    the id of the host
+     * @param guests    the guest index, or null if it is not loaded
+     */
+    private void reloadIfChanged(String hostId, GuestReservationIndex guests) {
+        HostIndex cached = indexes.peek(hostId);
+        if (cached == null) {
+            return;
+        }
+        FileStamp snapshotStamp = FileStamp.of(files.snapshotPath(hostId));
+        FileStamp journalStamp = FileStamp.of(files.journal(hostId).getPath());
+        if (cached.snapshotStamp.equals(snapshotStamp) && cached.journalStamp.equals(journalStamp)) {
+            return;
+        }
+        HostIndex reloaded = new HostIndex(snapshotStamp, journalStamp, files.read(hostId, null),
+                archivedIds(hostId));
+        indexes.put(hostId, reloaded);
+        if (guests != null) {
+            movePostings(guests, hostId, cached, reloaded);
+        }
+    }
+
+    /**
+     * Returns the index of a host that is about to be written. Reads
+     * of a watched directory trust the cache, but a write checks the
+     * host's files first: a change made from outside that the watcher
+     * has not delivered yet is read in now, since the write records the
+     * files as current and the change would otherwise never be seen.
+     * Callers must hold the guest index read lock and the host's write lock
+     *
+     * @param hostId    the id of the host
+     * @param guests    the guest index
+     * @return          the host's index
+     */
+    private HostIndex indexForWrite(String hostId, GuestReservationIndex guests) {
+        if (isWatched()) {
+            reloadIfChanged(hostId, guests);
+        }
+        return indexFor(hostId);
+    }
+
+    /**
+     * Updates the guest index for the reservations that differ
+     * between two versions of a host's index. A failure marks the
+     * index to be rebuilt on the next lookup
+     *
+     * @param guests    the guest index
+     * @param hostId    the id of the host
+     * @param before    the host's index before the reload
+     * @param after     the host's index after the reload
+     */
+    private void movePostings(GuestReservationIndex guests, String hostId, HostIndex before, HostIndex after) {
+        try {
+            for (Reservation old : before.reservations.values()) {
+                Reservation current = after.reservations.get(old.getId());
+                if (current == null || current.getGuest().getId() != old.getGuest().getId()) {
+                    guests.remove(old.getGuest().getId(), hostId, old.getId());
+                }
+            }
+            for (Reservation current : after.reservations.values()) {
+                Reservation old = before.reservations.get(current.getId());
+                if (old == null || old.getGuest().getId() != current.getGuest().getId()) {
+                    guests.add(current.getGuest().getId(), hostId, current.getId());
+                }
+            }
+        } catch (DataException ex) {
+            guestIndexFailed();
+        }
+    }
+
+    /**
+     * Applies a change to the guest index once the reservation it
+     * describes is written. The host files are what count, so a change
+     * that fails does not fail the write; the failure is counted, and the
+     * index is marked stale and rebuilt from the host files on the next
+     * lookup of a guest.
+     * Callers must hold the guest index read lock
+     *
+     * @param change    the change to apply
+     */
+    private void updateGuestIndex(GuestIndexChange change) {
+        try {
+            change.apply();
+        } catch (DataException ex) {
+            guestIndexFailed();
+        }
+    }
+
+    private void guestIndexFailed() {
+        guestIndexStale = true;
+        METRICS.counter("ReservationFileRepository.guestIndexFailures").increment();
+    }
+
+    /**
+     * A change to the guest index
+     */
+    @FunctionalInterface
+    private interface GuestIndexChange {
+        void apply() throws DataException;
+    }
+
+    /**
+     * Returns the snapshot and journal files of the hosts.
+     * Callers must hold a host's lock while touching its files
+     *
+     * @return  the host files
+     */
+    HostFiles hostFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the write lock guarding a host's files and index
+     *
+     * @param hostId    the id of the host
+     * @return          the host's write lock
+     */
+    Lock hostWriteLock(String hostId) {
+        return hostLocks.forHost(hostId).writeLock();
+    }
+
+    /**
+     * Sets the format snapshots are read and written in. Snapshots
+     * in the other format are not read, so an existing directory
+     * should be moved over with a SnapshotFormatConverter instead
+     *
+     * @param snapshotFormat    the snapshot format
+     */
+    public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        files.setFormat(snapshotFormat);
+    }
+
+    /**
+     * Returns the id of every host with a snapshot or
+     * journal in the reservation directory
+     *
+     * @return  the set of host ids
+     * @throws DataException if the directory cannot be listed
+     */
+    public Set<String> findHostIds() throws DataException {
+        return files.listHostIds();
+    }
+
+    /**
+     * Reads a host's reservations from its files, bypassing the
+     * cache. Unlike findAll, a line that cannot be read fails the
+     * call, so nothing is silently left behind when moving the
+     * reservations to another store
+     *
+     * @param hostId    the id of the host
+     * @return          list of reservation objects
+     * @throws DataException if any part of the host's files cannot be read
+     */
+    public List<Reservation> readHost(String hostId) throws DataException {
+        requireHostId(hostId);
+        Lock lock = hostLocks.forHost(hostId).readLock();
+        lock.lock();
+        try {
+            List<String> errors = new ArrayList<>();
+            List<Reservation> reservations = files.read(hostId, errors);
+            if (!errors.isEmpty()) {
+                throw new DataException("Could not read " + hostId + ": " + String.join("; ", errors));
+            }
+            return reservations;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Archive
+
+    /**
+     * Returns whether any past stay has been moved to the archive
+     *
+     * @return  whether the archive holds reservations
+     * @throws DataException if the archive cannot be read
+     */
+    boolean hasArchivedStays() throws DataException {
+        return !archive.isEmpty();
+    }
+
+    /**
+     * Returns the archive holding the stays moved out of the host files
+     *
+     * @return  the archive
+     */
+    ReservationArchive archive() {
+        return archive;
     }
 
-    //Assign the Host to get ID from
+    /**
+     * Moves the reservations a filter selects out of a host's files.
+     * They are handed to the sink first, and the host's snapshot is
+     * only rewritten once the sink returns, so a crash in between
+     * leaves them in both places rather than in neither
+     *
+     * @param hostId    the id of the host
+     * @param filter    selects the reservations to move
+     * @param sink      takes the reservations moved
+     * @return          the number of reservations moved
+     * @throws DataException if the sink fails or the snapshot cannot be written
+     */
+    int moveOut(String hostId, Predicate<Reservation> filter, ReservationSink sink) throws DataException {
+        requireHostId(hostId);
+        GuestReservationIndex guests = guestIndex();
+        Lock indexLock = guestIndexLock.readLock();
+        indexLock.lock();
+        try {
+            Lock lock = hostLocks.forHost(hostId).writeLock();
+            lock.lock();
+            try {
+                HostIndex index = indexForWrite(hostId, guests);
+                List<Reservation> moved = new ArrayList<>();
+                List<Reservation> kept = new ArrayList<>();
+                for (Reservation reservation : index.reservations.values()) {
+                    if (filter.test(reservation)) {
+                        moved.add(reservation);
+                    } else {
+                        kept.add(reservation);
+                    }
+                }
+                if (moved.isEmpty()) {
+                    return 0;
+                }
+
+                sink.accept(hostId, moved, index.reservations.nextId() - 1);
+                files.writeSnapshot(hostId, kept);
+                files.journal(hostId).clear();
+                for (Reservation reservation : moved) {
+                    index.remove(reservation.getId());
+                    updateGuestIndex(() -> guests.remove(reservation.getGuest().getId(), hostId, reservation.getId()));
+                }
+                indexes.reweigh(hostId);
+                refreshStamps(hostId);
+                return moved.size();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            indexLock.unlock();
+        }
+    }
 
     /**
-     * Assigns a host object to the reservation.
-     * the host id will be used to determine the
-     * file repository path
+     * Returns the reservations of a host that were archived
+     * once their stay was over
      *
-     * @param host  the host object that determines the file path
+     * @param hostId    the id of the host
+     * @return          the host's archived reservations
      */
     @Override
-    public void setHost(Host host){
-        this.host = host;
+    public List<Reservation> findArchived(String hostId) {
+        return METRICS.time("ReservationFileRepository.findArchived", () -> {
+            if (!isValidHostId(hostId)) {
+                return new ArrayList<>();
+            }
+            try {
+                return archive.find(hostId);
+            } catch (DataException ex) {
+                // don't throw on read
+                return new ArrayList<>();
+            }
+        });
     }
 
     /**
-     * Retrieves the host object from the reservation.
-     * the host id will be used to determine the
-     * file repository path
+     * Returns the archived reservations a guest made with any host,
+     * reading each archive segment once. Each reservation's host
+     * holds only the host id
      *
-     * @return the host object that determines the file path
+     * @param guestId   the id of the guest
+     * @return          the guest's archived reservations
      */
     @Override
-    public Host getHost(){
-        return host;
+    public List<Reservation> findArchivedForGuest(int guestId) {
+        return METRICS.time("ReservationFileRepository.findArchivedForGuest", () -> {
+            try {
+                return archive.findForGuest(guestId);
+            } catch (DataException ex) {
+                // don't throw on read
+                return new ArrayList<>();
+            }
+        });
     }
 
     /**
-     * Returns a file path constructed from the host object
-     * stored inside of the reservation object. If no host
-     * object is found, returns null
+     * Sets when reservation writes are forced to disk. SYNC forces
+     * every write, GROUP_COMMIT lets concurrent writes share a force
+     * made every groupCommitMillis, and NONE never forces
      *
-     * @return the file path of the file repository
+     * @param mode                  the durability mode
+     * @param groupCommitMillis     the flush interval used by GROUP_COMMIT
      */
-    //Get Folder Path
-    private String getFilePath() {
-        if(host.getId().isEmpty() || host.equals(new Host())) {
-            return "";
-        }
+    public void setDurabilityMode(DurabilityMode mode, long groupCommitMillis) {
+        writer.configure(mode, groupCommitMillis);
+    }
 
-        return Paths.get(directory, host.getId() + ".csv").toString();
+    /**
+     * Returns how many times the repository has forced a file to disk
+     *
+     * @return  the number of forces performed
+     */
+    long getForceCount() {
+        return writer.getForceCount();
     }
 
     //getHostReservations
     /**
      * Returns the reservation with the id integer from the
-     * file repository. If no reservation has the id integer, it returns null
+     * host's file repository. If no reservation has the id integer, it returns null
      *
-     * @param id    the targeted host id
-     * @return      the reservation with a selected id
+     * @param hostId    the id of the host whose reservations are searched
+     * @param id        the targeted reservation id
+     * @return          the reservation with a selected id
      */
     @Override
-    public Reservation findById(int id) {
-        return findAll().stream()
-                .filter(i -> i.getId() == id)
-                .findFirst()
-                .orElse(null);
+    public Reservation findById(String hostId, int id) {
+        return METRICS.time("ReservationFileRepository.findById", () -> {
+            if (!isValidHostId(hostId)) {
+                return null;
+            }
+            Lock lock = hostLocks.forHost(hostId).readLock();
+            lock.lock();
+            try {
+                Reservation reservation = indexFor(hostId).reservations.get(id);
+                return reservation == null ? null : copy(reservation);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Returns the reservations of a host that share at least one
+     * day with a date range, both ends included. The host's interval
+     * index is used, so only the reservations near the range are looked at
+     *
+     * @param hostId        the id of the host whose reservations are searched
+     * @param startDate     the first day of the range
+     * @param endDate       the last day of the range
+     * @return              a list of overlapping reservation objects
+     */
+    @Override
+    public List<Reservation> findOverlapping(String hostId, LocalDate startDate, LocalDate endDate) {
+        return METRICS.time("ReservationFileRepository.findOverlapping", () -> {
+            List<Reservation> result = new ArrayList<>();
+            if (!isValidHostId(hostId) || startDate == null || endDate == null) {
+                return result;
+            }
+            OverlapCheckEvent event = OverlapCheckEvent.start();
+            List<Reservation> overlapping = new ArrayList<>();
+            int scanned;
+            Lock lock = hostLocks.forHost(hostId).readLock();
+            lock.lock();
+            try {
+                scanned = indexFor(hostId).reservations.scan(startDate.toEpochDay(), endDate.toEpochDay(), overlapping);
+                for (Reservation reservation : overlapping) {
+                    result.add(copy(reservation));
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (event != null && event.shouldCommit()) {
+                event.hostId = hostId;
+                event.days = endDate.toEpochDay() - startDate.toEpochDay() + 1;
+                event.candidates = scanned;
+                event.overlaps = overlapping.size();
+                event.commit();
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Returns whether a host has no reservation on any day of a
+     * date range, both ends included. Ranges near today are answered
+     * from the host's occupancy bitmap without looking at reservations
+     *
+     * @param hostId        the id of the host
+     * @param startDate     the first day of the range
+     * @param endDate       the last day of the range
+     * @return              whether the host is free for the whole range
+     */
+    @Override
+    public boolean isAvailable(String hostId, LocalDate startDate, LocalDate endDate) {
+        return METRICS.time("ReservationFileRepository.isAvailable", () -> {
+            if (!isValidHostId(hostId) || startDate == null || endDate == null) {
+                return false;
+            }
+            OverlapCheckEvent event = OverlapCheckEvent.start();
+            boolean available;
+            Lock lock = hostLocks.forHost(hostId).readLock();
+            lock.lock();
+            try {
+                available = indexFor(hostId).isAvailable(startDate.toEpochDay(), endDate.toEpochDay(), event);
+            } finally {
+                lock.unlock();
+            }
+            if (event != null && event.shouldCommit()) {
+                event.hostId = hostId;
+                event.days = endDate.toEpochDay() - startDate.toEpochDay() + 1;
+                event.commit();
+            }
+            return available;
+        });
     }
 
     /**
@@ -93,174 +746,648 @@ public class ReservationFileRepository implements ReservationRepository{
      * the provided guest. Provides a empty list if none
      * are found
      *
+     * @param hostId        the id of the host whose reservations are searched
      * @param guestId       the id of the guest to find
      * @return              a list of filtered reservation objects
      */
     @Override
-    public List<Reservation> findAllByGuestId(int guestId) {
-        return findAll().stream()
-                .filter(i -> i.getGuest().getId() == guestId)
-                .collect(Collectors.toList());
+    public List<Reservation> findAllByGuestId(String hostId, int guestId) {
+        return METRICS.time("ReservationFileRepository.findAllByGuestId", () -> {
+            return findAll(hostId).stream()
+                    .filter(i -> i.getGuest().getId() == guestId)
+                    .collect(Collectors.toList());
+        });
     }
 
     /**
-     * Returns the file repository as a list of
-     * reservation objects
+     * Returns every reservation a guest has made with any host.
+     * The guest index names the hosts and reservations to read, so
+     * only the files of those hosts are opened. A guest index that
+     * missed a change is rebuilt first. Each reservation's host
+     * holds only the host id
      *
-     * @return list of reservation objects
+     * @param guestId       the id of the guest to find
+     * @return              a list of the guest's reservation objects
      */
     @Override
-    public List<Reservation> findAll() {
-        List<Reservation> result = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader( getFilePath() ))) {
-            reader.readLine(); // read header
-
-            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-                String[] fields = line.split(",", -1);
-                if (fields.length == 5) {
-                    result.add(deserialize(fields));
+    public List<Reservation> findAllForGuest(int guestId) {
+        return METRICS.time("ReservationFileRepository.findAllForGuest", () -> {
+            List<Reservation> result = new ArrayList<>();
+            GuestReservationIndex index;
+            try {
+                index = guestIndex();
+            } catch (DataException ex) {
+                // don't throw on read
+                return result;
+            }
+            if (guestIndexStale) {
+                try {
+                    rebuildGuestIndex();
+                } catch (DataException ex) {
+                    // don't throw on read, the postings left are still checked below
                 }
             }
-        } catch (IOException ex) {
-            // don't throw on read
+            for (GuestReservationIndex.Posting posting : index.find(guestId)) {
+                Reservation reservation = findById(posting.getHostId(), posting.getReservationId());
+                //Skip postings left behind by files changed outside the repository
+                if (reservation != null && reservation.getGuest().getId() == guestId) {
+                    Host host = new Host();
+                    host.setId(posting.getHostId());
+                    reservation.setHost(host);
+                    result.add(reservation);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Rebuilds the guest index from scratch by reading every
+     * host's reservations in parallel. Needed only when host files
+     * have been changed outside the repository
+     *
+     * @throws DataException
+     */
+    public void rebuildGuestIndex() throws DataException {
+        Lock lock = guestIndexLock.writeLock();
+        lock.lock();
+        try {
+            GuestReservationIndex index = guestIndex;
+            if (index == null) {
+                index = new GuestReservationIndex(Paths.get(directory, GuestReservationIndex.FILE_NAME), indexWriter);
+            }
+            //Writes are held off, so no change can be missed between here and the rebuild
+            guestIndexStale = false;
+            try {
+                index.replaceAll(scanGuestPostings());
+            } catch (DataException ex) {
+                guestIndexStale = true;
+                throw ex;
+            }
+            guestIndex = index;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the guest index, loading it from its file or
+     * building it from the host files the first time it is used.
+     * Must be called before any host lock is taken
+     *
+     * @return  the guest index
+     * @throws DataException
+     */
+    private GuestReservationIndex guestIndex() throws DataException {
+        GuestReservationIndex index = guestIndex;
+        if (index != null) {
+            return index;
+        }
+        Lock lock = guestIndexLock.writeLock();
+        lock.lock();
+        try {
+            if (guestIndex == null) {
+                index = new GuestReservationIndex(Paths.get(directory, GuestReservationIndex.FILE_NAME), indexWriter);
+                if (!index.load()) {
+                    index.replaceAll(scanGuestPostings());
+                }
+                guestIndex = index;
+            }
+            return guestIndex;
+        } finally {
+            lock.unlock();
         }
+    }
+
+    /**
+     * Reads the reservations of every host in the directory in
+     * parallel and returns each guest's postings. Hosts already
+     * held in memory are not read again
+     *
+     * @return  the postings of every guest
+     * @throws DataException
+     */
+    private Map<Integer, Set<GuestReservationIndex.Posting>> scanGuestPostings() throws DataException {
+        Map<Integer, Set<GuestReservationIndex.Posting>> result = new ConcurrentHashMap<>();
+        files.listHostIds().parallelStream().forEach(hostId -> {
+            Lock lock = hostLocks.forHost(hostId).readLock();
+            lock.lock();
+            try {
+                for (Reservation reservation : indexFor(hostId).reservations.values()) {
+                    result.computeIfAbsent(reservation.getGuest().getId(), id -> ConcurrentHashMap.newKeySet())
+                            .add(new GuestReservationIndex.Posting(hostId, reservation.getId()));
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
         return result;
     }
 
-    //WriteAll
+    /**
+     * Loads the reservations of every host in the directory into
+     * memory at once, reading the files concurrently. Virtual threads
+     * are used when the runtime has them, and otherwise a pool bounded
+     * by the number of processors. Hosts already cached and current are
+     * not read again. A host is only added while it fits in the cache
+     * capacity left, so a preload never evicts; hosts that do not fit
+     * are reported as skipped along with the capacity every host needs.
+     * Later reads are served from memory for as long as the files are
+     * only changed through this repository
+     *
+     * @return  the number of hosts and reservations loaded, the hosts
+     *          already cached or skipped, the cache evictions during the
+     *          load, the time taken and any lines or files that could
+     *          not be read
+     */
+    public PreloadReport preload() {
+        long started = System.nanoTime();
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        Set<String> hostIds;
+        try {
+            hostIds = files.listHostIds();
+        } catch (DataException ex) {
+            errors.add(ex.getMessage());
+            return new PreloadReport(0, 0, 0, 0, 0, 0, errors, System.nanoTime() - started);
+        }
+
+        long evictionsBefore = indexes.stats().getEvictions();
+        AtomicLong reservationCount = new AtomicLong();
+        AtomicInteger hostCount = new AtomicInteger();
+        AtomicInteger cachedCount = new AtomicInteger();
+        AtomicInteger skippedCount = new AtomicInteger();
+        AtomicLong requiredBytes = new AtomicLong();
+        ExecutorService pool = preloadExecutor();
+        try {
+            Map<String, Future<?>> loads = new LinkedHashMap<>();
+            for (String hostId : hostIds) {
+                loads.put(hostId, pool.submit(() -> {
+                    Lock lock = hostLocks.forHost(hostId).readLock();
+                    lock.lock();
+                    try {
+                        HostIndex index = indexes.peek(hostId);
+                        boolean cached = index != null && isIndexCurrent(hostId);
+                        if (!cached) {
+                            //Stamped before reading, so a change made during the read is seen next time
+                            FileStamp snapshotStamp = FileStamp.of(files.snapshotPath(hostId));
+                            FileStamp journalStamp = FileStamp.of(files.journal(hostId).getPath());
+                            index = new HostIndex(snapshotStamp, journalStamp, files.read(hostId, errors),
+                                    archivedIds(hostId));
+                        }
+                        requiredBytes.addAndGet(HostIndex.weigh(index));
+                        if (cached) {
+                            cachedCount.incrementAndGet();
+                        } else if (!indexes.putIfFits(hostId, index)) {
+                            skippedCount.incrementAndGet();
+                            return;
+                        }
+                        reservationCount.addAndGet(index.reservations.size());
+                        hostCount.incrementAndGet();
+                    } finally {
+                        lock.unlock();
+                    }
+                }));
+            }
+            for (Map.Entry<String, Future<?>> load : loads.entrySet()) {
+                try {
+                    load.getValue().get();
+                } catch (ExecutionException ex) {
+                    errors.add(String.format("%s: %s", load.getKey(), ex.getCause()));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    errors.add("Preload was interrupted");
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new PreloadReport(hostCount.get(), reservationCount.get(), cachedCount.get(), skippedCount.get(),
+                indexes.stats().getEvictions() - evictionsBefore, requiredBytes.get(), errors,
+                System.nanoTime() - started);
+    }
+
+    /**
+     * Returns the executor that reads host files during a preload.
+     * Virtual threads are looked up by reflection so the code still
+     * runs on runtimes that predate them
+     *
+     * @return  a new executor for one preload
+     */
+    private ExecutorService preloadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+            return Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "reservation-preload");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Returns a host's file repository as a list of
+     * reservation objects. The reservations are served from
+     * the host's index, which reads the snapshot and replays the
+     * journal only when the files changed since they were last read
+     *
+     * @param hostId    the id of the host
+     * @return          list of reservation objects
+     */
+    @Override
+    public List<Reservation> findAll(String hostId) {
+        return METRICS.time("ReservationFileRepository.findAll", () -> {
+            List<Reservation> result = new ArrayList<>();
+            if (!isValidHostId(hostId)) {
+                return result;
+            }
+            Lock lock = hostLocks.forHost(hostId).readLock();
+            lock.lock();
+            try {
+                for (Reservation reservation : indexFor(hostId).reservations.values()) {
+                    result.add(copy(reservation));
+                }
+            } finally {
+                lock.unlock();
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Returns the index of a host, rebuilding it when the host's
+     * snapshot or journal changed since it was built. Writes made
+     * through this repository keep the index current, so it is only
+     * rebuilt after the files are changed from outside. Callers must
+     * hold the host's read or write lock
+     *
+     * @param hostId    the id of the host
+     * @return          the host's index
+     */
+    private HostIndex indexFor(String hostId) {
+        return loadIndex(hostId, null);
+    }
+
+    /**
+     * Returns the highest id a host had given out when its
+     * reservations were last archived
+     *
+     * @param hostId    the id of the host
+     * @return          the highest archived id, or 0
+     */
+    private int archivedIds(String hostId) {
+        try {
+            return archive.getIssuedIds(hostId);
+        } catch (DataException ex) {
+            // don't throw on read
+            return 0;
+        }
+    }
 
     /**
-     * Prints the repository to file
+     * Returns the index of a host, rebuilding it when the host's
+     * files changed and describing any unreadable lines in errors.
+     * Callers must hold the host's read or write lock
      *
-     * @param reservations      list of reservation objects to write to file
+     * @param hostId    the id of the host
+     * @param errors    the list that collects unreadable lines, or null
+     * @return          the host's index
+     */
+    private HostIndex loadIndex(String hostId, List<String> errors) {
+        HostIndex index;
+        if (isWatched()) {
+            //The watcher reloads hosts whose files change
+            index = indexes.get(hostId, cached -> true);
+        } else {
+            FileStamp snapshotStamp = FileStamp.of(files.snapshotPath(hostId));
+            FileStamp journalStamp = FileStamp.of(files.journal(hostId).getPath());
+            index = indexes.get(hostId,
+                    cached -> cached.snapshotStamp.equals(snapshotStamp) && cached.journalStamp.equals(journalStamp));
+        }
+        if (index == null) {
+            //Stamped before reading, so a change made during the read is seen next time
+            FileStamp snapshotStamp = FileStamp.of(files.snapshotPath(hostId));
+            FileStamp journalStamp = FileStamp.of(files.journal(hostId).getPath());
+            index = new HostIndex(snapshotStamp, journalStamp, files.read(hostId, errors), archivedIds(hostId));
+            indexes.put(hostId, index);
+        } else {
+            index.moveWindowIfBehind(LocalDate.now().toEpochDay());
+        }
+        return index;
+    }
+
+    /**
+     * Records the current state of a host's files against its
+     * index after the repository changed them. Callers must hold
+     * the host's write lock
+     *
+     * @param hostId    the id of the host
+     */
+    private void refreshStamps(String hostId) {
+        HostIndex index = indexes.peek(hostId);
+        if (index != null) {
+            index.snapshotStamp = FileStamp.of(files.snapshotPath(hostId));
+            index.journalStamp = FileStamp.of(files.journal(hostId).getPath());
+        }
+    }
+
+    /**
+     * Appends a change to a host's journal and schedules a
+     * compaction once the journal has grown past the threshold.
+     * Callers must hold the host's write lock, and should await
+     * the returned commit after releasing it
+     *
+     * @param hostId        the id of the host
+     * @param record        the journal record to append
+     * @return              the pending commit of the record
      * @throws DataException
      */
-    private void writeToFile(List<Reservation> reservations) throws DataException {
+    private DurableFileWriter.Commit appendToJournal(String hostId, String record) throws DataException {
+        ReservationFileWriteEvent event = ReservationFileWriteEvent.start();
+        Journal journal = files.journal(hostId);
+        DurableFileWriter.Commit commit = journal.append(record);
+        if (event != null && event.shouldCommit()) {
+            event.hostId = hostId;
+            event.file = ReservationFileWriteEvent.JOURNAL;
+            event.bytes = record.length() + 1;
+            event.rows = 1;
+            event.commit();
+        }
+        if (journal.size() >= compactionThresholdBytes && pendingCompactions.add(hostId)) {
+            compactor().execute(() -> {
+                pendingCompactions.remove(hostId);
+                try {
+                    compact(hostId);
+                } catch (DataException ex) {
+                    // the journal is kept and compaction is retried on the next write
+                }
+            });
+        }
+        return commit;
+    }
+
+    /**
+     * Returns the single background thread that compacts journals
+     *
+     * @return  the compaction executor
+     */
+    private synchronized ExecutorService compactor() {
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "reservation-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return compactor;
+    }
 
-        try (PrintWriter writer = new PrintWriter( getFilePath() )) {
-            writer.println(HEADER);
-            for (Reservation reservation : reservations) {
-                writer.println(serialize(reservation));
+    /**
+     * Folds a host's journal into its snapshot. The snapshot is
+     * rewritten with the current reservations and the journal is
+     * cleared. Replay is idempotent, so a crash between the two
+     * steps leaves the data intact
+     *
+     * @param hostId        the id of the host to compact
+     * @throws DataException
+     */
+    void compact(String hostId) throws DataException {
+        Lock lock = hostLocks.forHost(hostId).writeLock();
+        lock.lock();
+        try {
+            Journal journal = files.journal(hostId);
+            if (journal.size() == 0) {
+                return;
+            }
+            boolean current = isIndexCurrent(hostId);
+            files.writeSnapshot(hostId, files.read(hostId, null));
+            journal.clear();
+            if (current) {
+                refreshStamps(hostId);
             }
-        } catch (FileNotFoundException ex) {
-            throw new DataException(ex);
+        } finally {
+            lock.unlock();
         }
     }
 
-    //Serialize
     /**
-     * Returns a formatted string created from the values  of a reservation object
+     * Returns whether a host's index still matches its files.
+     * Callers must hold the host's lock
      *
-     * @param reservation  reservation object containing populated data
-     * @return             a formated string created from a reservation object
+     * @param hostId    the id of the host
+     * @return          whether the index is current
      */
-    private String serialize(Reservation reservation) {
-        return String.format("%s,%s,%s,%s,%s",
-                reservation.getId(),
-                reservation.getStartDate(),
-                reservation.getEndDate(),
-                reservation.getGuest().getId(),
-                reservation.getcostOfStay());
+    private boolean isIndexCurrent(String hostId) {
+        HostIndex index = indexes.peek(hostId);
+        return index != null
+                && index.snapshotStamp.equals(FileStamp.of(files.snapshotPath(hostId)))
+                && index.journalStamp.equals(FileStamp.of(files.journal(hostId).getPath()));
     }
 
-    //Deserialize
     /**
-     * Returns a reservation object created from a line
-     * provided by the file repository
+     * Returns a copy of a reservation holding the fields the
+     * repository stores, so the index never shares objects
+     * with callers
      *
-     * @param fields  the data retrieved from the file repository
-     * @return        reservation object containing the field as data
+     * @param reservation  the reservation to copy
+     * @return             the copied reservation
      */
-    private Reservation deserialize(String[] fields) {
+    private Reservation copy(Reservation reservation) {
         Reservation result = new Reservation();
-
-        result.setId( Integer.parseInt(fields[0]) );
-        //Stay Duration
-        result.setStartDate( LocalDate.parse(fields[1]) );
-        result.setEndDate( LocalDate.parse(fields[2]) );
-        //Guest
+        result.setId(reservation.getId());
+        result.setStartDate(reservation.getStartDate());
+        result.setEndDate(reservation.getEndDate());
         Guest guest = new Guest();
-        guest.setId(Integer.parseInt (fields[3]));
+        guest.setId(reservation.getGuest().getId());
         result.setGuest(guest);
-        //Cost
-        result.setcostOfStay( BigDecimal.valueOf(Double.parseDouble(fields[4])) );
-
+        result.setcostOfStay(reservation.getcostOfStay());
         return result;
     }
 
     /**
      * Updates a reservation object in the repository and returns
-     * a boolean based on the update succeeding
+     * a boolean based on the update succeeding. The change is
+     * appended to the host's journal
      *
+     * @param hostId       the id of the host the reservation belongs to
      * @param reservation  the reservation object to update
      * @return             whether the reservation updated
      * @throws DataException
      */
     @Override
-    public boolean update(Reservation reservation) throws DataException {
-        if(reservation == null) {
-            return false;
-        }
+    public boolean update(String hostId, Reservation reservation) throws DataException {
+        return METRICS.time("ReservationFileRepository.update", () -> {
+            if(reservation == null) {
+                return false;
+            }
 
-        List<Reservation> all = findAll();
-        for (int i = 0; i < all.size(); i++) {
-            if (reservation.getId() == all.get(i).getId()) {
-                all.set(i, reservation);
-                writeToFile(all);
-                return true;
+            requireHostId(hostId);
+            if (files.getFormat() == SnapshotFormat.COLUMNAR) {
+                //Checked up front so a later compaction cannot fail on it
+                ColumnarSnapshot.requireEncodable(reservation);
             }
-        }
-        return false;
+            GuestReservationIndex guests = guestIndex();
+            DurableFileWriter.Commit commit = null;
+            Lock indexLock = guestIndexLock.readLock();
+            indexLock.lock();
+            try {
+                Lock lock = hostLocks.forHost(hostId).writeLock();
+                lock.lock();
+                try {
+                    HostIndex index = indexForWrite(hostId, guests);
+                    Reservation existing = index.reservations.get(reservation.getId());
+                    if (existing != null) {
+                        commit = appendToJournal(hostId, HostFiles.updateRecord(reservation));
+                        index.put(copy(reservation));
+                        indexes.reweigh(hostId);
+                        refreshStamps(hostId);
+                        //Move the posting when the reservation changes guest
+                        int oldGuestId = existing.getGuest().getId();
+                        int newGuestId = reservation.getGuest().getId();
+                        if (oldGuestId != newGuestId) {
+                            updateGuestIndex(() -> {
+                                guests.remove(oldGuestId, hostId, reservation.getId());
+                                guests.add(newGuestId, hostId, reservation.getId());
+                            });
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            } finally {
+                indexLock.unlock();
+            }
+            if (commit == null) {
+                return false;
+            }
+            commit.await();
+            return true;
+        });
     }
 
     /**
      * Removes a reservation object with a selected id from
-     * the repository and writes the file repository without it
+     * the repository by appending a delete to the host's journal
      *
+     * @param hostId         the id of the host the reservation belongs to
      * @param reservationId  the id of the reservation to remove
      * @return               whether the reservation was removed
      * @throws DataException
      */
     @Override
-    public boolean delete(int reservationId) throws DataException {
-        if(String.valueOf(reservationId) == null){
-            return false;
-        }
+    public boolean delete(String hostId, int reservationId) throws DataException {
+        return METRICS.time("ReservationFileRepository.delete", () -> {
+            requireHostId(hostId);
+            GuestReservationIndex guests = guestIndex();
+            DurableFileWriter.Commit commit = null;
+            Lock indexLock = guestIndexLock.readLock();
+            indexLock.lock();
+            try {
+                Lock lock = hostLocks.forHost(hostId).writeLock();
+                lock.lock();
+                try {
+                    HostIndex index = indexForWrite(hostId, guests);
+                    Reservation existing = index.reservations.get(reservationId);
+                    if (existing != null) {
+                        commit = appendToJournal(hostId, HostFiles.deleteRecord(reservationId));
+                        index.remove(reservationId);
+                        indexes.reweigh(hostId);
+                        refreshStamps(hostId);
+                        updateGuestIndex(() -> guests.remove(existing.getGuest().getId(), hostId, reservationId));
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            } finally {
+                indexLock.unlock();
+            }
+            if (commit == null) {
+                return false;
+            }
+            commit.await();
+            return true;
+        });
+    }
 
-        List<Reservation> all = findAll();
-        for(int i = 0; i < all.size(); i++){
-            if(all.get(i).getId() == reservationId){
-                all.remove(i);
-                writeToFile(all);
-                return true;
+    /**
+     * Runs work under a host's write lock. The guest index read lock
+     * is taken first, as every write to the host does, so the writes
+     * made inside the section keep the lock order. The host's files
+     * are checked first, as for a write, so checks made inside the
+     * section see changes the watcher has not delivered yet
+     *
+     * @param hostId    the id of the host
+     * @param section   the work to run
+     * @return          the result of the work
+     * @throws DataException if the host id is not valid or the work fails
+     */
+    @Override
+    public <T> T withHostWriteLock(String hostId, HostWriteSection<T> section) throws DataException {
+        requireHostId(hostId);
+        //Loaded before any lock is held, since the first load takes the guest index write lock
+        GuestReservationIndex guests = guestIndex();
+        Lock indexLock = guestIndexLock.readLock();
+        indexLock.lock();
+        try {
+            Lock lock = hostLocks.forHost(hostId).writeLock();
+            lock.lock();
+            try {
+                indexForWrite(hostId, guests);
+                return section.run();
+            } finally {
+                lock.unlock();
             }
+        } finally {
+            indexLock.unlock();
         }
-        return false;
     }
 
     /**
-     * Adds a reservation object to the repository and writes the
-     * file repository with the new object
+     * Adds a reservation object to the repository and appends
+     * the new object to the host's journal
      *
+     * @param hostId            the id of the host the reservation belongs to
      * @param reservation       the reservation object to add
      * @return                  the reservation object added
      * @throws DataException
      */
     @Override
-    public Reservation add(Reservation reservation) throws DataException {
+    public Reservation add(String hostId, Reservation reservation) throws DataException {
+        return METRICS.time("ReservationFileRepository.add", () -> {
 
-        List<Reservation> hostReservations = findAll();
-
-        //Make new id
-        int nextId = hostReservations.stream()
-                .mapToInt(Reservation::getId)
-                .max()
-                .orElse(0) + 1;
+            requireHostId(hostId);
+            if (files.getFormat() == SnapshotFormat.COLUMNAR) {
+                //Checked up front so a later compaction cannot fail on it
+                ColumnarSnapshot.requireEncodable(reservation);
+            }
+            GuestReservationIndex guests = guestIndex();
+            DurableFileWriter.Commit commit;
+            Lock indexLock = guestIndexLock.readLock();
+            indexLock.lock();
+            try {
+                Lock lock = hostLocks.forHost(hostId).writeLock();
+                lock.lock();
+                try {
+                    HostIndex index = indexForWrite(hostId, guests);
 
-        reservation.setId(nextId);
-        hostReservations.add(reservation);
-        writeToFile(hostReservations);
-        return reservation;
+                    //Make new id
+                    reservation.setId(index.reservations.nextId());
+                    commit = appendToJournal(hostId, HostFiles.addRecord(reservation));
+                    index.put(copy(reservation));
+                    indexes.reweigh(hostId);
+                    refreshStamps(hostId);
+                    updateGuestIndex(() -> guests.add(reservation.getGuest().getId(), hostId, reservation.getId()));
+                } finally {
+                    lock.unlock();
+                }
+            } finally {
+                indexLock.unlock();
+            }
+            commit.await();
+            return reservation;
+        });
     }
 
 }
@@ -0,0 +1,52 @@
+package learn.mastery.data;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Raised when a change is appended to a host's journal,
+ * the host's snapshot file is rewritten, or the host's block
+ * is appended to a segment or the archive.
+ */
+@Name("learn.mastery.ReservationFileWrite")
+@Label("Reservation File Write")
+@Category({"Mastery", "Data"})
+@Description("A journal append, snapshot rewrite, segment append or archive of one host")
+final class ReservationFileWriteEvent extends jdk.jfr.Event {
+
+    static final String JOURNAL = "journal";
+    static final String SNAPSHOT = "snapshot";
+    static final String SEGMENT = "segment";
+    static final String ARCHIVE = "archive";
+
+    @Label("Host Id")
+    String hostId;
+
+    @Label("File")
+    @Description("Either journal, snapshot, segment or archive")
+    String file;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytes;
+
+    @Label("Rows")
+    int rows;
+
+    /**
+     * Returns a started event, or null when events are switched off
+     *
+     * @return  the event timing the write
+     */
+    static ReservationFileWriteEvent start() {
+        if (!JfrEvents.ENABLED) {
+            return null;
+        }
+        ReservationFileWriteEvent event = new ReservationFileWriteEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,163 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Reservation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The reservations of one host ordered by start day, so the
+ * reservations overlapping a date range can be found without
+ * looking at every stay the host has ever had. Not thread safe;
+ * callers hold the host's lock.
+ */
+final class ReservationIntervalIndex {
+
+    private final TreeMap<Long, List<Reservation>> byStart = new TreeMap<>();
+    private final Map<Integer, Reservation> byId = new HashMap<>();
+    //Longest stay seen, which bounds how far back an overlapping stay can start
+    private long maxSpanDays;
+    private int maxId;
+
+    /**
+     * Class constructor.
+     *
+     * @param reservations  the reservations to index
+     */
+    ReservationIntervalIndex(Collection<Reservation> reservations) {
+        for (Reservation reservation : reservations) {
+            put(reservation);
+        }
+    }
+
+    /**
+     * Adds a reservation to the index, replacing any
+     * reservation that has the same id
+     *
+     * @param reservation   the reservation to index
+     */
+    void put(Reservation reservation) {
+        remove(reservation.getId());
+        long start = reservation.getStartDate().toEpochDay();
+        long span = reservation.getEndDate().toEpochDay() - start;
+        byStart.computeIfAbsent(start, day -> new ArrayList<>(1)).add(reservation);
+        byId.put(reservation.getId(), reservation);
+        maxSpanDays = Math.max(maxSpanDays, span);
+        maxId = Math.max(maxId, reservation.getId());
+    }
+
+    /**
+     * Removes the reservation with an id from the index
+     *
+     * @param id    the id of the reservation to remove
+     * @return      the removed reservation, or null if none had the id
+     */
+    Reservation remove(int id) {
+        Reservation removed = byId.remove(id);
+        if (removed != null) {
+            long start = removed.getStartDate().toEpochDay();
+            List<Reservation> sameStart = byStart.get(start);
+            sameStart.removeIf(reservation -> reservation.getId() == id);
+            if (sameStart.isEmpty()) {
+                byStart.remove(start);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the reservation with an id, or null if none has the id
+     *
+     * @param id    the reservation id
+     * @return      the indexed reservation or null
+     */
+    Reservation get(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Returns the id to give the next reservation added to the host
+     *
+     * @return  one more than the highest id indexed
+     */
+    int nextId() {
+        return maxId + 1;
+    }
+
+    /**
+     * Keeps ids up to a value from being given out again, such
+     * as the ids of reservations moved out of the index for good
+     *
+     * @param id    the highest id already given out
+     */
+    void reserveIdsThrough(int id) {
+        maxId = Math.max(maxId, id);
+    }
+
+    /**
+     * Returns the number of reservations in the index
+     *
+     * @return  the reservation count
+     */
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * Returns every reservation that shares at least one day with
+     * a date range. Both ends of each range are included, so a stay
+     * ending on the day another starts counts as overlapping
+     *
+     * @param startDay  the first epoch day of the range
+     * @param endDay    the last epoch day of the range
+     * @return          the overlapping reservations
+     */
+    List<Reservation> findOverlapping(long startDay, long endDay) {
+        List<Reservation> result = new ArrayList<>();
+        scan(startDay, endDay, result);
+        return result;
+    }
+
+    /**
+     * Adds every reservation that shares at least one day with a
+     * date range to a list, and counts the reservations looked at
+     * to find them
+     *
+     * @param startDay  the first epoch day of the range
+     * @param endDay    the last epoch day of the range
+     * @param result    the list the overlapping reservations are added to
+     * @return          the number of candidate reservations scanned
+     */
+    int scan(long startDay, long endDay, List<Reservation> result) {
+        if (endDay < startDay) {
+            return 0;
+        }
+        int scanned = 0;
+        for (List<Reservation> sameStart : byStart.subMap(startDay - maxSpanDays, true, endDay, true).values()) {
+            scanned += sameStart.size();
+            for (Reservation reservation : sameStart) {
+                if (reservation.getEndDate().toEpochDay() >= startDay) {
+                    result.add(reservation);
+                }
+            }
+        }
+        return scanned;
+    }
+
+    /**
+     * Returns every indexed reservation ordered by start date
+     *
+     * @return  the indexed reservations
+     */
+    List<Reservation> values() {
+        List<Reservation> result = new ArrayList<>(byId.size());
+        for (List<Reservation> sameStart : byStart.values()) {
+            result.addAll(sameStart);
+        }
+        return result;
+    }
+}
@@ -1,26 +1,65 @@
 package learn.mastery.data;
 
-import learn.mastery.models.Host;
 import learn.mastery.models.Reservation;
 
+import java.time.LocalDate;
 import java.util.List;
 
 public interface ReservationRepository {
 
-    void setHost(Host host);
+    Reservation findById(String hostId, int id);
 
-    Host getHost();
+    List<Reservation> findAllByGuestId(String hostId, int guestId);
 
-    Reservation findById(int id);
+    List<Reservation> findAllForGuest(int guestId);
 
-    List<Reservation> findAllByGuestId(int id);
+    List<Reservation> findAll(String hostId);
 
-    List<Reservation> findAll();
+    List<Reservation> findOverlapping(String hostId, LocalDate startDate, LocalDate endDate);
 
-    boolean update(Reservation reservation) throws DataException;
+    boolean isAvailable(String hostId, LocalDate startDate, LocalDate endDate);
 
-    boolean delete(int reservationId) throws DataException;
+    boolean update(String hostId, Reservation reservation) throws DataException;
 
-    Reservation add(Reservation reservation) throws DataException;
+    boolean delete(String hostId, int reservationId) throws DataException;
+
+    Reservation add(String hostId, Reservation reservation) throws DataException;
+
+    /**
+     * Runs work while holding the write lock a host's writes take,
+     * so a check made inside it, such as for overlapping dates, still
+     * holds when the write that follows it lands. Reads and writes of
+     * the same host made inside the section take the lock again. Work
+     * on other hosts must not be started from inside it
+     *
+     * @param hostId    the id of the host
+     * @param section   the work to run
+     * @return          the result of the work
+     * @throws DataException if the host id is not valid or the work fails
+     */
+    <T> T withHostWriteLock(String hostId, HostWriteSection<T> section) throws DataException;
+
+    /**
+     * Returns the reservations of a host that were moved to
+     * cold storage once their stay was over. Stores that keep
+     * every reservation hot have none
+     *
+     * @param hostId    the id of the host
+     * @return          the host's archived reservations
+     */
+    default List<Reservation> findArchived(String hostId) {
+        return List.of();
+    }
+
+    /**
+     * Returns the archived reservations a guest made with any host.
+     * Each reservation's host holds only the host id
+     *
+     * @param guestId   the id of the guest
+     * @return          the guest's archived reservations
+     */
+    default List<Reservation> findArchivedForGuest(int guestId) {
+        return List.of();
+    }
 
 }
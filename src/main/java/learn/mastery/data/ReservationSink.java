@@ -0,0 +1,24 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Reservation;
+
+import java.util.List;
+
+/**
+ * Takes the reservations moved out of a host's files, such as
+ * past stays bound for the archive. It runs before the host's
+ * files are rewritten, so the reservations are never lost.
+ */
+@FunctionalInterface
+interface ReservationSink {
+
+    /**
+     * Stores reservations moved out of a host's files
+     *
+     * @param hostId        the id of the host
+     * @param reservations  the reservations moved out
+     * @param lastIssuedId  the highest id the host has given out
+     * @throws DataException if the reservations cannot be stored
+     */
+    void accept(String hostId, List<Reservation> reservations, int lastIssuedId) throws DataException;
+}
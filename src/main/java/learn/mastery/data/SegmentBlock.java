@@ -0,0 +1,217 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Reservation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The blocks a segment holds for a host. Every block starts with a
+ * 4 byte block length and the host id. A full block follows it with a
+ * columnar snapshot of all the host's reservations. A delta block sets
+ * the top bit of the id length and holds a single change: where the
+ * host's previous block is, then either the added or changed reservation
+ * as a one row columnar snapshot or the id of the reservation removed.
+ * A host is read by folding its deltas, oldest first, into the full
+ * block the chain starts from.
+ */
+final class SegmentBlock {
+
+    //The block length and the length of the host id
+    static final int HEADER_BYTES = Integer.BYTES + Short.BYTES;
+    private static final int DELTA_FLAG = 0x8000;
+    //The segment, offset and length of the previous block, and the change type
+    private static final int LINK_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES + 1;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private SegmentBlock() {
+    }
+
+    //Write
+
+    /**
+     * Returns the size of a full block
+     *
+     * @param hostId    the id of the host
+     * @param rows      the number of reservations the block holds
+     * @return          the block size in bytes
+     */
+    static long fullSize(String hostId, int rows) {
+        return HEADER_BYTES + idLength(hostId) + ColumnarSnapshot.sizeOf(rows);
+    }
+
+    /**
+     * Returns the size of a delta block
+     *
+     * @param hostId    the id of the host
+     * @param put       whether the delta adds or changes a reservation, rather than removing one
+     * @return          the block size in bytes
+     */
+    static long deltaSize(String hostId, boolean put) {
+        return HEADER_BYTES + idLength(hostId) + LINK_BYTES + (put ? ColumnarSnapshot.sizeOf(1) : Integer.BYTES);
+    }
+
+    /**
+     * Packs a host's reservations into a full block
+     *
+     * @param hostId        the id of the host
+     * @param reservations  the host's reservations
+     * @return              the block's bytes
+     * @throws DataException if a total cannot be stored in whole cents
+     */
+    static byte[] full(String hostId, List<Reservation> reservations) throws DataException {
+        byte[] id = hostId.getBytes(StandardCharsets.UTF_8);
+        byte[] snapshot = ColumnarSnapshot.encode(reservations);
+        ByteBuffer block = ByteBuffer.allocate(HEADER_BYTES + id.length + snapshot.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        block.putInt(block.capacity()).putShort((short) id.length).put(id).put(snapshot);
+        return block.array();
+    }
+
+    /**
+     * Packs the addition or change of a reservation into a delta block
+     *
+     * @param hostId        the id of the host
+     * @param previous      the host's current block
+     * @param reservation   the reservation as it now is
+     * @return              the block's bytes
+     * @throws DataException if the total cannot be stored in whole cents
+     */
+    static byte[] put(String hostId, SegmentIndex.Location previous, Reservation reservation) throws DataException {
+        byte[] snapshot = ColumnarSnapshot.encode(List.of(reservation));
+        return delta(hostId, previous, PUT, snapshot.length).put(snapshot).array();
+    }
+
+    /**
+     * Packs the removal of a reservation into a delta block
+     *
+     * @param hostId            the id of the host
+     * @param previous          the host's current block
+     * @param reservationId     the id of the reservation removed
+     * @return                  the block's bytes
+     */
+    static byte[] remove(String hostId, SegmentIndex.Location previous, int reservationId) {
+        return delta(hostId, previous, REMOVE, Integer.BYTES).putInt(reservationId).array();
+    }
+
+    private static ByteBuffer delta(String hostId, SegmentIndex.Location previous, byte change, int changeBytes) {
+        byte[] id = hostId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer block = ByteBuffer.allocate(HEADER_BYTES + id.length + LINK_BYTES + changeBytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        return block.putInt(block.capacity()).putShort((short) (id.length | DELTA_FLAG)).put(id)
+                .putInt(previous.getSegment()).putLong(previous.getOffset()).putInt(previous.getLength())
+                .put(change);
+    }
+
+    private static int idLength(String hostId) {
+        return hostId.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    //Read
+
+    /**
+     * Returns the id of the host a block belongs to
+     *
+     * @param block     the block's bytes, starting at index 0
+     * @return          the host id
+     */
+    static String hostId(ByteBuffer block) {
+        ByteBuffer buffer = block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        byte[] id = new byte[idLength(buffer)];
+        buffer.position(HEADER_BYTES);
+        buffer.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns whether a block holds a single change
+     *
+     * @param block     the block's bytes, starting at index 0
+     * @return          whether the block is a delta
+     */
+    static boolean isDelta(ByteBuffer block) {
+        return (block.duplicate().order(ByteOrder.LITTLE_ENDIAN).getShort(Integer.BYTES) & DELTA_FLAG) != 0;
+    }
+
+    /**
+     * Returns where the block a delta was written on top of is
+     *
+     * @param block     a delta block's bytes, starting at index 0
+     * @return          the previous block
+     */
+    static SegmentIndex.Location previous(ByteBuffer block) {
+        ByteBuffer buffer = block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int link = HEADER_BYTES + idLength(buffer);
+        return new SegmentIndex.Location(buffer.getInt(link), buffer.getLong(link + Integer.BYTES),
+                buffer.getInt(link + Integer.BYTES + Long.BYTES));
+    }
+
+    /**
+     * Unpacks the reservations of a full block
+     *
+     * @param block     the block's bytes, starting at index 0
+     * @param source    where the bytes came from, for error messages
+     * @return          the host's reservations
+     * @throws IOException if the block is damaged or is a delta
+     */
+    static List<Reservation> decode(ByteBuffer block, Object source) throws IOException {
+        ByteBuffer buffer = block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (isDelta(buffer) || HEADER_BYTES + idLength(buffer) > buffer.limit()) {
+            throw new IOException(source + " holds a damaged block");
+        }
+        buffer.position(HEADER_BYTES + idLength(buffer));
+        return ColumnarSnapshot.decode(buffer.slice(), source);
+    }
+
+    /**
+     * Applies the change a delta block holds to a host's reservations
+     *
+     * @param block         a delta block's bytes, starting at index 0
+     * @param reservations  the host's reservations keyed by id
+     * @param source        where the bytes came from, for error messages
+     * @throws IOException if the block is damaged
+     */
+    static void apply(ByteBuffer block, Map<Integer, Reservation> reservations, Object source) throws IOException {
+        ByteBuffer buffer = block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int change = HEADER_BYTES + idLength(buffer) + LINK_BYTES - 1;
+        if (!isDelta(buffer) || change + 1 > buffer.limit()) {
+            throw new IOException(source + " holds a damaged block");
+        }
+        if (buffer.get(change) == PUT) {
+            buffer.position(change + 1);
+            for (Reservation reservation : ColumnarSnapshot.decode(buffer.slice(), source)) {
+                reservations.put(reservation.getId(), reservation);
+            }
+        } else if (buffer.get(change) == REMOVE && change + 1 + Integer.BYTES <= buffer.limit()) {
+            reservations.remove(buffer.getInt(change + 1));
+        } else {
+            throw new IOException(source + " holds a damaged block");
+        }
+    }
+
+    /**
+     * Checks that a block can be read, such as one found past the
+     * end of the segment index after a crash
+     *
+     * @param block     the block's bytes, starting at index 0
+     * @param source    where the bytes came from, for error messages
+     * @throws IOException if the block is damaged
+     */
+    static void check(ByteBuffer block, Object source) throws IOException {
+        if (isDelta(block)) {
+            apply(block, new HashMap<>(), source);
+        } else {
+            decode(block, source);
+        }
+    }
+
+    private static int idLength(ByteBuffer block) {
+        return block.getShort(Integer.BYTES) & (DELTA_FLAG - 1);
+    }
+}
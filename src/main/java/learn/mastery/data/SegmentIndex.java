@@ -0,0 +1,211 @@
+package learn.mastery.data;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Where each host's reservations live in the segment files. Every
+ * move of a host is appended to a journal, one record per line, so
+ * the latest record of a host wins when the index is loaded. A host
+ * whose latest block is a delta has a record starting with a plus,
+ * which also holds the oldest segment its chain of blocks reaches
+ * and the number of deltas in it. The journal is rewritten with one
+ * record per host once it has grown to several times that.
+ */
+final class SegmentIndex {
+
+    static final String FILE_NAME = "segments.index";
+    private static final int REWRITE_FACTOR = 4;
+    private static final int REWRITE_MIN_RECORDS = 1024;
+
+    private final Journal journal;
+    private final DurableFileWriter writer;
+    private final Map<String, Location> locations = new ConcurrentHashMap<>();
+    private int records;
+
+    /**
+     * The latest block holding one host's reservations, and how far
+     * back the chain of deltas it ends reaches
+     */
+    static final class Location {
+        private final int segment;
+        private final long offset;
+        private final int length;
+        private final int oldestSegment;
+        private final int deltas;
+
+        /**
+         * Class constructor.
+         *
+         * @param segment   the number of the segment file
+         * @param offset    where the block starts in the segment
+         * @param length    the size of the block in bytes
+         */
+        Location(int segment, long offset, int length) {
+            this(segment, offset, length, segment, 0);
+        }
+
+        /**
+         * Class constructor.
+         *
+         * @param segment           the number of the segment file
+         * @param offset            where the block starts in the segment
+         * @param length            the size of the block in bytes
+         * @param oldestSegment     the oldest segment holding a block of the chain
+         * @param deltas            the number of delta blocks in the chain
+         */
+        Location(int segment, long offset, int length, int oldestSegment, int deltas) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.oldestSegment = oldestSegment;
+            this.deltas = deltas;
+        }
+
+        int getSegment() {
+            return segment;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        int getLength() {
+            return length;
+        }
+
+        long getEnd() {
+            return offset + length;
+        }
+
+        int getOldestSegment() {
+            return oldestSegment;
+        }
+
+        int getDeltas() {
+            return deltas;
+        }
+
+        /**
+         * Returns whether the chain ending at this block has
+         * a block in a segment
+         *
+         * @param segment   the number of the segment file
+         * @return          whether a block of the chain may be in the segment
+         */
+        boolean reaches(int segment) {
+            return oldestSegment <= segment && segment <= this.segment;
+        }
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param path      the index file
+     * @param writer    the writer that performs and forces appends
+     */
+    SegmentIndex(Path path, DurableFileWriter writer) {
+        this.journal = new Journal(path, writer);
+        this.writer = writer;
+    }
+
+    /**
+     * Replaces the index with the records in its file. A record
+     * pointing past the end of its segment was written before a
+     * crash that lost its block, so the host's previous record is kept
+     *
+     * @param segmentSize   returns the size in bytes of a segment
+     */
+    synchronized void load(IntToLongFunction segmentSize) {
+        locations.clear();
+        List<String> lines = journal.readRecords();
+        for (String line : lines) {
+            boolean delta = line.startsWith("+");
+            String[] fields = (delta ? line.substring(1) : line).split(",", delta ? 6 : 4);
+            if (fields.length < (delta ? 6 : 4)) {
+                continue;
+            }
+            try {
+                int segment = Integer.parseInt(fields[0]);
+                Location location = delta
+                        ? new Location(segment, Long.parseLong(fields[1]), Integer.parseInt(fields[2]),
+                                Integer.parseInt(fields[3]), Integer.parseInt(fields[4]))
+                        : new Location(segment, Long.parseLong(fields[1]), Integer.parseInt(fields[2]));
+                if (location.getEnd() <= segmentSize.applyAsLong(location.getSegment())) {
+                    locations.put(fields[delta ? 5 : 3], location);
+                }
+            } catch (NumberFormatException ex) {
+                // a damaged record is skipped like a torn one
+            }
+        }
+        records = lines.size();
+    }
+
+    /**
+     * Returns where a host's block is
+     *
+     * @param hostId    the id of the host
+     * @return          the host's location, or null if it has none
+     */
+    Location get(String hostId) {
+        return locations.get(hostId);
+    }
+
+    /**
+     * Returns a copy of every host's location
+     *
+     * @return  the locations by host id
+     */
+    Map<String, Location> snapshot() {
+        return new HashMap<>(locations);
+    }
+
+    /**
+     * Records a host's new block. The record is durable
+     * once the returned commit has been awaited
+     *
+     * @param hostId        the id of the host
+     * @param location      the host's new block
+     * @return              the pending commit of the record
+     * @throws DataException
+     */
+    synchronized DurableFileWriter.Commit put(String hostId, Location location) throws DataException {
+        DurableFileWriter.Commit commit = journal.append(record(hostId, location));
+        locations.put(hostId, location);
+        records++;
+        return commit;
+    }
+
+    /**
+     * Rewrites the index file with one record per host once
+     * superseded records make up most of it
+     *
+     * @throws DataException
+     */
+    synchronized void rewriteIfStale() throws DataException {
+        if (records < REWRITE_MIN_RECORDS || records < REWRITE_FACTOR * locations.size()) {
+            return;
+        }
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, Location> entry : locations.entrySet()) {
+            content.append(record(entry.getKey(), entry.getValue())).append('\n');
+        }
+        writer.close(journal.getPath());
+        writer.replace(journal.getPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        records = locations.size();
+    }
+
+    private static String record(String hostId, Location location) {
+        if (location.getDeltas() == 0) {
+            return String.format("%s,%s,%s,%s",
+                    location.getSegment(), location.getOffset(), location.getLength(), hostId);
+        }
+        return String.format("+%s,%s,%s,%s,%s,%s", location.getSegment(), location.getOffset(),
+                location.getLength(), location.getOldestSegment(), location.getDeltas(), hostId);
+    }
+}
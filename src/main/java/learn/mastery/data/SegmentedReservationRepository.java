@@ -0,0 +1,1095 @@
+package learn.mastery.data;
+
+import learn.mastery.metrics.MetricsRegistry;
+import learn.mastery.metrics.Operation;
+import learn.mastery.models.Guest;
+import learn.mastery.models.Host;
+import learn.mastery.models.Reservation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the reservations of every host in a handful of large
+ * segment files instead of one file per host. A host's reservations
+ * are a full block holding every reservation, followed by a chain of
+ * delta blocks holding one change each (see SegmentBlock). Segments
+ * are only ever appended to, so a change writes a small delta at the
+ * end of the newest segment and records its location in the segment
+ * index. The host's whole block is written again instead once that is
+ * no larger than the delta, or once the chain holds MAX_DELTAS deltas,
+ * which bounds the blocks a cold read folds. A segment past the size
+ * limit is sealed and a new one started, and sealed segments that are
+ * mostly superseded blocks are compacted in the background by copying
+ * their live blocks forward, folding any chain that reaches into them.
+ * Finding a guest's reservations reads each segment once from
+ * start to end instead of opening a file per host.
+ */
+public class SegmentedReservationRepository implements ReservationRepository {
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_CACHE_CAPACITY_BYTES = 64L * 1024 * 1024;
+    //Rough memory held by one cached host and by each of its reservations
+    private static final long HOST_ENTRY_BYTES = 512;
+    private static final long RESERVATION_BYTES = 320;
+    private static final int MAX_HOST_ID_LENGTH = 256;
+    //Deltas a host's chain may hold before its whole block is written again
+    static final int MAX_DELTAS = 16;
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d{6})\\.seg");
+
+    private final Path directory;
+    private final DurableFileWriter writer =
+            new DurableFileWriter(DurabilityMode.SYNC, DurableFileWriter.DEFAULT_GROUP_COMMIT_MILLIS);
+    private final SegmentIndex segmentIndex;
+    private final HostLocks hostLocks = new HostLocks(HostLocks.DEFAULT_STRIPES);
+    //Scans hold the read lock so compaction cannot delete a segment under them
+    private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+    private final WeightedLruCache<String, ReservationIntervalIndex> indexes =
+            new WeightedLruCache<>(DEFAULT_CACHE_CAPACITY_BYTES, SegmentedReservationRepository::weigh);
+    private final AtomicBoolean compactionPending = new AtomicBoolean();
+    private volatile boolean opened;
+    private long segmentBytes = DEFAULT_SEGMENT_BYTES;
+    private DurabilityMode durabilityMode = DurabilityMode.SYNC;
+    private long groupCommitMillis = DurableFileWriter.DEFAULT_GROUP_COMMIT_MILLIS;
+    //Guarded by this
+    private int activeSegment;
+    private long activeSize;
+    private ExecutorService compactor;
+
+    /**
+     * Class constructor.
+     *
+     * @param directory     the folder holding the segments and their index
+     */
+    public SegmentedReservationRepository(String directory) {
+        this.directory = Paths.get(directory);
+        this.segmentIndex = new SegmentIndex(this.directory.resolve(SegmentIndex.FILE_NAME), writer);
+    }
+
+    //Settings
+
+    /**
+     * Sets the size at which the newest segment is sealed and
+     * a new one started. A block larger than this still gets
+     * a segment of its own
+     *
+     * @param segmentBytes  the segment size limit in bytes
+     */
+    public void setSegmentBytes(long segmentBytes) {
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Sets the estimated memory the cached hosts may hold. The least
+     * recently used hosts are dropped first and read again when needed
+     *
+     * @param cacheCapacityBytes    the cache capacity in bytes
+     */
+    public void setCacheCapacityBytes(long cacheCapacityBytes) {
+        indexes.setCapacity(cacheCapacityBytes);
+    }
+
+    /**
+     * Returns the hits, misses, evictions and size of the host cache
+     *
+     * @return  a snapshot of the cache's statistics
+     */
+    public CacheStats getCacheStats() {
+        return indexes.stats();
+    }
+
+    /**
+     * Drops every cached host, so the next read of each host folds
+     * its blocks from the segments again. Benchmarks use it to measure
+     * cold reads
+     */
+    void clearCache() {
+        indexes.clear();
+    }
+
+    /**
+     * Sets when segment and index writes are forced to disk,
+     * as for ReservationFileRepository
+     *
+     * @param mode                  the durability mode
+     * @param groupCommitMillis     the flush interval used by GROUP_COMMIT
+     */
+    public synchronized void setDurabilityMode(DurabilityMode mode, long groupCommitMillis) {
+        writer.configure(mode, groupCommitMillis);
+        this.durabilityMode = mode;
+        this.groupCommitMillis = groupCommitMillis;
+    }
+
+    //Files
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("segment-%06d.seg", segment));
+    }
+
+    private long sizeOf(int segment) {
+        try {
+            return Files.size(segmentPath(segment));
+        } catch (IOException ex) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Returns the number of every segment in the directory, oldest first
+     *
+     * @return  the segment numbers
+     * @throws DataException if the directory cannot be listed
+     */
+    private List<Integer> listSegments() throws DataException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(file -> SEGMENT_FILE.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Integer.parseInt(matcher.group(1)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (NoSuchFileException ex) {
+            return new ArrayList<>();
+        } catch (IOException ex) {
+            throw new DataException("Could not list " + directory, ex);
+        }
+    }
+
+    /**
+     * Loads the segment index the first time the repository is
+     * used, and recovers the blocks written to the newest segment
+     * after the last record that reached the index
+     *
+     * @throws DataException if the newest segment cannot be read
+     */
+    private void open() throws DataException {
+        if (opened) {
+            return;
+        }
+        synchronized (this) {
+            if (opened) {
+                return;
+            }
+            List<Integer> segments = listSegments();
+            Map<Integer, Long> sizes = new HashMap<>();
+            for (int segment : segments) {
+                sizes.put(segment, sizeOf(segment));
+            }
+            segmentIndex.load(segment -> sizes.getOrDefault(segment, 0L));
+            activeSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+            activeSize = recover(activeSegment);
+            opened = true;
+        }
+    }
+
+    /**
+     * Walks the blocks of a segment past the last one the index
+     * knows about and adds them to the index. A block torn by a
+     * crash ends the walk and is cut off the segment
+     *
+     * @param segment   the number of the newest segment
+     * @return          the size of the segment after recovery
+     * @throws DataException if the segment cannot be read or cut
+     */
+    private long recover(int segment) throws DataException {
+        Path path = segmentPath(segment);
+        if (!Files.exists(path)) {
+            return 0L;
+        }
+        long position = 0;
+        for (SegmentIndex.Location location : segmentIndex.snapshot().values()) {
+            if (location.getSegment() == segment) {
+                position = Math.max(position, location.getEnd());
+            }
+        }
+        if (position == sizeOf(segment)) {
+            return position;
+        }
+        List<DurableFileWriter.Commit> commits = new ArrayList<>();
+        try (FileChannel channel = FileAccess.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            while (size - position >= SegmentBlock.HEADER_BYTES) {
+                ByteBuffer header = ByteBuffer.allocate(SegmentBlock.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, header, position);
+                int length = header.getInt(0);
+                if (length < SegmentBlock.HEADER_BYTES || position + length > size) {
+                    break;
+                }
+                ByteBuffer block = ByteBuffer.allocate(length);
+                readFully(channel, block, position);
+                try {
+                    SegmentBlock.check(block, path);
+                } catch (IOException ex) {
+                    break;
+                }
+                String hostId = SegmentBlock.hostId(block);
+                SegmentIndex.Location location = new SegmentIndex.Location(segment, position, length);
+                if (SegmentBlock.isDelta(block)) {
+                    //Blocks are recovered in the order they were written, so the index holds the previous one
+                    SegmentIndex.Location previous = segmentIndex.get(hostId);
+                    if (previous == null) {
+                        break;
+                    }
+                    location = new SegmentIndex.Location(segment, position, length,
+                            previous.getOldestSegment(), previous.getDeltas() + 1);
+                }
+                commits.add(segmentIndex.put(hostId, location));
+                position += length;
+            }
+            if (position < size) {
+                channel.truncate(position);
+            }
+        } catch (IOException ex) {
+            throw new DataException("Could not recover " + path, ex);
+        }
+        for (DurableFileWriter.Commit commit : commits) {
+            commit.await();
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+    }
+
+    //Blocks
+
+    /**
+     * Reads the raw bytes of a block from an open segment
+     *
+     * @param channel   the segment holding the block
+     * @param location  where the block is
+     * @return          the block's bytes
+     * @throws IOException if the segment cannot be read
+     */
+    private static ByteBuffer readBlock(FileChannel channel, SegmentIndex.Location location) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(location.getLength());
+        readFully(channel, block, location.getOffset());
+        Operation.recordBytes(location.getLength());
+        return block;
+    }
+
+    /**
+     * Reads the blocks a host's chain is made of, newest first,
+     * opening each segment the chain reaches once
+     *
+     * @param location  the host's latest block
+     * @return          the blocks of the chain, ending with its full block
+     * @throws IOException if a segment cannot be read or the chain is broken
+     */
+    private List<ByteBuffer> readChain(SegmentIndex.Location location) throws IOException {
+        List<ByteBuffer> chain = new ArrayList<>();
+        Map<Integer, FileChannel> channels = new HashMap<>();
+        try {
+            while (true) {
+                FileChannel channel = channels.get(location.getSegment());
+                if (channel == null) {
+                    channel = FileAccess.open(segmentPath(location.getSegment()), StandardOpenOption.READ);
+                    channels.put(location.getSegment(), channel);
+                }
+                ByteBuffer block = readBlock(channel, location);
+                chain.add(block);
+                if (!SegmentBlock.isDelta(block)) {
+                    return chain;
+                }
+                if (chain.size() > MAX_DELTAS) {
+                    throw new IOException("The chain of blocks ending at segment " + location.getSegment()
+                            + " holds more than " + MAX_DELTAS + " deltas");
+                }
+                location = SegmentBlock.previous(block);
+            }
+        } finally {
+            for (FileChannel channel : channels.values()) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Folds the blocks of a chain, newest first, into
+     * the reservations they add up to
+     *
+     * @param chain     the blocks of the chain, ending with its full block
+     * @param source    where the bytes came from, for error messages
+     * @return          the host's reservations
+     * @throws IOException if a block is damaged
+     */
+    private static List<Reservation> fold(List<ByteBuffer> chain, Object source) throws IOException {
+        Map<Integer, Reservation> reservations = new LinkedHashMap<>();
+        for (Reservation reservation : SegmentBlock.decode(chain.get(chain.size() - 1), source)) {
+            reservations.put(reservation.getId(), reservation);
+        }
+        for (int i = chain.size() - 2; i >= 0; i--) {
+            SegmentBlock.apply(chain.get(i), reservations, source);
+        }
+        return new ArrayList<>(reservations.values());
+    }
+
+    /**
+     * Reads a host's reservations by folding its chain of blocks.
+     * Callers must hold the host's read or write lock
+     *
+     * @param hostId    the id of the host
+     * @return          the host's reservations, empty if it has no block
+     * @throws DataException if a block cannot be read
+     */
+    private List<Reservation> readHost(String hostId) throws DataException {
+        SegmentIndex.Location location = segmentIndex.get(hostId);
+        if (location == null) {
+            return new ArrayList<>();
+        }
+        ReservationFileReadEvent event = ReservationFileReadEvent.start();
+        Path path = segmentPath(location.getSegment());
+        try {
+            List<ByteBuffer> chain = readChain(location);
+            List<Reservation> reservations = fold(chain, path);
+            Operation.recordRows(reservations.size());
+            if (event != null && event.shouldCommit()) {
+                event.hostId = hostId;
+                event.bytes = chain.stream().mapToLong(ByteBuffer::capacity).sum();
+                event.rows = reservations.size();
+                event.commit();
+            }
+            return reservations;
+        } catch (IOException ex) {
+            throw new DataException("Could not read the reservations of " + hostId + " from " + path, ex);
+        }
+    }
+
+    /**
+     * Returns a host's cached reservations, reading its block on
+     * a miss. Callers must hold the host's read or write lock
+     *
+     * @param hostId    the id of the host
+     * @return          the host's interval index
+     * @throws DataException if the host's block cannot be read
+     */
+    private ReservationIntervalIndex indexFor(String hostId) throws DataException {
+        open();
+        ReservationIntervalIndex index = indexes.get(hostId, cached -> true);
+        if (index == null) {
+            index = new ReservationIntervalIndex(readHost(hostId));
+            indexes.put(hostId, index);
+        }
+        return index;
+    }
+
+    private static long weigh(ReservationIntervalIndex index) {
+        return HOST_ENTRY_BYTES + index.size() * RESERVATION_BYTES;
+    }
+
+    /**
+     * Appends a block to the newest segment, sealing it first if the
+     * block would take it past the size limit, and records the block's
+     * location. Callers must hold the host's write lock, and should
+     * await the returned write after releasing it
+     *
+     * @param hostId    the id of the host
+     * @param block     the host's block
+     * @param previous  the block a delta is written on top of, or null for a full block
+     * @return          the pending write
+     * @throws DataException if the block or its index record cannot be written
+     */
+    private synchronized PendingWrite append(String hostId, byte[] block, SegmentIndex.Location previous)
+            throws DataException {
+        ReservationFileWriteEvent event = ReservationFileWriteEvent.start();
+        if (activeSize > 0 && activeSize + block.length > segmentBytes) {
+            writer.close(segmentPath(activeSegment));
+            activeSegment++;
+            activeSize = 0;
+            scheduleCompaction();
+        }
+        Path path = segmentPath(activeSegment);
+        if (activeSize == 0) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException ex) {
+                throw new DataException("Could not create " + directory, ex);
+            }
+        }
+        DurableFileWriter.Commit blockCommit;
+        try {
+            blockCommit = writer.append(path, block);
+        } catch (DataException ex) {
+            //Later blocks must be recorded where they really land
+            activeSize = sizeOf(activeSegment);
+            throw ex;
+        }
+        SegmentIndex.Location location = previous == null
+                ? new SegmentIndex.Location(activeSegment, activeSize, block.length)
+                : new SegmentIndex.Location(activeSegment, activeSize, block.length,
+                        previous.getOldestSegment(), previous.getDeltas() + 1);
+        activeSize += block.length;
+        DurableFileWriter.Commit indexCommit = segmentIndex.put(hostId, location);
+        if (event != null && event.shouldCommit()) {
+            event.hostId = hostId;
+            event.file = ReservationFileWriteEvent.SEGMENT;
+            event.bytes = block.length;
+            event.commit();
+        }
+        return new PendingWrite(blockCommit, indexCommit);
+    }
+
+    /**
+     * Writes a host's reservations as a new full block.
+     * Callers must hold the host's write lock
+     *
+     * @param hostId        the id of the host
+     * @param reservations  every reservation the host will have
+     * @return              the pending write
+     * @throws DataException
+     */
+    private PendingWrite writeHost(String hostId, List<Reservation> reservations) throws DataException {
+        return append(hostId, SegmentBlock.full(hostId, reservations), null);
+    }
+
+    /**
+     * Writes one change to a host. The change is appended as a delta
+     * on top of the host's latest block, unless the host has no block
+     * yet, its chain is full, or its whole block would be no larger,
+     * in which case the whole block is written with the change applied.
+     * Callers must hold the host's write lock and change the index
+     * only once the write is made
+     *
+     * @param hostId        the id of the host
+     * @param index         the host's reservations before the change
+     * @param put           the reservation added or changed, or null to remove one
+     * @param removedId     the id of the reservation removed when put is null
+     * @return              the pending write
+     * @throws DataException
+     */
+    private PendingWrite writeChange(String hostId, ReservationIntervalIndex index, Reservation put, int removedId)
+            throws DataException {
+        int changedId = put == null ? removedId : put.getId();
+        int rows = index.size() + (put == null ? -1 : index.get(changedId) == null ? 1 : 0);
+        SegmentIndex.Location latest = segmentIndex.get(hostId);
+        if (latest != null && latest.getDeltas() < MAX_DELTAS
+                && SegmentBlock.deltaSize(hostId, put != null) < SegmentBlock.fullSize(hostId, rows)) {
+            byte[] delta = put == null
+                    ? SegmentBlock.remove(hostId, latest, removedId)
+                    : SegmentBlock.put(hostId, latest, put);
+            return append(hostId, delta, latest);
+        }
+        List<Reservation> reservations = index.values();
+        reservations.removeIf(current -> current.getId() == changedId);
+        if (put != null) {
+            reservations.add(put);
+        }
+        return writeHost(hostId, reservations);
+    }
+
+    /**
+     * A block and its index record that may not be on disk yet
+     */
+    private static final class PendingWrite {
+        private final DurableFileWriter.Commit block;
+        private final DurableFileWriter.Commit index;
+
+        private PendingWrite(DurableFileWriter.Commit block, DurableFileWriter.Commit index) {
+            this.block = block;
+            this.index = index;
+        }
+
+        private void await() throws DataException {
+            block.await();
+            index.await();
+        }
+    }
+
+    //Compaction
+
+    private void scheduleCompaction() {
+        if (compactionPending.compareAndSet(false, true)) {
+            compactor().execute(() -> {
+                compactionPending.set(false);
+                try {
+                    compact();
+                } catch (DataException ex) {
+                    // the segments are kept and compaction is retried when the next one is sealed
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the single background thread that compacts segments
+     *
+     * @return  the compaction executor
+     */
+    private synchronized ExecutorService compactor() {
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "segment-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return compactor;
+    }
+
+    /**
+     * Copies the live blocks of every sealed segment that is at
+     * least half superseded blocks to the newest segment, then
+     * deletes the old segment. A host whose chain of deltas reaches
+     * into the segment is folded into a new full block instead. Each
+     * host is moved under its write lock, and a segment is only deleted
+     * once the index records of every moved block are on disk
+     *
+     * @return  the number of segments deleted
+     * @throws DataException if a block cannot be moved or a segment deleted
+     */
+    public int compact() throws DataException {
+        return METRICS.time("SegmentedReservationRepository.compact", () -> {
+            open();
+            int sealed;
+            synchronized (this) {
+                sealed = activeSegment;
+            }
+            Map<String, SegmentIndex.Location> locations = segmentIndex.snapshot();
+            Map<Integer, Long> liveBytes = new HashMap<>();
+            for (SegmentIndex.Location location : locations.values()) {
+                liveBytes.merge(location.getSegment(), (long) location.getLength(), Long::sum);
+            }
+
+            int deleted = 0;
+            for (int segment : listSegments()) {
+                long size = sizeOf(segment);
+                //A size of 0 means another compaction has just deleted it
+                if (segment >= sealed || size == 0 || liveBytes.getOrDefault(segment, 0L) * 2 > size) {
+                    continue;
+                }
+                List<PendingWrite> writes = new ArrayList<>();
+                for (Map.Entry<String, SegmentIndex.Location> entry : locations.entrySet()) {
+                    if (entry.getValue().reaches(segment)) {
+                        PendingWrite write = move(entry.getKey(), segment);
+                        if (write != null) {
+                            writes.add(write);
+                        }
+                    }
+                }
+                for (PendingWrite write : writes) {
+                    write.await();
+                }
+                Path path = segmentPath(segment);
+                Lock lock = segmentsLock.writeLock();
+                lock.lock();
+                try {
+                    writer.close(path);
+                    Files.deleteIfExists(path);
+                } catch (IOException ex) {
+                    throw new DataException("Could not delete " + path, ex);
+                } finally {
+                    lock.unlock();
+                }
+                deleted++;
+            }
+            segmentIndex.rewriteIfStale();
+            return deleted;
+        });
+    }
+
+    /**
+     * Moves a host out of a segment, copying its full block unchanged
+     * or folding its chain of deltas into a new full block
+     *
+     * @param hostId    the id of the host
+     * @param segment   the segment being emptied
+     * @return          the pending write, or null if the host has since moved
+     * @throws DataException if the blocks cannot be read or written
+     */
+    private PendingWrite move(String hostId, int segment) throws DataException {
+        Lock lock = hostLocks.forHost(hostId).writeLock();
+        lock.lock();
+        try {
+            SegmentIndex.Location location = segmentIndex.get(hostId);
+            if (location == null || !location.reaches(segment)) {
+                return null;
+            }
+            List<ByteBuffer> chain = readChain(location);
+            if (chain.size() == 1) {
+                return append(hostId, chain.get(0).array(), null);
+            }
+            return writeHost(hostId, fold(chain, segmentPath(location.getSegment())));
+        } catch (IOException ex) {
+            throw new DataException("Could not move the reservations of " + hostId, ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Scans
+
+    /**
+     * Passes every host's reservations to a visitor. The live
+     * blocks of each segment are visited in file order from a single
+     * read of the segment, and chains of deltas are folded from the
+     * segments already read, so a scan opens each segment once
+     *
+     * @param visitor   receives each host id with its reservations
+     * @return          the number of hosts visited
+     * @throws DataException if a segment cannot be read
+     */
+    public int scan(BiConsumer<String, List<Reservation>> visitor) throws DataException {
+        return METRICS.time("SegmentedReservationRepository.scan", () -> {
+            open();
+            Lock lock = segmentsLock.readLock();
+            lock.lock();
+            try {
+                Map<Integer, List<Map.Entry<String, SegmentIndex.Location>>> bySegment = new TreeMap<>();
+                for (Map.Entry<String, SegmentIndex.Location> entry : segmentIndex.snapshot().entrySet()) {
+                    bySegment.computeIfAbsent(entry.getValue().getSegment(), segment -> new ArrayList<>()).add(entry);
+                }
+                int hosts = 0;
+                Map<Integer, ByteBuffer> contents = new HashMap<>();
+                for (Map.Entry<Integer, List<Map.Entry<String, SegmentIndex.Location>>> segment : bySegment.entrySet()) {
+                    Path path = segmentPath(segment.getKey());
+                    List<Map.Entry<String, SegmentIndex.Location>> blocks = segment.getValue();
+                    blocks.sort(Comparator.comparingLong(entry -> entry.getValue().getOffset()));
+                    for (Map.Entry<String, SegmentIndex.Location> entry : blocks) {
+                        List<ByteBuffer> chain = new ArrayList<>();
+                        SegmentIndex.Location location = entry.getValue();
+                        while (location != null && chain.size() <= MAX_DELTAS) {
+                            ByteBuffer content = contents.get(location.getSegment());
+                            if (content == null) {
+                                content = FileAccess.read(segmentPath(location.getSegment()),
+                                        MappedCsvReader.MAP_THRESHOLD_BYTES);
+                                contents.put(location.getSegment(), content);
+                            }
+                            ByteBuffer block = content.duplicate();
+                            block.position((int) location.getOffset()).limit((int) location.getEnd());
+                            block = block.slice();
+                            chain.add(block);
+                            location = SegmentBlock.isDelta(block) ? SegmentBlock.previous(block) : null;
+                        }
+                        List<Reservation> reservations = fold(chain, path);
+                        Operation.recordRows(reservations.size());
+                        visitor.accept(entry.getKey(), reservations);
+                        hosts++;
+                    }
+                }
+                return hosts;
+            } catch (IOException ex) {
+                throw new DataException("Could not scan the segments in " + directory, ex);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Copies every host of a one-file-per-host directory into the
+     * segments, replacing any block the hosts already have. Forces are
+     * batched until the end, so nothing else should write meanwhile.
+     * Segments have no archive, so a directory whose past stays were
+     * archived is refused rather than losing them
+     *
+     * @param source    the repository to copy from
+     * @return          the number of hosts copied
+     * @throws DataException if the source has archived stays, or a host cannot be read in full or written
+     */
+    public int importFrom(ReservationFileRepository source) throws DataException {
+        return METRICS.time("SegmentedReservationRepository.importFrom", () -> {
+            if (source.hasArchivedStays()) {
+                throw new DataException("The reservations have archived stays, which segments cannot hold");
+            }
+            open();
+            int imported = 0;
+            writer.configure(DurabilityMode.NONE, groupCommitMillis);
+            try {
+                for (String hostId : source.findHostIds()) {
+                    requireHostId(hostId);
+                    List<Reservation> reservations = source.readHost(hostId);
+                    Lock lock = hostLocks.forHost(hostId).writeLock();
+                    lock.lock();
+                    try {
+                        writeHost(hostId, reservations);
+                        if (indexes.peek(hostId) != null) {
+                            indexes.put(hostId, new ReservationIntervalIndex(reservations));
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    imported++;
+                }
+            } finally {
+                //Closing the channels forces everything written so far
+                synchronized (this) {
+                    writer.close(segmentPath(activeSegment));
+                }
+                writer.close(directory.resolve(SegmentIndex.FILE_NAME));
+                writer.configure(durabilityMode, groupCommitMillis);
+            }
+            return imported;
+        });
+    }
+
+    //Host ids
+
+    /**
+     * Returns whether a host id can be stored in a block and
+     * in the segment index
+     *
+     * @param hostId    the id of the host
+     * @return          whether the id can be stored
+     */
+    private boolean isValidHostId(String hostId) {
+        return hostId != null && !hostId.isBlank() && hostId.length() <= MAX_HOST_ID_LENGTH
+                && hostId.indexOf('\n') < 0 && hostId.indexOf('\r') < 0;
+    }
+
+    /**
+     * Returns a host id after checking that it can be stored
+     *
+     * @param hostId    the id of the host
+     * @return          the checked host id
+     * @throws DataException
+     */
+    private String requireHostId(String hostId) throws DataException {
+        if (!isValidHostId(hostId)) {
+            throw new DataException("A valid host id is required to write reservations");
+        }
+        return hostId;
+    }
+
+    //Reads
+
+    /**
+     * Returns the reservation with an id from a host's block,
+     * or null if the host has no reservation with the id
+     *
+     * @param hostId    the id of the host whose reservations are searched
+     * @param id        the targeted reservation id
+     * @return          the reservation with a selected id
+     */
+    @Override
+    public Reservation findById(String hostId, int id) {
+        return METRICS.time("SegmentedReservationRepository.findById", () -> {
+            if (!isValidHostId(hostId)) {
+                return null;
+            }
+            Lock lock = hostLocks.forHost(hostId).readLock();
+            lock.lock();
+            try {
+                Reservation reservation = indexFor(hostId).get(id);
+                return reservation == null ? null : copy(reservation);
+            } catch (DataException ex) {
+                // don't throw on read
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Returns a host's reservations made by one guest
+     *
+     * @param hostId        the id of the host whose reservations are searched
+     * @param guestId       the id of the guest to find
+     * @return              a list of filtered reservation objects
+     */
+    @Override
+    public List<Reservation> findAllByGuestId(String hostId, int guestId) {
+        return METRICS.time("SegmentedReservationRepository.findAllByGuestId", () -> {
+            return findAll(hostId).stream()
+                    .filter(i -> i.getGuest().getId() == guestId)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * Returns every reservation a guest has made with any host
+     * by scanning the segments. Each reservation's host holds
+     * only the host id
+     *
+     * @param guestId       the id of the guest to find
+     * @return              a list of the guest's reservation objects
+     */
+    @Override
+    public List<Reservation> findAllForGuest(int guestId) {
+        return METRICS.time("SegmentedReservationRepository.findAllForGuest", () -> {
+            List<Reservation> result = new ArrayList<>();
+            try {
+                scan((hostId, reservations) -> {
+                    for (Reservation reservation : reservations) {
+                        if (reservation.getGuest().getId() == guestId) {
+                            Host host = new Host();
+                            host.setId(hostId);
+                            reservation.setHost(host);
+                            result.add(reservation);
+                        }
+                    }
+                });
+            } catch (DataException ex) {
+                // don't throw on read
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Returns every reservation of a host
+     *
+     * @param hostId    the id of the host
+     * @return          list of reservation objects
+     */
+    @Override
+    public List<Reservation> findAll(String hostId) {
+        return METRICS.time("SegmentedReservationRepository.findAll", () -> {
+            List<Reservation> result = new ArrayList<>();
+            if (!isValidHostId(hostId)) {
+                return result;
+            }
+            Lock lock = hostLocks.forHost(hostId).readLock();
+            lock.lock();
+            try {
+                for (Reservation reservation : indexFor(hostId).values()) {
+                    result.add(copy(reservation));
+                }
+            } catch (DataException ex) {
+                // don't throw on read
+            } finally {
+                lock.unlock();
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Returns the reservations of a host that share at least one
+     * day with a date range, both ends included
+     *
+     * @param hostId        the id of the host whose reservations are searched
+     * @param startDate     the first day of the range
+     * @param endDate       the last day of the range
+     * @return              a list of overlapping reservation objects
+     */
+    @Override
+    public List<Reservation> findOverlapping(String hostId, LocalDate startDate, LocalDate endDate) {
+        return METRICS.time("SegmentedReservationRepository.findOverlapping", () -> {
+            List<Reservation> result = new ArrayList<>();
+            if (!isValidHostId(hostId) || startDate == null || endDate == null) {
+                return result;
+            }
+            Lock lock = hostLocks.forHost(hostId).readLock();
+            lock.lock();
+            try {
+                for (Reservation reservation : indexFor(hostId)
+                        .findOverlapping(startDate.toEpochDay(), endDate.toEpochDay())) {
+                    result.add(copy(reservation));
+                }
+            } catch (DataException ex) {
+                // don't throw on read
+            } finally {
+                lock.unlock();
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Returns whether a host has no reservation sharing
+     * a day with a date range, both ends included
+     *
+     * @param hostId        the id of the host
+     * @param startDate     the first day of the range
+     * @param endDate       the last day of the range
+     * @return              whether the range is free
+     */
+    @Override
+    public boolean isAvailable(String hostId, LocalDate startDate, LocalDate endDate) {
+        return METRICS.time("SegmentedReservationRepository.isAvailable", () -> {
+            if (!isValidHostId(hostId) || startDate == null || endDate == null) {
+                return false;
+            }
+            Lock lock = hostLocks.forHost(hostId).readLock();
+            lock.lock();
+            try {
+                return indexFor(hostId).findOverlapping(startDate.toEpochDay(), endDate.toEpochDay()).isEmpty();
+            } catch (DataException ex) {
+                // don't throw on read
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    //Writes
+
+    /**
+     * Replaces a reservation by appending a change to the host's blocks
+     *
+     * @param hostId       the id of the host the reservation belongs to
+     * @param reservation  the reservation object to update
+     * @return             whether the reservation updated
+     * @throws DataException
+     */
+    @Override
+    public boolean update(String hostId, Reservation reservation) throws DataException {
+        return METRICS.time("SegmentedReservationRepository.update", () -> {
+            if (reservation == null) {
+                return false;
+            }
+            requireHostId(hostId);
+            PendingWrite write = null;
+            Lock lock = hostLocks.forHost(hostId).writeLock();
+            lock.lock();
+            try {
+                ReservationIntervalIndex index = indexFor(hostId);
+                if (index.get(reservation.getId()) != null) {
+                    Reservation stored = copy(reservation);
+                    write = writeChange(hostId, index, stored, stored.getId());
+                    index.put(stored);
+                    indexes.reweigh(hostId);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (write == null) {
+                return false;
+            }
+            write.await();
+            return true;
+        });
+    }
+
+    /**
+     * Removes a reservation by appending a change to the host's blocks
+     *
+     * @param hostId         the id of the host the reservation belongs to
+     * @param reservationId  the id of the reservation to remove
+     * @return               whether the reservation was removed
+     * @throws DataException
+     */
+    @Override
+    public boolean delete(String hostId, int reservationId) throws DataException {
+        return METRICS.time("SegmentedReservationRepository.delete", () -> {
+            requireHostId(hostId);
+            PendingWrite write = null;
+            Lock lock = hostLocks.forHost(hostId).writeLock();
+            lock.lock();
+            try {
+                ReservationIntervalIndex index = indexFor(hostId);
+                if (index.get(reservationId) != null) {
+                    write = writeChange(hostId, index, null, reservationId);
+                    index.remove(reservationId);
+                    indexes.reweigh(hostId);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (write == null) {
+                return false;
+            }
+            write.await();
+            return true;
+        });
+    }
+
+    /**
+     * Adds a reservation with the host's next id by appending
+     * a change to the host's blocks
+     *
+     * @param hostId            the id of the host the reservation belongs to
+     * @param reservation       the reservation object to add
+     * @return                  the reservation object added
+     * @throws DataException
+     */
+    @Override
+    public Reservation add(String hostId, Reservation reservation) throws DataException {
+        return METRICS.time("SegmentedReservationRepository.add", () -> {
+            requireHostId(hostId);
+            //Checked before an id is taken so a rejected total leaves nothing behind
+            ColumnarSnapshot.requireEncodable(reservation);
+            PendingWrite write;
+            Lock lock = hostLocks.forHost(hostId).writeLock();
+            lock.lock();
+            try {
+                ReservationIntervalIndex index = indexFor(hostId);
+                reservation.setId(index.nextId());
+                Reservation stored = copy(reservation);
+                write = writeChange(hostId, index, stored, stored.getId());
+                index.put(stored);
+                indexes.reweigh(hostId);
+            } finally {
+                lock.unlock();
+            }
+            write.await();
+            return reservation;
+        });
+    }
+
+    /**
+     * Runs work under a host's write lock
+     *
+     * @param hostId    the id of the host
+     * @param section   the work to run
+     * @return          the result of the work
+     * @throws DataException if the host id is not valid or the work fails
+     */
+    @Override
+    public <T> T withHostWriteLock(String hostId, HostWriteSection<T> section) throws DataException {
+        requireHostId(hostId);
+        Lock lock = hostLocks.forHost(hostId).writeLock();
+        lock.lock();
+        try {
+            return section.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of a reservation holding the fields the
+     * repository stores, so the cache never shares objects
+     * with callers
+     *
+     * @param reservation  the reservation to copy
+     * @return             the copied reservation
+     */
+    private Reservation copy(Reservation reservation) {
+        Reservation result = new Reservation();
+        result.setId(reservation.getId());
+        result.setStartDate(reservation.getStartDate());
+        result.setEndDate(reservation.getEndDate());
+        Guest guest = new Guest();
+        guest.setId(reservation.getGuest().getId());
+        result.setGuest(guest);
+        result.setcostOfStay(reservation.getcostOfStay());
+        return result;
+    }
+}
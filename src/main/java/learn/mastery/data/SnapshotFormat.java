@@ -0,0 +1,33 @@
+package learn.mastery.data;
+
+/**
+ * The layout of the snapshot file that holds a host's
+ * reservations. Journals are text in either format.
+ */
+public enum SnapshotFormat {
+    /**
+     * One comma separated line per reservation, in a .csv file.
+     * Readable by hand and by other tools.
+     */
+    CSV(".csv"),
+    /**
+     * Packed binary columns with a checksum, in a .rsv file.
+     * Smaller on disk and loaded without parsing any text.
+     */
+    COLUMNAR(".rsv");
+
+    private final String extension;
+
+    SnapshotFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Returns the file extension of snapshots in this format
+     *
+     * @return  the extension, including the dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,72 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Reservation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Moves the host snapshots of a file repository from one
+ * format to another, folding each host's journal into the
+ * new snapshot.
+ */
+public class SnapshotFormatConverter {
+
+    private final ReservationFileRepository repository;
+
+    /**
+     * Class constructor.
+     *
+     * @param repository    the repository whose snapshots are converted
+     */
+    public SnapshotFormatConverter(ReservationFileRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Rewrites every host's snapshot in another format, deletes the
+     * old snapshot and switches the repository to the new format.
+     * Each host is rewritten under its write lock, and the new snapshot
+     * is in place before the old one is removed, so an interrupted
+     * conversion can simply be run again
+     *
+     * @param target    the format to convert to
+     * @return          the number of hosts converted
+     * @throws DataException if a snapshot cannot be read in full or written
+     */
+    public int convert(SnapshotFormat target) throws DataException {
+        HostFiles files = repository.hostFiles();
+        int converted = 0;
+        for (String hostId : files.listHostIds()) {
+            Lock lock = repository.hostWriteLock(hostId);
+            lock.lock();
+            try {
+                for (SnapshotFormat source : SnapshotFormat.values()) {
+                    Path from = files.snapshotPath(hostId, source);
+                    if (source == target || !Files.exists(from)) {
+                        continue;
+                    }
+                    List<String> errors = new ArrayList<>();
+                    List<Reservation> reservations = files.read(hostId, source, errors);
+                    if (!errors.isEmpty()) {
+                        throw new DataException("Could not convert " + from + ": " + String.join("; ", errors));
+                    }
+                    files.writeSnapshot(hostId, target, reservations);
+                    files.journal(hostId).clear();
+                    Files.delete(from);
+                    converted++;
+                }
+            } catch (IOException ex) {
+                throw new DataException("Could not convert the snapshot of " + hostId, ex);
+            } finally {
+                lock.unlock();
+            }
+        }
+        repository.setSnapshotFormat(target);
+        return converted;
+    }
+}
@@ -0,0 +1,186 @@
+package learn.mastery.data;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A least recently used cache bounded by the estimated memory of
+ * its values rather than by how many it holds. Each value is weighed
+ * when it is stored, and the least recently used values are evicted
+ * until the total fits the capacity again. The most recent value is
+ * always kept, even when it alone is over the capacity.
+ *
+ * @param <K>   the key type
+ * @param <V>   the value type
+ */
+final class WeightedLruCache<K, V> {
+
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<K, Weighted<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long capacity;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static final class Weighted<V> {
+        private final V value;
+        private long weight;
+
+        private Weighted(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param capacity  the total weight the cache may hold
+     * @param weigher   estimates the memory held by a value in bytes
+     */
+    WeightedLruCache(long capacity, ToLongFunction<V> weigher) {
+        this.capacity = capacity;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the value of a key if it is still valid and marks it
+     * as recently used. An invalid value is dropped and counted as a miss
+     *
+     * @param key   the key to look up
+     * @param valid whether a cached value may still be used
+     * @return      the cached value, or null if there is no valid one
+     */
+    synchronized V get(K key, Predicate<V> valid) {
+        Weighted<V> entry = entries.get(key);
+        if (entry != null && !valid.test(entry.value)) {
+            entries.remove(key);
+            weight -= entry.weight;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Returns the value of a key without counting the
+     * lookup or changing the order of use
+     *
+     * @param key   the key to look up
+     * @return      the cached value, or null if there is none
+     */
+    synchronized V peek(K key) {
+        Weighted<V> entry = entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Returns the keys currently held, least recently used first
+     *
+     * @return  a copy of the keys
+     */
+    synchronized List<K> keys() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * Stores a value, replacing any value with the same key,
+     * and evicts the least recently used values that no longer fit
+     *
+     * @param key   the key of the value
+     * @param value the value to store
+     */
+    synchronized void put(K key, V value) {
+        Weighted<V> previous = entries.put(key, new Weighted<>(value, weigher.applyAsLong(value)));
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += entries.get(key).weight;
+        evict();
+    }
+
+    /**
+     * Stores a value only if it fits in the capacity left, replacing
+     * any value with the same key. Nothing is evicted to make room
+     *
+     * @param key   the key of the value
+     * @param value the value to store
+     * @return      whether the value was stored
+     */
+    synchronized boolean putIfFits(K key, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+        Weighted<V> previous = entries.get(key);
+        long freed = previous == null ? 0 : previous.weight;
+        if (weight - freed + valueWeight > capacity) {
+            return false;
+        }
+        entries.put(key, new Weighted<>(value, valueWeight));
+        weight += valueWeight - freed;
+        return true;
+    }
+
+    /**
+     * Weighs a key's value again after it was changed in place
+     *
+     * @param key   the key of the changed value
+     */
+    synchronized void reweigh(K key) {
+        Weighted<V> entry = entries.get(key);
+        if (entry != null) {
+            long updated = weigher.applyAsLong(entry.value);
+            weight += updated - entry.weight;
+            entry.weight = updated;
+            evict();
+        }
+    }
+
+    /**
+     * Changes the total weight the cache may hold,
+     * evicting values that no longer fit
+     *
+     * @param capacity  the new capacity
+     */
+    synchronized void setCapacity(long capacity) {
+        this.capacity = capacity;
+        evict();
+    }
+
+    /**
+     * Drops every value without counting them as evictions,
+     * keeping the hit and miss counters
+     */
+    synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Returns the cache's counters and current size
+     *
+     * @return  a snapshot of the cache's statistics
+     */
+    synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, evictions, entries.size(), weight, capacity);
+    }
+
+    //Drops least recently used entries, keeping at least the newest one
+    private void evict() {
+        Iterator<Map.Entry<K, Weighted<V>>> eldest = entries.entrySet().iterator();
+        while (weight > capacity && entries.size() > 1) {
+            Map.Entry<K, Weighted<V>> entry = eldest.next();
+            weight -= entry.getValue().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+}
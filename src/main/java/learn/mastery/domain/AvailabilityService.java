@@ -0,0 +1,79 @@
+package learn.mastery.domain;
+
+import learn.mastery.data.HostRepository;
+import learn.mastery.data.ReservationRepository;
+import learn.mastery.models.Host;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+public class AvailabilityService {
+
+    private final HostRepository hostRepository;
+    private final ReservationRepository reservationRepository;
+
+    /**
+     * Class constructor.
+     */
+    public AvailabilityService(HostRepository hostRepository, ReservationRepository reservationRepository) {
+        this.hostRepository = hostRepository;
+        this.reservationRepository = reservationRepository;
+    }
+
+    //Search
+    /**
+     * Returns every host that has no reservation on any day
+     * of a date range, optionally limited to a state and city.
+     * Hosts are checked in parallel, and each check is answered
+     * from the host's availability index once its file has been read
+     *
+     * @param startDate     the first day of the stay
+     * @param endDate       the last day of the stay
+     * @param state         the state abbreviation to match, or null/blank for any state
+     * @param city          the city to match, or null/blank for any city
+     * @return              the available hosts sorted by state, city and last name,
+     *                      or the list of error messages
+     */
+    public Result<List<Host>> findAvailableHosts(LocalDate startDate, LocalDate endDate, String state, String city) {
+        Result<List<Host>> result = new Result<>();
+
+        //Dates
+        if (startDate == null || endDate == null) {
+            result.addErrorMessage("Valid start and end dates are required");
+            return result;
+        }
+        if (!startDate.isBefore(endDate)) {
+            result.addErrorMessage("Start date must come before the end date.");
+            return result;
+        }
+
+        List<Host> available = hostRepository.findAll().parallelStream()
+                .filter(host -> matches(host.getState(), state) && matches(host.getCity(), city))
+                .filter(host -> reservationRepository.isAvailable(host.getId(), startDate, endDate))
+                .sorted(Comparator.comparing(Host::getState, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                        .thenComparing(Host::getCity, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                        .thenComparing(Host::getLastName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)))
+                .collect(Collectors.toList());
+        result.setPayload(available);
+        return result;
+    }
+
+    /**
+     * Returns whether a host field matches an optional filter,
+     * ignoring case and surrounding whitespace
+     *
+     * @param value     the host's value
+     * @param filter    the value searched for, or null/blank to match anything
+     * @return          whether the value passes the filter
+     */
+    private boolean matches(String value, String filter) {
+        if (filter == null || filter.isBlank()) {
+            return true;
+        }
+        return value != null && value.trim().equalsIgnoreCase(filter.trim());
+    }
+}
@@ -4,6 +4,9 @@ import learn.mastery.data.GuestRepository;
 import learn.mastery.models.Guest;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Map;
+
 @Service
 public class GuestService {
 
@@ -51,10 +54,19 @@ public class GuestService {
      * @return null or the targeted guest with matching guestID string
      */
     public Guest findGuestByGuestID(int guestID){
-        return repository.findAll().stream()
-                .filter(i -> i.getId() == guestID )
-                .findFirst()
-                .orElse(null);
+        return repository.findById(guestID);
+    }
+
+    //pass find ids
+    /**
+     * Returns the guests matching a collection of ids, keyed
+     * by id. Ids with no matching guest are left out of the map
+     *
+     * @param guestIDs  the guest ids to resolve
+     * @return          a map of guest id to guest
+     */
+    public Map<Integer, Guest> findGuestsByGuestIDs(Collection<Integer> guestIDs){
+        return repository.findByIds(guestIDs);
     }
 
     //pass find email
@@ -67,10 +79,10 @@ public class GuestService {
      * @return              null or the targeted guest with matching email string
      */
     public Guest findGuestByEmail(String guestEmail){
-        return repository.findAll().stream()
-                .filter(i -> i.getEmail().toLowerCase().trim().equalsIgnoreCase(guestEmail) )
-                .findFirst()
-                .orElse(null);
+        if (guestEmail == null) {
+            return null;
+        }
+        return repository.findByEmail(guestEmail.trim());
     }
 
     //Validate
@@ -52,10 +52,7 @@ public class HostService {
      * @return null or the targeted host with matching hostID string
      */
     public Host findHostByHostId(String hostID){
-        return repository.findAll().stream()
-                .filter(i -> i.getId().equals(hostID) )
-                .findFirst()
-                .orElse(null);
+        return repository.findById(hostID);
     }
 
     //Find by email
@@ -68,10 +65,10 @@ public class HostService {
      * @return          null or the targeted host with matching email string
      */
     public Host findHostByEmail(String email){
-        return repository.findAll().stream()
-                .filter(i -> i.getEmail().toLowerCase().trim().equalsIgnoreCase(email) )
-                .findFirst()
-                .orElse(null);
+        if (email == null) {
+            return null;
+        }
+        return repository.findByEmail(email.trim());
     }
 
 
@@ -2,7 +2,9 @@ package learn.mastery.domain;
 
 import learn.mastery.data.DataException;
 import learn.mastery.data.GuestRepository;
+import learn.mastery.data.HostWriteSection;
 import learn.mastery.data.ReservationRepository;
+import learn.mastery.metrics.MetricsRegistry;
 import learn.mastery.models.Guest;
 import learn.mastery.models.Host;
 import learn.mastery.models.Reservation;
@@ -12,10 +14,15 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 public class ReservationService {
 
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    //Error message of a reservation whose dates are taken, matched by callers that tell conflicts apart
+    public static final String OVERLAP_MESSAGE = "Dates cannot Overlap";
+
     private final GuestRepository guestRepository;
     private final ReservationRepository reservationRepository;
 
@@ -38,16 +45,46 @@ public class ReservationService {
      */
     //Creates a list of reservations under a specific host
     public List<Reservation> findAllReservationsForHost(Host host) {
-        List<Reservation> hostReservations = new ArrayList<>();
-        //Check for Host
-        if (host != null) {
-            //check for reservations
-            reservationRepository.setHost(host);
-            hostReservations = reservationRepository.findAll().stream()
-                    .sorted(Comparator.comparing(Reservation::getStartDate))
-                    .toList();
-        }
-        return hostReservations;
+        return METRICS.time("ReservationService.findAllReservationsForHost", () -> {
+            List<Reservation> hostReservations = new ArrayList<>();
+            //Check for Host
+            if (host != null) {
+                //check for reservations
+                hostReservations = reservationRepository.findAll(host.getId()).stream()
+                        .sorted(Comparator.comparing(Reservation::getStartDate))
+                        .map(reservation -> {
+                            //Remember which host the reservation is stored under
+                            reservation.setHost(host);
+                            return reservation;
+                        })
+                        .toList();
+            }
+            return hostReservations;
+        });
+    }
+
+    /**
+     * Returns every reservation of a host sorted by start date,
+     * including the stays that were archived once they were over
+     *
+     * @param host  the host whose reservations are wanted
+     * @return      a list of reservation objects
+     */
+    public List<Reservation> findReservationHistoryForHost(Host host) {
+        return METRICS.time("ReservationService.findReservationHistoryForHost", () -> {
+            List<Reservation> history = new ArrayList<>();
+            if (host != null) {
+                history = Stream.concat(reservationRepository.findArchived(host.getId()).stream(),
+                                reservationRepository.findAll(host.getId()).stream())
+                        .sorted(Comparator.comparing(Reservation::getStartDate))
+                        .map(reservation -> {
+                            reservation.setHost(host);
+                            return reservation;
+                        })
+                        .toList();
+            }
+            return history;
+        });
     }
 
     /**
@@ -60,15 +97,17 @@ public class ReservationService {
      */
     //Returns a single reservation from a list of reservations based on a target id
     public Reservation findReservationById(List<Reservation> reservations, int targetId) {
-        Reservation targetReservations = new Reservation();
-        if (reservations != null) {
-            //check for reservations after no
-            targetReservations = reservations.stream()
-                    .filter(reservation -> reservation.getId() == targetId)
-                    .findFirst()
-                    .orElse(null);
-        }
-        return targetReservations;
+        return METRICS.time("ReservationService.findReservationById", () -> {
+            Reservation targetReservations = new Reservation();
+            if (reservations != null) {
+                //check for reservations after no
+                targetReservations = reservations.stream()
+                        .filter(reservation -> reservation.getId() == targetId)
+                        .findFirst()
+                        .orElse(null);
+            }
+            return targetReservations;
+        });
     }
 
     //Filters a list of reservations that occur after the current date
@@ -81,14 +120,16 @@ public class ReservationService {
      * @return              a list of filtered reservation objects
      */
     public List<Reservation> filterUpcomingReservations(List<Reservation> reservations) {
-        List<Reservation> upcomingReservations = new ArrayList<>();
-        if (reservations != null) {
-            //check for reservations after no
-            upcomingReservations = reservations.stream()
-                    .filter(reservation -> reservation.getStartDate().isAfter(LocalDate.now()))
-                    .toList();
-        }
-        return upcomingReservations;
+        return METRICS.time("ReservationService.filterUpcomingReservations", () -> {
+            List<Reservation> upcomingReservations = new ArrayList<>();
+            if (reservations != null) {
+                //check for reservations after no
+                upcomingReservations = reservations.stream()
+                        .filter(reservation -> reservation.getStartDate().isAfter(LocalDate.now()))
+                        .toList();
+            }
+            return upcomingReservations;
+        });
     }
 
     //Filters a list of reservations that were made by a specific guest
@@ -102,14 +143,44 @@ public class ReservationService {
      * @return              a list of filtered reservation objects
      */
     public List<Reservation> filterReservationsByGuest(List<Reservation> reservations, Guest guest) {
-        List<Reservation> reservationsMadeByGuest = new ArrayList<>();
-        if (reservations != null && guest != null) {
-            //check for reservations after no
-            reservationsMadeByGuest = reservations.stream()
-                    .filter(reservation -> reservation.getGuest().getEmail().equalsIgnoreCase(guest.getEmail()))
-                    .toList();
-        }
-        return reservationsMadeByGuest;
+        return METRICS.time("ReservationService.filterReservationsByGuest", () -> {
+            List<Reservation> reservationsMadeByGuest = new ArrayList<>();
+            if (reservations != null && guest != null) {
+                //check for reservations after no
+                reservationsMadeByGuest = reservations.stream()
+                        .filter(reservation -> reservation.getGuest().getEmail().equalsIgnoreCase(guest.getEmail()))
+                        .toList();
+            }
+            return reservationsMadeByGuest;
+        });
+    }
+
+
+    //Filters the reservations a guest made with every host
+    /**
+     * Returns every reservation a guest has made with any host,
+     * archived stays included, sorted by start date. Each
+     * reservation's host holds only the host id. Provides an
+     * empty list if none are found
+     *
+     * @param guest     the guest whose history is wanted
+     * @return          a list of the guest's reservation objects
+     */
+    public List<Reservation> findReservationHistoryForGuest(Guest guest) {
+        return METRICS.time("ReservationService.findReservationHistoryForGuest", () -> {
+            List<Reservation> history = new ArrayList<>();
+            if (guest != null) {
+                history = Stream.concat(reservationRepository.findArchivedForGuest(guest.getId()).stream(),
+                                reservationRepository.findAllForGuest(guest.getId()).stream())
+                        .sorted(Comparator.comparing(Reservation::getStartDate))
+                        .map(reservation -> {
+                            reservation.setGuest(guest);
+                            return reservation;
+                        })
+                        .toList();
+            }
+            return history;
+        });
     }
 
 
@@ -123,15 +194,19 @@ public class ReservationService {
      * @throws DataException
      */
     public Result<Reservation> addReservationToFile(Reservation reservation) throws DataException {
-        //Validate again to be safe
-        Result<Reservation> result = validate(reservation);
-        if (!result.isSuccess()) {
-            return result;
-        }
-
-        //set path
-        result.setPayload((reservationRepository.add(reservation)));
-        return result;
+        return METRICS.time("ReservationService.addReservationToFile", () -> {
+            return underHostLock(reservation, () -> {
+                //Validate again to be safe
+                Result<Reservation> result = validate(reservation);
+                if (!result.isSuccess()) {
+                    return result;
+                }
+
+                //set path
+                result.setPayload((reservationRepository.add(reservation.getHost().getId(), reservation)));
+                return result;
+            });
+        });
     }
 
 
@@ -145,18 +220,41 @@ public class ReservationService {
      * @throws DataException
      */
     public Result<Reservation> updateReservation(Reservation reservation) throws DataException {
-        //Validate again to be safe
-        Result<Reservation> result = validate(reservation);
-        if (!result.isSuccess()) {
-            return result;
-        }
+        return METRICS.time("ReservationService.updateReservation", () -> {
+            return underHostLock(reservation, () -> {
+                //Validate again to be safe
+                Result<Reservation> result = validate(reservation);
+                if (!result.isSuccess()) {
+                    return result;
+                }
+
+                //set path
+                boolean canUpdate = (reservationRepository.update(reservation.getHost().getId(), reservation));
+                if(!canUpdate){
+                    result.addErrorMessage(String.format("Reservation %s does not exist", reservation.getId()));
+                }
+                return result;
+            });
+        });
+    }
 
-        //set path
-        boolean canUpdate = (reservationRepository.update(reservation));
-        if(!canUpdate){
-            result.addErrorMessage(String.format("Reservation %s does not exist", reservation.getId()));
+    /**
+     * Validates and writes a reservation under its host's write lock
+     * in the repository, so two bookings of the same host cannot both
+     * pass the overlap check. Reservations with no host fail validation
+     * before writing anything, so they are run without a lock
+     *
+     * @param reservation   the reservation to be written
+     * @param write         the validation and write
+     * @return              the result of the write
+     * @throws DataException
+     */
+    private Result<Reservation> underHostLock(Reservation reservation, HostWriteSection<Result<Reservation>> write)
+            throws DataException {
+        if (reservation == null || reservation.getHost() == null || reservation.getHost().getId() == null) {
+            return write.run();
         }
-        return result;
+        return reservationRepository.withHostWriteLock(reservation.getHost().getId(), write);
     }
 
 
@@ -170,19 +268,53 @@ public class ReservationService {
      * @throws DataException
      */
     public Result<Reservation> deleteReservation(Reservation reservation) throws DataException {
-        //Validate again to be safe
-        Result<Reservation> result = new Result<>();
-        if (reservation == null) {
-            result.addErrorMessage("Reservation does not exist");
+        return METRICS.time("ReservationService.deleteReservation", () -> {
+            //Validate again to be safe
+            Result<Reservation> result = new Result<>();
+            if (reservation == null) {
+                result.addErrorMessage("Reservation does not exist");
+                return result;
+            }
+
+            //set path
+            boolean canDelete = reservation.getHost() != null
+                    && reservationRepository.delete(reservation.getHost().getId(), reservation.getId());
+            if(!canDelete){
+                result.addErrorMessage(String.format("Reservation %s does not exist", reservation.getId()));
+            }
             return result;
-        }
+        });
+    }
 
-        //set path
-        boolean canDelete = (reservationRepository.delete(reservation.getId()));
-        if(!canDelete){
-            result.addErrorMessage(String.format("Reservation %s does not exist", reservation.getId()));
-        }
-        return result;
+
+    /**
+     * Removes every upcoming reservation a guest has made,
+     * across all hosts, and passes each to the data layer
+     * to be removed from file.
+     *
+     * @param guest             the guest whose reservations are cancelled
+     * @return                  the cancelled reservations, or the list of error messages
+     * @throws DataException
+     */
+    public Result<List<Reservation>> cancelUpcomingReservationsForGuest(Guest guest) throws DataException {
+        return METRICS.time("ReservationService.cancelUpcomingReservationsForGuest", () -> {
+            Result<List<Reservation>> result = new Result<>();
+            if (guest == null) {
+                result.addErrorMessage("Guest not found");
+                return result;
+            }
+
+            List<Reservation> cancelled = new ArrayList<>();
+            //Archived stays are over, so only the hosts' current files are searched
+            for (Reservation reservation : filterUpcomingReservations(
+                    reservationRepository.findAllForGuest(guest.getId()))) {
+                if (reservationRepository.delete(reservation.getHost().getId(), reservation.getId())) {
+                    cancelled.add(reservation);
+                }
+            }
+            result.setPayload(cancelled);
+            return result;
+        });
     }
 
 
@@ -196,52 +328,44 @@ public class ReservationService {
      */
     //Public method to pass a  new reservation to validate()
     public Result<Reservation> checkReservation(Reservation reservation) {
-        Result<Reservation> result = validate(reservation);
-        return result;
+        return METRICS.time("ReservationService.checkReservation", () -> {
+            Result<Reservation> result = validate(reservation);
+            return result;
+        });
     }
 
     /**
      * A helper validation method that checks if a reservation's
-     * dates overlap with any preexisting reservation. This method
-     * is used by the main validate method
+     * dates overlap with any preexisting reservation. A free range
+     * is answered by the repository's availability check, and only
+     * otherwise are the reservations in the new date range looked at,
+     * so a stay that falls entirely inside the new one is caught as
+     * well. This method is used by the main validate method
      *
      * @param newReservation    the reservation object to check
      * @return                  a list of potential error messages
      */
     private Result<Reservation> conflictingDateRange(Reservation newReservation) {
         Result<Reservation> result = new Result<>();
-        reservationRepository.setHost(newReservation.getHost());
+
+        //A free range needs no further checks
+        if (reservationRepository.isAvailable(newReservation.getHost().getId(),
+                newReservation.getStartDate(), newReservation.getEndDate())) {
+            return result;
+        }
 
         //Check if there is any overlap between the new reservation and repository selected
-        for (Reservation confirmedReservation : reservationRepository.findAll()) {
-            boolean overlap = areDatesOverlapping(newReservation, confirmedReservation);
-            if (overlap && (confirmedReservation.getId() != newReservation.getId())) {
-                result.addErrorMessage("Dates cannot Overlap");
+        List<Reservation> overlapping = reservationRepository.findOverlapping(newReservation.getHost().getId(),
+                newReservation.getStartDate(), newReservation.getEndDate());
+        for (Reservation confirmedReservation : overlapping) {
+            if (confirmedReservation.getId() != newReservation.getId()) {
+                result.addErrorMessage(OVERLAP_MESSAGE);
                 return result;
             }
         }
         return result;
     }
 
-
-    /**
-     * Returns a boolean that shows if two reservations have overlapping dates.
-     * a helper method used by checkReservation
-     *
-     * @param newReservation        a reservation object
-     * @param confirmedReservation  a preexisting reservation object
-     * @return                      Whether the reservation dates overlap
-     */
-    private boolean areDatesOverlapping(Reservation newReservation, Reservation confirmedReservation) {
-        //Do the dates overlap
-        return ((!newReservation.getStartDate().isBefore(confirmedReservation.getStartDate())) &&
-                (!newReservation.getStartDate().isAfter(confirmedReservation.getEndDate()))
-                ||
-                (!newReservation.getEndDate().isBefore(confirmedReservation.getStartDate())) &&
-                        (!newReservation.getEndDate().isAfter(confirmedReservation.getEndDate()))
-        );
-    }
-
     //Main validation method. checks if a method is valid
 
     /**
@@ -254,14 +378,35 @@ public class ReservationService {
      * @return             the list of error messages
      */
     private Result<Reservation> validate(Reservation reservation) {
+        ValidationEvent event = ValidationEvent.start();
+        Result<Reservation> result = applyRules(reservation, event);
+        if (event != null && event.shouldCommit()) {
+            event.hostId = reservation == null || reservation.getHost() == null ? null : reservation.getHost().getId();
+            event.failures = result.getErrorMessages().size();
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Applies the validation rules in order, stopping after any
+     * group of rules that fails, and counts the rules applied
+     *
+     * @param reservation  a reservation object
+     * @param event        the event counting the rules, or null
+     * @return             the list of error messages
+     */
+    private Result<Reservation> applyRules(Reservation reservation, ValidationEvent event) {
         Result<Reservation> result = new Result<>();
 
         //null
+        countRules(event, 1);
         if (reservation == null) {
             result.addErrorMessage("Reservation cannot be null");
             return result;
         }
         //null fields
+        countRules(event, 4);
         if (reservation.getGuest() == null) {
             result.addErrorMessage("Valid guest is required");
         }
@@ -281,6 +426,7 @@ public class ReservationService {
         //Host
 
         //Guest
+        countRules(event, 4);
         if (guestRepository.findByEmail(reservation.getGuest().getEmail()) == null) {
             result.addErrorMessage("Guest not found");
         }
@@ -305,11 +451,25 @@ public class ReservationService {
             return result;
         }
 
+        //Host decides which reservations to check against
+        countRules(event, 1);
+        if (reservation.getHost() == null || reservation.getHost().getId() == null) {
+            result.addErrorMessage("Valid host is required");
+            return result;
+        }
+
         //Check Overlapping Dates
+        countRules(event, 1);
         result = conflictingDateRange(reservation);
 
         return result;
     }
 
+    private static void countRules(ValidationEvent event, int rules) {
+        if (event != null) {
+            event.rules += rules;
+        }
+    }
+
 
 }
@@ -0,0 +1,43 @@
+package learn.mastery.domain;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import learn.mastery.data.JfrEvents;
+
+/**
+ * Raised when a reservation has been checked against the
+ * booking rules, including the check for overlapping stays.
+ */
+@Name("learn.mastery.Validation")
+@Label("Reservation Validation")
+@Category({"Mastery", "Domain"})
+@Description("A reservation checked against the booking rules")
+@StackTrace(false)
+final class ValidationEvent extends jdk.jfr.Event {
+
+    @Label("Host Id")
+    String hostId;
+
+    @Label("Rules Checked")
+    int rules;
+
+    @Label("Failures")
+    int failures;
+
+    /**
+     * Returns a started event, or null when events are switched off
+     *
+     * @return  the event timing the validation
+     */
+    static ValidationEvent start() {
+        if (!JfrEvents.ENABLED) {
+            return null;
+        }
+        ValidationEvent event = new ValidationEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,37 @@
+package learn.mastery.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A running total that only goes up. Adding is lock free
+ * and cheap from any number of threads.
+ */
+public final class Counter {
+
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * Adds one to the total
+     */
+    public void increment() {
+        total.increment();
+    }
+
+    /**
+     * Adds an amount to the total
+     *
+     * @param amount    the amount to add
+     */
+    public void add(long amount) {
+        total.add(amount);
+    }
+
+    /**
+     * Returns the total so far
+     *
+     * @return  the total
+     */
+    public long get() {
+        return total.sum();
+    }
+}
@@ -0,0 +1,106 @@
+package learn.mastery.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size histogram of latencies in the style of HdrHistogram.
+ * Values below 128 get a bucket each, and above that every power of
+ * two is split into 64 linear buckets, so any recorded value is known
+ * to within 1.6% whatever its size. Recording is lock free and safe
+ * from any number of threads.
+ */
+public class LatencyHistogram {
+
+    //Linear buckets per power of two, and the bits that count them
+    private static final int SUB_BUCKETS = 64;
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one value. Negative values are recorded as zero
+     *
+     * @param value the value to record, such as a latency in nanoseconds
+     */
+    public void record(long value) {
+        long recorded = Math.max(0, value);
+        counts.incrementAndGet(indexOf(recorded));
+        count.increment();
+        total.add(recorded);
+        max.accumulate(recorded);
+    }
+
+    /**
+     * Returns the number of values recorded
+     *
+     * @return  the count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the largest value recorded, exactly
+     *
+     * @return  the maximum, or 0 before any value
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the values recorded
+     *
+     * @return  the mean, or 0 before any value
+     */
+    public double getMean() {
+        long values = count.sum();
+        return values == 0 ? 0 : (double) total.sum() / values;
+    }
+
+    /**
+     * Returns the value at or below which a share of the
+     * recorded values fall, rounded up to its bucket's upper bound
+     *
+     * @param percentile    the share of values, from 0 to 100
+     * @return              the value at the percentile, or 0 before any value
+     */
+    public long getValueAtPercentile(double percentile) {
+        long values = count.sum();
+        if (values == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * values));
+        long seen = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            seen += counts.get(index);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(index), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long highestValueOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,196 @@
+package learn.mastery.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Named counters, gauges, timers and operations, created the first
+ * time they are asked for and kept for the life of the registry.
+ * Repositories and services record into the default registry, which
+ * the admin menu prints as a plain text table.
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the registry shared by the whole application
+     *
+     * @return  the default registry
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    //Record
+
+    /**
+     * Starts timing one call of an operation. Close the result,
+     * normally with try-with-resources, when the call returns
+     *
+     * @param name  the operation, such as GuestFileRepository.findAll
+     * @return      the open call
+     */
+    public Operation start(String name) {
+        return new Operation(operation(name));
+    }
+
+    /**
+     * Times one call of an operation, charging the files, rows and
+     * bytes it reads to the operation, and returns its result
+     *
+     * @param name  the operation, such as GuestFileRepository.findAll
+     * @param call  the call to time
+     * @return      the result of the call
+     * @throws E    whatever the call throws
+     */
+    public <T, E extends Exception> T time(String name, TimedCall<T, E> call) throws E {
+        Operation operation = start(name);
+        try {
+            return call.call();
+        } finally {
+            operation.close();
+        }
+    }
+
+    /**
+     * Times one call of an operation that returns nothing
+     *
+     * @param name      the operation name
+     * @param action    the work to time
+     * @throws E        whatever the work throws
+     */
+    public <E extends Exception> void run(String name, TimedAction<E> action) throws E {
+        Operation operation = start(name);
+        try {
+            action.run();
+        } finally {
+            operation.close();
+        }
+    }
+
+    /**
+     * Returns the totals of an operation
+     *
+     * @param name  the operation name
+     * @return      the operation's totals
+     */
+    public OperationStats operation(String name) {
+        return operations.computeIfAbsent(name, key -> new OperationStats());
+    }
+
+    /**
+     * Returns a timer
+     *
+     * @param name  the timer name
+     * @return      the histogram its values are recorded in
+     */
+    public LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Returns a counter
+     *
+     * @param name  the counter name
+     * @return      the counter
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge of the same name.
+     * The value is read each time the registry is printed
+     *
+     * @param name  the gauge name
+     * @param value supplies the current value
+     */
+    public void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Forgets every operation, timer and counter recorded so far.
+     * Gauges are kept since they report live values
+     */
+    public void reset() {
+        operations.clear();
+        timers.clear();
+        counters.clear();
+    }
+
+    //Dump
+
+    /**
+     * Writes the text dump of the registry to a file
+     *
+     * @param file  the file to write, replaced if it exists
+     * @throws IOException
+     */
+    public void writeTo(Path file) throws IOException {
+        Files.writeString(file, dump(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns every metric as plain text tables sorted by name,
+     * with latencies in microseconds
+     *
+     * @return  the text dump
+     */
+    public String dump() {
+        StringBuilder dump = new StringBuilder();
+        int width = 24;
+        for (Map<String, ?> metrics : List.of(operations, timers, counters, gauges)) {
+            for (String name : metrics.keySet()) {
+                width = Math.max(width, name.length());
+            }
+        }
+        String name = "%-" + width + "s";
+
+        if (!operations.isEmpty()) {
+            dump.append(String.format(name + " %10s %10s %10s %10s %10s %8s %12s %14s%n", "Operation",
+                    "calls", "p50 us", "p99 us", "p99.9 us", "max us", "opens", "rows", "bytes"));
+            new TreeMap<>(operations).forEach((operation, stats) -> {
+                LatencyHistogram latency = stats.getLatency();
+                dump.append(String.format(name + " %10s %10.1f %10.1f %10.1f %10.1f %8s %12s %14s%n", operation,
+                        stats.getCalls(), latency.getValueAtPercentile(50) / 1e3,
+                        latency.getValueAtPercentile(99) / 1e3, latency.getValueAtPercentile(99.9) / 1e3,
+                        latency.getMax() / 1e3, stats.getFilesOpened(), stats.getRowsScanned(),
+                        stats.getBytesRead()));
+            });
+        }
+        if (!timers.isEmpty()) {
+            dump.append(String.format(name + " %10s %10s %10s %10s %10s%n", "Timer",
+                    "count", "p50 us", "p99 us", "p99.9 us", "max us"));
+            new TreeMap<>(timers).forEach((timer, latency) ->
+                    dump.append(String.format(name + " %10s %10.1f %10.1f %10.1f %10.1f%n", timer,
+                            latency.getCount(), latency.getValueAtPercentile(50) / 1e3,
+                            latency.getValueAtPercentile(99) / 1e3, latency.getValueAtPercentile(99.9) / 1e3,
+                            latency.getMax() / 1e3)));
+        }
+        if (!counters.isEmpty()) {
+            dump.append(String.format(name + " %10s%n", "Counter", "value"));
+            new TreeMap<>(counters).forEach((counter, total) ->
+                    dump.append(String.format(name + " %10s%n", counter, total.get())));
+        }
+        if (!gauges.isEmpty()) {
+            dump.append(String.format(name + " %10s%n", "Gauge", "value"));
+            new TreeMap<>(gauges).forEach((gauge, value) ->
+                    dump.append(String.format(name + " %10.2f%n", gauge, value.getAsDouble())));
+        }
+        return dump.length() == 0 ? "No metrics recorded yet." + System.lineSeparator() : dump.toString();
+    }
+}
@@ -0,0 +1,71 @@
+package learn.mastery.metrics;
+
+/**
+ * One timed call of a named operation, opened with
+ * MetricsRegistry.start and closed by try-with-resources. Open
+ * operations form a stack per thread, so files opened and rows and
+ * bytes read by the data layer are charged to the call that caused
+ * the access and to every call around it.
+ */
+public final class Operation implements AutoCloseable {
+
+    private static final ThreadLocal<Operation> CURRENT = new ThreadLocal<>();
+
+    private final OperationStats stats;
+    private final Operation parent;
+    private final long started;
+    private int opens;
+    private long rows;
+    private long bytes;
+
+    Operation(OperationStats stats) {
+        this.stats = stats;
+        this.parent = CURRENT.get();
+        CURRENT.set(this);
+        this.started = System.nanoTime();
+    }
+
+    /**
+     * Charges one opened file to the operations
+     * open on this thread, if any
+     */
+    public static void recordOpen() {
+        for (Operation operation = CURRENT.get(); operation != null; operation = operation.parent) {
+            operation.opens++;
+        }
+    }
+
+    /**
+     * Charges records read from a data file to the
+     * operations open on this thread, if any
+     *
+     * @param count the number of records read
+     */
+    public static void recordRows(long count) {
+        for (Operation operation = CURRENT.get(); operation != null; operation = operation.parent) {
+            operation.rows += count;
+        }
+    }
+
+    /**
+     * Charges bytes read from a data file to the
+     * operations open on this thread, if any
+     *
+     * @param count the number of bytes read
+     */
+    public static void recordBytes(long count) {
+        for (Operation operation = CURRENT.get(); operation != null; operation = operation.parent) {
+            operation.bytes += count;
+        }
+    }
+
+    /**
+     * Records the call's latency, files, rows and bytes
+     * and hands the thread back to the enclosing call
+     */
+    @Override
+    public void close() {
+        stats.record(System.nanoTime() - started, opens, rows, bytes);
+        CURRENT.set(parent);
+    }
+}
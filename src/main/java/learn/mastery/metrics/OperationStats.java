@@ -0,0 +1,72 @@
+package learn.mastery.metrics;
+
+/**
+ * What one named operation has cost so far: how often it ran,
+ * how long each call took, and how many files it opened and rows
+ * and bytes it read from them.
+ */
+public final class OperationStats {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Counter filesOpened = new Counter();
+    private final Counter rowsScanned = new Counter();
+    private final Counter bytesRead = new Counter();
+
+    void record(long nanos, int opens, long rows, long bytes) {
+        latency.record(nanos);
+        if (opens > 0) {
+            filesOpened.add(opens);
+        }
+        if (rows > 0) {
+            rowsScanned.add(rows);
+        }
+        if (bytes > 0) {
+            bytesRead.add(bytes);
+        }
+    }
+
+    /**
+     * Gets the number of completed calls
+     *
+     * @return the call count
+     */
+    public long getCalls() {
+        return latency.getCount();
+    }
+
+    /**
+     * Gets the time each call took
+     *
+     * @return the histogram of latencies in nanoseconds
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets the files opened by every call, for reading or writing
+     *
+     * @return the files opened
+     */
+    public long getFilesOpened() {
+        return filesOpened.get();
+    }
+
+    /**
+     * Gets the records read from the data files by every call
+     *
+     * @return the rows scanned
+     */
+    public long getRowsScanned() {
+        return rowsScanned.get();
+    }
+
+    /**
+     * Gets the bytes read from the data files by every call
+     *
+     * @return the bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+}
@@ -0,0 +1,18 @@
+package learn.mastery.metrics;
+
+/**
+ * Work with no result timed by MetricsRegistry.run, which may
+ * throw a checked exception of its own.
+ *
+ * @param <E>   the exception the work may throw
+ */
+@FunctionalInterface
+public interface TimedAction<E extends Exception> {
+
+    /**
+     * Does the work
+     *
+     * @throws E
+     */
+    void run() throws E;
+}
@@ -0,0 +1,20 @@
+package learn.mastery.metrics;
+
+/**
+ * A call timed by MetricsRegistry.time, which may throw a
+ * checked exception of its own.
+ *
+ * @param <T>   the result of the call
+ * @param <E>   the exception the call may throw
+ */
+@FunctionalInterface
+public interface TimedCall<T, E extends Exception> {
+
+    /**
+     * Makes the call
+     *
+     * @return  the result of the call
+     * @throws E
+     */
+    T call() throws E;
+}
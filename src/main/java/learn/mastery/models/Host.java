@@ -1,6 +1,7 @@
 package learn.mastery.models;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.Objects;
 
 public class Host {
@@ -17,6 +18,9 @@ public class Host {
     //Pricing
     private BigDecimal standardRate;
     private BigDecimal weekendRate;
+    //Rates held as whole cents for pricing
+    private long standardRateCents;
+    private long weekendRateCents;
 
     //Empty Con
 
@@ -40,8 +44,32 @@ public class Host {
         this.city = city;
         this.state = state;
         this.postalCode = postalCode;
-        this.standardRate = standardRate;
-        this.weekendRate = weekendRate;
+        setStandardRate(standardRate);
+        setWeekendRate(weekendRate);
+    }
+
+    //Copy Con
+
+    /**
+     * Class constructor for a copy of another host. The fields are
+     * copied directly, so subclasses whose setters refuse changes can
+     * still be built from a host
+     *
+     * @param host  the host to copy
+     */
+    public Host(Host host) {
+        this.id = host.id;
+        this.lastName = host.lastName;
+        this.email = host.email;
+        this.phone = host.phone;
+        this.address = host.address;
+        this.city = host.city;
+        this.state = host.state;
+        this.postalCode = host.postalCode;
+        this.standardRate = host.standardRate;
+        this.weekendRate = host.weekendRate;
+        this.standardRateCents = host.standardRateCents;
+        this.weekendRateCents = host.weekendRateCents;
     }
     //TODO remove if not needed
     /*public Host(String id, String lastName, String email, String phone, String address, String city, String state, String postalCode, int standardRate, int weekendRate) {
@@ -70,8 +98,8 @@ public class Host {
         this.city = city;
         this.state = state;
         this.postalCode = postalCode;
-        this.standardRate = BigDecimal.valueOf(Double.valueOf(standardRate));
-        this.weekendRate = BigDecimal.valueOf(Double.valueOf(weekendRate));
+        setStandardRate(BigDecimal.valueOf(Double.valueOf(standardRate)));
+        setWeekendRate(BigDecimal.valueOf(Double.valueOf(weekendRate)));
     }
 
     //Getters Setters
@@ -254,6 +282,17 @@ public class Host {
      */
     public void setStandardRate(BigDecimal standardRate) {
         this.standardRate = standardRate;
+        this.standardRateCents = toCents(standardRate);
+    }
+
+    /**
+     * Gets the standardRate stored inside the
+     * host object as a whole number of cents
+     *
+     * @return the standardRate in cents, or 0 if no rate is set
+     */
+    public long getStandardRateCents() {
+        return standardRateCents;
     }
 
     /**
@@ -274,6 +313,31 @@ public class Host {
      */
     public void setWeekendRate(BigDecimal weekendRate) {
         this.weekendRate = weekendRate;
+        this.weekendRateCents = toCents(weekendRate);
+    }
+
+    /**
+     * Gets the weekendRate stored inside the
+     * host object as a whole number of cents
+     *
+     * @return the weekendRate in cents, or 0 if no rate is set
+     */
+    public long getWeekendRateCents() {
+        return weekendRateCents;
+    }
+
+    /**
+     * Converts a rate into a whole number of cents,
+     * rounding any fraction of a cent half up
+     *
+     * @param rate  the rate to convert
+     * @return      the rate in cents, or 0 for a missing rate
+     */
+    private static long toCents(BigDecimal rate) {
+        if (rate == null) {
+            return 0L;
+        }
+        return rate.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
     }
 
 }
@@ -115,23 +115,46 @@ public class Reservation {
 
     /**
      * Returns the calculated value of CostOfStay based
-     * on the difference of the startDate and endDates
-     * by summing the values of each day,based of if it used the
-     * standardRate or WeekendRate found in the stored host object
+     * on the difference of the startDate and endDates.
+     * Friday and Saturday nights use the WeekendRate and every
+     * other night the standardRate found in the stored host object.
+     * The nights of each kind are counted without walking the stay,
+     * and the total is summed in whole cents
      *
      * @return the calculated cost of stay
      */
     public BigDecimal determineCostOfStay() {
-        double totalAmount = 0.0;
-        for (int i = 0; i < (int) (endDate.toEpochDay() - startDate.toEpochDay()); i++) {
-            LocalDate date = startDate.plusDays(i);
-            if (date.getDayOfWeek().getValue() == 5 || date.getDayOfWeek().getValue() == 6) { // 5 = Fri, 6 = Sat
-                totalAmount += host.getWeekendRate().doubleValue();
-            } else {
-                totalAmount += host.getStandardRate().doubleValue();
-            }
+        long startDay = startDate.toEpochDay();
+        long nights = Math.max(0, endDate.toEpochDay() - startDay);
+        long weekendNights = countWeekendNights(startDay, nights);
+        long cents = Math.addExact(
+                Math.multiplyExact(weekendNights, host.getWeekendRateCents()),
+                Math.multiplyExact(nights - weekendNights, host.getStandardRateCents()));
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Returns how many Friday and Saturday nights fall in a run
+     * of nights. Every whole week holds two, and the days left
+     * over are checked against the day of the week they start on
+     *
+     * @param startDay  the epoch day of the first night
+     * @param nights    the number of nights
+     * @return          the number of weekend nights
+     */
+    private static long countWeekendNights(long startDay, long nights) {
+        //Epoch day 0 was a Thursday, so this is 0 for Monday through 6 for Sunday
+        int startDayOfWeek = (int) Math.floorMod(startDay + 3, 7L);
+        int remainder = (int) (nights % 7);
+        long weekendNights = nights / 7 * 2;
+        //Days from the start to the next Friday and Saturday
+        if (Math.floorMod(4 - startDayOfWeek, 7) < remainder) {
+            weekendNights++;
+        }
+        if (Math.floorMod(5 - startDayOfWeek, 7) < remainder) {
+            weekendNights++;
         }
-        return BigDecimal.valueOf(totalAmount);
+        return weekendNights;
     }
 
     /**
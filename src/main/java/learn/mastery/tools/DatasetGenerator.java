@@ -0,0 +1,308 @@
+package learn.mastery.tools;
+
+import learn.mastery.models.Guest;
+import learn.mastery.models.Host;
+import learn.mastery.models.Reservation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Writes a hosts.csv, a guests.csv and a reservations directory
+ * in the application's formats at any scale. Every row is worked out
+ * from the seed and its own position, so the same settings always give
+ * the same files, and any single host or guest can be recreated without
+ * generating the rest. Rows are streamed to disk one at a time, so the
+ * dataset may be far larger than the heap.
+ *
+ * Usage: DatasetGenerator directory [--hosts n] [--guests n]
+ *        [--reservations n] [--seed n] [--from yyyy-mm-dd] [--days n]
+ */
+public class DatasetGenerator {
+
+    public static final long DEFAULT_SEED = 20_220_501L;
+
+    //Salts keep the random streams of hosts, guests and stays apart
+    private static final long HOST_SALT = 0x486F7374L;
+    private static final long GUEST_SALT = 0x47756573L;
+    private static final long STAY_SALT = 0x53746179L;
+    //Stays are mostly short with a long tail, capped at four weeks
+    private static final double MEAN_EXTRA_NIGHTS = 2.5;
+    private static final int MAX_NIGHTS = 28;
+
+    private static final String[] FIRST_NAMES = {"Sullivan", "Olympie", "Tremain", "Eveleen", "Mathe", "Rubi",
+            "Kylie", "Daron", "Amalia", "Gerard", "Lorita", "Bevan", "Consuela", "Odell", "Marnie", "Tadeo"};
+    private static final String[] LAST_NAMES = {"Lomas", "Gecks", "Yearnes", "Rhodes", "Fairweather", "Wort",
+            "Hasell", "Pridgeon", "Ollerhead", "Maxfield", "Cullingford", "Tessier", "Brayley", "Duckit"};
+    private static final String[] STREETS = {"Nova Trail", "Morning Avenue", "Main Street", "Sunfield Drive",
+            "Oak Valley Road", "Harbor Lane", "Cedar Court", "Westridge Parkway"};
+    //City, state and the first two digits of its postal codes
+    private static final String[][] CITIES = {{"Amarillo", "TX", "79"}, {"Austin", "TX", "78"},
+            {"Macon", "GA", "31"}, {"Atlanta", "GA", "30"}, {"Rochester", "NY", "14"}, {"Fresno", "CA", "93"},
+            {"Sacramento", "CA", "95"}, {"Reno", "NV", "89"}, {"Washington", "DC", "20"}, {"Tampa", "FL", "33"},
+            {"Spokane", "WA", "99"}, {"Denver", "CO", "80"}, {"Raleigh", "NC", "27"}, {"Boise", "ID", "83"}};
+
+    private final long seed;
+    private int hostCount = 1000;
+    private int guestCount = 1000;
+    private long reservationCount = 10_000;
+    private LocalDate firstDate = LocalDate.of(2020, 1, 1);
+    private int days = 10 * 365;
+
+    /**
+     * Class constructor.
+     *
+     * @param seed  the seed every row is worked out from
+     */
+    public DatasetGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: DatasetGenerator directory [--hosts n] [--guests n] [--reservations n]"
+                    + " [--seed n] [--from yyyy-mm-dd] [--days n]");
+            System.exit(2);
+        }
+        long seed = DEFAULT_SEED;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--seed")) {
+                seed = Long.parseLong(args[i + 1]);
+            }
+        }
+        DatasetGenerator generator = new DatasetGenerator(seed);
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--hosts":
+                    generator.setHostCount(Integer.parseInt(value));
+                    break;
+                case "--guests":
+                    generator.setGuestCount(Integer.parseInt(value));
+                    break;
+                case "--reservations":
+                    generator.setReservationCount(Long.parseLong(value));
+                    break;
+                case "--from":
+                    generator.setFirstDate(LocalDate.parse(value));
+                    break;
+                case "--days":
+                    generator.setDays(Integer.parseInt(value));
+                    break;
+                case "--seed":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        long started = System.nanoTime();
+        long written = generator.generate(Paths.get(args[0]));
+        System.out.printf("Wrote %s hosts, %s guests and %s reservations to %s in %s ms%n",
+                generator.hostCount, generator.guestCount, written, args[0],
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    //Setters
+
+    /**
+     * Sets the number of hosts, each with its own reservation file
+     *
+     * @param hostCount the number of hosts
+     */
+    public void setHostCount(int hostCount) {
+        this.hostCount = hostCount;
+    }
+
+    /**
+     * Sets the number of guests, with ids from 1 to guestCount
+     *
+     * @param guestCount    the number of guests
+     */
+    public void setGuestCount(int guestCount) {
+        this.guestCount = guestCount;
+    }
+
+    /**
+     * Sets the number of reservations shared evenly between the hosts
+     *
+     * @param reservationCount  the total number of reservations
+     */
+    public void setReservationCount(long reservationCount) {
+        this.reservationCount = reservationCount;
+    }
+
+    /**
+     * Sets the first day a stay may start on
+     *
+     * @param firstDate the first possible start date
+     */
+    public void setFirstDate(LocalDate firstDate) {
+        this.firstDate = firstDate;
+    }
+
+    /**
+     * Sets the number of days each host's stays are spread over.
+     * Hosts with more stays than fit are booked past the end
+     *
+     * @param days  the length of the booking window in days
+     */
+    public void setDays(int days) {
+        this.days = days;
+    }
+
+    //Generate
+
+    /**
+     * Writes hosts.csv, guests.csv and one reservation file per
+     * host into a directory, creating it if needed
+     *
+     * @param directory the directory to write into
+     * @return          the number of reservations written
+     * @throws IOException
+     */
+    public long generate(Path directory) throws IOException {
+        if (reservationCount > 0 && (hostCount < 1 || guestCount < 1)) {
+            throw new IllegalArgumentException("Reservations need at least one host and one guest");
+        }
+        Path reservations = directory.resolve("reservations");
+        Files.createDirectories(reservations);
+        writeGuests(directory.resolve("guests.csv"));
+
+        long written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve("hosts.csv"))) {
+            writer.write("id,last_name,email,phone,address,city,state,postal_code,standard_rate,weekend_rate");
+            writer.newLine();
+            for (int index = 0; index < hostCount; index++) {
+                Host host = host(index);
+                writer.write(String.join(",", host.getId(), host.getLastName(), host.getEmail(), host.getPhone(),
+                        host.getAddress(), host.getCity(), host.getState(), host.getPostalCode(),
+                        host.getStandardRate().toPlainString(), host.getWeekendRate().toPlainString()));
+                writer.newLine();
+                written += writeReservations(reservations, index, host);
+            }
+        }
+        return written;
+    }
+
+    private void writeGuests(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("guest_id,first_name,last_name,email,phone,state");
+            writer.newLine();
+            for (int id = 1; id <= guestCount; id++) {
+                Guest guest = guest(id);
+                writer.write(String.join(",", String.valueOf(guest.getId()), guest.getFirstName(),
+                        guest.getLastName(), guest.getEmail(), guest.getPhone(), guest.getState()));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Writes one host's stays in date order. Each stay starts at
+     * least a day after the one before it ends, so no two overlap
+     *
+     * @param directory the reservation directory
+     * @param index     the position of the host
+     * @param host      the host
+     * @return          the number of stays written
+     * @throws IOException
+     */
+    private long writeReservations(Path directory, int index, Host host) throws IOException {
+        long count = reservationsFor(index);
+        SplittableRandom random = random(STAY_SALT, index);
+        //Spread the stays over the window, leaving room for their nights
+        double meanGap = Math.max(0.5, (double) days / Math.max(count, 1) - MEAN_EXTRA_NIGHTS - 2);
+        Reservation reservation = new Reservation();
+        reservation.setHost(host);
+        LocalDate lastEnd = firstDate.minusDays(1);
+        try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(host.getId() + ".csv"))) {
+            writer.write("id,start_date,end_date,guest_id,total");
+            writer.newLine();
+            for (long id = 1; id <= count; id++) {
+                LocalDate start = lastEnd.plusDays(1 + exponential(random, meanGap));
+                LocalDate end = start.plusDays(1 + Math.min(MAX_NIGHTS - 1, exponential(random, MEAN_EXTRA_NIGHTS)));
+                reservation.setStartDate(start);
+                reservation.setEndDate(end);
+                writer.write(String.format("%s,%s,%s,%s,%s", id, start, end, 1 + random.nextInt(guestCount),
+                        reservation.determineCostOfStay().toPlainString()));
+                writer.newLine();
+                lastEnd = end;
+            }
+        }
+        return count;
+    }
+
+    //Rows
+
+    /**
+     * Returns the host at a position, as written to hosts.csv
+     *
+     * @param index the position of the host, from 0
+     * @return      the host
+     */
+    public Host host(int index) {
+        SplittableRandom random = random(HOST_SALT, index);
+        UUID id = new UUID((random.nextLong() & ~0xF000L) | 0x4000L,
+                (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L);
+        String lastName = pick(random, LAST_NAMES);
+        String[] city = CITIES[random.nextInt(CITIES.length)];
+        int standardRate = 50 + 5 * random.nextInt(90);
+        return new Host(id.toString(), lastName,
+                String.format("%s%s@example.com", lastName.toLowerCase(), index),
+                phone(random),
+                String.format("%s %s", 1 + random.nextInt(9999), pick(random, STREETS)),
+                city[0], city[1], String.format("%s%03d", city[2], random.nextInt(1000)),
+                BigDecimal.valueOf(standardRate), BigDecimal.valueOf(standardRate * 125L, 2));
+    }
+
+    /**
+     * Returns the guest with an id, as written to guests.csv
+     *
+     * @param id    the id of the guest, from 1
+     * @return      the guest
+     */
+    public Guest guest(int id) {
+        SplittableRandom random = random(GUEST_SALT, id);
+        String firstName = pick(random, FIRST_NAMES);
+        String lastName = pick(random, LAST_NAMES);
+        return new Guest(id, firstName, lastName,
+                String.format("%s.%s%s@example.com", firstName.toLowerCase(), lastName.toLowerCase(), id),
+                phone(random), CITIES[random.nextInt(CITIES.length)][1]);
+    }
+
+    /**
+     * Returns the number of stays given to the host at a position.
+     * The remainder of an uneven split goes to the first hosts
+     *
+     * @param index the position of the host
+     * @return      the host's number of stays
+     */
+    public long reservationsFor(int index) {
+        return reservationCount / hostCount + (index < reservationCount % hostCount ? 1 : 0);
+    }
+
+    private SplittableRandom random(long salt, long index) {
+        //Spread by the golden ratio so neighbouring rows do not get related streams
+        return new SplittableRandom(seed ^ salt ^ (index * 0x9E3779B97F4A7C15L));
+    }
+
+    private static String phone(SplittableRandom random) {
+        return String.format("(%03d) %07d", 201 + random.nextInt(799), random.nextInt(10_000_000));
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    //Exponentially distributed whole days with the given mean
+    private static int exponential(SplittableRandom random, double mean) {
+        return (int) (-Math.log(1 - random.nextDouble()) * mean);
+    }
+}
@@ -0,0 +1,452 @@
+package learn.mastery.tools;
+
+import learn.mastery.data.DataException;
+import learn.mastery.data.GuestFileRepository;
+import learn.mastery.data.HostFileRepository;
+import learn.mastery.data.IndexedGuestRepository;
+import learn.mastery.data.IndexedHostRepository;
+import learn.mastery.data.ReservationFileRepository;
+import learn.mastery.domain.GuestService;
+import learn.mastery.domain.HostService;
+import learn.mastery.domain.ReservationService;
+import learn.mastery.domain.Result;
+import learn.mastery.metrics.LatencyHistogram;
+import learn.mastery.models.Guest;
+import learn.mastery.models.Host;
+import learn.mastery.models.Reservation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs simulated booking agents against the reservation service
+ * without the console. Each agent looks up a host and a guest, then
+ * lists the host's reservations or adds, moves or cancels one, for as
+ * long as the test runs. Hosts are chosen with a Zipf skew, so a few
+ * popular hosts see most of the traffic.
+ *
+ * Agents only move and cancel reservations they added themselves, so
+ * the final state of every acknowledged write is known. Once the agents
+ * stop, the files are read back by a fresh repository and every write is
+ * checked, along with every host touched for stays that share a day.
+ *
+ * Usage: LoadTest [directory] [--agents n] [--seconds n] [--writes share]
+ *        [--skew s] [--hosts n] [--guests n] [--reservations n] [--seed n]
+ */
+public class LoadTest {
+
+    static final String READ = "read";
+    static final String ADD = "add";
+    static final String MOVE = "move";
+    static final String CANCEL = "cancel";
+    //Share of writes that move or cancel an agent's own reservation
+    private static final double MOVE_SHARE = 0.3;
+    private static final double CANCEL_SHARE = 0.2;
+
+    private final long seed;
+    private int agents = Runtime.getRuntime().availableProcessors();
+    private long durationMillis = 10_000;
+    private double writeShare = 0.2;
+    private double skew = 1.0;
+    private int hostCount = 100;
+    private int guestCount = 1000;
+    private long reservationCount = 5000;
+
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, Expected> ledger = new ConcurrentHashMap<>();
+    private final LongAdder overlapRejections = new LongAdder();
+    private final LongAdder otherRejections = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Class constructor.
+     *
+     * @param seed  the seed of the dataset and of every agent's choices
+     */
+    public LoadTest(long seed) {
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int first = args.length > 0 && !args[0].startsWith("--") ? 1 : 0;
+        long seed = DatasetGenerator.DEFAULT_SEED;
+        for (int i = first; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--seed")) {
+                seed = Long.parseLong(args[i + 1]);
+            }
+        }
+        LoadTest test = new LoadTest(seed);
+        for (int i = first; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--agents":
+                    test.setAgents(Integer.parseInt(value));
+                    break;
+                case "--seconds":
+                    test.setDurationMillis(Long.parseLong(value) * 1000);
+                    break;
+                case "--writes":
+                    test.setWriteShare(Double.parseDouble(value));
+                    break;
+                case "--skew":
+                    test.setSkew(Double.parseDouble(value));
+                    break;
+                case "--hosts":
+                    test.setHostCount(Integer.parseInt(value));
+                    break;
+                case "--guests":
+                    test.setGuestCount(Integer.parseInt(value));
+                    break;
+                case "--reservations":
+                    test.setReservationCount(Long.parseLong(value));
+                    break;
+                case "--seed":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        Path directory = first == 1 ? Paths.get(args[0]) : Files.createTempDirectory("learn-mastery-load");
+        System.out.println("Writing dataset to " + directory);
+        LoadTestReport report = test.run(directory);
+        System.out.println(report);
+        if (report.getLostUpdates() > 0 || report.getDoubleBookings() > 0) {
+            System.exit(1);
+        }
+    }
+
+    //Setters
+
+    /**
+     * Sets the number of agents booking at once, each on its own thread
+     *
+     * @param agents    the number of agents
+     */
+    public void setAgents(int agents) {
+        this.agents = agents;
+    }
+
+    /**
+     * Sets how long the agents run
+     *
+     * @param durationMillis    the run time in milliseconds
+     */
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * Sets the share of operations that write rather than list
+     *
+     * @param writeShare    the write share, from 0 to 1
+     */
+    public void setWriteShare(double writeShare) {
+        this.writeShare = writeShare;
+    }
+
+    /**
+     * Sets the Zipf exponent hosts are chosen with. 0 picks every
+     * host equally, and higher values favour the first hosts more
+     *
+     * @param skew  the Zipf exponent
+     */
+    public void setSkew(double skew) {
+        this.skew = skew;
+    }
+
+    /**
+     * Sets the number of hosts in the generated dataset
+     *
+     * @param hostCount the number of hosts
+     */
+    public void setHostCount(int hostCount) {
+        this.hostCount = hostCount;
+    }
+
+    /**
+     * Sets the number of guests in the generated dataset
+     *
+     * @param guestCount    the number of guests
+     */
+    public void setGuestCount(int guestCount) {
+        this.guestCount = guestCount;
+    }
+
+    /**
+     * Sets the number of reservations in the generated dataset
+     *
+     * @param reservationCount  the number of reservations
+     */
+    public void setReservationCount(long reservationCount) {
+        this.reservationCount = reservationCount;
+    }
+
+    //Run
+
+    /**
+     * Generates a dataset in a directory, runs the agents against
+     * it and audits the files once they stop
+     *
+     * @param directory the directory to write the dataset into
+     * @return          the throughput, latencies, rejections and audit findings
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public LoadTestReport run(Path directory) throws IOException, InterruptedException {
+        DatasetGenerator generator = new DatasetGenerator(seed);
+        generator.setHostCount(hostCount);
+        generator.setGuestCount(guestCount);
+        generator.setReservationCount(reservationCount);
+        generator.generate(directory);
+
+        String reservationDirectory = directory.resolve("reservations").toString();
+        HostService hostService = new HostService(new IndexedHostRepository(
+                new HostFileRepository(directory.resolve("hosts.csv").toString())));
+        GuestService guestService = new GuestService(new IndexedGuestRepository(
+                new GuestFileRepository(directory.resolve("guests.csv").toString())));
+        ReservationService reservationService = new ReservationService(new IndexedGuestRepository(
+                new GuestFileRepository(directory.resolve("guests.csv").toString())),
+                new ReservationFileRepository(reservationDirectory));
+
+        double[] hostWeights = zipf(hostCount, skew);
+        long deadline = System.nanoTime() + durationMillis * 1_000_000;
+        List<Thread> threads = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int agent = 0; agent < agents; agent++) {
+            SplittableRandom random = new SplittableRandom(seed + agent);
+            Thread thread = new Thread(() -> runAgent(random, generator, hostWeights, deadline,
+                    hostService, guestService, reservationService), "load-agent-" + agent);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - started;
+
+        ReservationFileRepository audit = new ReservationFileRepository(reservationDirectory);
+        return new LoadTestReport(agents, elapsed, latencies, overlapRejections.sum(), otherRejections.sum(),
+                errors.sum(), countLostUpdates(audit), countDoubleBookings(audit));
+    }
+
+    private void runAgent(SplittableRandom random, DatasetGenerator generator, double[] hostWeights, long deadline,
+                          HostService hostService, GuestService guestService, ReservationService reservationService) {
+        List<Reservation> owned = new ArrayList<>();
+        while (System.nanoTime() < deadline) {
+            //Keys are worked out before timing so only the service calls are measured
+            String hostId = generator.host(pick(random, hostWeights)).getId();
+            String email = generator.guest(1 + random.nextInt(guestCount)).getEmail();
+            String operation = chooseOperation(random, owned.isEmpty());
+            long started = System.nanoTime();
+            try {
+                Host host = hostService.findHostByHostId(hostId);
+                Guest guest = guestService.findGuestByEmail(email);
+                switch (operation) {
+                    case READ:
+                        reservationService.findAllReservationsForHost(host);
+                        break;
+                    case ADD:
+                        add(random, host, guest, owned, reservationService);
+                        break;
+                    case MOVE:
+                        move(random, owned, reservationService);
+                        break;
+                    default:
+                        cancel(random, owned, reservationService);
+                }
+            } catch (DataException | RuntimeException ex) {
+                errors.increment();
+            }
+            latencies.computeIfAbsent(operation, name -> new LatencyHistogram()).record(System.nanoTime() - started);
+        }
+    }
+
+    private String chooseOperation(SplittableRandom random, boolean ownsNothing) {
+        if (random.nextDouble() >= writeShare) {
+            return READ;
+        }
+        double write = random.nextDouble();
+        if (ownsNothing || write >= MOVE_SHARE + CANCEL_SHARE) {
+            return ADD;
+        }
+        return write < MOVE_SHARE ? MOVE : CANCEL;
+    }
+
+    private void add(SplittableRandom random, Host host, Guest guest, List<Reservation> owned,
+                     ReservationService service) throws DataException {
+        Reservation reservation = new Reservation();
+        reservation.setHost(host);
+        reservation.setGuest(guest);
+        setFutureDates(random, reservation);
+        Result<Reservation> result = service.addReservationToFile(reservation);
+        if (countRejection(result)) {
+            return;
+        }
+        owned.add(reservation);
+        ledger.put(key(host.getId(), reservation.getId()), new Expected(reservation));
+    }
+
+    private void move(SplittableRandom random, List<Reservation> owned, ReservationService service)
+            throws DataException {
+        Reservation reservation = owned.get(random.nextInt(owned.size()));
+        Reservation moved = new Reservation();
+        moved.setId(reservation.getId());
+        moved.setHost(reservation.getHost());
+        moved.setGuest(reservation.getGuest());
+        setFutureDates(random, moved);
+        Result<Reservation> result = service.updateReservation(moved);
+        if (countRejection(result)) {
+            return;
+        }
+        owned.set(owned.indexOf(reservation), moved);
+        ledger.put(key(moved.getHost().getId(), moved.getId()), new Expected(moved));
+    }
+
+    private void cancel(SplittableRandom random, List<Reservation> owned, ReservationService service)
+            throws DataException {
+        Reservation reservation = owned.get(random.nextInt(owned.size()));
+        Result<Reservation> result = service.deleteReservation(reservation);
+        if (countRejection(result)) {
+            return;
+        }
+        owned.remove(reservation);
+        ledger.put(key(reservation.getHost().getId(), reservation.getId()), Expected.CANCELLED);
+    }
+
+    //Counts a refused write, returning whether it was refused
+    private boolean countRejection(Result<Reservation> result) {
+        if (result.isSuccess()) {
+            return false;
+        }
+        if (result.getErrorMessages().contains(ReservationService.OVERLAP_MESSAGE)) {
+            overlapRejections.increment();
+        } else {
+            otherRejections.increment();
+        }
+        return true;
+    }
+
+    //Stays start within two years and last up to a week
+    private static void setFutureDates(SplittableRandom random, Reservation reservation) {
+        LocalDate start = LocalDate.now().plusDays(1 + random.nextInt(730));
+        reservation.setStartDate(start);
+        reservation.setEndDate(start.plusDays(1 + random.nextInt(7)));
+        reservation.setcostOfStay(reservation.determineCostOfStay());
+    }
+
+    //Audit
+
+    /**
+     * Returns the number of acknowledged writes the files do not
+     * reflect: reservations missing or holding other dates or guests,
+     * and cancelled reservations that are still there
+     *
+     * @param audit a repository that has not seen the agents' writes
+     * @return      the number of lost updates
+     */
+    private long countLostUpdates(ReservationFileRepository audit) {
+        long lost = 0;
+        for (Map.Entry<String, Expected> entry : ledger.entrySet()) {
+            String[] key = entry.getKey().split(":");
+            Reservation found = audit.findById(key[0], Integer.parseInt(key[1]));
+            if (!entry.getValue().matches(found)) {
+                lost++;
+            }
+        }
+        return lost;
+    }
+
+    /**
+     * Returns the number of pairs of stays sharing a day
+     * among the hosts the agents wrote to
+     *
+     * @param audit a repository that has not seen the agents' writes
+     * @return      the number of double bookings
+     */
+    private long countDoubleBookings(ReservationFileRepository audit) {
+        long doubleBookings = 0;
+        for (String hostId : ledger.keySet().stream().map(key -> key.split(":")[0]).distinct().toList()) {
+            List<Reservation> stays = new ArrayList<>(audit.findAll(hostId));
+            stays.sort(Comparator.comparing(Reservation::getStartDate));
+            LocalDate lastEnd = LocalDate.MIN;
+            for (Reservation stay : stays) {
+                //Stays that share even their first or last day overlap
+                if (!stay.getStartDate().isAfter(lastEnd)) {
+                    doubleBookings++;
+                }
+                if (stay.getEndDate().isAfter(lastEnd)) {
+                    lastEnd = stay.getEndDate();
+                }
+            }
+        }
+        return doubleBookings;
+    }
+
+    private static String key(String hostId, int reservationId) {
+        return hostId + ":" + reservationId;
+    }
+
+    //Zipf
+
+    /**
+     * Returns the cumulative weights of n items under a Zipf
+     * distribution, so the first item is the most popular
+     *
+     * @param n     the number of items
+     * @param skew  the Zipf exponent
+     * @return      the running totals of the weights, ending at 1
+     */
+    static double[] zipf(int n, double skew) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    static int pick(SplittableRandom random, double[] cumulative) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+    }
+
+    /**
+     * What the files should hold for one reservation an agent wrote
+     */
+    private static final class Expected {
+        private static final Expected CANCELLED = new Expected(null);
+
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        private final int guestId;
+
+        private Expected(Reservation reservation) {
+            this.startDate = reservation == null ? null : reservation.getStartDate();
+            this.endDate = reservation == null ? null : reservation.getEndDate();
+            this.guestId = reservation == null ? 0 : reservation.getGuest().getId();
+        }
+
+        private boolean matches(Reservation found) {
+            if (startDate == null) {
+                return found == null;
+            }
+            return found != null && startDate.equals(found.getStartDate()) && endDate.equals(found.getEndDate())
+                    && guestId == found.getGuest().getId();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package learn.mastery.tools;
+
+import learn.mastery.metrics.LatencyHistogram;
+
+import java.util.Map;
+
+/**
+ * The outcome of a load test: how many operations ran and how
+ * fast, their latency by operation, how often bookings were turned
+ * away, and what a final audit of the files found wrong.
+ */
+public final class LoadTestReport {
+
+    private final int agents;
+    private final long elapsedNanos;
+    private final Map<String, LatencyHistogram> latencies;
+    private final long overlapRejections;
+    private final long otherRejections;
+    private final long errors;
+    private final long lostUpdates;
+    private final long doubleBookings;
+
+    /**
+     * Class constructor.
+     *
+     * @param agents            the number of agents that ran
+     * @param elapsedNanos      how long the agents ran
+     * @param latencies         latency in nanoseconds by operation name
+     * @param overlapRejections writes refused because the dates were taken
+     * @param otherRejections   writes refused for any other reason
+     * @param errors            operations that failed with an exception
+     * @param lostUpdates       acknowledged writes missing from the files afterwards
+     * @param doubleBookings    pairs of stays of one host sharing a day afterwards
+     */
+    LoadTestReport(int agents, long elapsedNanos, Map<String, LatencyHistogram> latencies, long overlapRejections,
+                   long otherRejections, long errors, long lostUpdates, long doubleBookings) {
+        this.agents = agents;
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = Map.copyOf(latencies);
+        this.overlapRejections = overlapRejections;
+        this.otherRejections = otherRejections;
+        this.errors = errors;
+        this.lostUpdates = lostUpdates;
+        this.doubleBookings = doubleBookings;
+    }
+
+    /**
+     * Gets the number of operations run by every agent
+     *
+     * @return the operation count
+     */
+    public long getOperations() {
+        return latencies.values().stream().mapToLong(LatencyHistogram::getCount).sum();
+    }
+
+    /**
+     * Gets the operations completed per second
+     *
+     * @return the throughput
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getOperations() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Gets the latencies of one kind of operation
+     *
+     * @param operation the operation name, such as read or add
+     * @return          the histogram of latencies in nanoseconds, or null if none ran
+     */
+    public LatencyHistogram getLatency(String operation) {
+        return latencies.get(operation);
+    }
+
+    /**
+     * Gets the writes refused because the dates were already taken
+     *
+     * @return the overlap rejection count
+     */
+    public long getOverlapRejections() {
+        return overlapRejections;
+    }
+
+    /**
+     * Gets the writes refused for a reason other than overlap
+     *
+     * @return the other rejection count
+     */
+    public long getOtherRejections() {
+        return otherRejections;
+    }
+
+    /**
+     * Gets the operations that failed with an exception
+     *
+     * @return the error count
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the acknowledged adds, edits and deletes that the
+     * files did not reflect once the agents stopped
+     *
+     * @return the lost update count
+     */
+    public long getLostUpdates() {
+        return lostUpdates;
+    }
+
+    /**
+     * Gets the pairs of stays of one host that share a day
+     * once the agents stopped
+     *
+     * @return the double booking count
+     */
+    public long getDoubleBookings() {
+        return doubleBookings;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(String.format(
+                "%s agents ran %s operations in %.1f s (%.0f ops/s)%n",
+                agents, getOperations(), elapsedNanos / 1e9, getThroughput()));
+        report.append(String.format("%-8s %10s %10s %10s %10s %10s%n",
+                "op", "count", "p50 us", "p99 us", "p99.9 us", "max us"));
+        latencies.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    LatencyHistogram histogram = entry.getValue();
+                    report.append(String.format("%-8s %10s %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(),
+                            histogram.getCount(), histogram.getValueAtPercentile(50) / 1e3,
+                            histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                            histogram.getMax() / 1e3));
+                });
+        report.append(String.format("Overlap rejections: %s, other rejections: %s, errors: %s%n",
+                overlapRejections, otherRejections, errors));
+        report.append(String.format("Lost updates: %s, double bookings: %s", lostUpdates, doubleBookings));
+        return report.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package learn.mastery.tools;
+
+import learn.mastery.data.DataException;
+import learn.mastery.data.ReservationFileRepository;
+import learn.mastery.data.SegmentedReservationRepository;
+import learn.mastery.data.SnapshotFormat;
+
+/**
+ * Packs a directory holding one reservation file per host into
+ * segment files. Run it while the application is stopped, then set
+ * reservationStore=segments in data.properties with segmentFolderPath
+ * pointing at the segment directory. The host files are left as
+ * they are.
+ *
+ * Usage: SegmentPacker reservationDirectory segmentDirectory [csv|columnar]
+ */
+public class SegmentPacker {
+
+    public static void main(String[] args) throws DataException {
+        if (args.length < 2 || args.length > 3) {
+            System.out.println("Usage: SegmentPacker reservationDirectory segmentDirectory [csv|columnar]");
+            System.exit(2);
+        }
+        ReservationFileRepository source = new ReservationFileRepository(args[0]);
+        if (args.length == 3) {
+            source.setSnapshotFormat(SnapshotFormat.valueOf(args[2].toUpperCase()));
+        }
+        long started = System.nanoTime();
+        int packed = new SegmentedReservationRepository(args[1]).importFrom(source);
+        System.out.printf("Packed %s hosts from %s into %s in %s ms%n",
+                packed, args[0], args[1], (System.nanoTime() - started) / 1_000_000);
+    }
+}
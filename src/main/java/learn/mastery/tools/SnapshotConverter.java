@@ -0,0 +1,30 @@
+package learn.mastery.tools;
+
+import learn.mastery.data.DataException;
+import learn.mastery.data.ReservationFileRepository;
+import learn.mastery.data.SnapshotFormat;
+import learn.mastery.data.SnapshotFormatConverter;
+
+/**
+ * Rewrites every host snapshot in a reservations directory in
+ * another format, folding each host's journal into the new snapshot.
+ * Run it while the application is stopped, then set
+ * reservationFormat in data.properties to match.
+ *
+ * Usage: SnapshotConverter directory csv|columnar
+ */
+public class SnapshotConverter {
+
+    public static void main(String[] args) throws DataException {
+        if (args.length != 2) {
+            System.out.println("Usage: SnapshotConverter directory csv|columnar");
+            System.exit(2);
+        }
+        SnapshotFormat target = SnapshotFormat.valueOf(args[1].toUpperCase());
+        long started = System.nanoTime();
+        SnapshotFormatConverter converter = new SnapshotFormatConverter(new ReservationFileRepository(args[0]));
+        int converted = converter.convert(target);
+        System.out.printf("Converted %s hosts in %s to %s in %s ms%n",
+                converted, args[0], target, (System.nanoTime() - started) / 1_000_000);
+    }
+}
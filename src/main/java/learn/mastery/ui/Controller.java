@@ -1,16 +1,21 @@
 package learn.mastery.ui;
 
 import learn.mastery.data.DataException;
+import learn.mastery.domain.AvailabilityService;
 import learn.mastery.domain.GuestService;
 import learn.mastery.domain.HostService;
 import learn.mastery.domain.ReservationService;
 import learn.mastery.domain.Result;
+import learn.mastery.metrics.MetricsRegistry;
 import learn.mastery.models.Guest;
 import learn.mastery.models.Host;
 import learn.mastery.models.Reservation;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 
@@ -21,15 +26,18 @@ public class Controller {
     private final HostService hostService;
     private final GuestService guestService;
     private final ReservationService reservationService;
+    private final AvailabilityService availabilityService;
 
 
     /**
      * Class constructor.
      */
-    public Controller(HostService hostService, GuestService guestService, ReservationService reservationService, View view) {
+    public Controller(HostService hostService, GuestService guestService, ReservationService reservationService,
+                      AvailabilityService availabilityService, View view) {
         this.hostService = hostService;
         this.guestService = guestService;
         this.reservationService = reservationService;
+        this.availabilityService = availabilityService;
         this.view = view;
     }
 
@@ -71,6 +79,15 @@ public class Controller {
                 case CANCEL_RESERVATION:
                     deleteReservations();
                     break;
+                case SEARCH_AVAILABILITY:
+                    searchAvailability();
+                    break;
+                case GUEST_HISTORY:
+                    viewGuestHistory();
+                    break;
+                case VIEW_METRICS:
+                    view.printMetrics(MetricsRegistry.getDefault().dump());
+                    break;
 
             }
         } while (option != MainMenuOption.EXIT);
@@ -92,8 +109,8 @@ public class Controller {
         view.printHostResults(host);
         if(host == null){return;}
 
-        //Confirm guests & return list
-        List<Reservation> reservations = identifyGuestsInReservations(reservationService.findAllReservationsForHost(host));
+        //Confirm guests & return list, past stays included
+        List<Reservation> reservations = identifyGuestsInReservations(reservationService.findReservationHistoryForHost(host));
         //print List
         view.printReservations(reservations);
     }
@@ -289,22 +306,78 @@ public class Controller {
     }
 
 
+    //Search
+    /**
+     * Prints out every host that is free for a date range
+     * provided by the console, optionally limited to a
+     * state and city
+     */
+    private void searchAvailability() {
+        view.displayHeader("SEARCH AVAILABLE HOSTS");
+
+        //Get search
+        LocalDate startDate = view.getSearchStartDate();
+        LocalDate endDate = view.getSearchEndDate();
+        String state = view.getOptionalState();
+        String city = view.getOptionalCity();
+
+        Result<List<Host>> result = availabilityService.findAvailableHosts(startDate, endDate, state, city);
+        if (!result.isSuccess()) {
+            view.displayStatus(false, result.getErrorMessages());
+            return;
+        }
+
+        //Print the available hosts
+        view.printAvailableHosts(result.getPayload(), startDate, endDate);
+    }
+
+
+    //Guest History
+    /**
+     * Prints out every reservation a guest has made
+     * with any host, based on a provided guest email
+     */
+    private void viewGuestHistory() {
+        view.displayHeader("VIEW GUEST HISTORY");
+        //Get guest
+        Guest guest = guestService.findGuestByEmail(view.getGuestEmail());
+        if (guest == null) {
+            view.displayStatus(false, "Guest does not exist");
+            return;
+        }
+
+        //Fill in each reservation's host
+        List<Reservation> reservations = reservationService.findReservationHistoryForGuest(guest).stream()
+                .map(r -> {
+                    r.setHost(hostService.findHostByHostId(r.getHost().getId()));
+                    return r;
+                })
+                .collect(Collectors.toList());
+        view.printGuestHistory(guest, reservations);
+    }
+
+
     //Support Methods
     //Identify any guests found in reservationList
     /**
      * Returns a list of reservation objects that
      * populates each reservation's guest with
-     * the guest that matches the stored id
+     * the guest that matches the stored id. All guest
+     * ids are resolved in a single batch lookup
      *
      * @param reservations a list of reservation objects with guest ids
      * @return a list of reservation objects with populated guests
      */
     private List<Reservation> identifyGuestsInReservations(List<Reservation> reservations) {
+        Set<Integer> guestIds = reservations.stream()
+                .map(r -> r.getGuest().getId())
+                .collect(Collectors.toSet());
+        Map<Integer, Guest> guests = guestService.findGuestsByGuestIDs(guestIds);
+
         List<Reservation> result = reservations.stream()
                 .map(r -> {
                     // Update the Guests in list of Reservations
-                    Guest guests = guestService.findGuestByGuestID(r.getGuest().getId());
-                    r.setGuest(guests);
+                    r.setGuest(guests.get(r.getGuest().getId()));
                     return r;
                 })
                 .collect(Collectors.toList());
@@ -5,7 +5,10 @@ public enum MainMenuOption {
     VIEW_RESERVATIONS(1, "View Reservations"),
     MAKE_RESERVATION(2, "Make a Reservation"),
     EDIT_RESERVATION(3, "Edit a Reservation"),
-    CANCEL_RESERVATION(4, "Cancel a Reservation");
+    CANCEL_RESERVATION(4, "Cancel a Reservation"),
+    SEARCH_AVAILABILITY(5, "Search Available Hosts"),
+    GUEST_HISTORY(6, "View Guest History"),
+    VIEW_METRICS(7, "View Operation Metrics");
 
     private int value;
     private String message;
@@ -126,6 +126,40 @@ public class View {
         System.out.print("\n");
     }
 
+    /**
+     * Prints out a guest's reservations with every host
+     * in a predetermined string format
+     *
+     * @param guest         the guest whose reservations are listed
+     * @param reservations  a list of reservation objects with populated hosts
+     */
+    public void printGuestHistory(Guest guest, List<Reservation> reservations) {
+        displayHeader(String.format("%s, %s: %s reservations", guest.getLastName(), guest.getFirstName(), reservations.size()));
+        for (Reservation reservation : reservations) {
+            Host host = reservation.getHost();
+            io.printf("ID: %s \t| %s - %s\t| Cost: $%.2f \t| Host: %s, %s, %s%n",
+                    reservation.getId(),
+                    reservation.getStartDate(),
+                    reservation.getEndDate(),
+                    reservation.getcostOfStay(),
+                    host == null ? "Unknown" : host.getLastName(),
+                    host == null ? "" : host.getCity(),
+                    host == null ? "" : host.getState()
+            );
+        }
+    }
+
+    /**
+     * Prints out the text dump of the operation metrics
+     * recorded since the program started
+     *
+     * @param dump  the metrics as plain text tables
+     */
+    public void printMetrics(String dump) {
+        displayHeader("OPERATION METRICS");
+        io.print(dump);
+    }
+
     /**
      * Returns a string provided by console input.
      * The string is assumed to be an email address
@@ -164,6 +198,75 @@ public class View {
         }
     }
 
+    /**
+     * Returns the first day of a search provided by console input
+     *
+     * @return the provided date
+     */
+    public LocalDate getSearchStartDate() {
+        return io.readLocalDate("Start date [MM/dd/yyyy]: ");
+    }
+
+    /**
+     * Returns the last day of a search provided by console input
+     *
+     * @return the provided date
+     */
+    public LocalDate getSearchEndDate() {
+        return io.readLocalDate("End date [MM/dd/yyyy]: ");
+    }
+
+    /**
+     * Returns a state abbreviation provided by console input,
+     * or a blank string when any state is accepted
+     *
+     * @return the provided string
+     */
+    public String getOptionalState() {
+        return io.readString("State abbreviation (ENTER for any): ");
+    }
+
+    /**
+     * Returns a city provided by console input,
+     * or a blank string when any city is accepted
+     *
+     * @return the provided string
+     */
+    public String getOptionalCity() {
+        return io.readString("City (ENTER for any): ");
+    }
+
+    /**
+     * Prints out a list of host objects that are free for a
+     * date range, along with what the stay would cost with each
+     *
+     * @param hosts     a list of available host objects
+     * @param startDate the first day of the stay
+     * @param endDate   the last day of the stay
+     */
+    public void printAvailableHosts(List<Host> hosts, LocalDate startDate, LocalDate endDate) {
+        displayHeader(String.format("%s hosts available %s - %s", hosts.size(), startDate, endDate));
+        if (hosts.isEmpty()) {
+            io.println("No hosts are available for these dates");
+            return;
+        }
+
+        for (Host host : hosts) {
+            //Quote the stay at the host's rates
+            Reservation quote = new Reservation();
+            quote.setHost(host);
+            quote.setStartDate(startDate);
+            quote.setEndDate(endDate);
+            io.printf("%s, %s \t| %s \t| %s \t| Cost: $%.2f%n",
+                    host.getCity(),
+                    host.getState(),
+                    host.getLastName(),
+                    host.getEmail(),
+                    quote.determineCostOfStay()
+            );
+        }
+    }
+
     /**
      * Returns a new reservation object containing values obtained by
      * console input and from the provided host and guest objects.
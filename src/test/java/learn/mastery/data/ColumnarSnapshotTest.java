@@ -0,0 +1,70 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Guest;
+import learn.mastery.models.Reservation;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarSnapshotTest {
+
+    private Reservation reservation(int id, String start, String end, int guestId, String total) {
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setStartDate(LocalDate.parse(start));
+        reservation.setEndDate(LocalDate.parse(end));
+        Guest guest = new Guest();
+        guest.setId(guestId);
+        reservation.setGuest(guest);
+        reservation.setcostOfStay(new BigDecimal(total));
+        return reservation;
+    }
+
+    @Test
+    void shouldRoundTripEveryColumn() throws Exception {
+        byte[] bytes = ColumnarSnapshot.encode(List.of(
+                reservation(1, "2020-07-01", "2020-07-02", 18, "870"),
+                reservation(7, "1969-12-30", "2031-02-28", 1000, "1234.56")));
+
+        assertEquals(ColumnarSnapshot.sizeOf(2), bytes.length);
+        List<Reservation> read = ColumnarSnapshot.decode(ByteBuffer.wrap(bytes), "test");
+        assertEquals(2, read.size());
+        assertEquals(7, read.get(1).getId());
+        assertEquals(LocalDate.of(1969, 12, 30), read.get(1).getStartDate());
+        assertEquals(LocalDate.of(2031, 2, 28), read.get(1).getEndDate());
+        assertEquals(1000, read.get(1).getGuest().getId());
+        assertEquals(new BigDecimal("1234.56"), read.get(1).getcostOfStay());
+        //Whole amounts load with one decimal place, as the CSV reader gives them
+        assertEquals(new BigDecimal("870.0"), read.get(0).getcostOfStay());
+    }
+
+    @Test
+    void shouldRejectCorruptedSnapshot() throws Exception {
+        byte[] bytes = ColumnarSnapshot.encode(List.of(reservation(1, "2020-07-01", "2020-07-02", 18, "870")));
+        bytes[ColumnarSnapshot.HEADER_BYTES] ^= 1;
+
+        IOException ex = assertThrows(IOException.class,
+                () -> ColumnarSnapshot.decode(ByteBuffer.wrap(bytes), "test"));
+        assertTrue(ex.getMessage().contains("checksum"));
+    }
+
+    @Test
+    void shouldRejectTruncatedSnapshot() throws Exception {
+        byte[] bytes = ColumnarSnapshot.encode(List.of(reservation(1, "2020-07-01", "2020-07-02", 18, "870")));
+
+        assertThrows(IOException.class,
+                () -> ColumnarSnapshot.decode(ByteBuffer.wrap(bytes, 0, bytes.length - 1), "test"));
+    }
+
+    @Test
+    void shouldNotEncodeFractionsOfACent() {
+        assertThrows(DataException.class, () -> ColumnarSnapshot.encode(
+                List.of(reservation(1, "2020-07-01", "2020-07-02", 18, "870.125"))));
+    }
+}
@@ -0,0 +1,88 @@
+package learn.mastery.data;
+
+import learn.mastery.metrics.Counter;
+import learn.mastery.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataFileWatcherTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    private DataFileWatcher watcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        watcher = new DataFileWatcher();
+    }
+
+    @AfterEach
+    void tearDown() {
+        watcher.close();
+    }
+
+    //Watch events arrive on another thread, so wait a bounded time for them
+    static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    void shouldDeliverChangedFiles() throws Exception {
+        Set<Path> changed = ConcurrentHashMap.newKeySet();
+        watcher.register(tempDirectory, changed::add);
+        watcher.start();
+
+        Path file = tempDirectory.resolve("hosts.csv");
+        Files.writeString(file, "id\n");
+
+        waitFor(() -> changed.contains(file.toAbsolutePath().normalize()));
+    }
+
+    @Test
+    void shouldOnlyReportWatchingWhileRunning() throws Exception {
+        watcher.register(tempDirectory, changed -> { });
+        assertFalse(watcher.isWatching(tempDirectory));
+
+        watcher.start();
+        assertTrue(watcher.isWatching(tempDirectory));
+        assertFalse(watcher.isWatching(tempDirectory.resolve("other")));
+
+        watcher.close();
+        waitFor(() -> !watcher.isWatching(tempDirectory));
+        assertFalse(watcher.isWatching(tempDirectory));
+    }
+
+    @Test
+    void shouldKeepDeliveringAfterListenerFails() throws Exception {
+        Counter failures = MetricsRegistry.getDefault().counter("DataFileWatcher.failedReloads");
+        long before = failures.get();
+        Set<Path> changed = ConcurrentHashMap.newKeySet();
+        watcher.register(tempDirectory, path -> {
+            throw new IllegalStateException("broken listener");
+        });
+        watcher.register(tempDirectory, changed::add);
+        watcher.start();
+
+        Files.writeString(tempDirectory.resolve("a.csv"), "a\n");
+        waitFor(() -> changed.contains(tempDirectory.resolve("a.csv").toAbsolutePath().normalize()));
+        Files.writeString(tempDirectory.resolve("b.csv"), "b\n");
+        waitFor(() -> changed.contains(tempDirectory.resolve("b.csv").toAbsolutePath().normalize()));        //Listeners run in order, so the broken one has already failed for both files
+        assertTrue(failures.get() >= before + 2);
+    }
+}
@@ -3,7 +3,10 @@ package learn.mastery.data;
 import learn.mastery.models.Guest;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class GuestRepositoryDouble implements GuestRepository {
     @Override
@@ -37,4 +40,15 @@ public class GuestRepositoryDouble implements GuestRepository {
         return null;
     }
 
+    @Override
+    public Map<Integer, Guest> findByIds(Collection<Integer> ids) {
+        Map<Integer, Guest> result = new HashMap<>();
+        for (Guest guest : findAll()) {
+            if (ids.contains(guest.getId())) {
+                result.put(guest.getId(), guest);
+            }
+        }
+        return result;
+    }
+
 }
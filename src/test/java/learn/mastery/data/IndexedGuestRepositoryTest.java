@@ -0,0 +1,97 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Guest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedGuestRepositoryTest {
+
+    private static final String HEADER = "guest_id,first_name,last_name,email,phone,state";
+
+    @TempDir
+    Path tempDirectory;
+
+    private Path guestFile;
+    private IndexedGuestRepository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        guestFile = tempDirectory.resolve("guests.csv");
+        Files.writeString(guestFile, HEADER + "\n"
+                + "1,Joe,Job,JJ@email.com,(700) 1234567,NC\n"
+                + "2,Billy,Bob,BobbingAround@email.com,(600) 1234567,SC\n");
+        repository = new IndexedGuestRepository(new GuestFileRepository(guestFile.toString()));
+    }
+
+    @Test
+    void shouldFindAllGuests() {
+        assertEquals(2, repository.findAll().size());
+    }
+
+    @Test
+    void shouldFindGuestById() {
+        assertEquals("Joe", repository.findById(1).getFirstName());
+        assertNull(repository.findById(3));
+    }
+
+    @Test
+    void shouldFindGuestByNormalizedEmail() {
+        assertEquals("Bob", repository.findByEmail("bobbingaround@EMAIL.com").getLastName());
+        assertEquals("Job", repository.findByEmail("  jj@email.com ").getLastName());
+        assertNull(repository.findByEmail("fake@email.com"));
+        assertNull(repository.findByEmail(null));
+    }
+
+    @Test
+    void shouldFindGuestsByIds() {
+        Map<Integer, Guest> guests = repository.findByIds(List.of(1, 2, 9));
+
+        assertEquals(2, guests.size());
+        assertEquals("Billy", guests.get(2).getFirstName());
+        assertTrue(repository.findByIds(List.of()).isEmpty());
+    }
+
+    @Test
+    void shouldShareGuestInstancesBetweenLookups() {
+        assertSame(repository.findById(1), repository.findByEmail("JJ@email.com"));
+    }
+
+    @Test
+    void shouldReloadWhenFileChanges() throws IOException {
+        assertNull(repository.findById(3));
+
+        Files.writeString(guestFile, HEADER + "\n"
+                + "1,Joe,Job,JJ@email.com,(700) 1234567,NC\n"
+                + "2,Billy,Bob,BobbingAround@email.com,(600) 1234567,SC\n"
+                + "3,Moe,Robbins,RobbMoe3@email.com,(504) 1234567,NC\n");
+        Files.setLastModifiedTime(guestFile, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+        assertEquals("Moe", repository.findById(3).getFirstName());
+        assertEquals(3, repository.findAll().size());
+    }
+
+    @Test
+    void shouldReloadChangedFileWhileWatched() throws Exception {
+        try (DataFileWatcher watcher = new DataFileWatcher()) {
+            repository.watchWith(watcher);
+            watcher.start();
+            assertNull(repository.findById(3));
+
+            Files.writeString(guestFile, "3,Moe,Robbins,RobbMoe3@email.com,(504) 1234567,NC\n", StandardOpenOption.APPEND);
+
+            DataFileWatcherTest.waitFor(() -> repository.findById(3) != null);
+            assertEquals("Robbins", repository.findByEmail("robbmoe3@email.com").getLastName());
+        }
+    }
+}
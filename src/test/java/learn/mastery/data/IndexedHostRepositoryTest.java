@@ -0,0 +1,104 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Host;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedHostRepositoryTest {
+
+    private static final String HEADER = "id,last_name,email,phone,address,city,state,postal_code,standard_rate,weekend_rate";
+    private static final String YEARNES = "3edda6bc-ab95-49a8-8962-d50b53f84b15,Yearnes,eyearnes0@sfgate.com,(806) 1783815,3 Nova Trail,Amarillo,TX,79182,340,425";
+    private static final String RHODES = "a0d911e7-4fde-4e4a-bdb7-f047f15615e8,Rhodes,krhodes1@posterous.com,(478) 7475991,7262 Morning Avenue,Macon,GA,31296,295,368.75";
+
+    @TempDir
+    Path tempDirectory;
+
+    private Path hostFile;
+    private IndexedHostRepository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        hostFile = tempDirectory.resolve("hosts.csv");
+        Files.writeString(hostFile, HEADER + "\n" + YEARNES + "\n");
+        repository = new IndexedHostRepository(new HostFileRepository(hostFile.toString()));
+    }
+
+    @Test
+    void shouldFindHostById() {
+        Host host = repository.findById("3edda6bc-ab95-49a8-8962-d50b53f84b15");
+        assertEquals("Yearnes", host.getLastName());
+        assertEquals(BigDecimal.valueOf(425.0), host.getWeekendRate());
+        assertEquals(host, repository.findById("3EDDA6BC-AB95-49A8-8962-D50B53F84B15"));
+    }
+
+    @Test
+    void shouldNotFindHostByUnknownOrMalformedId() {
+        assertNull(repository.findById("00000000-0000-0000-0000-000000000000"));
+        assertNull(repository.findById("not-a-uuid"));
+        assertNull(repository.findById(null));
+    }
+
+    @Test
+    void shouldFindHostByNormalizedEmail() {
+        assertEquals("Yearnes", repository.findByEmail(" EYEARNES0@sfgate.com").getLastName());
+        assertNull(repository.findByEmail("fake@email.com"));
+    }
+
+    @Test
+    void shouldShareHostInstancesBetweenLookups() {
+        assertSame(repository.findById("3edda6bc-ab95-49a8-8962-d50b53f84b15"),
+                repository.findByEmail("eyearnes0@sfgate.com"));
+    }
+
+    @Test
+    void shouldRejectChangesToSharedHosts() {
+        Host host = repository.findById("3edda6bc-ab95-49a8-8962-d50b53f84b15");
+        assertThrows(UnsupportedOperationException.class, () -> host.setCity("Austin"));
+        assertThrows(UnsupportedOperationException.class, () -> host.setStandardRate(BigDecimal.ONE));
+        assertEquals("Amarillo", repository.findByEmail("eyearnes0@sfgate.com").getCity());
+        assertEquals(34000L, host.getStandardRateCents());
+    }
+
+    @Test
+    void shouldRejectEverySetterOfSharedHosts() throws ReflectiveOperationException {
+        Host host = repository.findById("3edda6bc-ab95-49a8-8962-d50b53f84b15");
+        int setters = 0;
+        for (Method setter : Host.class.getMethods()) {
+            if (!setter.getName().startsWith("set")) {
+                continue;
+            }
+            //A setter added to Host later must be overridden as well
+            assertEquals(ReadOnlyHost.class, host.getClass().getMethod(setter.getName(),
+                    setter.getParameterTypes()).getDeclaringClass(), setter.getName());
+            InvocationTargetException thrown = assertThrows(InvocationTargetException.class,
+                    () -> setter.invoke(host, new Object[setter.getParameterCount()]), setter.getName());
+            assertTrue(thrown.getCause() instanceof UnsupportedOperationException, setter.getName());
+            setters++;
+        }
+        assertEquals(10, setters);
+        assertEquals("Yearnes", host.getLastName());
+        assertEquals(42500L, host.getWeekendRateCents());
+    }
+
+    @Test
+    void shouldReloadWhenFileChanges() throws IOException {
+        assertNull(repository.findByEmail("krhodes1@posterous.com"));
+
+        Files.writeString(hostFile, HEADER + "\n" + YEARNES + "\n" + RHODES + "\n");
+        Files.setLastModifiedTime(hostFile, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+        assertEquals("Macon", repository.findByEmail("krhodes1@posterous.com").getCity());
+        assertEquals(2, repository.findAll().size());
+    }
+}
@@ -0,0 +1,71 @@
+package learn.mastery.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedCsvReaderTest {
+
+    private MappedCsvReader reader(String content) {
+        return MappedCsvReader.wrap(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldTokenizeFieldsIncludingEmptyOnes() {
+        MappedCsvReader reader = reader("a,,c\r\n\nd\n");
+
+        assertTrue(reader.next());
+        assertEquals(3, reader.fieldCount());
+        assertEquals("a", reader.string(0));
+        assertEquals("", reader.string(1));
+        assertEquals("c", reader.string(2));
+
+        assertTrue(reader.next());
+        assertEquals(1, reader.fieldCount());
+        assertEquals("d", reader.string(0));
+        assertFalse(reader.next());
+        assertEquals(2, reader.recordsRead());
+    }
+
+    @Test
+    void shouldParseNumbersFromBytes() {
+        MappedCsvReader reader = reader("42,-7,2147483647,x1");
+        reader.next();
+
+        assertEquals(42, reader.parseInt(0));
+        assertEquals(-7, reader.parseInt(1));
+        assertEquals(Integer.MAX_VALUE, reader.parseInt(2));
+        assertThrows(NumberFormatException.class, () -> reader.parseInt(3));
+    }
+
+    @Test
+    void shouldParseDatesAsEpochDays() {
+        MappedCsvReader reader = reader("2024-02-29,1969-12-31,2023-02-29,2021-1-01");
+        reader.next();
+
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), reader.epochDay(0));
+        assertEquals(LocalDate.of(1969, 12, 31), reader.date(1));
+        assertThrows(NumberFormatException.class, () -> reader.epochDay(2));
+        assertThrows(NumberFormatException.class, () -> reader.epochDay(3));
+    }
+
+    @Test
+    void shouldParseDecimalsExactly() {
+        MappedCsvReader reader = reader("368.75,340,1530.0,0.1,1.005");
+        reader.next();
+
+        assertEquals(36875, reader.cents(0));
+        assertEquals(34000, reader.cents(1));
+        assertEquals(10, reader.cents(3));
+        assertThrows(NumberFormatException.class, () -> reader.cents(4));
+
+        assertEquals(BigDecimal.valueOf(368.75), reader.decimal(0));
+        assertEquals(BigDecimal.valueOf(340.0), reader.decimal(1));
+        assertEquals(BigDecimal.valueOf(1530.0), reader.decimal(2));
+        assertEquals(new BigDecimal("1.005"), reader.decimal(4));
+    }
+}
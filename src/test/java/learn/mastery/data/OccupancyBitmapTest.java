@@ -0,0 +1,40 @@
+package learn.mastery.data;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OccupancyBitmapTest {
+
+    @Test
+    void shouldMarkRangesAcrossWordBoundaries() {
+        OccupancyBitmap bitmap = new OccupancyBitmap(1000, 400);
+        bitmap.set(1060, 1130);
+
+        assertFalse(bitmap.isFree(1060, 1060));
+        assertFalse(bitmap.isFree(1130, 1200));
+        assertFalse(bitmap.isFree(1000, 1399));
+        assertTrue(bitmap.isFree(1000, 1059));
+        assertTrue(bitmap.isFree(1131, 1399));
+
+        bitmap.clear(1064, 1127);
+        assertTrue(bitmap.isFree(1064, 1127));
+        assertFalse(bitmap.isFree(1063, 1063));
+        assertFalse(bitmap.isFree(1128, 1128));
+    }
+
+    @Test
+    void shouldOnlyCoverItsWindow() {
+        OccupancyBitmap bitmap = new OccupancyBitmap(1000, 400);
+
+        assertTrue(bitmap.covers(1000, 1399));
+        assertFalse(bitmap.covers(900, 1010));
+        assertFalse(bitmap.covers(1390, 5000));
+        assertFalse(bitmap.covers(1100, 1050));
+
+        //Days outside the window are ignored rather than failing
+        bitmap.set(-50, 1001);
+        assertFalse(bitmap.isFree(1001, 1001));
+        assertTrue(bitmap.isFree(1002, 1399));
+    }
+}
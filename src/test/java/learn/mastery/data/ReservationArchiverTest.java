@@ -0,0 +1,78 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Guest;
+import learn.mastery.models.Reservation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReservationArchiverTest {
+
+    //Folder Path
+    private final String testDirectory = "./data/reservations_test/";
+    private final String hostId = "9d469342-ad0b-4f5a-8d28-e81e690ba29a";
+
+    @Test
+    public void shouldArchiveWithoutReusingIds(@TempDir Path directory) throws DataException, IOException {
+        Files.copy(Paths.get(testDirectory + "SEEDED_" + hostId + ".csv"), directory.resolve(hostId + ".csv"));
+        ReservationFileRepository archiving = new ReservationFileRepository(directory.toString());
+        Reservation pastReservation = new Reservation();
+        pastReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        pastReservation.setStartDate(LocalDate.of(2021, 3, 1));
+        pastReservation.setEndDate(LocalDate.of(2021, 3, 4));
+        pastReservation.setcostOfStay(new BigDecimal("412.50"));
+        archiving.add(hostId, pastReservation);
+        Reservation currentReservation = new Reservation();
+        currentReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        currentReservation.setStartDate(LocalDate.of(2021, 3, 10));
+        currentReservation.setEndDate(LocalDate.of(2021, 3, 12));
+        currentReservation.setcostOfStay(new BigDecimal("300"));
+        archiving.add(hostId, currentReservation);
+        ReservationArchiver archiver = new ReservationArchiver(archiving);
+
+        assertEquals(2, archiver.archivePastStays(LocalDate.of(2021, 3, 10)));
+        assertEquals(0, archiver.archivePastStays(LocalDate.of(2021, 3, 10)));
+
+        List<Reservation> hot = archiving.findAll(hostId);
+        assertEquals(1, hot.size());
+        assertEquals(3, hot.get(0).getId());
+        assertEquals(2, Files.readAllLines(directory.resolve(hostId + ".csv")).size());
+        assertFalse(Files.exists(directory.resolve(hostId + ".journal")));
+        assertEquals(1, archiving.findAllForGuest(4).size());
+
+        ReservationFileRepository reopened = new ReservationFileRepository(directory.toString());
+        List<Reservation> archived = reopened.findArchived(hostId);
+        assertEquals(2, archived.size());
+        assertEquals(LocalDate.of(2021, 3, 1), archived.get(1).getStartDate());
+        assertEquals(new BigDecimal("412.5"), archived.get(1).getcostOfStay());
+        assertEquals(hostId, reopened.findArchivedForGuest(4).get(0).getHost().getId());
+        assertEquals(1, reopened.findArchivedForGuest(18).size());
+
+        //Archiving every stay must not hand out an archived id again
+        assertEquals(1, new ReservationArchiver(reopened).archivePastStays(LocalDate.of(2030, 1, 1)));
+        assertTrue(reopened.findAll(hostId).isEmpty());
+        assertEquals(4, new ReservationFileRepository(directory.toString()).add(hostId, currentReservation).getId());
+    }
+
+    @Test
+    public void shouldKeepStaysThatAreNotOverOrNotWholeCents() {
+        Reservation reservation = new Reservation();
+        reservation.setStartDate(LocalDate.of(2021, 3, 1));
+        reservation.setEndDate(LocalDate.of(2021, 3, 4));
+        reservation.setcostOfStay(new BigDecimal("412.50"));
+
+        assertTrue(ReservationArchiver.isArchivable(reservation, LocalDate.of(2021, 3, 5)));
+        assertFalse(ReservationArchiver.isArchivable(reservation, LocalDate.of(2021, 3, 4)));
+        reservation.setcostOfStay(new BigDecimal("412.505"));
+        assertFalse(ReservationArchiver.isArchivable(reservation, LocalDate.of(2021, 3, 5)));
+    }
+}
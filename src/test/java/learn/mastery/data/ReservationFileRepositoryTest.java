@@ -1,18 +1,36 @@
 package learn.mastery.data;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import learn.mastery.metrics.MetricsRegistry;
+import learn.mastery.metrics.OperationStats;
 import learn.mastery.models.Guest;
-import learn.mastery.models.Host;
 import learn.mastery.models.Reservation;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -22,33 +40,95 @@ public class ReservationFileRepositoryTest {
     private ReservationFileRepository repository;
     //Folder Path
     private final String testDirectory = "./data/reservations_test/";
+    private final String hostId = "9d469342-ad0b-4f5a-8d28-e81e690ba29a";
 
     @BeforeEach
     public void setUp() throws IOException {
         repository = new ReservationFileRepository(testDirectory);
 
-        //Define Host
-        Host testHost = new Host();
-        testHost.setId("9d469342-ad0b-4f5a-8d28-e81e690ba29a");
-        repository.setHost(testHost);
-
         //Clean File
-        Files.copy(Paths.get(testDirectory + "SEEDED_" + testHost.getId() + ".csv"),
-                Paths.get(testDirectory + testHost.getId() + ".csv"),
+        Files.copy(Paths.get(testDirectory + "SEEDED_" + hostId + ".csv"),
+                Paths.get(testDirectory + hostId + ".csv"),
+                StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(Paths.get(testDirectory + hostId + ".journal"));
+        Files.deleteIfExists(Paths.get(testDirectory + GuestReservationIndex.FILE_NAME));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Paths.get(testDirectory + hostId + ".journal"));
+        Files.deleteIfExists(Paths.get(testDirectory + GuestReservationIndex.FILE_NAME));
+        Files.copy(Paths.get(testDirectory + "SEEDED_" + hostId + ".csv"),
+                Paths.get(testDirectory + hostId + ".csv"),
                 StandardCopyOption.REPLACE_EXISTING);
     }
 
 
     @Test
     void checkThatCleanFileWasMade() {
-        String thisFilePath = testDirectory + repository.getHost().getId() + ".csv";
+        String thisFilePath = testDirectory + hostId + ".csv";
 
-        List<Reservation> r = repository.findAll();
+        List<Reservation> r = repository.findAll(hostId);
         System.out.println(r.size());
 
         assertTrue(Files.exists(Paths.get(thisFilePath)));
 
-        assertEquals(1, repository.findAll().size());
+        assertEquals(1, repository.findAll(hostId).size());
+    }
+
+    @Test
+    void shouldRecordRowsAndBytesReadByOperation() throws IOException {
+        OperationStats stats = MetricsRegistry.getDefault().operation("ReservationFileRepository.findAll");
+        long calls = stats.getCalls();
+        long rows = stats.getRowsScanned();
+        long bytes = stats.getBytesRead();
+
+        repository.findAll(hostId);
+        repository.findAll(hostId);
+
+        //Header and one reservation, read once and then served from the cache
+        assertEquals(calls + 2, stats.getCalls());
+        assertEquals(rows + 2, stats.getRowsScanned());
+        assertEquals(bytes + Files.size(Paths.get(testDirectory + hostId + ".csv")), stats.getBytesRead());
+    }
+
+    @Test
+    void shouldRecordFlightEventsWhileRecording(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("data.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("learn.mastery.CsvParse");
+            recording.enable("learn.mastery.ReservationFileRead");
+            recording.enable("learn.mastery.ReservationFileWrite");
+            recording.enable("learn.mastery.OverlapCheck");
+            recording.start();
+            Reservation existing = repository.findAll(hostId).get(0);
+            repository.findOverlapping(hostId, existing.getStartDate(), existing.getEndDate());
+            repository.delete(hostId, existing.getId());
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent parse = only(events, "learn.mastery.CsvParse");
+        assertEquals(2, parse.getInt("rows"));
+        assertEquals(Files.size(Paths.get(testDirectory + "SEEDED_" + hostId + ".csv")), parse.getLong("bytes"));
+        RecordedEvent read = only(events, "learn.mastery.ReservationFileRead");
+        assertEquals(hostId, read.getString("hostId"));
+        assertEquals(1, read.getInt("rows"));
+        RecordedEvent overlap = only(events, "learn.mastery.OverlapCheck");
+        assertEquals(1, overlap.getInt("candidates"));
+        assertEquals(1, overlap.getInt("overlaps"));
+        RecordedEvent write = only(events, "learn.mastery.ReservationFileWrite");
+        assertEquals("journal", write.getString("file"));
+        assertEquals(1, write.getInt("rows"));
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> named = events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+        assertEquals(1, named.size(), name);
+        return named.get(0);
     }
 
     @Test
@@ -62,12 +142,12 @@ public class ReservationFileRepositoryTest {
         validReservation.setEndDate(LocalDate.now().plusDays(1));
         validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
 
-        Reservation addedReservation = repository.add(validReservation);
+        Reservation addedReservation = repository.add(hostId, validReservation);
 
         assertNotNull(addedReservation);
         assertEquals(2, addedReservation.getId());
         assertEquals(4, addedReservation.getGuest().getId());
-        assertEquals(2, repository.findAll().size());
+        assertEquals(2, repository.findAll(hostId).size());
     }
 
 
@@ -83,9 +163,9 @@ public class ReservationFileRepositoryTest {
         validReservation.setEndDate(LocalDate.now().plusDays(1));
         validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
 
-        Reservation addedReservation = repository.add(validReservation);
+        Reservation addedReservation = repository.add(hostId, validReservation);
 
-        Reservation found = repository.findById(2);
+        Reservation found = repository.findById(hostId, 2);
         assertNotNull(found);
         assertEquals(addedReservation.getId(), found.getId());
     }
@@ -101,13 +181,13 @@ public class ReservationFileRepositoryTest {
         validReservation.setEndDate(LocalDate.now().plusDays(1));
         validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
 
-        Reservation addedReservation = repository.add(validReservation);
+        Reservation addedReservation = repository.add(hostId, validReservation);
 
         addedReservation.setcostOfStay(BigDecimal.valueOf(150.00));
-        boolean updated = repository.update(addedReservation);
+        boolean updated = repository.update(hostId, addedReservation);
 
         assertTrue(updated);
-        Reservation updatedReservation = repository.findById(addedReservation.getId());
+        Reservation updatedReservation = repository.findById(hostId, addedReservation.getId());
         assertNotNull(updatedReservation);
         assertEquals(BigDecimal.valueOf(150.00), updatedReservation.getcostOfStay());
     }
@@ -123,12 +203,12 @@ public class ReservationFileRepositoryTest {
         validReservation.setEndDate(LocalDate.now().plusDays(1));
         validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
 
-        Reservation addedReservation = repository.add(validReservation);
+        Reservation addedReservation = repository.add(hostId, validReservation);
 
-        boolean deleted = repository.delete(addedReservation.getId());
+        boolean deleted = repository.delete(hostId, addedReservation.getId());
         assertTrue(deleted);
-        assertNull(repository.findById(addedReservation.getId()));
-        assertEquals(1, repository.findAll().size());
+        assertNull(repository.findById(hostId, addedReservation.getId()));
+        assertEquals(1, repository.findAll(hostId).size());
     }
 
     @Test
@@ -142,12 +222,471 @@ public class ReservationFileRepositoryTest {
         validReservation.setEndDate(LocalDate.now().plusDays(1));
         validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
 
-        Reservation addedReservation = repository.add(validReservation);
+        Reservation addedReservation = repository.add(hostId, validReservation);
 
-        assertEquals(2, repository.findAll().size());
+        assertEquals(2, repository.findAll(hostId).size());
 
-        List<Reservation> reservationsByGuestId = repository.findAllByGuestId(4);
+        List<Reservation> reservationsByGuestId = repository.findAllByGuestId(hostId, 4);
         assertEquals(1, reservationsByGuestId.size());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void shouldFindOverlappingReservations() throws DataException {
+        Reservation validReservation = new Reservation();
+        validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        validReservation.setStartDate(LocalDate.now().plusDays(10));
+        validReservation.setEndDate(LocalDate.now().plusDays(12));
+        validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+        Reservation added = repository.add(hostId, validReservation);
+
+        List<Reservation> containing = repository.findOverlapping(hostId,
+                LocalDate.now().plusDays(8), LocalDate.now().plusDays(15));
+        assertEquals(1, containing.size());
+        assertEquals(added.getId(), containing.get(0).getId());
+        assertEquals(1, repository.findOverlapping(hostId,
+                LocalDate.now().plusDays(12), LocalDate.now().plusDays(14)).size());
+        assertEquals(0, repository.findOverlapping(hostId,
+                LocalDate.now().plusDays(13), LocalDate.now().plusDays(14)).size());
+
+        //Index follows updates and deletes
+        added.setStartDate(LocalDate.now().plusDays(20));
+        added.setEndDate(LocalDate.now().plusDays(22));
+        assertTrue(repository.update(hostId, added));
+        assertEquals(0, repository.findOverlapping(hostId,
+                LocalDate.now().plusDays(8), LocalDate.now().plusDays(15)).size());
+        assertTrue(repository.delete(hostId, added.getId()));
+        assertEquals(0, repository.findOverlapping(hostId,
+                LocalDate.now().plusDays(20), LocalDate.now().plusDays(22)).size());
+    }
+
+    @Test
+    public void shouldKeepAvailabilityCurrentAcrossWrites() throws DataException {
+        Reservation first = new Reservation();
+        first.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        first.setStartDate(LocalDate.now().plusDays(10));
+        first.setEndDate(LocalDate.now().plusDays(14));
+        first.setcostOfStay(BigDecimal.valueOf(100.00));
+        repository.add(hostId, first);
+
+        Reservation second = new Reservation();
+        second.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        second.setStartDate(LocalDate.now().plusDays(12));
+        second.setEndDate(LocalDate.now().plusDays(16));
+        second.setcostOfStay(BigDecimal.valueOf(100.00));
+        repository.add(hostId, second);
+
+        assertFalse(repository.isAvailable(hostId, LocalDate.now().plusDays(9), LocalDate.now().plusDays(10)));
+        assertTrue(repository.isAvailable(hostId, LocalDate.now().plusDays(17), LocalDate.now().plusDays(20)));
+
+        //Days shared with the second stay stay booked after the first is removed
+        assertTrue(repository.delete(hostId, first.getId()));
+        assertTrue(repository.isAvailable(hostId, LocalDate.now().plusDays(10), LocalDate.now().plusDays(11)));
+        assertFalse(repository.isAvailable(hostId, LocalDate.now().plusDays(12), LocalDate.now().plusDays(12)));
+
+        //Ranges outside the bitmap window are still answered
+        assertTrue(repository.isAvailable(hostId, LocalDate.now().plusYears(10), LocalDate.now().plusYears(10).plusDays(3)));
+    }
+
+    @Test
+    public void shouldRebuildOverlapIndexAfterOutsideChange() throws DataException, IOException {
+        Reservation validReservation = new Reservation();
+        validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        validReservation.setStartDate(LocalDate.now().plusDays(10));
+        validReservation.setEndDate(LocalDate.now().plusDays(12));
+        validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+        repository.add(hostId, validReservation);
+        assertEquals(1, repository.findOverlapping(hostId,
+                LocalDate.now().plusDays(10), LocalDate.now().plusDays(10)).size());
+
+        //Another process restores the seeded file
+        Files.deleteIfExists(Paths.get(testDirectory + hostId + ".journal"));
+
+        assertEquals(0, repository.findOverlapping(hostId,
+                LocalDate.now().plusDays(10), LocalDate.now().plusDays(10)).size());
+    }
+
+    @Test
+    public void shouldFindReservationsForGuestFromIndex() throws DataException {
+        //The index is built from the seeded file on first use
+        List<Reservation> seeded = repository.findAllForGuest(18);
+        assertEquals(1, seeded.size());
+        assertEquals(hostId, seeded.get(0).getHost().getId());
+        assertTrue(Files.exists(Paths.get(testDirectory + GuestReservationIndex.FILE_NAME)));
+
+        Reservation validReservation = new Reservation();
+        validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        validReservation.setStartDate(LocalDate.now().plusDays(10));
+        validReservation.setEndDate(LocalDate.now().plusDays(12));
+        validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+        Reservation added = repository.add(hostId, validReservation);
+        assertEquals(1, repository.findAllForGuest(4).size());
+
+        //The index file is read back by a new repository
+        ReservationFileRepository reopened = new ReservationFileRepository(testDirectory);
+        assertEquals(added.getId(), reopened.findAllForGuest(4).get(0).getId());
+
+        //Changing the guest moves the reservation between guests
+        added.setGuest(new Guest(18, "Eight", "Teen", "18@email.com", "4041234567", "ny"));
+        assertTrue(reopened.update(hostId, added));
+        assertEquals(0, reopened.findAllForGuest(4).size());
+        assertEquals(2, reopened.findAllForGuest(18).size());
+
+        assertTrue(reopened.delete(hostId, added.getId()));
+        assertEquals(1, reopened.findAllForGuest(18).size());
+    }
+
+    @Test
+    public void shouldRebuildGuestIndexFromHostFiles() throws DataException, IOException {
+        assertEquals(1, repository.findAllForGuest(18).size());
+
+        //Another process adds a reservation behind the repository's back
+        Files.writeString(Paths.get(testDirectory + hostId + ".journal"),
+                "A,7,2030-01-01,2030-01-03,7,200\n");
+        assertEquals(0, repository.findAllForGuest(7).size());
+
+        repository.rebuildGuestIndex();
+        assertEquals(1, repository.findAllForGuest(7).size());
+        //Seed copies are not host files
+        assertEquals(1, repository.findAllForGuest(18).size());
+    }
+
+    @Test
+    public void shouldKeepWriteWhenGuestIndexCannotBeUpdated() throws DataException, IOException {
+        assertEquals(1, repository.findAllForGuest(18).size());
+        //The index can no longer be appended to
+        Path indexFile = Paths.get(testDirectory + GuestReservationIndex.FILE_NAME);
+        Files.delete(indexFile);
+        Files.createDirectory(indexFile);
+
+        Reservation validReservation = new Reservation();
+        validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        validReservation.setStartDate(LocalDate.now().plusDays(10));
+        validReservation.setEndDate(LocalDate.now().plusDays(12));
+        validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+        long failures = MetricsRegistry.getDefault().counter("ReservationFileRepository.guestIndexFailures").get();
+        Reservation added = repository.add(hostId, validReservation);
+        assertNotNull(repository.findById(hostId, added.getId()));
+        assertEquals(failures + 1,
+                MetricsRegistry.getDefault().counter("ReservationFileRepository.guestIndexFailures").get());
+
+        //The stale index is rebuilt from the host files on the next lookup
+        Files.delete(indexFile);
+        assertEquals(added.getId(), repository.findAllForGuest(4).get(0).getId());
+        assertEquals(added.getId(), new ReservationFileRepository(testDirectory).findAllForGuest(4).get(0).getId());
+    }
+
+    @Test
+    public void shouldPreloadEveryHost() throws DataException {
+        Reservation validReservation = new Reservation();
+        validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        validReservation.setStartDate(LocalDate.now().plusDays(10));
+        validReservation.setEndDate(LocalDate.now().plusDays(12));
+        validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+        repository.add(hostId, validReservation);
+
+        PreloadReport report = new ReservationFileRepository(testDirectory).preload();
+
+        //Seed copies are not host files
+        assertEquals(1, report.getHostCount());
+        assertEquals(2, report.getReservationCount());
+        assertTrue(report.getErrors().isEmpty());
+    }
+
+    @Test
+    public void shouldPreloadOnlyWhatFitsWithoutEvicting(@TempDir Path directory) throws IOException {
+        String otherHostId = "3edda6bc-ab95-49a8-8962-d50b53f84b15";
+        Files.copy(Paths.get(testDirectory + "SEEDED_" + hostId + ".csv"), directory.resolve(hostId + ".csv"));
+        Files.copy(Paths.get(testDirectory + "SEEDED_" + hostId + ".csv"), directory.resolve(otherHostId + ".csv"));
+        ReservationFileRepository small = new ReservationFileRepository(directory.toString());
+        small.setCacheCapacityBytes(1);
+        //The newest host is always cached, even over capacity
+        small.findAll(hostId);
+
+        PreloadReport report = small.preload();
+
+        assertEquals(1, report.getHostCount());
+        assertEquals(1, report.getCachedCount());
+        assertEquals(1, report.getSkippedCount());
+        assertEquals(0, report.getEvictionCount());
+        assertTrue(report.getRequiredCacheBytes() > 1);
+        assertTrue(report.toString().contains("1 hosts did not fit"), report.toString());
+        assertEquals(1, small.getCacheStats().getEntries());
+
+        small.setCacheCapacityBytes(report.getRequiredCacheBytes());
+        report = small.preload();
+        assertEquals(2, report.getHostCount());
+        assertEquals(0, report.getSkippedCount());
+    }
+
+    @Test
+    public void shouldReportUnreadableLinesOnPreload() throws IOException {
+        Files.writeString(Paths.get(testDirectory + hostId + ".csv"),
+                "2,2030-01-01,2030-01-03\n3,2030-02-30,2030-03-01,7,200\n4,2030-04-01,2030-04-03,7,200\n",
+                StandardOpenOption.APPEND);
+
+        PreloadReport report = repository.preload();
+
+        assertEquals(2, report.getReservationCount());
+        assertEquals(2, report.getErrors().size());
+        assertEquals(2, repository.findAll(hostId).size());
+    }
+
+    @Test
+    public void shouldServeRepeatReadsFromCache() throws DataException {
+        repository.findAll(hostId);
+        repository.findAll(hostId);
+        assertEquals(1, repository.getCacheStats().getMisses());
+        assertEquals(1, repository.getCacheStats().getHits());
+
+        //Writes keep the cached host current instead of dropping it
+        Reservation validReservation = new Reservation();
+        validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        validReservation.setStartDate(LocalDate.now().plusDays(10));
+        validReservation.setEndDate(LocalDate.now().plusDays(12));
+        validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+        long weightBefore = repository.getCacheStats().getWeightBytes();
+        repository.add(hostId, validReservation);
+
+        assertEquals(2, repository.findAll(hostId).size());
+        assertEquals(1, repository.getCacheStats().getMisses());
+        assertTrue(repository.getCacheStats().getWeightBytes() > weightBefore);
+    }
+
+    @Test
+    public void shouldEvictHostsPastCacheCapacity(@TempDir Path directory) throws IOException {
+        String otherHostId = "3edda6bc-ab95-49a8-8962-d50b53f84b15";
+        Files.copy(Paths.get(testDirectory + hostId + ".csv"), directory.resolve(hostId + ".csv"));
+        Files.copy(Paths.get(testDirectory + hostId + ".csv"), directory.resolve(otherHostId + ".csv"));
+        ReservationFileRepository small = new ReservationFileRepository(directory.toString());
+        small.setCacheCapacityBytes(1);
+
+        assertEquals(1, small.findAll(hostId).size());
+        assertEquals(1, small.findAll(otherHostId).size());
+        assertEquals(1, small.findAll(hostId).size());
+
+        CacheStats stats = small.getCacheStats();
+        assertEquals(3, stats.getMisses());
+        assertEquals(2, stats.getEvictions());
+        assertEquals(1, stats.getEntries());
+    }
+
+    @Test
+    public void shouldReloadHostChangedWhileWatched(@TempDir Path directory) throws Exception {
+        Path hostFile = directory.resolve(hostId + ".csv");
+        Files.copy(Paths.get(testDirectory + hostId + ".csv"), hostFile);
+        ReservationFileRepository watched = new ReservationFileRepository(directory.toString());
+        assertEquals(1, watched.findAll(hostId).size());
+        assertEquals(1, watched.findAllForGuest(18).size());
+
+        try (DataFileWatcher watcher = new DataFileWatcher()) {
+            watched.watchWith(watcher);
+            watcher.start();
+            Files.writeString(hostFile, "2,2030-01-01,2030-01-03,5,300\n", StandardOpenOption.APPEND);
+
+            DataFileWatcherTest.waitFor(() -> watched.findAll(hostId).size() == 2);
+            assertFalse(watched.isAvailable(hostId, LocalDate.of(2030, 1, 2), LocalDate.of(2030, 1, 2)));
+            assertEquals(1, watched.findAllForGuest(5).size());
+            //Reads while watched never found the host missing from the cache
+            assertEquals(1, watched.getCacheStats().getMisses());
+        }
+    }
+
+    @Test
+    public void shouldSeeUndeliveredChangeBeforeWriting(@TempDir Path directory) throws Exception {
+        Path hostFile = directory.resolve(hostId + ".csv");
+        Files.copy(Paths.get(testDirectory + hostId + ".csv"), hostFile);
+        ReservationFileRepository watched = new ReservationFileRepository(directory.toString());
+        assertEquals(1, watched.findAll(hostId).size());
+
+        CountDownLatch delivered = new CountDownLatch(1);
+        try (DataFileWatcher watcher = new DataFileWatcher()) {
+            //Holds up the watcher's thread, so the repository hears of no change until released
+            watcher.register(directory, changed -> {
+                try {
+                    delivered.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            watched.watchWith(watcher);
+            watcher.start();
+            Files.writeString(hostFile, "2,2030-01-01,2030-01-03,5,300\n", StandardOpenOption.APPEND);
+
+            Reservation validReservation = new Reservation();
+            validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+            validReservation.setStartDate(LocalDate.of(2030, 2, 1));
+            validReservation.setEndDate(LocalDate.of(2030, 2, 3));
+            validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+            assertEquals(3, watched.add(hostId, validReservation).getId());
+            assertFalse(watched.withHostWriteLock(hostId,
+                    () -> watched.isAvailable(hostId, LocalDate.of(2030, 1, 2), LocalDate.of(2030, 1, 2))));
+            delivered.countDown();
+        }
+        assertEquals(3, watched.findAll(hostId).size());
+    }
+
+    @Test
+    public void shouldReplayJournalInNewRepository() throws DataException {
+        Reservation validReservation = new Reservation();
+        validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        validReservation.setStartDate(LocalDate.now());
+        validReservation.setEndDate(LocalDate.now().plusDays(1));
+        validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+        repository.add(hostId, validReservation);
+        repository.delete(hostId, 1);
+
+        ReservationFileRepository reopened = new ReservationFileRepository(testDirectory);
+
+        List<Reservation> all = reopened.findAll(hostId);
+        assertEquals(1, all.size());
+        assertEquals(2, all.get(0).getId());
+    }
+
+    @Test
+    public void shouldRejectFractionalCentsWhenColumnar(@TempDir Path directory) throws DataException, IOException {
+        Files.copy(Paths.get(testDirectory + hostId + ".csv"), directory.resolve(hostId + ".csv"));
+        ReservationFileRepository columnar = new ReservationFileRepository(directory.toString());
+        new SnapshotFormatConverter(columnar).convert(SnapshotFormat.COLUMNAR);
+        Reservation validReservation = new Reservation();
+        validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        validReservation.setStartDate(LocalDate.of(2030, 1, 1));
+        validReservation.setEndDate(LocalDate.of(2030, 1, 3));
+        validReservation.setcostOfStay(new BigDecimal("412.505"));
+
+        assertThrows(DataException.class, () -> columnar.add(hostId, validReservation));
+        assertEquals(1, columnar.findAll(hostId).size());
+    }
+
+    @Test
+    public void shouldCompactJournalIntoSnapshot() throws DataException, IOException {
+        Reservation validReservation = new Reservation();
+        validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        validReservation.setStartDate(LocalDate.now());
+        validReservation.setEndDate(LocalDate.now().plusDays(1));
+        validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+        repository.add(hostId, validReservation);
+
+        repository.compact(hostId);
+
+        assertFalse(Files.exists(Paths.get(testDirectory + hostId + ".journal")));
+        assertEquals(3, Files.readAllLines(Paths.get(testDirectory + hostId + ".csv")).size());
+        assertEquals(2, repository.findAll(hostId).size());
+    }
+
+    @Test
+    public void shouldIgnoreTornJournalRecord() throws DataException, IOException {
+        Reservation validReservation = new Reservation();
+        validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        validReservation.setStartDate(LocalDate.now());
+        validReservation.setEndDate(LocalDate.now().plusDays(1));
+        validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+        repository.add(hostId, validReservation);
+
+        //Simulate a crash part way through appending a delete
+        Files.writeString(Paths.get(testDirectory + hostId + ".journal"),
+                "D,", StandardOpenOption.APPEND);
+
+        assertEquals(2, repository.findAll(hostId).size());
+    }
+
+    @Test
+    public void shouldForceEveryWriteInSyncMode() throws DataException {
+        repository.setDurabilityMode(DurabilityMode.SYNC, 5);
+        long before = repository.getForceCount();
+
+        for (int i = 0; i < 3; i++) {
+            Reservation validReservation = new Reservation();
+            validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+            validReservation.setStartDate(LocalDate.now().plusDays(i * 3));
+            validReservation.setEndDate(LocalDate.now().plusDays(i * 3 + 1));
+            validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+            repository.add(hostId, validReservation);
+        }
+
+        assertEquals(3, repository.getForceCount() - before);
+        assertEquals(4, repository.findAll(hostId).size());
+    }
+
+    @Test
+    public void shouldShareForcesInGroupCommitMode() throws Exception {
+        repository.setDurabilityMode(DurabilityMode.GROUP_COMMIT, 20);
+        long before = repository.getForceCount();
+        int writers = 8;
+
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        List<Future<Reservation>> added = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            int offset = i * 3;
+            added.add(pool.submit(() -> {
+                Reservation validReservation = new Reservation();
+                validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+                validReservation.setStartDate(LocalDate.now().plusDays(offset));
+                validReservation.setEndDate(LocalDate.now().plusDays(offset + 1));
+                validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+                return repository.add(hostId, validReservation);
+            }));
+        }
+        for (Future<Reservation> future : added) {
+            assertNotNull(future.get(10, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assertTrue(repository.getForceCount() - before < writers);
+        assertEquals(writers + 1, repository.findAll(hostId).size());
+        repository.setDurabilityMode(DurabilityMode.SYNC, 5);
+    }
+
+    @Test
+    public void shouldNotLeaveTemporaryFilesAfterCompaction() throws DataException, IOException {
+        Reservation validReservation = new Reservation();
+        validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        validReservation.setStartDate(LocalDate.now());
+        validReservation.setEndDate(LocalDate.now().plusDays(1));
+        validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+        repository.add(hostId, validReservation);
+
+        repository.compact(hostId);
+
+        try (Stream<Path> files = Files.list(Paths.get(testDirectory))) {
+            assertTrue(files.noneMatch(path -> path.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    public void shouldAssignUniqueIdsToConcurrentAdds() throws Exception {
+        int writers = 6;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        List<Future<Reservation>> added = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            int offset = i * 3;
+            added.add(pool.submit(() -> {
+                Reservation validReservation = new Reservation();
+                validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+                validReservation.setStartDate(LocalDate.now().plusDays(offset));
+                validReservation.setEndDate(LocalDate.now().plusDays(offset + 1));
+                validReservation.setcostOfStay(BigDecimal.valueOf(100.00));
+                return repository.add(hostId, validReservation);
+            }));
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (Future<Reservation> future : added) {
+            ids.add(future.get(10, TimeUnit.SECONDS).getId());
+        }
+        pool.shutdown();
+
+        assertEquals(writers, ids.size());
+        assertEquals(writers + 1, repository.findAll(hostId).size());
+    }
+
+    @Test
+    public void shouldNotWriteWithoutValidHostId() {
+        Reservation validReservation = new Reservation();
+        validReservation.setStartDate(LocalDate.now());
+        validReservation.setEndDate(LocalDate.now().plusDays(1));
+
+        assertThrows(DataException.class, () -> repository.add(null, validReservation));
+        assertThrows(DataException.class, () -> repository.add("../guests", validReservation));
+        assertTrue(repository.findAll("").isEmpty());
+    }
+
+}
@@ -0,0 +1,58 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Reservation;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReservationIntervalIndexTest {
+
+    private final LocalDate origin = LocalDate.of(2024, 1, 1);
+
+    private Reservation reservation(int id, int startOffset, int endOffset) {
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setStartDate(origin.plusDays(startOffset));
+        reservation.setEndDate(origin.plusDays(endOffset));
+        return reservation;
+    }
+
+    private long day(int offset) {
+        return origin.plusDays(offset).toEpochDay();
+    }
+
+    @Test
+    void shouldFindOverlapsIncludingBothEnds() {
+        ReservationIntervalIndex index = new ReservationIntervalIndex(List.of(
+                reservation(1, 0, 30),
+                reservation(2, 40, 42),
+                reservation(3, 50, 55)));
+
+        //A long stay that started well before the range is still found
+        assertEquals(1, index.findOverlapping(day(25), day(26)).size());
+        assertEquals(2, index.findOverlapping(day(42), day(42)).get(0).getId());
+        assertEquals(2, index.findOverlapping(day(35), day(50)).size());
+        assertEquals(0, index.findOverlapping(day(31), day(39)).size());
+        assertEquals(0, index.findOverlapping(day(56), day(90)).size());
+    }
+
+    @Test
+    void shouldReplaceAndRemoveById() {
+        ReservationIntervalIndex index = new ReservationIntervalIndex(List.of(
+                reservation(1, 0, 2),
+                reservation(2, 0, 3)));
+
+        index.put(reservation(1, 10, 12));
+        assertEquals(2, index.size());
+        assertEquals(1, index.findOverlapping(day(0), day(1)).size());
+        assertEquals(1, index.findOverlapping(day(11), day(11)).get(0).getId());
+
+        assertNotNull(index.remove(2));
+        assertNull(index.remove(2));
+        assertEquals(0, index.findOverlapping(day(0), day(5)).size());
+        assertEquals(3, index.nextId());
+    }
+}
@@ -12,7 +12,6 @@ import java.util.stream.Collectors;
 public class ReservationRepositoryDouble implements ReservationRepository {
 
     private List<Reservation> reservations = new ArrayList<>();
-    private Host host;
 
     public ReservationRepositoryDouble(){
         Reservation reservation = new Reservation();
@@ -26,18 +25,8 @@ public class ReservationRepositoryDouble implements ReservationRepository {
     }
 
     @Override
-    public void setHost(Host host) {
-        this.host = host;
-    }
-
-    @Override
-    public Host getHost() {
-        return host;
-    }
-
-    @Override
-    public Reservation findById(int id) {
-        for (Reservation reservation : findAll()) {
+    public Reservation findById(String hostId, int id) {
+        for (Reservation reservation : findAll(hostId)) {
             if (reservation.getId() == id) {
                 return reservation;
             }
@@ -46,21 +35,42 @@ public class ReservationRepositoryDouble implements ReservationRepository {
     }
 
     @Override
-    public List<Reservation> findAllByGuestId(int guestId) {
-        List<Reservation> guestReservations = findAll().stream()
+    public List<Reservation> findAllByGuestId(String hostId, int guestId) {
+        List<Reservation> guestReservations = findAll(hostId).stream()
                 .filter(i -> i.getId() == guestId)
                 .collect(Collectors.toList());
         return guestReservations;
     }
 
     @Override
-    public List<Reservation> findAll() {
-        return reservations.stream().collect(Collectors.toList());
+    public List<Reservation> findAllForGuest(int guestId) {
+        return reservations.stream()
+                .filter(i -> i.getGuest() != null && i.getGuest().getId() == guestId)
+                .collect(Collectors.toList());
     }
 
     @Override
-    public boolean update(Reservation reservation) throws DataException {
-        Reservation toUpdate = findById(reservation.getId());
+    public List<Reservation> findAll(String hostId) {
+        return reservations.stream()
+                .filter(i -> i.getHost() != null && i.getHost().getId().equalsIgnoreCase(hostId))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Reservation> findOverlapping(String hostId, LocalDate startDate, LocalDate endDate) {
+        return findAll(hostId).stream()
+                .filter(i -> !i.getStartDate().isAfter(endDate) && !i.getEndDate().isBefore(startDate))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean isAvailable(String hostId, LocalDate startDate, LocalDate endDate) {
+        return findOverlapping(hostId, startDate, endDate).isEmpty();
+    }
+
+    @Override
+    public boolean update(String hostId, Reservation reservation) throws DataException {
+        Reservation toUpdate = findById(hostId, reservation.getId());
 
         if(!toUpdate.equals(new Reservation())) {
             toUpdate.setGuest(reservation.getGuest());
@@ -74,8 +84,8 @@ public class ReservationRepositoryDouble implements ReservationRepository {
     }
 
     @Override
-    public boolean delete(int reservationId) {
-        if (findById(reservationId) != null){
+    public boolean delete(String hostId, int reservationId) {
+        if (findById(hostId, reservationId) != null){
             reservations = reservations.stream()
                     .filter(i -> i.getId() != reservationId)
                     .collect(Collectors.toList());
@@ -85,15 +95,20 @@ public class ReservationRepositoryDouble implements ReservationRepository {
     }
 
     @Override
-    public Reservation add(Reservation reservation) throws DataException {
+    public Reservation add(String hostId, Reservation reservation) throws DataException {
         reservations.add(reservation);
 
         int nextID = 1;
-        while(!findAllByGuestId(nextID).isEmpty()){
+        while(!findAllByGuestId(hostId, nextID).isEmpty()){
             nextID++;
         }
         reservation.setId(reservations.size());
 
         return reservation;
     }
+
+    @Override
+    public <T> T withHostWriteLock(String hostId, HostWriteSection<T> section) throws DataException {
+        return section.run();
+    }
 }
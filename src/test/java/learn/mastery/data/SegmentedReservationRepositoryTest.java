@@ -0,0 +1,252 @@
+package learn.mastery.data;
+
+import learn.mastery.metrics.IoBudget;
+import learn.mastery.models.Guest;
+import learn.mastery.models.Reservation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedReservationRepositoryTest {
+
+    private static final String HOST_ID = "9d469342-ad0b-4f5a-8d28-e81e690ba29a";
+    private static final String OTHER_HOST_ID = "3edda6bc-ab95-49a8-8962-d50b53f84b15";
+
+    @TempDir
+    Path directory;
+
+    private SegmentedReservationRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new SegmentedReservationRepository(directory.toString());
+    }
+
+    private Reservation reservation(int guestId, LocalDate start, String total) {
+        Reservation reservation = new Reservation();
+        reservation.setGuest(new Guest(guestId, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        reservation.setStartDate(start);
+        reservation.setEndDate(start.plusDays(2));
+        reservation.setcostOfStay(new BigDecimal(total));
+        return reservation;
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".seg")).count();
+        }
+    }
+
+    @Test
+    void shouldKeepChangesAcrossReopen() throws DataException, IOException {
+        Reservation first = repository.add(HOST_ID, reservation(4, LocalDate.of(2030, 1, 1), "300"));
+        Reservation second = repository.add(HOST_ID, reservation(5, LocalDate.of(2030, 2, 1), "412.50"));
+        second.setcostOfStay(new BigDecimal("500"));
+        assertTrue(repository.update(HOST_ID, second));
+        assertTrue(repository.delete(HOST_ID, first.getId()));
+        assertFalse(repository.delete(HOST_ID, first.getId()));
+
+        SegmentedReservationRepository reopened = new SegmentedReservationRepository(directory.toString());
+        List<Reservation> all = reopened.findAll(HOST_ID);
+        assertEquals(1, all.size());
+        assertEquals(2, all.get(0).getId());
+        assertEquals(new BigDecimal("500.0"), all.get(0).getcostOfStay());
+        assertFalse(reopened.isAvailable(HOST_ID, LocalDate.of(2030, 2, 2), LocalDate.of(2030, 2, 2)));
+        assertTrue(reopened.isAvailable(HOST_ID, LocalDate.of(2030, 1, 1), LocalDate.of(2030, 1, 3)));
+        assertEquals(3, reopened.add(HOST_ID, reservation(4, LocalDate.of(2030, 3, 1), "100")).getId());
+        assertEquals(1, countSegments());
+    }
+
+    @Test
+    void shouldFindGuestReservationsWithOneReadPerSegment() throws Exception {
+        repository.add(HOST_ID, reservation(4, LocalDate.of(2030, 1, 1), "300"));
+        repository.add(HOST_ID, reservation(5, LocalDate.of(2030, 2, 1), "300"));
+        repository.add(OTHER_HOST_ID, reservation(4, LocalDate.of(2030, 1, 1), "300"));
+        SegmentedReservationRepository reopened = new SegmentedReservationRepository(directory.toString());
+
+        List<Reservation> found = new ArrayList<>();
+        //The index and the one segment, not a file per host
+        IoBudget.measure("finding a guest's reservations", () -> found.addAll(reopened.findAllForGuest(4)))
+                .opensAtMost(2);
+        assertEquals(List.of(OTHER_HOST_ID, HOST_ID), found.stream()
+                .map(reservation -> reservation.getHost().getId()).sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    void shouldCompactSupersededSegments() throws Exception {
+        repository.setSegmentBytes(256);
+        repository.add(OTHER_HOST_ID, reservation(7, LocalDate.of(2030, 1, 1), "300"));
+        Reservation changing = repository.add(HOST_ID, reservation(4, LocalDate.of(2030, 1, 1), "300"));
+        for (int i = 1; i <= 20; i++) {
+            changing.setcostOfStay(BigDecimal.valueOf(300 + i));
+            assertTrue(repository.update(HOST_ID, changing));
+        }
+
+        repository.compact();
+
+        //Only the blocks written last are live, so the old segments are gone
+        assertTrue(countSegments() <= 3, countSegments() + " segments left");
+        SegmentedReservationRepository reopened = new SegmentedReservationRepository(directory.toString());
+        assertEquals(new BigDecimal("320.0"), reopened.findAll(HOST_ID).get(0).getcostOfStay());
+        assertEquals(7, reopened.findAll(OTHER_HOST_ID).get(0).getGuest().getId());
+    }
+
+    @Test
+    void shouldAppendOneChangeInsteadOfTheWholeHost() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            repository.add(HOST_ID, reservation(4, LocalDate.of(2030, 1, 1).plusDays(3 * i), "300"));
+        }
+        Path segment = directory.resolve("segment-000001.seg");
+        long before = Files.size(segment);
+
+        Reservation changed = repository.findById(HOST_ID, 20);
+        changed.setcostOfStay(new BigDecimal("450"));
+        assertTrue(repository.update(HOST_ID, changed));
+        assertTrue(repository.delete(HOST_ID, 7));
+        Reservation added = repository.add(HOST_ID, reservation(5, LocalDate.of(2031, 1, 1), "100"));
+
+        //Three deltas rather than three copies of a 40 row block
+        assertEquals(2 * SegmentBlock.deltaSize(HOST_ID, true) + SegmentBlock.deltaSize(HOST_ID, false),
+                Files.size(segment) - before);
+        SegmentedReservationRepository reopened = new SegmentedReservationRepository(directory.toString());
+        List<Reservation> all = reopened.findAll(HOST_ID);
+        assertEquals(40, all.size());
+        assertNull(reopened.findById(HOST_ID, 7));
+        assertEquals(new BigDecimal("450.0"), reopened.findById(HOST_ID, 20).getcostOfStay());
+        assertEquals(41, added.getId());
+        assertEquals(5, reopened.findById(HOST_ID, 41).getGuest().getId());
+        assertEquals(40, reopened.findAllForGuest(4).size() + reopened.findAllForGuest(5).size());
+    }
+
+    @Test
+    void shouldWriteTheWholeHostOnceTheChainIsFull() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            repository.add(HOST_ID, reservation(4, LocalDate.of(2030, 1, 1).plusDays(3 * i), "300"));
+        }
+        Path indexFile = directory.resolve(SegmentIndex.FILE_NAME);
+        int written = Files.readAllLines(indexFile).size();
+        Reservation changing = repository.findById(HOST_ID, 1);
+        for (int i = 1; i <= SegmentedReservationRepository.MAX_DELTAS + 1; i++) {
+            changing.setcostOfStay(BigDecimal.valueOf(300 + i));
+            assertTrue(repository.update(HOST_ID, changing));
+        }
+
+        List<String> records = Files.readAllLines(indexFile);
+        List<String> changes = records.subList(written, records.size());
+        assertEquals(SegmentedReservationRepository.MAX_DELTAS + 1, changes.size());
+        assertTrue(changes.stream().anyMatch(record -> !record.startsWith("+")));
+        //A cold read folds at most a full chain: the index and the one segment it is in
+        SegmentedReservationRepository reopened = new SegmentedReservationRepository(directory.toString());
+        IoBudget.measure("reading a host with a chain of deltas", () -> reopened.findAll(HOST_ID))
+                .opensAtMost(2);
+        assertEquals(new BigDecimal(String.valueOf(301.0 + SegmentedReservationRepository.MAX_DELTAS)),
+                reopened.findById(HOST_ID, 1).getcostOfStay());
+    }
+
+    @Test
+    void shouldFoldChainsWhenCompacting() throws Exception {
+        repository.setSegmentBytes(4096);
+        for (int i = 0; i < 40; i++) {
+            repository.add(HOST_ID, reservation(4, LocalDate.of(2030, 1, 1).plusDays(3 * i), "300"));
+        }
+        repository.add(OTHER_HOST_ID, reservation(7, LocalDate.of(2030, 1, 1), "300"));
+        Reservation changing = repository.findById(HOST_ID, 1);
+        for (int i = 1; i <= 120; i++) {
+            changing.setcostOfStay(BigDecimal.valueOf(300 + i));
+            assertTrue(repository.update(HOST_ID, changing));
+        }
+
+        repository.compact();
+
+        SegmentedReservationRepository reopened = new SegmentedReservationRepository(directory.toString());
+        assertEquals(40, reopened.findAll(HOST_ID).size());
+        assertEquals(new BigDecimal("420.0"), reopened.findById(HOST_ID, 1).getcostOfStay());
+        assertEquals(7, reopened.findAll(OTHER_HOST_ID).get(0).getGuest().getId());
+        assertEquals(41, reopened.findAllForGuest(4).size() + reopened.findAllForGuest(7).size());
+    }
+
+    @Test
+    void shouldRecoverDeltasMissingFromIndex() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            repository.add(HOST_ID, reservation(4, LocalDate.of(2030, 1, 1).plusDays(3 * i), "300"));
+        }
+        assertTrue(repository.delete(HOST_ID, 3));
+        Files.delete(directory.resolve(SegmentIndex.FILE_NAME));
+
+        SegmentedReservationRepository reopened = new SegmentedReservationRepository(directory.toString());
+
+        assertEquals(9, reopened.findAll(HOST_ID).size());
+        assertNull(reopened.findById(HOST_ID, 3));
+        assertEquals(11, reopened.add(HOST_ID, reservation(4, LocalDate.of(2031, 1, 1), "300")).getId());
+    }
+
+    @Test
+    void shouldRecoverBlocksMissingFromIndexAndCutTornBlock() throws Exception {
+        repository.add(HOST_ID, reservation(4, LocalDate.of(2030, 1, 1), "300"));
+        repository.add(OTHER_HOST_ID, reservation(7, LocalDate.of(2030, 1, 1), "300"));
+        Path segment = directory.resolve("segment-000001.seg");
+        long size = Files.size(segment);
+        Files.write(segment, new byte[]{40, 0, 0, 0, 36, 0, 1}, StandardOpenOption.APPEND);
+        Files.delete(directory.resolve(SegmentIndex.FILE_NAME));
+
+        SegmentedReservationRepository reopened = new SegmentedReservationRepository(directory.toString());
+
+        assertEquals(1, reopened.findAll(HOST_ID).size());
+        assertEquals(1, reopened.findAll(OTHER_HOST_ID).size());
+        assertEquals(size, Files.size(segment));
+        assertEquals(2, Files.readAllLines(directory.resolve(SegmentIndex.FILE_NAME)).size());
+    }
+
+    @Test
+    void shouldImportOneFilePerHostDirectory() throws DataException, IOException {
+        Path files = Files.createDirectory(directory.resolve("files"));
+        Files.copy(Paths.get("./data/reservations_test/SEEDED_" + HOST_ID + ".csv"), files.resolve(HOST_ID + ".csv"));
+        Files.copy(Paths.get("./data/reservations_test/SEEDED_" + HOST_ID + ".csv"),
+                files.resolve(OTHER_HOST_ID + ".csv"));
+        SegmentedReservationRepository segments =
+                new SegmentedReservationRepository(directory.resolve("segments").toString());
+
+        assertEquals(2, segments.importFrom(new ReservationFileRepository(files.toString())));
+
+        Reservation imported = segments.findById(OTHER_HOST_ID, 1);
+        assertEquals(LocalDate.of(2020, 7, 1), imported.getStartDate());
+        assertEquals(18, imported.getGuest().getId());
+        assertEquals(new BigDecimal("870.0"), imported.getcostOfStay());
+        assertEquals(2, segments.findAllForGuest(18).size());
+    }
+
+    @Test
+    void shouldRefuseToImportArchivedStays() throws DataException, IOException {
+        Path files = Files.createDirectory(directory.resolve("files"));
+        Files.copy(Paths.get("./data/reservations_test/SEEDED_" + HOST_ID + ".csv"), files.resolve(HOST_ID + ".csv"));
+        ReservationFileRepository source = new ReservationFileRepository(files.toString());
+        assertEquals(1, new ReservationArchiver(source).archivePastStays(LocalDate.now()));
+
+        SegmentedReservationRepository segments =
+                new SegmentedReservationRepository(directory.resolve("segments").toString());
+        assertThrows(DataException.class, () -> segments.importFrom(source));
+        assertTrue(segments.findAll(HOST_ID).isEmpty());
+    }
+
+    @Test
+    void shouldRejectFractionalCentsWithoutTakingAnId() throws DataException {
+        assertThrows(DataException.class,
+                () -> repository.add(HOST_ID, reservation(4, LocalDate.of(2030, 1, 1), "300.005")));
+
+        assertEquals(1, repository.add(HOST_ID, reservation(4, LocalDate.of(2030, 1, 1), "300")).getId());
+    }
+}
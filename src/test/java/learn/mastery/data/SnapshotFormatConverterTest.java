@@ -0,0 +1,55 @@
+package learn.mastery.data;
+
+import learn.mastery.models.Guest;
+import learn.mastery.models.Reservation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotFormatConverterTest {
+
+    //Folder Path
+    private final String testDirectory = "./data/reservations_test/";
+    private final String hostId = "9d469342-ad0b-4f5a-8d28-e81e690ba29a";
+
+    @Test
+    public void shouldConvertBetweenFormats(@TempDir Path directory) throws DataException, IOException {
+        Files.copy(Paths.get(testDirectory + "SEEDED_" + hostId + ".csv"), directory.resolve(hostId + ".csv"));
+        ReservationFileRepository converted = new ReservationFileRepository(directory.toString());
+        Reservation validReservation = new Reservation();
+        validReservation.setGuest(new Guest(4, "Four", "Ford", "4Fords@email.com", "4041234567", "ny"));
+        validReservation.setStartDate(LocalDate.of(2030, 1, 1));
+        validReservation.setEndDate(LocalDate.of(2030, 1, 3));
+        validReservation.setcostOfStay(new BigDecimal("412.50"));
+        converted.add(hostId, validReservation);
+
+        assertEquals(1, new SnapshotFormatConverter(converted).convert(SnapshotFormat.COLUMNAR));
+        assertFalse(Files.exists(directory.resolve(hostId + ".csv")));
+        assertFalse(Files.exists(directory.resolve(hostId + ".journal")));
+        assertEquals(ColumnarSnapshot.sizeOf(2), Files.size(directory.resolve(hostId + ".rsv")));
+
+        ReservationFileRepository reopened = new ReservationFileRepository(directory.toString());
+        reopened.setSnapshotFormat(SnapshotFormat.COLUMNAR);
+        List<Reservation> all = reopened.findAll(hostId);
+        assertEquals(2, all.size());
+        assertEquals(LocalDate.of(2020, 7, 1), all.get(0).getStartDate());
+        assertEquals(18, all.get(0).getGuest().getId());
+        assertEquals(new BigDecimal("870.0"), all.get(0).getcostOfStay());
+        assertEquals(new BigDecimal("412.5"), all.get(1).getcostOfStay());
+
+        assertEquals(1, new SnapshotFormatConverter(reopened).convert(SnapshotFormat.CSV));
+        assertFalse(Files.exists(directory.resolve(hostId + ".rsv")));
+        List<String> lines = Files.readAllLines(directory.resolve(hostId + ".csv"));
+        assertEquals(List.of("1,2020-07-01,2020-07-02,18,870.0", "2,2030-01-01,2030-01-03,4,412.5"),
+                lines.subList(1, lines.size()));
+    }
+}
@@ -0,0 +1,105 @@
+package learn.mastery.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightedLruCacheTest {
+
+    //Each value weighs as many bytes as the list holds items
+    private final WeightedLruCache<String, List<Integer>> cache = new WeightedLruCache<>(10, List::size);
+
+    private List<Integer> items(int count) {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(i);
+        }
+        return items;
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedByWeight() {
+        cache.put("a", items(4));
+        cache.put("b", items(4));
+        //Reading a makes b the least recently used
+        assertNotNull(cache.get("a", value -> true));
+        cache.put("c", items(4));
+
+        assertNull(cache.peek("b"));
+        assertNotNull(cache.peek("a"));
+        assertNotNull(cache.peek("c"));
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.getEvictions());
+        assertEquals(8, stats.getWeightBytes());
+        assertEquals(2, stats.getEntries());
+    }
+
+    @Test
+    void shouldOnlyPutValuesThatFitWithoutEvicting() {
+        cache.put("a", items(6));
+
+        assertFalse(cache.putIfFits("b", items(5)));
+        assertTrue(cache.putIfFits("b", items(4)));
+        //Replacing a value frees its own weight first
+        assertTrue(cache.putIfFits("a", items(6)));
+        assertNull(cache.peek("c"));
+        assertEquals(0, cache.stats().getEvictions());
+        assertEquals(10, cache.stats().getWeightBytes());
+    }
+
+    @Test
+    void shouldClearEveryValue() {
+        cache.put("a", items(4));
+        cache.put("b", items(4));
+        cache.clear();
+
+        assertNull(cache.get("a", value -> true));
+        assertNull(cache.peek("b"));
+        assertEquals(0, cache.stats().getWeightBytes());
+        assertEquals(0, cache.stats().getEvictions());
+        cache.put("c", items(10));
+        assertNotNull(cache.peek("c"));
+    }
+
+    @Test
+    void shouldKeepNewestValueEvenWhenOverCapacity() {
+        cache.put("a", items(2));
+        cache.put("big", items(25));
+
+        assertNull(cache.peek("a"));
+        assertNotNull(cache.peek("big"));
+        assertEquals(25, cache.stats().getWeightBytes());
+    }
+
+    @Test
+    void shouldCountHitsMissesAndInvalidValues() {
+        cache.put("a", items(1));
+
+        assertNotNull(cache.get("a", value -> true));
+        assertNull(cache.get("b", value -> true));
+        assertNull(cache.get("a", value -> false));
+        assertNull(cache.peek("a"));
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(0, stats.getWeightBytes());
+        assertEquals(1.0 / 3, stats.getHitRate(), 0.0001);
+    }
+
+    @Test
+    void shouldReweighValuesChangedInPlace() {
+        List<Integer> growing = items(2);
+        cache.put("a", items(3));
+        cache.put("growing", growing);
+
+        growing.addAll(items(6));
+        cache.reweigh("growing");
+
+        assertNull(cache.peek("a"));
+        assertEquals(8, cache.stats().getWeightBytes());
+    }
+}
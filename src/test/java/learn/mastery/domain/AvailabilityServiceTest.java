@@ -0,0 +1,68 @@
+package learn.mastery.domain;
+
+import learn.mastery.data.HostRepositoryDouble;
+import learn.mastery.data.ReservationRepositoryDouble;
+import learn.mastery.models.Host;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvailabilityServiceTest {
+
+    AvailabilityService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new AvailabilityService(new HostRepositoryDouble(), new ReservationRepositoryDouble());
+    }
+
+    @Test
+    void shouldFindHostsFreeForDates() {
+        Result<List<Host>> result = service.findAvailableHosts(
+                LocalDate.of(2024, 8, 12), LocalDate.of(2024, 8, 20), null, null);
+
+        assertTrue(result.isSuccess());
+        assertEquals(2, result.getPayload().size());
+        assertTrue(result.getPayload().stream()
+                .noneMatch(host -> host.getId().equals("3edda6bc-ab95-49a8-8962-d50b53f84b15")));
+    }
+
+    @Test
+    void shouldFindAllHostsOutsideBookedDates() {
+        Result<List<Host>> result = service.findAvailableHosts(
+                LocalDate.of(2024, 8, 16), LocalDate.of(2024, 8, 20), "", " ");
+
+        assertTrue(result.isSuccess());
+        assertEquals(3, result.getPayload().size());
+        //Sorted by state
+        assertEquals("AR", result.getPayload().get(0).getState());
+    }
+
+    @Test
+    void shouldFilterByStateAndCity() {
+        Result<List<Host>> result = service.findAvailableHosts(
+                LocalDate.of(2024, 8, 16), LocalDate.of(2024, 8, 20), "ga", " macon ");
+
+        assertTrue(result.isSuccess());
+        assertEquals(1, result.getPayload().size());
+        assertEquals("Rhodes", result.getPayload().get(0).getLastName());
+
+        result = service.findAvailableHosts(
+                LocalDate.of(2024, 8, 16), LocalDate.of(2024, 8, 20), "TX", "Austin");
+        assertEquals(0, result.getPayload().size());
+    }
+
+    @Test
+    void shouldNotSearchInvalidDates() {
+        Result<List<Host>> result = service.findAvailableHosts(null, LocalDate.of(2024, 8, 20), null, null);
+        assertFalse(result.isSuccess());
+
+        result = service.findAvailableHosts(LocalDate.of(2024, 8, 20), LocalDate.of(2024, 8, 20), null, null);
+        assertFalse(result.isSuccess());
+        assertNull(result.getPayload());
+    }
+}
@@ -6,6 +6,9 @@ import learn.mastery.models.Guest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class GuestServiceTest {
@@ -48,6 +51,16 @@ class GuestServiceTest {
         assertNull(guest);
     }
 
+    @Test
+    void shouldFindGuestsByGuestIDs() {
+        Map<Integer, Guest> guests = service.findGuestsByGuestIDs(List.of(1, 3, 5));
+
+        assertEquals(2, guests.size());
+        assertEquals("Joe", guests.get(1).getFirstName());
+        assertEquals("Robbins", guests.get(3).getLastName());
+        assertFalse(guests.containsKey(5));
+    }
+
     @Test
     void shouldValidateGuest() {
         Guest guest = repository.findById(1);
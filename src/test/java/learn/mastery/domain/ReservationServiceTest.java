@@ -1,18 +1,37 @@
 package learn.mastery.domain;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import learn.mastery.data.DataException;
+import learn.mastery.data.GuestFileRepository;
 import learn.mastery.data.GuestRepositoryDouble;
+import learn.mastery.data.HostFileRepository;
 import learn.mastery.data.HostRepositoryDouble;
+import learn.mastery.data.IndexedGuestRepository;
+import learn.mastery.data.ReservationArchiver;
+import learn.mastery.data.ReservationFileRepository;
 import learn.mastery.data.ReservationRepositoryDouble;
+import learn.mastery.metrics.IoBudget;
 import learn.mastery.models.Guest;
 import learn.mastery.models.Host;
 import learn.mastery.models.Reservation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -150,6 +169,84 @@ class ReservationServiceTest {
         assertEquals(1, result.getErrorMessages().size());
     }
 
+    @Test
+    void shouldRecordValidationEventWhileRecording(@TempDir Path directory) throws Exception {
+        Host host = hostService.findHostByHostId("3edda6bc-ab95-49a8-8962-d50b53f84b15");
+        List<Reservation> reservations = service.findAllReservationsForHost(host);
+
+        Path file = directory.resolve("validation.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("learn.mastery.Validation");
+            recording.start();
+            service.checkReservation(reservations.get(0));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertEquals(1, events.size());
+        assertEquals(host.getId(), events.get(0).getString("hostId"));
+        assertEquals(9, events.get(0).getInt("rules"));
+        assertEquals(1, events.get(0).getInt("failures"));
+    }
+
+    @Test
+    void shouldNotAddReservationContainingExistingStay() throws DataException {
+        Host host = hostService.findHostByHostId("3edda6bc-ab95-49a8-8962-d50b53f84b15");
+        Reservation existing = service.findAllReservationsForHost(host).get(0);
+
+        Reservation shortStay = new Reservation();
+        shortStay.setHost(host);
+        shortStay.setGuest(existing.getGuest());
+        shortStay.setStartDate(LocalDate.now().plusDays(10));
+        shortStay.setEndDate(LocalDate.now().plusDays(12));
+        shortStay.setcostOfStay(shortStay.determineCostOfStay());
+        assertTrue(service.addReservationToFile(shortStay).isSuccess());
+
+        //The new stay starts before and ends after the one already booked
+        Reservation longStay = new Reservation();
+        longStay.setHost(host);
+        longStay.setGuest(existing.getGuest());
+        longStay.setStartDate(LocalDate.now().plusDays(8));
+        longStay.setEndDate(LocalDate.now().plusDays(15));
+        longStay.setcostOfStay(longStay.determineCostOfStay());
+
+        Result<Reservation> result = service.addReservationToFile(longStay);
+        assertFalse(result.isSuccess());
+        assertEquals("Dates cannot Overlap", result.getErrorMessages().get(0));
+    }
+
+    @Test
+    void shouldFindReservationHistoryForGuest() {
+        Reservation existing = service.findAllReservationsForHost(hostService.findHostByHostId("3edda6bc-ab95-49a8-8962-d50b53f84b15")).get(0);
+
+        List<Reservation> history = service.findReservationHistoryForGuest(existing.getGuest());
+        assertEquals(1, history.size());
+        assertEquals("3edda6bc-ab95-49a8-8962-d50b53f84b15", history.get(0).getHost().getId());
+        assertEquals(0, service.findReservationHistoryForGuest(null).size());
+    }
+
+    @Test
+    void shouldCancelUpcomingReservationsForGuest() throws DataException {
+        Host host = hostService.findHostByHostId("3edda6bc-ab95-49a8-8962-d50b53f84b15");
+        Reservation existing = service.findAllReservationsForHost(host).get(0);
+
+        Reservation upcoming = new Reservation();
+        upcoming.setHost(host);
+        upcoming.setGuest(existing.getGuest());
+        upcoming.setStartDate(LocalDate.now().plusDays(10));
+        upcoming.setEndDate(LocalDate.now().plusDays(12));
+        upcoming.setcostOfStay(upcoming.determineCostOfStay());
+        assertTrue(service.addReservationToFile(upcoming).isSuccess());
+
+        Result<List<Reservation>> result = service.cancelUpcomingReservationsForGuest(existing.getGuest());
+        assertTrue(result.isSuccess());
+        assertEquals(1, result.getPayload().size());
+        //Past stays are kept
+        assertEquals(1, service.findReservationHistoryForGuest(existing.getGuest()).size());
+        assertFalse(service.cancelUpcomingReservationsForGuest(null).isSuccess());
+    }
+
     @Test
     void shouldUpdateValidReservation() throws DataException {
         Host host = hostService.findHostByHostId("3edda6bc-ab95-49a8-8962-d50b53f84b15");
@@ -243,4 +340,102 @@ class ReservationServiceTest {
         assertEquals(4, result.getErrorMessages().size());
     }
 
+
+    //I/O budgets, against real files
+
+    @Test
+    void shouldReadHostFileOnceForRepeatedListings(@TempDir Path directory) throws Exception {
+        ReservationService fileService = fileBackedService(directory);
+        Host host = new HostFileRepository("./data/hosts.csv").findById(FILE_HOST_ID);
+
+        IoBudget.measure("listing a host's reservations twice", () -> {
+            assertEquals(1, fileService.findAllReservationsForHost(host).size());
+            assertEquals(1, fileService.findAllReservationsForHost(host).size());
+        }).opensAtMost(1).rowsAtMost(2);
+    }
+
+    @Test
+    void shouldBookWithoutRereadingFiles(@TempDir Path directory) throws Exception {
+        ReservationService fileService = fileBackedService(directory);
+        Host host = new HostFileRepository("./data/hosts.csv").findById(FILE_HOST_ID);
+        Reservation existing = fileService.findAllReservationsForHost(host).get(0);
+        Guest guest = new GuestFileRepository("./data/guests.csv").findById(existing.getGuest().getId());
+        fileService.findReservationHistoryForGuest(guest);
+
+        IoBudget budget = IoBudget.measure("booking two stays with one host", () -> {
+            for (int week = 1; week <= 2; week++) {
+                Reservation stay = new Reservation();
+                stay.setHost(host);
+                stay.setGuest(guest);
+                stay.setStartDate(LocalDate.now().plusWeeks(week));
+                stay.setEndDate(LocalDate.now().plusWeeks(week).plusDays(2));
+                stay.setcostOfStay(stay.determineCostOfStay());
+                assertTrue(fileService.addReservationToFile(stay).isSuccess());
+            }
+        });
+        //Guests are read once, and the journal and guest index are each opened once for appending
+        budget.opensAtMost(3).rowsAtMost(1001);
+    }
+
+    @Test
+    void shouldBookContendedDatesOnce(@TempDir Path directory) throws Exception {
+        ReservationService fileService = fileBackedService(directory);
+        Host host = new HostFileRepository("./data/hosts.csv").findById(FILE_HOST_ID);
+        Guest guest = new GuestFileRepository("./data/guests.csv").findById(18);
+        int bookers = 8;
+
+        ExecutorService pool = Executors.newFixedThreadPool(bookers);
+        List<Future<Result<Reservation>>> results = new ArrayList<>();
+        for (int i = 0; i < bookers; i++) {
+            results.add(pool.submit(() -> {
+                Reservation stay = new Reservation();
+                stay.setHost(host);
+                stay.setGuest(guest);
+                stay.setStartDate(LocalDate.now().plusDays(10));
+                stay.setEndDate(LocalDate.now().plusDays(12));
+                stay.setcostOfStay(stay.determineCostOfStay());
+                return fileService.addReservationToFile(stay);
+            }));
+        }
+        int booked = 0;
+        for (Future<Result<Reservation>> result : results) {
+            Result<Reservation> outcome = result.get(10, TimeUnit.SECONDS);
+            if (outcome.isSuccess()) {
+                booked++;
+            } else {
+                assertEquals(List.of(ReservationService.OVERLAP_MESSAGE), outcome.getErrorMessages());
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(1, booked);
+        assertEquals(2, fileService.findAllReservationsForHost(host).size());
+    }
+
+    @Test
+    void shouldKeepArchivedStaysInHistory(@TempDir Path directory) throws Exception {
+        ReservationService fileService = fileBackedService(directory);
+        assertEquals(1, new ReservationArchiver(new ReservationFileRepository(directory.toString()))
+                .archivePastStays(LocalDate.now()));
+        Host host = new HostFileRepository("./data/hosts.csv").findById(FILE_HOST_ID);
+        Guest guest = new GuestFileRepository("./data/guests.csv").findById(18);
+
+        assertTrue(fileService.findAllReservationsForHost(host).isEmpty());
+        List<Reservation> hostHistory = fileService.findReservationHistoryForHost(host);
+        assertEquals(1, hostHistory.size());
+        assertEquals(LocalDate.of(2020, 7, 1), hostHistory.get(0).getStartDate());
+        List<Reservation> guestHistory = fileService.findReservationHistoryForGuest(guest);
+        assertEquals(1, guestHistory.size());
+        assertEquals(FILE_HOST_ID, guestHistory.get(0).getHost().getId());
+    }
+
+    private static final String FILE_HOST_ID = "9d469342-ad0b-4f5a-8d28-e81e690ba29a";
+
+    private static ReservationService fileBackedService(Path directory) throws IOException {
+        Files.copy(Paths.get("./data/reservations_test/SEEDED_" + FILE_HOST_ID + ".csv"),
+                directory.resolve(FILE_HOST_ID + ".csv"));
+        return new ReservationService(new IndexedGuestRepository(new GuestFileRepository("./data/guests.csv")),
+                new ReservationFileRepository(directory.toString()));
+    }
+
 }
\ No newline at end of file
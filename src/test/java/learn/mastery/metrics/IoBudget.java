@@ -0,0 +1,72 @@
+package learn.mastery.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures the file access of a block of code so a test can hold it
+ * to a budget, such as viewing a host's reservations opening at most
+ * two files. Only access made on the calling thread is counted.
+ */
+public final class IoBudget {
+
+    private final String description;
+    private final OperationStats stats;
+
+    private IoBudget(String description, OperationStats stats) {
+        this.description = description;
+        this.stats = stats;
+    }
+
+    /**
+     * Runs a block of code and counts the files it opened
+     * and the rows and bytes it read
+     *
+     * @param description   what the block does, for failure messages
+     * @param action        the block to measure
+     * @return              the measured access
+     * @throws Exception if the block throws
+     */
+    public static IoBudget measure(String description, Action action) throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.run(description, action::run);
+        return new IoBudget(description, registry.operation(description));
+    }
+
+    public IoBudget opensAtMost(long files) {
+        assertTrue(stats.getFilesOpened() <= files, String.format("%s opened %s files, budget %s",
+                description, stats.getFilesOpened(), files));
+        return this;
+    }
+
+    public IoBudget rowsAtMost(long rows) {
+        assertTrue(stats.getRowsScanned() <= rows, String.format("%s read %s rows, budget %s",
+                description, stats.getRowsScanned(), rows));
+        return this;
+    }
+
+    public IoBudget bytesAtMost(long bytes) {
+        assertTrue(stats.getBytesRead() <= bytes, String.format("%s read %s bytes, budget %s",
+                description, stats.getBytesRead(), bytes));
+        return this;
+    }
+
+    public long getFilesOpened() {
+        return stats.getFilesOpened();
+    }
+
+    public long getRowsScanned() {
+        return stats.getRowsScanned();
+    }
+
+    public long getBytesRead() {
+        return stats.getBytesRead();
+    }
+
+    /**
+     * A block of code under measurement
+     */
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+}
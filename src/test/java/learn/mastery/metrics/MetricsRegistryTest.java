@@ -0,0 +1,88 @@
+package learn.mastery.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    @Test
+    void shouldChargeReadsToEveryOpenOperation() {
+        registry.run("service.call", () -> {
+            Operation.recordBytes(100);
+            registry.run("repository.read", () -> {
+                Operation.recordRows(3);
+                Operation.recordBytes(50);
+            });
+            registry.run("repository.read", () -> Operation.recordRows(2));
+        });
+
+        OperationStats outer = registry.operation("service.call");
+        OperationStats inner = registry.operation("repository.read");
+        assertEquals(1, outer.getCalls());
+        assertEquals(5, outer.getRowsScanned());
+        assertEquals(150, outer.getBytesRead());
+        assertEquals(2, inner.getCalls());
+        assertEquals(5, inner.getRowsScanned());
+        assertEquals(50, inner.getBytesRead());
+        assertTrue(outer.getLatency().getMax() >= inner.getLatency().getMax());
+    }
+
+    @Test
+    void shouldIgnoreReadsOutsideAnOperation() {
+        Operation.recordRows(10);
+        Operation.recordBytes(10);
+        registry.run("after", () -> Operation.recordRows(1));
+
+        assertEquals(1, registry.operation("after").getRowsScanned());
+        assertEquals(0, registry.operation("after").getBytesRead());
+    }
+
+    @Test
+    void shouldTimeCallsThatReturnOrThrow() {
+        assertEquals(3, registry.time("call", () -> {
+            Operation.recordRows(3);
+            return 3;
+        }));
+        assertThrows(IOException.class, () -> registry.time("call", () -> {
+            throw new IOException("unreadable");
+        }));
+        Operation.recordRows(10);
+
+        assertEquals(2, registry.operation("call").getCalls());
+        assertEquals(3, registry.operation("call").getRowsScanned());
+    }
+
+    @Test
+    void shouldDumpEveryKindOfMetric() {
+        registry.run("GuestFileRepository.findAll", () -> {
+            Operation.recordRows(1000);
+            Operation.recordBytes(65_536);
+        });
+        registry.timer("compaction").record(2_000_000);
+        registry.counter("evictions").add(4);
+        registry.gauge("cache.hitRate", () -> 0.75);
+
+        String dump = registry.dump();
+
+        assertTrue(dump.matches("(?s).*GuestFileRepository\\.findAll +1 .* 1000 +65536\\R.*"));
+        assertTrue(dump.matches("(?s).*compaction +1 .* 2000\\.0\\R.*"));
+        assertTrue(dump.matches("(?s).*evictions +4\\R.*"));
+        assertTrue(dump.matches("(?s).*cache\\.hitRate +0\\.75\\R.*"));
+    }
+
+    @Test
+    void shouldForgetRecordedValuesOnReset() {
+        registry.counter("evictions").increment();
+        registry.gauge("cache.entries", () -> 3);
+
+        registry.reset();
+
+        assertEquals(0, registry.counter("evictions").get());
+        assertTrue(registry.dump().contains("cache.entries"));
+    }
+}
@@ -0,0 +1,62 @@
+package learn.mastery.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReservationTest {
+
+    private final Host host = new Host("a0d911e7-4fde-4e4a-bdb7-f047f15615e8","Rhodes","krhodes1@posterous.com","(478) 7475991","7262 Morning Avenue","Macon","GA","31296","295","368.75");
+
+    private Reservation reservation(LocalDate start, LocalDate end) {
+        Reservation reservation = new Reservation();
+        reservation.setHost(host);
+        reservation.setStartDate(start);
+        reservation.setEndDate(end);
+        return reservation;
+    }
+
+    @Test
+    void shouldPriceWeekendNightsAtWeekendRate() {
+        //Thursday to Sunday: Thursday at the standard rate, Friday and Saturday at the weekend rate
+        Reservation reservation = reservation(LocalDate.of(2024, 8, 8), LocalDate.of(2024, 8, 11));
+        assertEquals(new BigDecimal("1032.50"), reservation.determineCostOfStay());
+    }
+
+    @Test
+    void shouldPriceEmptyStayAsZero() {
+        Reservation reservation = reservation(LocalDate.of(2024, 8, 8), LocalDate.of(2024, 8, 8));
+        assertEquals(0, BigDecimal.ZERO.compareTo(reservation.determineCostOfStay()));
+    }
+
+    @Test
+    void shouldMatchNightByNightTotalForEveryStartAndLength() {
+        LocalDate first = LocalDate.of(1969, 12, 20);
+        for (int offset = 0; offset < 14; offset++) {
+            LocalDate start = first.plusDays(offset);
+            for (int nights = 0; nights < 40; nights++) {
+                BigDecimal expected = BigDecimal.ZERO;
+                for (int night = 0; night < nights; night++) {
+                    DayOfWeek day = start.plusDays(night).getDayOfWeek();
+                    boolean weekend = day == DayOfWeek.FRIDAY || day == DayOfWeek.SATURDAY;
+                    expected = expected.add(weekend ? host.getWeekendRate() : host.getStandardRate());
+                }
+                BigDecimal actual = reservation(start, start.plusDays(nights)).determineCostOfStay();
+                assertEquals(0, expected.compareTo(actual), start + " for " + nights + " nights");
+            }
+        }
+    }
+
+    @Test
+    void shouldPriceLongStaysExactly() {
+        //Ten years of nights at rates a double cannot hold exactly
+        host.setStandardRate(new BigDecimal("0.10"));
+        host.setWeekendRate(new BigDecimal("0.20"));
+        Reservation reservation = reservation(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 1).plusWeeks(520));
+        assertEquals(new BigDecimal("468.00"), reservation.determineCostOfStay());
+    }
+}
@@ -0,0 +1,98 @@
+package learn.mastery.tools;
+
+import learn.mastery.data.GuestFileRepository;
+import learn.mastery.data.HostFileRepository;
+import learn.mastery.data.ReservationFileRepository;
+import learn.mastery.domain.GuestService;
+import learn.mastery.domain.HostService;
+import learn.mastery.models.Guest;
+import learn.mastery.models.Host;
+import learn.mastery.models.Reservation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatasetGeneratorTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    private DatasetGenerator generator(long seed) {
+        DatasetGenerator generator = new DatasetGenerator(seed);
+        generator.setHostCount(7);
+        generator.setGuestCount(50);
+        generator.setReservationCount(200);
+        generator.setDays(365);
+        return generator;
+    }
+
+    @Test
+    void shouldWriteFilesTheRepositoriesCanRead() throws IOException {
+        assertEquals(200, generator(1).generate(tempDirectory));
+
+        List<Host> hosts = new HostFileRepository(tempDirectory.resolve("hosts.csv").toString()).findAll();
+        List<Guest> guests = new GuestFileRepository(tempDirectory.resolve("guests.csv").toString()).findAll();
+        ReservationFileRepository reservations =
+                new ReservationFileRepository(tempDirectory.resolve("reservations").toString());
+
+        assertEquals(7, hosts.size());
+        assertEquals(50, guests.size());
+        assertTrue(new HostService(null).validateHost(hosts.get(0)).isSuccess());
+        assertTrue(new GuestService(null).validateGuest(guests.get(0)).isSuccess());
+        int total = 0;
+        for (Host host : hosts) {
+            total += reservations.findAll(host.getId()).size();
+        }
+        assertEquals(200, total);
+    }
+
+    @Test
+    void shouldNotOverlapStaysOfOneHost() throws IOException {
+        DatasetGenerator generator = generator(2);
+        generator.generate(tempDirectory);
+        ReservationFileRepository repository =
+                new ReservationFileRepository(tempDirectory.resolve("reservations").toString());
+
+        for (int index = 0; index < 7; index++) {
+            List<Reservation> stays = repository.findAll(generator.host(index).getId());
+            stays.sort(Comparator.comparing(Reservation::getStartDate));
+            assertEquals(generator.reservationsFor(index), stays.size());
+            for (int i = 1; i < stays.size(); i++) {
+                assertTrue(stays.get(i).getStartDate().isAfter(stays.get(i - 1).getEndDate()));
+                assertTrue(stays.get(i).getStartDate().isBefore(stays.get(i).getEndDate()));
+            }
+        }
+    }
+
+    @Test
+    void shouldRepeatOutputForTheSameSeed() throws IOException {
+        generator(3).generate(tempDirectory.resolve("first"));
+        generator(3).generate(tempDirectory.resolve("second"));
+        generator(4).generate(tempDirectory.resolve("other"));
+
+        for (String file : List.of("hosts.csv", "guests.csv")) {
+            assertEquals(Files.readString(tempDirectory.resolve("first").resolve(file)),
+                    Files.readString(tempDirectory.resolve("second").resolve(file)));
+            assertNotEquals(Files.readString(tempDirectory.resolve("first").resolve(file)),
+                    Files.readString(tempDirectory.resolve("other").resolve(file)));
+        }
+        String hostFile = generator(3).host(5).getId() + ".csv";
+        assertEquals(Files.readString(tempDirectory.resolve("first").resolve("reservations").resolve(hostFile)),
+                Files.readString(tempDirectory.resolve("second").resolve("reservations").resolve(hostFile)));
+    }
+
+    @Test
+    void shouldNotGenerateReservationsWithoutGuests() {
+        DatasetGenerator generator = generator(5);
+        generator.setGuestCount(0);
+
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(tempDirectory));
+    }
+}
@@ -0,0 +1,52 @@
+package learn.mastery.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadTestTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void shouldKeepEveryWriteAndNeverDoubleBookUnderContention() throws Exception {
+        LoadTest test = new LoadTest(7);
+        test.setAgents(8);
+        test.setDurationMillis(1000);
+        test.setWriteShare(0.8);
+        test.setHostCount(3);
+        test.setGuestCount(20);
+        test.setReservationCount(30);
+        test.setSkew(2);
+
+        LoadTestReport report = test.run(tempDirectory);
+
+        assertTrue(report.getOperations() > 0);
+        assertTrue(report.getLatency(LoadTest.ADD).getCount() > 0);
+        assertEquals(0, report.getErrors());
+        assertEquals(0, report.getLostUpdates());
+        assertEquals(0, report.getDoubleBookings());
+    }
+
+    @Test
+    void shouldFavourFirstHostsWhenSkewed() {
+        double[] weights = LoadTest.zipf(100, 1.5);
+        SplittableRandom random = new SplittableRandom(1);
+        int first = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (LoadTest.pick(random, weights) == 0) {
+                first++;
+            }
+        }
+
+        assertEquals(1.0, weights[99], 1e-9);
+        //The first of 100 hosts takes about 38% of picks at this skew
+        assertTrue(first > 3000 && first < 4600);
+        assertEquals(0.01, LoadTest.zipf(100, 0)[0], 1e-9);
+    }
+}
@@ -0,0 +1,115 @@
+package learn.mastery.ui;
+
+import learn.mastery.data.GuestFileRepository;
+import learn.mastery.data.GuestRepository;
+import learn.mastery.data.HostFileRepository;
+import learn.mastery.data.HostRepository;
+import learn.mastery.data.IndexedGuestRepository;
+import learn.mastery.data.IndexedHostRepository;
+import learn.mastery.data.ReservationFileRepository;
+import learn.mastery.domain.AvailabilityService;
+import learn.mastery.domain.GuestService;
+import learn.mastery.domain.HostService;
+import learn.mastery.domain.ReservationService;
+import learn.mastery.metrics.IoBudget;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ControllerTest {
+
+    private static final String HOST_ID = "9d469342-ad0b-4f5a-8d28-e81e690ba29a";
+    private static final String HOST_EMAIL = "kwigfieldiy@php.net";
+    private static final String GUEST_EMAIL = "jjudgkinsh@goo.gl";
+
+    @TempDir
+    Path directory;
+
+    private ScriptedIO io;
+    private Controller controller;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.copy(Paths.get("./data/reservations_test/SEEDED_" + HOST_ID + ".csv"),
+                directory.resolve(HOST_ID + ".csv"));
+        GuestRepository guestRepository = new IndexedGuestRepository(new GuestFileRepository("./data/guests.csv"));
+        HostRepository hostRepository = new IndexedHostRepository(new HostFileRepository("./data/hosts.csv"));
+        ReservationFileRepository reservationRepository = new ReservationFileRepository(directory.toString());
+
+        io = new ScriptedIO();
+        controller = new Controller(new HostService(hostRepository), new GuestService(guestRepository),
+                new ReservationService(guestRepository, reservationRepository),
+                new AvailabilityService(hostRepository, reservationRepository), new View(io));
+    }
+
+    @Test
+    void shouldReadEachFileOnceWhenViewingReservationsTwice() throws Exception {
+        io.script("1", HOST_EMAIL, "1", HOST_EMAIL, "0");
+
+        //hosts.csv, guests.csv and the host's reservation file, one read each
+        IoBudget.measure("viewing a host's reservations twice", controller::run)
+                .opensAtMost(3)
+                .rowsAtMost(1001 + 1001 + 2);
+        assertTrue(io.printed("ID: 1"));
+    }
+
+    @Test
+    void shouldReadEachFileOnceWhenViewingGuestHistoryTwice() throws Exception {
+        io.script("6", GUEST_EMAIL, "6", GUEST_EMAIL, "0");
+
+        //guests.csv, the host's reservation file and hosts.csv are read once,
+        //and the guest index is written once
+        IoBudget.measure("viewing a guest's history twice", controller::run)
+                .opensAtMost(4)
+                .rowsAtMost(1001 + 1001 + 2);
+        assertTrue(io.printed("Host: Wigfield"));
+    }
+
+    /**
+     * Answers prompts from a script and keeps what was printed
+     */
+    private static final class ScriptedIO extends ConsoleIO {
+        private final Deque<String> answers = new ArrayDeque<>();
+        private final StringBuilder output = new StringBuilder();
+
+        void script(String... answers) {
+            this.answers.addAll(List.of(answers));
+        }
+
+        boolean printed(String text) {
+            return output.indexOf(text) >= 0;
+        }
+
+        @Override
+        public String readString(String prompt) {
+            print(prompt);
+            assertFalse(answers.isEmpty(), "no answer scripted for " + prompt);
+            return answers.removeFirst();
+        }
+
+        @Override
+        public void print(String message) {
+            output.append(message);
+        }
+
+        @Override
+        public void println(String message) {
+            output.append(message).append(System.lineSeparator());
+        }
+
+        @Override
+        public void printf(String format, Object... values) {
+            output.append(String.format(format, values));
+        }
+    }
+}